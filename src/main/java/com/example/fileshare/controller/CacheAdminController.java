@@ -0,0 +1,26 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.service.ContentCache;
+import com.example.fileshare.service.model.CacheStats;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Hit rates and occupancy of the download cache.
+ */
+@RestController
+@RequestMapping("/admin/cache")
+public class CacheAdminController {
+
+    private final ContentCache contentCache;
+
+    public CacheAdminController(ContentCache contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    @GetMapping
+    public CacheStats getStats() {
+        return contentCache.stats();
+    }
+}
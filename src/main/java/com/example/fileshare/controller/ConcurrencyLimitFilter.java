@@ -0,0 +1,160 @@
+package com.example.fileshare.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps how many file requests of each kind run at once. With virtual threads nothing else bounds
+ * concurrent downloads, each of which holds an open file and its buffers, or uploads, which also
+ * spool to disk and encrypt.
+ *
+ * <p>A request that finds its kind at the limit queues for up to
+ * {@code fileshare.http.queue-timeout-millis}, in arrival order. At most as many requests as the
+ * limit may queue; beyond that, or once the wait runs out, the request is answered with 503 and a
+ * Retry-After header. A burst is shed at the edge instead of piling up behind the disk. Health
+ * checks and admin calls are never limited.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    enum Endpoint {
+        DOWNLOAD, UPLOAD, METADATA
+    }
+
+    private static final String FILES = "/files";
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final Map<Endpoint, Limit> limits;
+
+    public ConcurrencyLimitFilter(@Value("${fileshare.http.limits.download:512}") int downloads,
+                                  @Value("${fileshare.http.limits.upload:64}") int uploads,
+                                  @Value("${fileshare.http.limits.metadata:256}") int metadata,
+                                  @Value("${fileshare.http.queue-timeout-millis:2000}") long queueTimeoutMillis) {
+        if (downloads <= 0 || uploads <= 0 || metadata <= 0 || queueTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Invalid limits: downloads=" + downloads + ", uploads=" + uploads
+                    + ", metadata=" + metadata + ", queueTimeoutMillis=" + queueTimeoutMillis);
+        }
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        this.limits = new EnumMap<>(Endpoint.class);
+        limits.put(Endpoint.DOWNLOAD, new Limit(downloads, timeoutNanos));
+        limits.put(Endpoint.UPLOAD, new Limit(uploads, timeoutNanos));
+        limits.put(Endpoint.METADATA, new Limit(metadata, timeoutNanos));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        Endpoint endpoint = classify(request.getMethod(), path);
+        if (endpoint == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Limit limit = limits.get(endpoint);
+        if (!limit.acquire()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Too many concurrent " + endpoint.name().toLowerCase(Locale.ROOT) + " requests");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limit.release();
+        }
+    }
+
+    /**
+     * Requests turned away for {@code endpoint} since startup.
+     */
+    long rejected(Endpoint endpoint) {
+        return limits.get(endpoint).rejected.sum();
+    }
+
+    /**
+     * The kind of a request by method and path, or null for requests that are not limited.
+     */
+    static Endpoint classify(String method, String path) {
+        if (!path.equals(FILES) && !path.startsWith(FILES + "/")) {
+            return null;
+        }
+        String rest = path.substring(FILES.length());
+        String[] segments = rest.isEmpty() || rest.equals("/") ? new String[0] : rest.substring(1).split("/");
+        if (segments.length == 0) {
+            return "POST".equals(method) ? Endpoint.UPLOAD : Endpoint.METADATA;
+        }
+        if (segments[0].equals("uploads")) {
+            boolean part = segments.length == 4 && segments[2].equals("parts");
+            boolean complete = segments.length == 3 && segments[2].equals("complete");
+            return part || complete ? Endpoint.UPLOAD : Endpoint.METADATA;
+        }
+        if (segments[0].equals("batch")) {
+            return segments.length == 1 && "POST".equals(method) ? Endpoint.UPLOAD : Endpoint.METADATA;
+        }
+        if (segments.length == 1 && !segments[0].equals("search")) {
+            return switch (method) {
+                case "GET", "HEAD" -> Endpoint.DOWNLOAD;
+                case "PUT" -> Endpoint.UPLOAD;
+                default -> Endpoint.METADATA;
+            };
+        }
+        return Endpoint.METADATA;
+    }
+
+    private static final class Limit {
+        private final Semaphore permits;
+        private final int maxWaiting;
+        private final long timeoutNanos;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final LongAdder rejected = new LongAdder();
+
+        Limit(int concurrency, long timeoutNanos) {
+            this.permits = new Semaphore(concurrency, true);
+            this.maxWaiting = concurrency;
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        boolean acquire() {
+            try {
+                // The timed form honours fairness, so a free permit still goes to earlier waiters.
+                if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                    return true;
+                }
+                if (waiting.incrementAndGet() <= maxWaiting) {
+                    try {
+                        if (permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                            return true;
+                        }
+                    } finally {
+                        waiting.decrementAndGet();
+                    }
+                } else {
+                    waiting.decrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            rejected.increment();
+            return false;
+        }
+
+        void release() {
+            permits.release();
+        }
+    }
+}
@@ -1,23 +1,31 @@
 package com.example.fileshare.controller;
 
-import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.AccessPermission;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.FileSort;
+import com.example.fileshare.search.SearchMode;
 import com.example.fileshare.service.FileService;
+import com.example.fileshare.service.model.BatchResult;
+import com.example.fileshare.service.model.FileContent;
+import com.example.fileshare.service.model.FilePage;
 import com.example.fileshare.service.model.FileRequest;
 import com.example.fileshare.service.model.FileResponse;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/files")
@@ -31,13 +39,15 @@ public class FileController {
 
     @PostMapping
     public FileResponse uploadFile(@RequestParam("ownerId") String ownerId,
-                                   @RequestParam("file") MultipartFile file) {
+                                   @RequestParam("file") MultipartFile file,
+                                   @RequestParam(value = "tags", required = false) Set<String> tags) {
         try {
             FileRequest request = new FileRequest(
                     file.getOriginalFilename(),
                     ownerId,
                     file.getInputStream(),
-                    file.getSize()
+                    file.getSize(),
+                    tags
             );
             return fileService.saveFile(request);
         } catch (Exception e) {
@@ -45,29 +55,66 @@ public class FileController {
         }
     }
 
+    /**
+     * Uploads every {@code file} part of the form as a new file; meant for many small files.
+     */
+    @PostMapping("/batch")
+    public List<FileResponse> uploadFiles(@RequestParam("ownerId") String ownerId,
+                                          @RequestParam("file") List<MultipartFile> files,
+                                          @RequestParam(value = "tags", required = false) Set<String> tags) {
+        try {
+            List<FileRequest> requests = new ArrayList<>(files.size());
+            for (MultipartFile file : files) {
+                requests.add(new FileRequest(
+                        file.getOriginalFilename(),
+                        ownerId,
+                        file.getInputStream(),
+                        file.getSize(),
+                        tags
+                ));
+            }
+            return fileService.saveFiles(requests);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to upload files", e);
+        }
+    }
+
+    @PostMapping("/batch/delete")
+    public BatchResult deleteFiles(@RequestParam("userId") String userId,
+                                   @RequestBody List<Id> fileIds) {
+        return fileService.deleteFiles(fileIds, userId);
+    }
+
+    @PostMapping("/batch/metadata")
+    public BatchResult describeFiles(@RequestParam("userId") String userId,
+                                     @RequestBody List<Id> fileIds) {
+        return fileService.describeFiles(fileIds, userId);
+    }
+
     @GetMapping("/{fileId}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String fileId,
-                                               @RequestParam("userId") String userId) {
-        try (InputStream input = fileService.retrieveFile(fileId, userId)) {
-            byte[] data = input.readAllBytes();
-            return ResponseEntity.ok()
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(data);
+    public void downloadFile(@PathVariable Id fileId,
+                             @RequestParam("userId") String userId,
+                             HttpServletRequest request,
+                             HttpServletResponse response) {
+        try (FileContent content = fileService.openFile(fileId, userId)) {
+            HttpDownloads.serve(content, request, response);
         } catch (Exception e) {
             throw new RuntimeException("Failed to download file", e);
         }
     }
 
     @PutMapping("/{fileId}")
-    public FileResponse updateFile(@PathVariable String fileId,
+    public FileResponse updateFile(@PathVariable Id fileId,
                                    @RequestParam("userId") String userId,
-                                   @RequestParam("file") MultipartFile file) {
+                                   @RequestParam("file") MultipartFile file,
+                                   @RequestParam(value = "tags", required = false) Set<String> tags) {
         try {
             FileRequest request = new FileRequest(
                     file.getOriginalFilename(),
                     userId,
                     file.getInputStream(),
-                    file.getSize()
+                    file.getSize(),
+                    tags
             );
             return fileService.updateFile(fileId, userId, request);
         } catch (Exception e) {
@@ -76,18 +123,47 @@ public class FileController {
     }
 
     @DeleteMapping("/{fileId}")
-    public FileResponse deleteFile(@PathVariable String fileId,
+    public FileResponse deleteFile(@PathVariable Id fileId,
                                    @RequestParam("userId") String userId) {
         return fileService.deleteFile(fileId, userId);
     }
 
     @GetMapping
-    public List<File> listFiles(@RequestParam("userId") String userId) {
-        return fileService.listFiles(userId);
+    public FilePage listFiles(@RequestParam("userId") String userId,
+                              @RequestParam(value = "sort", defaultValue = "updatedAt") String sort,
+                              @RequestParam(value = "order", defaultValue = "desc") String order,
+                              @RequestParam(value = "cursor", required = false) String cursor,
+                              @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return fileService.listFiles(userId, FileSort.fromParameter(sort), "desc".equalsIgnoreCase(order), cursor, limit);
     }
 
     @GetMapping("/search")
-    public List<String> searchFiles(@RequestParam("query") String query) {
-        return fileService.searchFiles(query);
+    public List<Id> searchFiles(@RequestParam("userId") String userId,
+                                @RequestParam("query") String query,
+                                @RequestParam(value = "mode", defaultValue = "substring") String mode,
+                                @RequestParam(value = "maxEdits", defaultValue = "1") int maxEdits,
+                                @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return fileService.searchFiles(userId, query, SearchMode.fromParameter(mode), maxEdits, limit);
+    }
+
+    @GetMapping("/{fileId}/permissions")
+    public AccessPermission getPermissions(@PathVariable Id fileId,
+                                           @RequestParam("userId") String userId) {
+        return fileService.getPermissions(fileId, userId);
+    }
+
+    @PutMapping("/{fileId}/permissions/{granteeId}")
+    public AccessPermission grantAccess(@PathVariable Id fileId,
+                                        @PathVariable String granteeId,
+                                        @RequestParam("userId") String userId,
+                                        @RequestParam(value = "permission", defaultValue = "read") String permission) {
+        return fileService.grantAccess(fileId, userId, granteeId, permission);
+    }
+
+    @DeleteMapping("/{fileId}/permissions/{granteeId}")
+    public AccessPermission revokeAccess(@PathVariable Id fileId,
+                                         @PathVariable String granteeId,
+                                         @RequestParam("userId") String userId) {
+        return fileService.revokeAccess(fileId, userId, granteeId);
     }
 }
@@ -0,0 +1,86 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.service.model.FileContent;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Copies stored file bytes to the servlet response without materializing them on the heap.
+ * Plain files on local disk are streamed through {@link FileChannel#transferTo}, everything
+ * else through a single fixed-size buffer.
+ *
+ * <p>Tomcat's sendfile is not used: the connector opens the file by name only after the handler
+ * has returned and closed the content, and by then a concurrent delete may have released the
+ * blob and removed it. The channel the content was opened with keeps the blob readable until
+ * the copy is done.
+ */
+final class FileTransfer {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileTransfer() {
+    }
+
+    /**
+     * Sends {@code count} bytes starting at {@code start}. Headers (including Content-Length)
+     * must already be set.
+     */
+    static void send(FileContent content, long start, long count,
+                     HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (count <= 0) {
+            return;
+        }
+        copy(content.getChannel(), start, count, response.getOutputStream());
+    }
+
+    /**
+     * Copies exactly {@code count} bytes; content that ends sooner fails with an
+     * {@link IOException}, since the length has been promised to the client already.
+     */
+    static void copy(SeekableByteChannel source, long start, long count, OutputStream output) throws IOException {
+        WritableByteChannel target = Channels.newChannel(output);
+        if (source instanceof FileChannel fileChannel) {
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = fileChannel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    throw shortRead(count, remaining);
+                }
+                position += sent;
+                remaining -= sent;
+            }
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, count));
+        source.position(start);
+        long remaining = count;
+        while (remaining > 0) {
+            buffer.clear();
+            if (remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            int read = source.read(buffer);
+            if (read < 0) {
+                throw shortRead(count, remaining);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            remaining -= read;
+        }
+    }
+
+    private static IOException shortRead(long count, long remaining) {
+        return new IOException("Content ended " + remaining + " bytes short of the " + count + " bytes being sent");
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.service.model.FileContent;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTTP semantics for file downloads: validators (ETag / Last-Modified), conditional requests
+ * answered with 304/412, and single or multi-range responses (RFC 9110 section 14). Every range
+ * is served with positional reads on the stored object, never by skipping through a stream.
+ */
+final class HttpDownloads {
+    private static final String DEFAULT_CHECKSUM = "N/A";
+    private static final String BYTES = "bytes";
+    private static final String OCTET_STREAM = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+    private HttpDownloads() {
+    }
+
+    static void serve(FileContent content, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        File file = content.getFile();
+        String etag = etag(file);
+        long lastModified = lastModified(file);
+
+        // Handles If-None-Match / If-Modified-Since (304) and If-Match / If-Unmodified-Since (412).
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        long length = content.getLength();
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES);
+
+        List<long[]> ranges = requestedRanges(request, etag, lastModified, length);
+        if (ranges == null) {
+            response.setContentType(OCTET_STREAM);
+            response.setContentLengthLong(length);
+            FileTransfer.send(content, 0, length, request, response);
+            return;
+        }
+        if (ranges.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, BYTES + " */" + length);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            long start = ranges.get(0)[0];
+            long end = ranges.get(0)[1];
+            response.setContentType(OCTET_STREAM);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(start, end, length));
+            response.setContentLengthLong(end - start + 1);
+            FileTransfer.send(content, start, end - start + 1, request, response);
+            return;
+        }
+        writeMultipart(content, ranges, response);
+    }
+
+    static String etag(File file) {
+        String checksum = file.getChecksum();
+        if (checksum != null && !checksum.isEmpty() && !DEFAULT_CHECKSUM.equals(checksum)) {
+            return "\"" + checksum + "\"";
+        }
+        // Without a content hash only a weak validator can be offered.
+        return "W/\"" + file.getId() + "-" + lastModified(file) + "\"";
+    }
+
+    static long lastModified(File file) {
+        long millis = file.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        // HTTP dates have second precision; truncate so If-Modified-Since round-trips exactly.
+        return millis - Math.floorMod(millis, 1000L);
+    }
+
+    /**
+     * Returns {@code null} when the whole representation should be sent (no Range header, an
+     * invalid one, or a failed If-Range), an empty list when no range is satisfiable, and
+     * otherwise inclusive {@code [start, end]} pairs.
+     */
+    private static List<long[]> requestedRanges(HttpServletRequest request, String etag, long lastModified, long length) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, etag, lastModified)) {
+            return null;
+        }
+
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<>(httpRanges.size());
+        long total = 0;
+        for (HttpRange range : httpRanges) {
+            long start;
+            long end;
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (start > end) {
+                continue;
+            }
+            total += end - start + 1;
+            ranges.add(new long[]{start, end});
+        }
+        // Overlapping ranges adding up to more than the file are cheaper to serve in full.
+        if (total > length) {
+            return null;
+        }
+        return ranges;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            // If-Range requires a strong comparison, so weak tags never match.
+            return !etag.startsWith("W/") && etag.equals(value);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) == lastModified;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void writeMultipart(FileContent content, List<long[]> ranges,
+                                       HttpServletResponse response) throws IOException {
+        long length = content.getLength();
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long contentLength = closing.length;
+        for (long[] range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + OCTET_STREAM + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range[0], range[1], length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range[1] - range[0] + 1;
+        }
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        ServletOutputStream output = response.getOutputStream();
+        for (int i = 0; i < ranges.size(); i++) {
+            long[] range = ranges.get(i);
+            output.write(partHeaders.get(i));
+            FileTransfer.copy(content.getChannel(), range[0], range[1] - range[0] + 1, output);
+        }
+        output.write(closing);
+    }
+
+    private static String contentRange(long start, long end, long length) {
+        return BYTES + " " + start + "-" + end + "/" + length;
+    }
+}
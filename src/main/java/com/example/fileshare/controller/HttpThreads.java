@@ -0,0 +1,27 @@
+package com.example.fileshare.controller;
+
+import org.apache.coyote.ProtocolHandler;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Picks the threads Tomcat runs requests on, with {@code fileshare.http.threads}.
+ *
+ * <p>{@code virtual}, the default, gives every request its own virtual thread. The file endpoints
+ * block on disk and on the client's socket, and a parked virtual thread costs a few hundred bytes,
+ * so slow downloads no longer use up a fixed pool and starve health checks. {@code platform}
+ * keeps Tomcat's bounded pool of platform threads. In both modes {@link ConcurrencyLimitFilter}
+ * caps how many requests of each kind run at once, and encryption runs on its own bounded pool.
+ */
+@Configuration
+public class HttpThreads {
+
+    @Bean
+    @ConditionalOnProperty(name = "fileshare.http.threads", havingValue = "virtual", matchIfMissing = true)
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadExecutor() {
+        return protocolHandler -> protocolHandler.setExecutor(new VirtualThreadExecutor("http-"));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.service.KeyRotationService;
+import com.example.fileshare.service.ReencryptionService;
+import com.example.fileshare.service.model.ReencryptionProgress;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Key management: master key rotation, and re-encryption of everything under a data key that
+ * has to be retired.
+ */
+@RestController
+@RequestMapping("/admin/keys")
+public class KeyAdminController {
+
+    private final KeyRotationService keyRotationService;
+    private final ReencryptionService reencryptionService;
+
+    public KeyAdminController(KeyRotationService keyRotationService, ReencryptionService reencryptionService) {
+        this.keyRotationService = keyRotationService;
+        this.reencryptionService = reencryptionService;
+    }
+
+    @PostMapping("/master/rotate")
+    public int rotateMasterKey() {
+        return keyRotationService.rotateMasterKey();
+    }
+
+    @PostMapping("/reencryptions")
+    public ReencryptionProgress startReencryption(@RequestParam("keyId") String keyId) {
+        return reencryptionService.startReencryption(keyId);
+    }
+
+    @GetMapping("/reencryptions")
+    public List<ReencryptionProgress> listReencryptions() {
+        return reencryptionService.listJobs();
+    }
+
+    @GetMapping("/reencryptions/{jobId}")
+    public ReencryptionProgress getReencryption(@PathVariable String jobId) {
+        return reencryptionService.getProgress(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+    }
+}
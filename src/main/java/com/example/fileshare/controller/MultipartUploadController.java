@@ -0,0 +1,64 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.service.MultipartUploadService;
+import com.example.fileshare.service.model.FileResponse;
+import com.example.fileshare.service.model.UploadSession;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+/**
+ * Initiate / upload-part / complete / abort API for large files. Part bodies are read as raw
+ * request streams (not multipart forms), so nothing is buffered by the servlet container.
+ */
+@RestController
+@RequestMapping("/files/uploads")
+public class MultipartUploadController {
+
+    private final MultipartUploadService uploadService;
+
+    public MultipartUploadController(MultipartUploadService uploadService) {
+        this.uploadService = uploadService;
+    }
+
+    @PostMapping
+    public UploadSession initiateUpload(@RequestParam("ownerId") String ownerId,
+                                        @RequestParam("fileName") String fileName,
+                                        @RequestParam("fileSize") long fileSize,
+                                        @RequestParam("partSize") long partSize) {
+        return uploadService.initiateUpload(ownerId, fileName, fileSize, partSize);
+    }
+
+    @PutMapping("/{uploadId}/parts/{partNumber}")
+    public UploadSession uploadPart(@PathVariable String uploadId,
+                                    @PathVariable int partNumber,
+                                    @RequestParam("userId") String userId,
+                                    InputStream body) {
+        return uploadService.uploadPart(uploadId, userId, partNumber, body);
+    }
+
+    @GetMapping("/{uploadId}")
+    public UploadSession getUpload(@PathVariable String uploadId,
+                                   @RequestParam("userId") String userId) {
+        return uploadService.getUpload(uploadId, userId);
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    public FileResponse completeUpload(@PathVariable String uploadId,
+                                       @RequestParam("userId") String userId) {
+        return uploadService.completeUpload(uploadId, userId);
+    }
+
+    @DeleteMapping("/{uploadId}")
+    public void abortUpload(@PathVariable String uploadId,
+                            @RequestParam("userId") String userId) {
+        uploadService.abortUpload(uploadId, userId);
+    }
+}
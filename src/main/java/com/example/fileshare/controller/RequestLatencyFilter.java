@@ -0,0 +1,38 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.service.LatencyMonitor;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Feeds the latency of every API request to the {@link LatencyMonitor}.
+ */
+@Component
+public class RequestLatencyFilter extends OncePerRequestFilter {
+
+    private final LatencyMonitor latencyMonitor;
+
+    public RequestLatencyFilter(LatencyMonitor latencyMonitor) {
+        this.latencyMonitor = latencyMonitor;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // Streaming requests go async and finish later; the time to hand them off says nothing.
+            if (!request.isAsyncStarted()) {
+                latencyMonitor.record(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.service.FileService;
+import com.example.fileshare.service.StreamingFileService;
+import com.example.fileshare.service.model.ContentLocation;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reactive counterparts of the {@link FileController} transfers. Bodies are raw bytes rather
+ * than multipart forms, so an upload streams straight into the chunk store; the file name comes
+ * from the {@code name} parameter instead. Downloads send the whole content with the same
+ * validators as the servlet endpoint and answer conditional requests with 304; range requests
+ * are left to the servlet endpoint.
+ */
+final class StreamingFileHandler {
+
+    private final FileService fileService;
+    private final StreamingFileService streamingFileService;
+
+    StreamingFileHandler(FileService fileService, StreamingFileService streamingFileService) {
+        this.fileService = fileService;
+        this.streamingFileService = streamingFileService;
+    }
+
+    Mono<ServerResponse> uploadFile(ServerRequest request) {
+        return streamingFileService.saveFile(required(request, "ownerId"), required(request, "name"), tags(request),
+                        request.bodyToFlux(DataBuffer.class))
+                .flatMap(response -> ServerResponse.ok().bodyValue(response));
+    }
+
+    Mono<ServerResponse> updateFile(ServerRequest request) {
+        return streamingFileService.updateFile(fileId(request), required(request, "userId"), required(request, "name"),
+                        tags(request), request.bodyToFlux(DataBuffer.class))
+                .flatMap(response -> ServerResponse.ok().bodyValue(response));
+    }
+
+    Mono<ServerResponse> downloadFile(ServerRequest request) {
+        Id fileId = fileId(request);
+        String userId = required(request, "userId");
+        return Mono.fromCallable(() -> fileService.locateFile(fileId, userId))
+                .flatMap(location -> {
+                    File file = location.getFile();
+                    String etag = HttpDownloads.etag(file);
+                    Instant lastModified = Instant.ofEpochMilli(HttpDownloads.lastModified(file));
+                    return request.checkNotModified(lastModified, etag)
+                            .switchIfEmpty(Mono.defer(() -> ServerResponse.ok()
+                                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                                    .contentLength(location.getLength())
+                                    .eTag(etag)
+                                    .lastModified(lastModified)
+                                    .body(BodyInserters.fromDataBuffers(content(request, location)))));
+                });
+    }
+
+    private Flux<DataBuffer> content(ServerRequest request, ContentLocation location) {
+        return streamingFileService.read(location, request.exchange().getResponse().bufferFactory());
+    }
+
+    private static Id fileId(ServerRequest request) {
+        try {
+            return Id.valueOf(request.pathVariable("fileId"));
+        } catch (IllegalArgumentException e) {
+            throw new ServerWebInputException("Invalid file id: " + request.pathVariable("fileId"), null, e);
+        }
+    }
+
+    private static String required(ServerRequest request, String name) {
+        return request.queryParam(name)
+                .orElseThrow(() -> new ServerWebInputException("Required parameter '" + name + "' is not present"));
+    }
+
+    // Repeated and comma-separated values both work, as with @RequestParam Set<String>.
+    private static Set<String> tags(ServerRequest request) {
+        List<String> values = request.queryParams().get("tags");
+        if (values == null) {
+            return null;
+        }
+        return values.stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .filter(tag -> !tag.isEmpty())
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.service.FileService;
+import com.example.fileshare.service.StreamingFileService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.TomcatHttpHandlerAdapter;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Mounts the reactive file API under {@code /stream} in the same Tomcat as the servlet API.
+ *
+ * <pre>
+ * POST /stream/files?ownerId=&amp;name=[&amp;tags=]          raw body; returns the new file
+ * PUT  /stream/files/{fileId}?userId=&amp;name=[&amp;tags=]  raw body; stores a new version
+ * GET  /stream/files/{fileId}?userId=
+ * </pre>
+ *
+ * <p>The routes run behind Servlet non-blocking I/O, so a request thread is only busy while bytes
+ * are ready to move, never while a slow client keeps the connection open. Connections beyond
+ * Tomcat's {@code server.tomcat.max-connections} (8192 by default) wait in the accept backlog,
+ * so raise it for tens of thousands of concurrent transfers.
+ */
+@Configuration
+public class StreamingFileRoutes {
+
+    private static final String MAPPING = "/stream/*";
+
+    @Bean
+    public ServletRegistrationBean<TomcatHttpHandlerAdapter> streamingFileServlet(
+            FileService fileService, StreamingFileService streamingFileService, ObjectMapper objectMapper) {
+        StreamingFileHandler handler = new StreamingFileHandler(fileService, streamingFileService);
+        RouterFunction<ServerResponse> routes = RouterFunctions.route()
+                .POST("/files", handler::uploadFile)
+                .PUT("/files/{fileId}", handler::updateFile)
+                .GET("/files/{fileId}", handler::downloadFile)
+                .build();
+        // Boot's mapper, so responses look the same as those of the servlet API.
+        HandlerStrategies strategies = HandlerStrategies.builder()
+                .codecs(codecs -> codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper)))
+                .build();
+        ServletRegistrationBean<TomcatHttpHandlerAdapter> registration = new ServletRegistrationBean<>(
+                new TomcatHttpHandlerAdapter(RouterFunctions.toHttpHandler(routes, strategies)), MAPPING);
+        registration.setName("streamingFiles");
+        registration.setAsyncSupported(true);
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+}
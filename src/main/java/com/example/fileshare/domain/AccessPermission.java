@@ -3,40 +3,47 @@ package com.example.fileshare.domain;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 public class AccessPermission {
-    private String id;
-    private String fileId;
+    private Id id;
+    private Id fileId;
     private Map<String, String> grants;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
     public AccessPermission() {
-        this.id = UUID.randomUUID().toString();
+        this.id = Id.generate();
         this.grants = new HashMap<>();
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
     }
 
-    public AccessPermission(String fileId) {
+    public AccessPermission(Id fileId) {
         this();
         this.fileId = fileId;
     }
 
-    public String getId() {
+    public AccessPermission(AccessPermission other) {
+        this.id = other.id;
+        this.fileId = other.fileId;
+        this.grants = new HashMap<>(other.grants);
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+    }
+
+    public Id getId() {
         return id;
     }
 
-    public void setId(String id) {
+    public void setId(Id id) {
         this.id = id;
     }
 
-    public String getFileId() {
+    public Id getFileId() {
         return fileId;
     }
 
-    public void setFileId(String fileId) {
+    public void setFileId(Id fileId) {
         this.fileId = fileId;
     }
 
@@ -86,8 +93,8 @@ public class AccessPermission {
     @Override
     public String toString() {
         return "AccessPermission{" +
-                "id='" + id + '\'' +
-                ", fileId='" + fileId + '\'' +
+                "id=" + id +
+                ", fileId=" + fileId +
                 ", grantCount=" + grants.size() +
                 '}';
     }
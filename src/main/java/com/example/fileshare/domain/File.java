@@ -1,27 +1,30 @@
 package com.example.fileshare.domain;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.Set;
 
 public class File {
     public enum Status {
         ACTIVE, DELETED, ARCHIVED
     }
 
-    private String id;
+    private Id id;
     private String ownerId;
     private String name;
     private long size;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private String checksum;
+    private int contentVersion;
     private Status status;
+    private Set<String> tags;
 
     public File() {
-        this.id = UUID.randomUUID().toString();
+        this.id = Id.generate();
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
         this.status = Status.ACTIVE;
+        this.tags = Set.of();
     }
 
     public File(String ownerId, String name, long size, String checksum) {
@@ -32,11 +35,41 @@ public class File {
         this.checksum = checksum;
     }
 
-    public String getId() {
+    /**
+     * A file with every field given, as read back from storage; nothing is generated.
+     */
+    public File(Id id, String ownerId, String name, long size, LocalDateTime createdAt, LocalDateTime updatedAt,
+                String checksum, int contentVersion, Status status) {
+        this.id = id;
+        this.ownerId = ownerId;
+        this.name = name;
+        this.size = size;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.checksum = checksum;
+        this.contentVersion = contentVersion;
+        this.status = status;
+        this.tags = Set.of();
+    }
+
+    public File(File other) {
+        this.id = other.id;
+        this.ownerId = other.ownerId;
+        this.name = other.name;
+        this.size = other.size;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.checksum = other.checksum;
+        this.contentVersion = other.contentVersion;
+        this.status = other.status;
+        this.tags = other.tags;
+    }
+
+    public Id getId() {
         return id;
     }
 
-    public void setId(String id) {
+    public void setId(Id id) {
         this.id = id;
     }
 
@@ -88,6 +121,17 @@ public class File {
         this.checksum = checksum;
     }
 
+    /**
+     * Number of the {@link FileVersion} holding the current content.
+     */
+    public int getContentVersion() {
+        return contentVersion;
+    }
+
+    public void setContentVersion(int contentVersion) {
+        this.contentVersion = contentVersion;
+    }
+
     public Status getStatus() {
         return status;
     }
@@ -97,10 +141,21 @@ public class File {
         this.updatedAt = LocalDateTime.now();
     }
 
+    /**
+     * Search tags, as given by the uploader; never {@code null}.
+     */
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(Set<String> tags) {
+        this.tags = tags == null ? Set.of() : Set.copyOf(tags);
+    }
+
     @Override
     public String toString() {
         return "File{" +
-                "id='" + id + '\'' +
+                "id=" + id +
                 ", ownerId='" + ownerId + '\'' +
                 ", name='" + name + '\'' +
                 ", size=" + size +
@@ -0,0 +1,59 @@
+package com.example.fileshare.domain;
+
+/**
+ * One content-defined chunk of a file version: the storage key of its bytes, their length and
+ * the CRC32C of the stored blob.
+ */
+public class FileChunk {
+    private String key;
+    private long size;
+    private long crc32c;
+
+    public FileChunk() {
+    }
+
+    public FileChunk(String key, long size) {
+        this.key = key;
+        this.size = size;
+    }
+
+    public FileChunk(String key, long size, long crc32c) {
+        this(key, size);
+        this.crc32c = crc32c;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * CRC32C of the blob as stored (ciphertext for encrypted contents), for cheap re-verification.
+     */
+    public long getCrc32c() {
+        return crc32c;
+    }
+
+    public void setCrc32c(long crc32c) {
+        this.crc32c = crc32c;
+    }
+
+    @Override
+    public String toString() {
+        return "FileChunk{" +
+                "key='" + key + '\'' +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -1,24 +1,27 @@
 package com.example.fileshare.domain;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
+import java.util.List;
 
 public class FileVersion {
-    private String id;
-    private String fileId;
+    private Id id;
+    private Id fileId;
     private int version;
     private String encryptedPath;
     private String keyId;
     private String iv;
+    private String cipherSuite;
     private String checksum;
+    private List<FileChunk> chunks;
     private LocalDateTime createdAt;
 
     public FileVersion() {
-        this.id = UUID.randomUUID().toString();
+        this.id = Id.generate();
+        this.chunks = List.of();
         this.createdAt = LocalDateTime.now();
     }
 
-    public FileVersion(String fileId, int version, String encryptedPath, String keyId, String iv, String checksum) {
+    public FileVersion(Id fileId, int version, String encryptedPath, String keyId, String iv, String checksum) {
         this();
         this.fileId = fileId;
         this.version = version;
@@ -28,19 +31,32 @@ public class FileVersion {
         this.checksum = checksum;
     }
 
-    public String getId() {
+    public FileVersion(FileVersion other) {
+        this.id = other.id;
+        this.fileId = other.fileId;
+        this.version = other.version;
+        this.encryptedPath = other.encryptedPath;
+        this.keyId = other.keyId;
+        this.iv = other.iv;
+        this.cipherSuite = other.cipherSuite;
+        this.checksum = other.checksum;
+        this.chunks = other.chunks;
+        this.createdAt = other.createdAt;
+    }
+
+    public Id getId() {
         return id;
     }
 
-    public void setId(String id) {
+    public void setId(Id id) {
         this.id = id;
     }
 
-    public String getFileId() {
+    public Id getFileId() {
         return fileId;
     }
 
-    public void setFileId(String fileId) {
+    public void setFileId(Id fileId) {
         this.fileId = fileId;
     }
 
@@ -60,6 +76,10 @@ public class FileVersion {
         this.encryptedPath = encryptedPath;
     }
 
+    /**
+     * The version's data key id, which is the data key wrapped by a master key; {@code null} for
+     * content stored unencrypted.
+     */
     public String getKeyId() {
         return keyId;
     }
@@ -76,6 +96,18 @@ public class FileVersion {
         this.iv = iv;
     }
 
+    /**
+     * Name of the cipher suite the content was sealed with; {@code null} for content stored
+     * unencrypted, or sealed with AES-256-GCM before suites were recorded.
+     */
+    public String getCipherSuite() {
+        return cipherSuite;
+    }
+
+    public void setCipherSuite(String cipherSuite) {
+        this.cipherSuite = cipherSuite;
+    }
+
     public String getChecksum() {
         return checksum;
     }
@@ -84,6 +116,17 @@ public class FileVersion {
         this.checksum = checksum;
     }
 
+    /**
+     * The version's content as an ordered list of chunks; versions share unchanged chunks.
+     */
+    public List<FileChunk> getChunks() {
+        return chunks;
+    }
+
+    public void setChunks(List<FileChunk> chunks) {
+        this.chunks = List.copyOf(chunks);
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -95,10 +138,11 @@ public class FileVersion {
     @Override
     public String toString() {
         return "FileVersion{" +
-                "id='" + id + '\'' +
-                ", fileId='" + fileId + '\'' +
+                "id=" + id +
+                ", fileId=" + fileId +
                 ", version=" + version +
                 ", keyId='" + keyId + '\'' +
+                ", cipherSuite='" + cipherSuite + '\'' +
                 '}';
     }
 }
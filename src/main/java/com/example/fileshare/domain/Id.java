@@ -0,0 +1,85 @@
+package com.example.fileshare.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 128-bit identifier held as two longs. New ids follow the UUIDv7 layout: the top 48 bits are the
+ * creation time in milliseconds and the other bits, apart from version and variant, are random,
+ * so ids sort roughly by creation time and are cheap to create. The text form is the usual UUID
+ * string, so ids created before this type existed still parse; it is only produced at the edges,
+ * in JSON and URLs.
+ *
+ * <p>Ids name things but do not protect them: access is checked on every request, so they are
+ * drawn from a fast thread-local generator rather than {@link java.security.SecureRandom}.
+ */
+public final class Id implements Comparable<Id> {
+
+    private final long high;
+    private final long low;
+
+    public Id(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public static Id generate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long high = System.currentTimeMillis() << 16 | 0x7000 | random.nextInt(1 << 12);
+        long low = random.nextLong() & 0x3FFF_FFFF_FFFF_FFFFL | 0x8000_0000_0000_0000L;
+        return new Id(high, low);
+    }
+
+    /**
+     * Parses the text form; throws {@link IllegalArgumentException} for anything else.
+     */
+    @JsonCreator
+    public static Id valueOf(String value) {
+        if (value == null || value.length() != 36) {
+            throw new IllegalArgumentException("Invalid id: " + value);
+        }
+        UUID uuid = UUID.fromString(value);
+        return new Id(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public long high() {
+        return high;
+    }
+
+    public long low() {
+        return low;
+    }
+
+    @Override
+    public int compareTo(Id other) {
+        int byHigh = Long.compareUnsigned(high, other.high);
+        return byHigh != 0 ? byHigh : Long.compareUnsigned(low, other.low);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Id other && high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(high, low);
+    }
+
+    /**
+     * The hash of the id with these two halves, for structures that store the halves unboxed.
+     */
+    public static int hash(long high, long low) {
+        long mixed = (high ^ low) * 0x9E37_79B9_7F4A_7C15L;
+        return (int) (mixed ^ mixed >>> 32);
+    }
+
+    @JsonValue
+    @Override
+    public String toString() {
+        return new UUID(high, low).toString();
+    }
+}
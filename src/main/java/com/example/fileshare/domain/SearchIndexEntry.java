@@ -3,40 +3,39 @@ package com.example.fileshare.domain;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.UUID;
 
 public class SearchIndexEntry {
-    private String id;
-    private String fileId;
+    private Id id;
+    private Id fileId;
     private Set<String> tokens; // tokenized name and metadata
     private Set<String> tags;
     private LocalDateTime indexedAt;
 
     public SearchIndexEntry() {
-        this.id = UUID.randomUUID().toString();
+        this.id = Id.generate();
         this.tokens = new HashSet<>();
         this.tags = new HashSet<>();
         this.indexedAt = LocalDateTime.now();
     }
 
-    public SearchIndexEntry(String fileId) {
+    public SearchIndexEntry(Id fileId) {
         this();
         this.fileId = fileId;
     }
 
-    public String getId() {
+    public Id getId() {
         return id;
     }
 
-    public void setId(String id) {
+    public void setId(Id id) {
         this.id = id;
     }
 
-    public String getFileId() {
+    public Id getFileId() {
         return fileId;
     }
 
-    public void setFileId(String fileId) {
+    public void setFileId(Id fileId) {
         this.fileId = fileId;
     }
 
@@ -75,8 +74,8 @@ public class SearchIndexEntry {
     @Override
     public String toString() {
         return "SearchIndexEntry{" +
-                "id='" + id + '\'' +
-                ", fileId='" + fileId + '\'' +
+                "id=" + id +
+                ", fileId=" + fileId +
                 ", tokenCount=" + tokens.size() +
                 ", tagCount=" + tags.size() +
                 '}';
@@ -2,16 +2,15 @@ package com.example.fileshare.domain;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 public class User {
-    private String id;
+    private Id id;
     private String name;
     private String email;
     private List<String> roles;
 
     public User() {
-        this.id = UUID.randomUUID().toString();
+        this.id = Id.generate();
     }
 
     public User(String name, String email) {
@@ -21,11 +20,11 @@ public class User {
         this.roles = new ArrayList<>();
     }
 
-    public String getId() {
+    public Id getId() {
         return id;
     }
 
-    public void setId(String id) {
+    public void setId(Id id) {
         this.id = id;
     }
 
@@ -60,7 +59,7 @@ public class User {
     @Override
     public String toString() {
         return "User{" +
-                "id='" + id + '\'' +
+                "id=" + id +
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
                 '}';
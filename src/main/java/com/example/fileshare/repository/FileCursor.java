@@ -0,0 +1,46 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque pagination cursor. It carries every sort key of the last file on a page rather than just
+ * its id, so a listing resumes at the right position even if that file has since been renamed,
+ * resized or deleted.
+ */
+public final class FileCursor {
+    private static final char SEPARATOR = '\n';
+
+    private FileCursor() {
+    }
+
+    public static String encode(File file) {
+        String raw = file.getId().toString() + SEPARATOR
+                + file.getSize() + SEPARATOR
+                + file.getUpdatedAt() + SEPARATOR
+                + (file.getName() == null ? "" : file.getName());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor into a file key carrying only the fields used by {@link FileSort}.
+     */
+    public static File decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(String.valueOf(SEPARATOR), 4);
+            File key = new File();
+            key.setId(Id.valueOf(parts[0]));
+            key.setSize(Long.parseLong(parts[1]));
+            key.setUpdatedAt(LocalDateTime.parse(parts[2]));
+            key.setName(parts[3]);
+            return key;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
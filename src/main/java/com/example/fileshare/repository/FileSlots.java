@@ -0,0 +1,201 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.Id;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Map from a file id to its {@link FileTable} slot, keyed by the id's two longs. Each stripe is an
+ * open-addressing table in three parallel arrays, so an entry costs about 20 bytes and no
+ * objects, and a lookup compares two longs instead of a 36-character string.
+ *
+ * <p>Lookups never block on {@link #compute}: a stripe's arrays are only locked for the moment an
+ * entry is inserted, and readers validate an optimistic read against that lock. Entries are
+ * never removed; files are deleted by status.
+ */
+final class FileSlots {
+
+    static final int ABSENT = -1;
+
+    private static final int STRIPES = 64;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Stripe[] stripes;
+    private final AtomicInteger size;
+
+    FileSlots() {
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.size = new AtomicInteger();
+    }
+
+    int get(Id id) {
+        int hash = Id.hash(id.high(), id.low());
+        return stripe(hash).get(id.high(), id.low(), hash);
+    }
+
+    /**
+     * Applies {@code update} to the id's slot, or to {@link #ABSENT}, and stores a slot it returns
+     * for an absent id. Calls for ids of the same stripe run one at a time, as a
+     * {@link java.util.concurrent.ConcurrentHashMap} bin lock would serialize them.
+     */
+    int compute(Id id, IntUnaryOperator update) {
+        int hash = Id.hash(id.high(), id.low());
+        Stripe stripe = stripe(hash);
+        synchronized (stripe) {
+            int current = stripe.get(id.high(), id.low(), hash);
+            int next = update.applyAsInt(current);
+            if (current == ABSENT && next != ABSENT) {
+                stripe.insert(id.high(), id.low(), hash, next);
+                size.incrementAndGet();
+            }
+            return next;
+        }
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Every slot; an entry inserted meanwhile may or may not be returned.
+     */
+    PrimitiveIterator.OfInt slots() {
+        return new PrimitiveIterator.OfInt() {
+            private int stripe;
+            private int[] slots = stripes[0].table.slots;
+            private int index;
+            private int next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != ABSENT;
+            }
+
+            @Override
+            public int nextInt() {
+                if (next == ABSENT) {
+                    throw new NoSuchElementException();
+                }
+                int slot = next;
+                next = advance();
+                return slot;
+            }
+
+            private int advance() {
+                while (true) {
+                    while (index < slots.length) {
+                        int slot = slots[index++] - 1;
+                        if (slot != ABSENT) {
+                            return slot;
+                        }
+                    }
+                    if (++stripe == STRIPES) {
+                        return ABSENT;
+                    }
+                    slots = stripes[stripe].table.slots;
+                    index = 0;
+                }
+            }
+        };
+    }
+
+    private Stripe stripe(int hash) {
+        return stripes[(hash ^ hash >>> 16) & (STRIPES - 1)];
+    }
+
+    private static final class Table {
+        final long[] highs;
+        final long[] lows;
+        // Slot plus one, so a zero marks a free entry.
+        final int[] slots;
+        int used;
+
+        Table(int capacity) {
+            this.highs = new long[capacity];
+            this.lows = new long[capacity];
+            this.slots = new int[capacity];
+        }
+    }
+
+    private static final class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private volatile Table table = new Table(INITIAL_CAPACITY);
+
+        int get(long high, long low, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            int slot = find(table, high, low, hash);
+            if (lock.validate(stamp)) {
+                return slot;
+            }
+            stamp = lock.readLock();
+            try {
+                return find(table, high, low, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // Called with the stripe's monitor held.
+        void insert(long high, long low, int hash, int slot) {
+            long stamp = lock.writeLock();
+            try {
+                Table current = table;
+                if ((current.used + 1) * 4 > current.slots.length * 3) {
+                    current = grow(current);
+                    table = current;
+                }
+                put(current, high, low, hash, slot);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private static Table grow(Table table) {
+            Table grown = new Table(table.slots.length * 2);
+            for (int i = 0; i < table.slots.length; i++) {
+                if (table.slots[i] != 0) {
+                    put(grown, table.highs[i], table.lows[i], Id.hash(table.highs[i], table.lows[i]),
+                            table.slots[i] - 1);
+                }
+            }
+            return grown;
+        }
+
+        private static void put(Table table, long high, long low, int hash, int slot) {
+            int mask = table.slots.length - 1;
+            int i = hash & mask;
+            while (table.slots[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table.highs[i] = high;
+            table.lows[i] = low;
+            table.slots[i] = slot + 1;
+            table.used++;
+        }
+
+        // May run against a table that is being written; the caller validates the result. The
+        // probe is bounded so a torn read cannot loop forever.
+        private static int find(Table table, long high, long low, int hash) {
+            int mask = table.slots.length - 1;
+            int i = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                int slot = table.slots[i];
+                if (slot == 0) {
+                    return ABSENT;
+                }
+                if (table.highs[i] == high && table.lows[i] == low) {
+                    return slot - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            return ABSENT;
+        }
+    }
+}
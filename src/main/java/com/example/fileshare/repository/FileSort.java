@@ -0,0 +1,57 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.File;
+
+import java.util.Comparator;
+
+/**
+ * Orderings supported by file listings. Every ordering breaks ties on the file id, so it is total
+ * and a cursor identifies exactly one position.
+ */
+public enum FileSort {
+    NAME("name",
+            Comparator.comparing(File::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder())),
+            Comparator.comparing(FileTable.Row::name, Comparator.nullsFirst(Comparator.<String>naturalOrder()))),
+    SIZE("size",
+            Comparator.comparingLong(File::getSize),
+            Comparator.comparingLong(FileTable.Row::size)),
+    UPDATED_AT("updatedAt",
+            Comparator.comparing(File::getUpdatedAt),
+            Comparator.comparingLong(FileTable.Row::updatedAtSeconds).thenComparingInt(FileTable.Row::updatedAtNanos));
+
+    private final String parameter;
+    private final Comparator<File> comparator;
+    private final Comparator<FileTable.Row> rowComparator;
+
+    FileSort(String parameter, Comparator<File> primary, Comparator<FileTable.Row> rowPrimary) {
+        this.parameter = parameter;
+        this.comparator = primary.thenComparing(File::getId);
+        this.rowComparator = rowPrimary
+                .thenComparing((a, b) -> Long.compareUnsigned(a.idHigh(), b.idHigh()))
+                .thenComparing((a, b) -> Long.compareUnsigned(a.idLow(), b.idLow()));
+    }
+
+    public Comparator<File> comparator() {
+        return comparator;
+    }
+
+    /**
+     * The same order over rows of a {@link FileTable}, read in place.
+     */
+    Comparator<FileTable.Row> rowComparator() {
+        return rowComparator;
+    }
+
+    public String parameter() {
+        return parameter;
+    }
+
+    public static FileSort fromParameter(String value) {
+        for (FileSort sort : values()) {
+            if (sort.parameter.equalsIgnoreCase(value) || sort.name().equalsIgnoreCase(value)) {
+                return sort;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported sort: " + value);
+    }
+}
@@ -0,0 +1,377 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * File metadata as fixed-width records outside the Java heap. A record is 88 bytes: id, numbers
+ * and timestamps inline, the owner as an index into a table of interned owner ids, and name,
+ * checksum and tags as references into a {@link StringArena}. The tags share one arena string,
+ * each prefixed by a char holding its length; untagged files store no string at all. A file costs the heap only the {@link Row}
+ * that addresses its record, instead of a {@link File} with its strings and timestamps.
+ *
+ * <p>Records are updated in place. Writers to one record must be serialized by the caller; each
+ * record carries a sequence number that is odd while a write is in progress, so {@link Row#toFile}
+ * retries instead of returning a mix of two versions. Single-field reads need no retry.
+ */
+final class FileTable implements AutoCloseable {
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private static final int SEQUENCE = 0;
+    private static final int OWNER = 4;
+    private static final int SIZE = 8;
+    private static final int CREATED_SECONDS = 16;
+    private static final int UPDATED_SECONDS = 24;
+    private static final int CREATED_NANOS = 32;
+    private static final int UPDATED_NANOS = 36;
+    private static final int CONTENT_VERSION = 40;
+    private static final int STATUS = 44;
+    private static final int ID_HIGH = 48;
+    private static final int ID_LOW = 56;
+    private static final int NAME = 64;
+    private static final int CHECKSUM = 72;
+    private static final int TAGS = 80;
+    private static final int RECORD_SIZE = 88;
+    private static final int RECORDS_PER_PAGE = OffHeapPages.PAGE_SIZE / RECORD_SIZE;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final int NO_OWNER = -1;
+    private static final File.Status[] STATUSES = File.Status.values();
+
+    private final OffHeapPages records;
+    private final StringArena strings;
+    private final AtomicInteger rows;
+    private final ConcurrentHashMap<String, Integer> ownerIndex;
+    // Both written only in addOwner.
+    private volatile String[] owners;
+    private int ownerCount;
+
+    private FileTable(OffHeapPages records, StringArena strings) {
+        this.records = records;
+        this.strings = strings;
+        this.rows = new AtomicInteger();
+        this.ownerIndex = new ConcurrentHashMap<>();
+        this.owners = new String[16];
+    }
+
+    static FileTable direct() {
+        return new FileTable(OffHeapPages.direct(), new StringArena(OffHeapPages.direct()));
+    }
+
+    /**
+     * A table in memory-mapped files under {@code dir}. The files are scratch space, recreated
+     * empty here; the table is filled from the metadata log on every start.
+     */
+    static FileTable mapped(Path dir) throws IOException {
+        return new FileTable(OffHeapPages.mapped(dir.resolve("files.table")),
+                new StringArena(OffHeapPages.mapped(dir.resolve("files.strings"))));
+    }
+
+    /**
+     * A key that compares like a stored row but reads its fields from {@code file}; used to seek in
+     * indexes ordered by rows.
+     */
+    static Row key(File file) {
+        return new KeyRow(file);
+    }
+
+    Row insert(File file) {
+        int slot = rows.getAndIncrement();
+        write(slot, file, strings.put(file.getName()), strings.put(file.getChecksum()),
+                strings.put(encodeTags(file.getTags())));
+        return new Row(this, slot);
+    }
+
+    /**
+     * The row of a slot returned by {@link Row#slot}.
+     */
+    Row row(int slot) {
+        return new Row(this, slot);
+    }
+
+    /**
+     * Overwrites the record of {@code row}, whose current content is {@code previous}. Strings that
+     * did not change keep their arena entries.
+     */
+    void update(Row row, File previous, File next) {
+        ByteBuffer page = page(row.slot);
+        int base = base(row.slot);
+        long name = Objects.equals(previous.getName(), next.getName())
+                ? (long) LONG.getOpaque(page, base + NAME) : strings.put(next.getName());
+        long checksum = Objects.equals(previous.getChecksum(), next.getChecksum())
+                ? (long) LONG.getOpaque(page, base + CHECKSUM) : strings.put(next.getChecksum());
+        long tags = previous.getTags().equals(next.getTags())
+                ? (long) LONG.getOpaque(page, base + TAGS) : strings.put(encodeTags(next.getTags()));
+        write(row.slot, next, name, checksum, tags);
+    }
+
+    int rows() {
+        return rows.get();
+    }
+
+    long stringBytes() {
+        return strings.size();
+    }
+
+    private void write(int slot, File file, long name, long checksum, long tags) {
+        ByteBuffer page = page(slot);
+        int base = base(slot);
+        int owner = intern(file.getOwnerId());
+        int sequence = (int) INT.getOpaque(page, base + SEQUENCE);
+        INT.setOpaque(page, base + SEQUENCE, sequence + 1);
+        VarHandle.storeStoreFence();
+        LONG.setOpaque(page, base + ID_HIGH, file.getId().high());
+        LONG.setOpaque(page, base + ID_LOW, file.getId().low());
+        LONG.setOpaque(page, base + NAME, name);
+        LONG.setOpaque(page, base + CHECKSUM, checksum);
+        LONG.setOpaque(page, base + TAGS, tags);
+        INT.setOpaque(page, base + OWNER, owner);
+        LONG.setOpaque(page, base + SIZE, file.getSize());
+        putTime(page, base + CREATED_SECONDS, base + CREATED_NANOS, file.getCreatedAt());
+        putTime(page, base + UPDATED_SECONDS, base + UPDATED_NANOS, file.getUpdatedAt());
+        INT.setOpaque(page, base + CONTENT_VERSION, file.getContentVersion());
+        page.put(base + STATUS, (byte) (file.getStatus() == null ? -1 : file.getStatus().ordinal()));
+        INT.setRelease(page, base + SEQUENCE, sequence + 2);
+    }
+
+    private File read(int slot) {
+        ByteBuffer page = page(slot);
+        int base = base(slot);
+        long idHigh;
+        long idLow;
+        long name;
+        long checksum;
+        long tags;
+        int owner;
+        long size;
+        long createdSeconds;
+        int createdNanos;
+        long updatedSeconds;
+        int updatedNanos;
+        int contentVersion;
+        byte status;
+        while (true) {
+            int sequence = (int) INT.getAcquire(page, base + SEQUENCE);
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            idHigh = (long) LONG.getOpaque(page, base + ID_HIGH);
+            idLow = (long) LONG.getOpaque(page, base + ID_LOW);
+            name = (long) LONG.getOpaque(page, base + NAME);
+            checksum = (long) LONG.getOpaque(page, base + CHECKSUM);
+            tags = (long) LONG.getOpaque(page, base + TAGS);
+            owner = (int) INT.getOpaque(page, base + OWNER);
+            size = (long) LONG.getOpaque(page, base + SIZE);
+            createdSeconds = (long) LONG.getOpaque(page, base + CREATED_SECONDS);
+            createdNanos = (int) INT.getOpaque(page, base + CREATED_NANOS);
+            updatedSeconds = (long) LONG.getOpaque(page, base + UPDATED_SECONDS);
+            updatedNanos = (int) INT.getOpaque(page, base + UPDATED_NANOS);
+            contentVersion = (int) INT.getOpaque(page, base + CONTENT_VERSION);
+            status = page.get(base + STATUS);
+            VarHandle.loadLoadFence();
+            if ((int) INT.getOpaque(page, base + SEQUENCE) == sequence) {
+                break;
+            }
+        }
+        File file = new File(new Id(idHigh, idLow), owner(owner), strings.get(name), size,
+                time(createdSeconds, createdNanos), time(updatedSeconds, updatedNanos), strings.get(checksum),
+                contentVersion, status < 0 ? null : STATUSES[status]);
+        file.setTags(decodeTags(strings.get(tags)));
+        return file;
+    }
+
+    private static String encodeTags(Set<String> tags) {
+        if (tags.isEmpty()) {
+            return null;
+        }
+        StringBuilder encoded = new StringBuilder();
+        for (String tag : tags) {
+            if (tag.length() > Character.MAX_VALUE) {
+                throw new IllegalArgumentException("Tag too long to store: " + tag.length() + " characters");
+            }
+            encoded.append((char) tag.length()).append(tag);
+        }
+        return encoded.toString();
+    }
+
+    private static Set<String> decodeTags(String encoded) {
+        if (encoded == null) {
+            return Set.of();
+        }
+        List<String> tags = new ArrayList<>();
+        for (int i = 0; i < encoded.length(); ) {
+            int length = encoded.charAt(i++);
+            tags.add(encoded.substring(i, i + length));
+            i += length;
+        }
+        return Set.copyOf(tags);
+    }
+
+    private int intern(String ownerId) {
+        if (ownerId == null) {
+            return NO_OWNER;
+        }
+        Integer index = ownerIndex.get(ownerId);
+        return index != null ? index : ownerIndex.computeIfAbsent(ownerId, this::addOwner);
+    }
+
+    // Runs inside computeIfAbsent, so each owner is added once.
+    private synchronized int addOwner(String ownerId) {
+        int index = ownerCount++;
+        String[] current = owners;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[index] = ownerId;
+        owners = current;
+        return index;
+    }
+
+    private String owner(int index) {
+        return index == NO_OWNER ? null : owners[index];
+    }
+
+    private ByteBuffer page(int slot) {
+        return records.page(slot / RECORDS_PER_PAGE);
+    }
+
+    private static int base(int slot) {
+        return slot % RECORDS_PER_PAGE * RECORD_SIZE;
+    }
+
+    private static void putTime(ByteBuffer page, int secondsOffset, int nanosOffset, LocalDateTime time) {
+        LONG.setOpaque(page, secondsOffset, time == null ? NO_TIME : time.toEpochSecond(ZoneOffset.UTC));
+        INT.setOpaque(page, nanosOffset, time == null ? 0 : time.getNano());
+    }
+
+    private static LocalDateTime time(long seconds, int nanos) {
+        return seconds == NO_TIME ? null : LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+        strings.close();
+    }
+
+    /**
+     * Flyweight over one record. It holds only the record's position, so every accessor reads the
+     * current content of the record.
+     */
+    static class Row {
+        private final FileTable table;
+        private final int slot;
+
+        Row(FileTable table, int slot) {
+            this.table = table;
+            this.slot = slot;
+        }
+
+        int slot() {
+            return slot;
+        }
+
+        long idHigh() {
+            return (long) LONG.getOpaque(table.page(slot), base(slot) + ID_HIGH);
+        }
+
+        long idLow() {
+            return (long) LONG.getOpaque(table.page(slot), base(slot) + ID_LOW);
+        }
+
+        String ownerId() {
+            return table.owner((int) INT.getOpaque(table.page(slot), base(slot) + OWNER));
+        }
+
+        String name() {
+            return table.strings.get((long) LONG.getOpaque(table.page(slot), base(slot) + NAME));
+        }
+
+        long size() {
+            return (long) LONG.getOpaque(table.page(slot), base(slot) + SIZE);
+        }
+
+        long updatedAtSeconds() {
+            return (long) LONG.getOpaque(table.page(slot), base(slot) + UPDATED_SECONDS);
+        }
+
+        int updatedAtNanos() {
+            return (int) INT.getOpaque(table.page(slot), base(slot) + UPDATED_NANOS);
+        }
+
+        /**
+         * A consistent copy of the record.
+         */
+        File toFile() {
+            return table.read(slot);
+        }
+    }
+
+    private static final class KeyRow extends Row {
+        private final File file;
+
+        private KeyRow(File file) {
+            super(null, -1);
+            this.file = file;
+        }
+
+        @Override
+        long idHigh() {
+            return file.getId().high();
+        }
+
+        @Override
+        long idLow() {
+            return file.getId().low();
+        }
+
+        @Override
+        String ownerId() {
+            return file.getOwnerId();
+        }
+
+        @Override
+        String name() {
+            return file.getName();
+        }
+
+        @Override
+        long size() {
+            return file.getSize();
+        }
+
+        @Override
+        long updatedAtSeconds() {
+            return file.getUpdatedAt().toEpochSecond(ZoneOffset.UTC);
+        }
+
+        @Override
+        int updatedAtNanos() {
+            return file.getUpdatedAt().getNano();
+        }
+
+        @Override
+        File toFile() {
+            return new File(file);
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.AccessPermission;
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.domain.Id;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.Files;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Metadata held in {@link ConcurrentHashMap}s. Writers lock only the hash bin they touch and
+ * readers never lock. Versions and grants are never mutated in place. Updates copy the entry,
+ * apply the change and swap the copy in, so a reader always sees a complete before or after state.
+ * Files live off-heap in a {@link FileTable}, which tens of millions of files fit without growing
+ * the heap; a {@link FileSlots} map keyed by the binary id points at their rows. A file's row is
+ * rewritten in place under its entry's lock, and readers get a consistent copy from the table. The
+ * per-user listing index covers owners and grantees. It is maintained inside the lock of the file
+ * entry it mirrors, which grant changes take as well, so the two cannot interleave.
+ *
+ * <p>Reads are always served from memory. With a {@link MetadataLog} every change is also
+ * appended to the log while the entry is still locked, so the log holds each entity's changes in
+ * the order they were applied. A call returns once its change is durable, or, inside
+ * {@link #inBatch}, once the whole batch is. Concurrent callers share fsyncs through the log's
+ * group commit, and a snapshot is taken in the background once enough has been logged since the
+ * last one. On startup the maps are rebuilt from the log.
+ */
+@Repository
+public class InMemoryMetadataRepository implements MetadataRepository {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryMetadataRepository.class);
+
+    private final FileSlots files;
+    private final FileTable table;
+    // Each value is an immutable list, replaced on append.
+    private final ConcurrentHashMap<Id, List<FileVersion>> versions;
+    // Written only under the lock of the file entry; values are replaced, never mutated.
+    private final ConcurrentHashMap<Id, AccessPermission> permissions;
+    private final UserFileIndex userIndex;
+    // Null when nothing is persisted.
+    private final MetadataLog metadataLog;
+    private final long snapshotBytes;
+    private final ExecutorService snapshotter;
+    private final AtomicBoolean snapshotting;
+    private final ReentrantReadWriteLock barrier;
+    // The log position the current thread's batch has to reach; unset outside a batch.
+    private final ThreadLocal<long[]> batches = new ThreadLocal<>();
+
+    /**
+     * Keeps metadata in memory only; for tools and tests.
+     */
+    public InMemoryMetadataRepository() {
+        this((Path) null, 0);
+    }
+
+    /**
+     * @param dir           where the log and its snapshots live
+     * @param snapshotBytes log growth after which a new snapshot is written
+     */
+    @Autowired
+    public InMemoryMetadataRepository(@Value("${fileshare.metadata.dir:storage/metadata}") String dir,
+                                      @Value("${fileshare.metadata.snapshot-bytes:67108864}") long snapshotBytes) {
+        this(Paths.get(dir), snapshotBytes);
+    }
+
+    InMemoryMetadataRepository(Path dir, long snapshotBytes) {
+        this.files = new FileSlots();
+        this.versions = new ConcurrentHashMap<>();
+        this.permissions = new ConcurrentHashMap<>();
+        this.userIndex = new UserFileIndex();
+        this.snapshotBytes = snapshotBytes;
+        this.snapshotting = new AtomicBoolean();
+        this.barrier = new ReentrantReadWriteLock();
+        if (dir == null) {
+            this.table = FileTable.direct();
+            this.metadataLog = null;
+            this.snapshotter = null;
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            Files.createDirectories(dir);
+            this.table = FileTable.mapped(dir);
+            this.metadataLog = recover(dir);
+            log.info("Recovered {} files and {} versions from {} in {} ms", files.size(),
+                    versions.values().stream().mapToInt(List::size).sum(), dir, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to recover metadata", e);
+        }
+        this.snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metadata-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private MetadataLog recover(Path dir) throws IOException {
+        Map<Id, List<FileVersion>> replayed = new HashMap<>();
+        MetadataLog opened = MetadataLog.open(dir, new MetadataLog.Replay() {
+            @Override
+            public void file(File file) {
+                files.compute(file.getId(), slot -> {
+                    if (slot == FileSlots.ABSENT) {
+                        return table.insert(file).slot();
+                    }
+                    FileTable.Row row = table.row(slot);
+                    table.update(row, row.toFile(), file);
+                    return slot;
+                });
+            }
+
+            @Override
+            public void version(FileVersion version) {
+                List<FileVersion> fileVersions = replayed.computeIfAbsent(version.getFileId(), id -> new ArrayList<>());
+                if (version.getVersion() <= fileVersions.size()) {
+                    fileVersions.set(version.getVersion() - 1, version);
+                } else {
+                    fileVersions.add(version);
+                }
+            }
+
+            @Override
+            public void permission(AccessPermission permission) {
+                permissions.put(permission.getFileId(), permission);
+            }
+        });
+        replayed.forEach((fileId, fileVersions) -> versions.put(fileId, List.copyOf(fileVersions)));
+        // Grants may be replayed after the files they cover, so the listing index is built last.
+        for (PrimitiveIterator.OfInt slots = files.slots(); slots.hasNext(); ) {
+            FileTable.Row row = table.row(slots.nextInt());
+            index(row, row.toFile());
+        }
+        return opened;
+    }
+
+    /**
+     * Writes a snapshot now instead of waiting for the log to grow; the log must be enabled.
+     */
+    void snapshot() throws IOException {
+        long generation;
+        // Waits out changes that are logged but not yet in the maps, so none is left out of both
+        // the snapshot and the segments it replaces.
+        barrier.writeLock().lock();
+        try {
+            generation = metadataLog.rotate();
+        } finally {
+            barrier.writeLock().unlock();
+        }
+        metadataLog.snapshot(generation, findAllFiles(), versions.values(), permissions.values());
+    }
+
+    /**
+     * Log flushes so far, or 0 when nothing is persisted.
+     */
+    long syncCount() {
+        return metadataLog == null ? 0 : metadataLog.syncCount();
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            if (metadataLog != null) {
+                snapshotter.shutdown();
+                metadataLog.close();
+            }
+            table.close();
+        } catch (IOException e) {
+            log.warn("Failed to close metadata store", e);
+        }
+    }
+
+    @Override
+    public void saveFile(File file) {
+        File stored = new File(file);
+        long[] position = new long[1];
+        logged(() -> files.compute(file.getId(), slot -> {
+            position[0] = record(stored);
+            FileTable.Row row = slot == FileSlots.ABSENT ? null : table.row(slot);
+            return store(row, row == null ? null : row.toFile(), stored).slot();
+        }));
+        sync(position[0]);
+    }
+
+    @Override
+    public <T> T inBatch(Supplier<T> changes) {
+        if (batches.get() != null) {
+            return changes.get();
+        }
+        long[] position = new long[1];
+        batches.set(position);
+        try {
+            return changes.get();
+        } finally {
+            batches.remove();
+            // Changes applied before a failure are visible already, so they are made durable too.
+            sync(position[0]);
+        }
+    }
+
+    @Override
+    public Optional<File> findFile(Id fileId) {
+        int slot = files.get(fileId);
+        return slot == FileSlots.ABSENT ? Optional.empty() : Optional.of(table.row(slot).toFile());
+    }
+
+    @Override
+    public Collection<File> findAllFiles() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<File> iterator() {
+                PrimitiveIterator.OfInt slots = files.slots();
+                return new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return slots.hasNext();
+                    }
+
+                    @Override
+                    public File next() {
+                        return table.row(slots.nextInt()).toFile();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return files.size();
+            }
+        };
+    }
+
+    @Override
+    public List<File> findFilesForUser(String userId) {
+        return userIndex.all(userId);
+    }
+
+    @Override
+    public List<File> findFilesForUser(String userId, FileSort sort, boolean descending, File after, int limit) {
+        return userIndex.page(userId, sort, descending, after, limit);
+    }
+
+    @Override
+    public Optional<File> updateFile(Id fileId, Consumer<File> update) {
+        long[] position = new long[1];
+        File[] updated = new File[1];
+        logged(() -> files.compute(fileId, slot -> {
+            if (slot == FileSlots.ABSENT) {
+                return slot;
+            }
+            FileTable.Row row = table.row(slot);
+            File current = row.toFile();
+            File copy = new File(current);
+            update.accept(copy);
+            position[0] = record(copy);
+            updated[0] = copy;
+            return store(row, current, copy).slot();
+        }));
+        sync(position[0]);
+        return Optional.ofNullable(updated[0]);
+    }
+
+    // Called under the file's entry lock. The row leaves the listing index before its record is
+    // rewritten: the index is ordered by the record's fields, which must not change under it.
+    private FileTable.Row store(FileTable.Row row, File previous, File next) {
+        if (row == null) {
+            row = table.insert(next);
+        } else {
+            FileTable.Row stored = row;
+            userIndex.remove(previous.getOwnerId(), stored);
+            AccessPermission grants = permissions.get(previous.getId());
+            if (grants != null) {
+                grants.getGrants().keySet().forEach(userId -> userIndex.remove(userId, stored));
+            }
+            table.update(row, previous, next);
+        }
+        index(row, next);
+        return row;
+    }
+
+    private void index(FileTable.Row row, File file) {
+        if (file.getStatus() == File.Status.DELETED) {
+            return;
+        }
+        userIndex.add(file.getOwnerId(), row);
+        AccessPermission grants = permissions.get(file.getId());
+        if (grants != null) {
+            grants.getGrants().keySet().forEach(userId -> userIndex.add(userId, row));
+        }
+    }
+
+    @Override
+    public FileVersion addVersion(FileVersion version) {
+        FileVersion stored = new FileVersion(version);
+        long[] position = new long[1];
+        logged(() -> append(stored, position));
+        sync(position[0]);
+        return stored;
+    }
+
+    @Override
+    public Optional<FileVersion> addLiveVersion(FileVersion version) {
+        FileVersion stored = new FileVersion(version);
+        long[] position = new long[1];
+        boolean[] added = new boolean[1];
+        // Under the file's entry, like replaceVersion, so it is ordered against deletes.
+        logged(() -> files.compute(version.getFileId(), slot -> {
+            if (slot != FileSlots.ABSENT && table.row(slot).toFile().getStatus() != File.Status.DELETED) {
+                append(stored, position);
+                added[0] = true;
+            }
+            return slot;
+        }));
+        sync(position[0]);
+        return added[0] ? Optional.of(stored) : Optional.empty();
+    }
+
+    // Appends stored with the next version number of its file; a failed log append leaves the
+    // versions unchanged.
+    private List<FileVersion> append(FileVersion stored, long[] position) {
+        return versions.compute(stored.getFileId(), (fileId, current) -> {
+            int size = current == null ? 0 : current.size();
+            List<FileVersion> next = new ArrayList<>(size + 1);
+            if (current != null) {
+                next.addAll(current);
+            }
+            stored.setVersion(size == 0 ? 1 : current.get(size - 1).getVersion() + 1);
+            position[0] = record(stored);
+            next.add(stored);
+            return List.copyOf(next);
+        });
+    }
+
+    @Override
+    public List<FileVersion> findVersions(Id fileId) {
+        return versions.getOrDefault(fileId, List.of());
+    }
+
+    @Override
+    public Optional<FileVersion> updateVersion(Id fileId, int version, Consumer<FileVersion> update) {
+        FileVersion[] updated = new FileVersion[1];
+        long[] position = new long[1];
+        logged(() -> versions.computeIfPresent(fileId,
+                (id, current) -> replace(current, version, update, position, updated)));
+        sync(position[0]);
+        return Optional.ofNullable(updated[0]);
+    }
+
+    @Override
+    public Optional<FileVersion> replaceVersion(Id fileId, int version, String expectedKeyId,
+                                                Consumer<FileVersion> update) {
+        FileVersion[] updated = new FileVersion[1];
+        long[] position = new long[1];
+        // Under the file's entry, which deletes take too; the sync waits until it is released.
+        logged(() -> files.compute(fileId, slot -> {
+            if (slot == FileSlots.ABSENT || table.row(slot).toFile().getStatus() == File.Status.DELETED) {
+                return slot;
+            }
+            versions.computeIfPresent(fileId, (id, current) ->
+                    version >= 1 && version <= current.size()
+                            && Objects.equals(expectedKeyId, current.get(version - 1).getKeyId())
+                            ? replace(current, version, update, position, updated)
+                            : current);
+            return slot;
+        }));
+        sync(position[0]);
+        return Optional.ofNullable(updated[0]);
+    }
+
+    // Called under the versions entry; returns the list with the version replaced by an updated
+    // copy, or the list itself when there is no such version.
+    private List<FileVersion> replace(List<FileVersion> current, int version, Consumer<FileVersion> update,
+                                      long[] position, FileVersion[] updated) {
+        if (version < 1 || version > current.size()) {
+            return current;
+        }
+        FileVersion copy = new FileVersion(current.get(version - 1));
+        update.accept(copy);
+        position[0] = record(copy);
+        List<FileVersion> next = new ArrayList<>(current);
+        next.set(version - 1, copy);
+        updated[0] = copy;
+        return List.copyOf(next);
+    }
+
+    @Override
+    public Optional<FileVersion> findVersion(Id fileId, int version) {
+        // Numbers are assigned densely from 1, so version n sits at index n - 1.
+        List<FileVersion> fileVersions = versions.getOrDefault(fileId, List.of());
+        if (version < 1 || version > fileVersions.size()) {
+            return Optional.empty();
+        }
+        return Optional.of(fileVersions.get(version - 1));
+    }
+
+    @Override
+    public Optional<FileVersion> findLatestVersion(Id fileId) {
+        List<FileVersion> fileVersions = versions.get(fileId);
+        if (fileVersions == null || fileVersions.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(fileVersions.get(fileVersions.size() - 1));
+    }
+
+    @Override
+    public Optional<AccessPermission> findPermissions(Id fileId) {
+        return Optional.ofNullable(permissions.get(fileId));
+    }
+
+    @Override
+    public Optional<AccessPermission> grantAccess(Id fileId, String userId, String permission) {
+        return changeGrants(fileId, userId, grants -> grants.grantAccess(userId, permission));
+    }
+
+    @Override
+    public Optional<AccessPermission> revokeAccess(Id fileId, String userId) {
+        return changeGrants(fileId, userId, grants -> grants.revokeAccess(userId));
+    }
+
+    private Optional<AccessPermission> changeGrants(Id fileId, String userId, Consumer<AccessPermission> change) {
+        AccessPermission[] result = new AccessPermission[1];
+        long[] position = new long[1];
+        // Holding the file's entry keeps the grantee's listing in step with concurrent file updates.
+        logged(() -> files.compute(fileId, slot -> {
+            if (slot == FileSlots.ABSENT) {
+                return slot;
+            }
+            FileTable.Row row = table.row(slot);
+            File file = row.toFile();
+            AccessPermission current = permissions.get(fileId);
+            AccessPermission next = current == null ? new AccessPermission(fileId) : new AccessPermission(current);
+            change.accept(next);
+            position[0] = record(next);
+            permissions.put(fileId, next);
+            if (next.hasAccess(userId) && file.getStatus() != File.Status.DELETED) {
+                userIndex.add(userId, row);
+            } else if (!next.hasAccess(userId) && !userId.equals(file.getOwnerId())) {
+                userIndex.remove(userId, row);
+            }
+            result[0] = next;
+            return slot;
+        }));
+        sync(position[0]);
+        return Optional.ofNullable(result[0]);
+    }
+
+    // Applies a change that logs itself, keeping snapshots from rotating the log in between.
+    private <T> T logged(Supplier<T> change) {
+        if (metadataLog == null) {
+            return change.get();
+        }
+        barrier.readLock().lock();
+        try {
+            return change.get();
+        } finally {
+            barrier.readLock().unlock();
+        }
+    }
+
+    // Called under the entry's lock; a failed append throws and leaves the entry unchanged.
+    private long record(File file) {
+        if (metadataLog == null) {
+            return 0;
+        }
+        try {
+            return metadataLog.append(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to log metadata change", e);
+        }
+    }
+
+    private long record(FileVersion version) {
+        if (metadataLog == null) {
+            return 0;
+        }
+        try {
+            return metadataLog.append(version);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to log metadata change", e);
+        }
+    }
+
+    private long record(AccessPermission permission) {
+        if (metadataLog == null) {
+            return 0;
+        }
+        try {
+            return metadataLog.append(permission);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to log metadata change", e);
+        }
+    }
+
+    private void sync(long position) {
+        if (metadataLog == null || position == 0) {
+            return;
+        }
+        long[] batch = batches.get();
+        if (batch != null) {
+            batch[0] = Math.max(batch[0], position);
+            return;
+        }
+        try {
+            metadataLog.sync(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to persist metadata change", e);
+        }
+        if (metadataLog.sizeSinceSnapshot() >= snapshotBytes && snapshotting.compareAndSet(false, true)) {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } catch (IOException e) {
+                    log.warn("Failed to write metadata snapshot", e);
+                } finally {
+                    snapshotting.set(false);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.AccessPermission;
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileChunk;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.domain.Id;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Binary form of the metadata entities in the {@link MetadataLog}. Every record is the complete
+ * state of one entity after a change, so replaying records in order, or the same record twice,
+ * always ends in the latest state.
+ *
+ * <p>Readers take the format of the file being read: format 1 stored ids as UUID text, format 2
+ * stores them as two longs, and format 3 adds the tags to file records; files from earlier
+ * formats read as untagged.
+ */
+final class MetadataCodec {
+    static final byte FILE = 1;
+    static final byte VERSION = 2;
+    static final byte PERMISSION = 3;
+
+    static final int TEXT_IDS = 1;
+    static final int TAGGED_FILES = 3;
+    static final int FORMAT = TAGGED_FILES;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private MetadataCodec() {
+    }
+
+    static void writeFile(DataOutput out, File file) throws IOException {
+        writeId(out, file.getId());
+        writeString(out, file.getOwnerId());
+        writeString(out, file.getName());
+        out.writeLong(file.getSize());
+        writeTime(out, file.getCreatedAt());
+        writeTime(out, file.getUpdatedAt());
+        writeString(out, file.getChecksum());
+        out.writeInt(file.getContentVersion());
+        out.writeByte(file.getStatus().ordinal());
+        out.writeInt(file.getTags().size());
+        for (String tag : file.getTags()) {
+            out.writeUTF(tag);
+        }
+    }
+
+    static File readFile(DataInput in, int format) throws IOException {
+        File file = new File(readId(in, format), readString(in), readString(in), in.readLong(), readTime(in),
+                readTime(in), readString(in), in.readInt(), File.Status.values()[in.readByte()]);
+        if (format >= TAGGED_FILES) {
+            int count = in.readInt();
+            List<String> tags = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tags.add(in.readUTF());
+            }
+            file.setTags(Set.copyOf(tags));
+        }
+        return file;
+    }
+
+    static void writeVersion(DataOutput out, FileVersion version) throws IOException {
+        writeId(out, version.getId());
+        writeId(out, version.getFileId());
+        out.writeInt(version.getVersion());
+        writeString(out, version.getEncryptedPath());
+        writeString(out, version.getKeyId());
+        writeString(out, version.getIv());
+        writeString(out, version.getCipherSuite());
+        writeString(out, version.getChecksum());
+        writeTime(out, version.getCreatedAt());
+        List<FileChunk> chunks = version.getChunks();
+        out.writeInt(chunks.size());
+        for (FileChunk chunk : chunks) {
+            out.writeUTF(chunk.getKey());
+            out.writeLong(chunk.getSize());
+            out.writeLong(chunk.getCrc32c());
+        }
+    }
+
+    static FileVersion readVersion(DataInput in, int format) throws IOException {
+        FileVersion version = new FileVersion();
+        version.setId(readId(in, format));
+        version.setFileId(readId(in, format));
+        version.setVersion(in.readInt());
+        version.setEncryptedPath(readString(in));
+        version.setKeyId(readString(in));
+        version.setIv(readString(in));
+        version.setCipherSuite(readString(in));
+        version.setChecksum(readString(in));
+        version.setCreatedAt(readTime(in));
+        int count = in.readInt();
+        List<FileChunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            chunks.add(new FileChunk(in.readUTF(), in.readLong(), in.readLong()));
+        }
+        version.setChunks(chunks);
+        return version;
+    }
+
+    static void writePermission(DataOutput out, AccessPermission permission) throws IOException {
+        writeId(out, permission.getId());
+        writeId(out, permission.getFileId());
+        writeTime(out, permission.getCreatedAt());
+        writeTime(out, permission.getUpdatedAt());
+        out.writeInt(permission.getGrants().size());
+        for (var grant : permission.getGrants().entrySet()) {
+            out.writeUTF(grant.getKey());
+            writeString(out, grant.getValue());
+        }
+    }
+
+    static AccessPermission readPermission(DataInput in, int format) throws IOException {
+        AccessPermission permission = new AccessPermission();
+        permission.setId(readId(in, format));
+        permission.setFileId(readId(in, format));
+        permission.setCreatedAt(readTime(in));
+        LocalDateTime updatedAt = readTime(in);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            permission.getGrants().put(in.readUTF(), readString(in));
+        }
+        permission.setUpdatedAt(updatedAt);
+        return permission;
+    }
+
+    private static void writeId(DataOutput out, Id id) throws IOException {
+        out.writeBoolean(id != null);
+        if (id != null) {
+            out.writeLong(id.high());
+            out.writeLong(id.low());
+        }
+    }
+
+    private static Id readId(DataInput in, int format) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        if (format == TEXT_IDS) {
+            try {
+                return Id.valueOf(in.readUTF());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid id in metadata log", e);
+            }
+        }
+        return new Id(in.readLong(), in.readLong());
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeTime(DataOutput out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(NO_TIME);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInput in) throws IOException {
+        long seconds = in.readLong();
+        return seconds == NO_TIME ? null : LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,495 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.AccessPermission;
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Write-ahead log of metadata changes with group commit, compacted by periodic snapshots.
+ *
+ * <p>{@link #append} only copies an encoded record into an in-memory batch and returns the log
+ * position after it; {@link #sync} returns once everything up to a position is on disk. The first
+ * thread to sync while no flush is running writes and fsyncs the whole pending batch, and records
+ * appended meanwhile go into the next batch. Under load one fsync therefore covers the records of
+ * every thread that was waiting, instead of each write paying for its own.
+ *
+ * <pre>
+ * wal-&lt;generation&gt;.log       header | record*
+ * snapshot-&lt;generation&gt;.bin  header | record*
+ * record:                     length (4) | CRC32C of type and payload (4) | type (1) | payload
+ * </pre>
+ *
+ * A snapshot is written after switching to a new segment and holds the state as of some point
+ * after the switch. Since each record is the full state of one entity, recovery loads the newest
+ * snapshot and replays the segments from its generation on; anything the snapshot already
+ * contains is simply overwritten by the same or a newer state. Older segments and snapshots are
+ * deleted once a snapshot is complete. A torn record at the end of the newest segment, from a
+ * crash in the middle of a write, is cut off at recovery; damage anywhere else fails startup.
+ */
+final class MetadataLog implements AutoCloseable {
+
+    /**
+     * Receives records in log order during recovery.
+     */
+    interface Replay {
+        void file(File file);
+
+        void version(FileVersion version);
+
+        void permission(AccessPermission permission);
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(MetadataLog.class);
+    private static final int SEGMENT_MAGIC = 0x46535741;
+    private static final int SNAPSHOT_MAGIC = 0x4653534E;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 64 * 1024 * 1024;
+    private static final int IO_BUFFER_SIZE = 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final ThreadLocal<RecordBuffer> RECORD_BUFFERS = ThreadLocal.withInitial(RecordBuffer::new);
+
+    private final Path dir;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+
+    // All guarded by lock.
+    private FileChannel segment;
+    private long generation;
+    private RecordBuffer pending = new RecordBuffer();
+    private RecordBuffer spare = new RecordBuffer();
+    private long appended;
+    private long durable;
+    private long snapshotPosition;
+    private boolean flushing;
+    private IOException failure;
+    private long fsyncs;
+
+    private MetadataLog(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Replays the newest snapshot and the segments after it into {@code replay}, then opens a new
+     * segment for appends.
+     */
+    static MetadataLog open(Path dir, Replay replay) throws IOException {
+        Files.createDirectories(dir);
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    // A snapshot interrupted by a crash; the segments it would replace are still there.
+                    Files.delete(entry);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.put(generationOf(name, SEGMENT_PREFIX, SEGMENT_SUFFIX), entry);
+                } else if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                    snapshots.put(generationOf(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX), entry);
+                }
+            }
+        }
+
+        long start = 0;
+        if (!snapshots.isEmpty()) {
+            start = snapshots.lastKey();
+            replay(snapshots.lastEntry().getValue(), SNAPSHOT_MAGIC, false, replay);
+        }
+        Long last = segments.isEmpty() ? null : segments.lastKey();
+        for (var entry : segments.tailMap(start, true).entrySet()) {
+            replay(entry.getValue(), SEGMENT_MAGIC, entry.getKey().equals(last), replay);
+        }
+
+        MetadataLog metadataLog = new MetadataLog(dir);
+        long next = Math.max(start, last == null ? 0 : last) + 1;
+        metadataLog.segment = metadataLog.createSegment(next);
+        metadataLog.generation = next;
+        return metadataLog;
+    }
+
+    long append(File file) throws IOException {
+        RecordBuffer record = RECORD_BUFFERS.get().begin(MetadataCodec.FILE);
+        MetadataCodec.writeFile(record.data, file);
+        return append(record.end());
+    }
+
+    long append(FileVersion version) throws IOException {
+        RecordBuffer record = RECORD_BUFFERS.get().begin(MetadataCodec.VERSION);
+        MetadataCodec.writeVersion(record.data, version);
+        return append(record.end());
+    }
+
+    long append(AccessPermission permission) throws IOException {
+        RecordBuffer record = RECORD_BUFFERS.get().begin(MetadataCodec.PERMISSION);
+        MetadataCodec.writePermission(record.data, permission);
+        return append(record.end());
+    }
+
+    private long append(RecordBuffer record) throws IOException {
+        lock.lock();
+        try {
+            checkFailure();
+            pending.write(record.bytes(), 0, record.size());
+            appended += record.size();
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns once every record up to {@code position} is durable, flushing the pending batch
+     * itself unless another thread is already doing so.
+     */
+    void sync(long position) throws IOException {
+        lock.lock();
+        try {
+            while (durable < position) {
+                checkFailure();
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    flushPending(segment);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held; releases it while writing.
+    private void flushPending(FileChannel target) throws IOException {
+        flushing = true;
+        RecordBuffer batch = pending;
+        pending = spare;
+        long position = appended;
+        lock.unlock();
+        IOException error = null;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch.bytes(), 0, batch.size());
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            target.force(false);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+        }
+        batch.reset();
+        spare = batch;
+        flushing = false;
+        fsyncs++;
+        if (error != null) {
+            // Whether the batch reached the disk is unknown; refuse further writes.
+            failure = error;
+        } else {
+            durable = position;
+        }
+        flushed.signalAll();
+        checkFailure();
+    }
+
+    /**
+     * Bytes appended since the last snapshot started.
+     */
+    long sizeSinceSnapshot() {
+        lock.lock();
+        try {
+            return appended - snapshotPosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of fsyncs so far; each covers every record pending when it started.
+     */
+    long syncCount() {
+        lock.lock();
+        try {
+            return fsyncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the given state as the snapshot for {@code snapshotGeneration}, a value returned by
+     * {@link #rotate}, then deletes the segments and snapshots it replaces. Every change logged
+     * before the rotation must already be visible in the collections; later changes may or may not
+     * be, since replay applies them again from the newer segments.
+     */
+    void snapshot(long snapshotGeneration, Collection<File> files, Collection<List<FileVersion>> versions,
+                  Collection<AccessPermission> permissions) throws IOException {
+        Path target = dir.resolve(SNAPSHOT_PREFIX + name(snapshotGeneration) + SNAPSHOT_SUFFIX);
+        Path temp = dir.resolve(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), IO_BUFFER_SIZE));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(MetadataCodec.FORMAT);
+            RecordBuffer record = new RecordBuffer();
+            for (File file : files) {
+                MetadataCodec.writeFile(record.begin(MetadataCodec.FILE).data, file);
+                record.end().writeTo(out);
+            }
+            for (List<FileVersion> fileVersions : versions) {
+                for (FileVersion version : fileVersions) {
+                    MetadataCodec.writeVersion(record.begin(MetadataCodec.VERSION).data, version);
+                    record.end().writeTo(out);
+                }
+            }
+            for (AccessPermission permission : permissions) {
+                MetadataCodec.writePermission(record.begin(MetadataCodec.PERMISSION).data, permission);
+                record.end().writeTo(out);
+            }
+            out.flush();
+            channel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if ((name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)
+                        && generationOf(name, SEGMENT_PREFIX, SEGMENT_SUFFIX) < snapshotGeneration)
+                        || (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)
+                        && generationOf(name, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < snapshotGeneration)) {
+                    Files.delete(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes everything appended so far durable in the current segment and starts the next one,
+     * returning its generation.
+     */
+    long rotate() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            checkFailure();
+            FileChannel previous = segment;
+            flushPending(previous);
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            checkFailure();
+            previous.close();
+            generation++;
+            segment = createSegment(generation);
+            snapshotPosition = appended;
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (failure == null && durable < appended && !flushing) {
+                flushPending(segment);
+            }
+            segment.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Metadata log is unusable after a failed write", failure);
+        }
+    }
+
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform; the rename itself is atomic either way.
+        }
+    }
+
+    // Records appended to the segment are acknowledged once forced, so its name must be durable
+    // in the directory before the first append.
+    private FileChannel createSegment(long generation) throws IOException {
+        Path path = dir.resolve(SEGMENT_PREFIX + name(generation) + SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(SEGMENT_MAGIC).putInt(MetadataCodec.FORMAT).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(false);
+        forceDirectory();
+        return channel;
+    }
+
+    private static void replay(Path path, int magic, boolean newestSegment, Replay replay) throws IOException {
+        if (newestSegment && Files.size(path) < HEADER_SIZE) {
+            // Created just before a crash, before even its header was written.
+            Files.delete(path);
+            return;
+        }
+        long position = HEADER_SIZE;
+        boolean torn = false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_SIZE))) {
+            int format;
+            try {
+                if (in.readInt() != magic) {
+                    throw new IOException("Not a metadata log file: " + path);
+                }
+                format = in.readInt();
+                if (format < MetadataCodec.TEXT_IDS || format > MetadataCodec.FORMAT) {
+                    throw new IOException("Unsupported metadata log format " + format + ": " + path);
+                }
+            } catch (EOFException e) {
+                throw new IOException("Truncated metadata log file: " + path, e);
+            }
+            CRC32C crc = new CRC32C();
+            byte[] payload = new byte[256];
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    int checksum = in.readInt();
+                    if (length < 1 || length > MAX_RECORD_SIZE) {
+                        throw new IOException("Invalid record length " + length);
+                    }
+                    if (payload.length < length) {
+                        payload = new byte[Math.max(length, payload.length * 2)];
+                    }
+                    in.readFully(payload, 0, length);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if ((int) crc.getValue() != checksum) {
+                        throw new IOException("Checksum mismatch");
+                    }
+                } catch (IOException e) {
+                    if (!newestSegment) {
+                        throw new IOException("Corrupt metadata log " + path + " at offset " + position, e);
+                    }
+                    torn = true;
+                    break;
+                }
+                apply(payload, length, format, replay);
+                position += RECORD_HEADER_SIZE + length;
+            }
+        }
+        if (torn) {
+            log.warn("Discarding torn record at the end of {} (offset {})", path, position);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+                channel.force(false);
+            }
+        }
+    }
+
+    private static void apply(byte[] payload, int length, int format, Replay replay) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 1, length - 1));
+        switch (payload[0]) {
+            case MetadataCodec.FILE -> replay.file(MetadataCodec.readFile(in, format));
+            case MetadataCodec.VERSION -> replay.version(MetadataCodec.readVersion(in, format));
+            case MetadataCodec.PERMISSION -> replay.permission(MetadataCodec.readPermission(in, format));
+            default -> throw new IOException("Unknown record type " + payload[0]);
+        }
+    }
+
+    private static String name(long generation) {
+        return String.format("%016d", generation);
+    }
+
+    private static long generationOf(String name, String prefix, String suffix) {
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    /**
+     * Growable buffer that frames one record, or accumulates a batch of framed records.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        private final DataOutputStream data = new DataOutputStream(this);
+        private final CRC32C crc = new CRC32C();
+
+        RecordBuffer() {
+            super(4096);
+        }
+
+        RecordBuffer begin(byte type) {
+            reset();
+            // Length and checksum are filled in by end().
+            write(new byte[RECORD_HEADER_SIZE], 0, RECORD_HEADER_SIZE);
+            write(type);
+            return this;
+        }
+
+        RecordBuffer end() {
+            int length = count - RECORD_HEADER_SIZE;
+            crc.reset();
+            crc.update(buf, RECORD_HEADER_SIZE, length);
+            putInt(0, length);
+            putInt(4, (int) crc.getValue());
+            return this;
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(buf, 0, count);
+        }
+
+        private void putInt(int offset, int value) {
+            buf[offset] = (byte) (value >>> 24);
+            buf[offset + 1] = (byte) (value >>> 16);
+            buf[offset + 2] = (byte) (value >>> 8);
+            buf[offset + 3] = (byte) value;
+        }
+    }
+}
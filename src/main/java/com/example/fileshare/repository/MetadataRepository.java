@@ -0,0 +1,95 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.AccessPermission;
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.domain.Id;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Persistence boundary for file metadata. Implementations must be safe for concurrent use.
+ * Returned objects are snapshots and must be treated as read-only; changes go through
+ * {@link #updateFile}, which applies them atomically to a copy.
+ */
+public interface MetadataRepository {
+    void saveFile(File file);
+
+    /**
+     * Runs {@code changes} on the calling thread and returns once every change it made is
+     * durable, paying for one flush instead of one per change. Changes inside the batch are
+     * visible to readers as soon as they are applied, before they are durable, so anything that
+     * must not outlive a lost change, such as deleting the chunks of a deleted file, has to wait
+     * until this returns. Batches do not nest; an inner one joins the outer.
+     */
+    <T> T inBatch(Supplier<T> changes);
+
+    Optional<File> findFile(Id fileId);
+
+    Collection<File> findAllFiles();
+
+    /**
+     * All non-deleted files {@code userId} owns or has been granted, most recently updated last.
+     */
+    List<File> findFilesForUser(String userId);
+
+    /**
+     * One page of the non-deleted files {@code userId} owns or has been granted, in {@code sort}
+     * order, starting strictly after {@code after} (a key from {@link FileCursor#decode}) or from
+     * the beginning when it is null.
+     */
+    List<File> findFilesForUser(String userId, FileSort sort, boolean descending, File after, int limit);
+
+    /**
+     * Atomically applies {@code update} to a copy of the stored file and publishes the copy.
+     * The callback may hold a lock on the entry, so it must be short and must not block.
+     */
+    Optional<File> updateFile(Id fileId, Consumer<File> update);
+
+    /**
+     * Appends a version, assigning it the next version number for its file.
+     */
+    FileVersion addVersion(FileVersion version);
+
+    /**
+     * Like {@link #addVersion}, but only while the file exists and is not deleted; returns empty
+     * when nothing was added. The check and the append are atomic with respect to
+     * {@link #updateFile} on the same file, so a delete that collects the file's versions
+     * afterwards sees the new one.
+     */
+    Optional<FileVersion> addLiveVersion(FileVersion version);
+
+    List<FileVersion> findVersions(Id fileId);
+
+    /**
+     * Atomically applies {@code update} to a copy of a stored version and publishes the copy;
+     * readers see either the old or the new version. The callback must be short and not block.
+     */
+    Optional<FileVersion> updateVersion(Id fileId, int version, Consumer<FileVersion> update);
+
+    /**
+     * Like {@link #updateVersion}, but only while the file is not deleted and the version is still
+     * encrypted under {@code expectedKeyId}; returns empty when nothing was replaced. The check and
+     * the swap are atomic with respect to {@link #updateFile} on the same file, so a delete that
+     * collects the file's versions afterwards sees the replacement.
+     */
+    Optional<FileVersion> replaceVersion(Id fileId, int version, String expectedKeyId, Consumer<FileVersion> update);
+
+    Optional<FileVersion> findVersion(Id fileId, int version);
+
+    Optional<FileVersion> findLatestVersion(Id fileId);
+
+    Optional<AccessPermission> findPermissions(Id fileId);
+
+    /**
+     * Grants {@code userId} access to an existing file and returns the updated grants, or empty
+     * when the file does not exist. The user's listings include the file from then on.
+     */
+    Optional<AccessPermission> grantAccess(Id fileId, String userId, String permission);
+
+    Optional<AccessPermission> revokeAccess(Id fileId, String userId);
+}
@@ -0,0 +1,92 @@
+package com.example.fileshare.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Fixed-size pages of memory outside the Java heap, allocated on first use. Pages are either
+ * direct buffers or regions of a memory-mapped file; a mapped page is backed by the page cache,
+ * so the kernel can write out and drop cold pages instead of keeping them all resident.
+ */
+final class OffHeapPages implements AutoCloseable {
+
+    static final int PAGE_SIZE = 4 * 1024 * 1024;
+
+    // Null for direct buffers.
+    private final Path path;
+    private final FileChannel channel;
+    private volatile ByteBuffer[] pages;
+
+    private OffHeapPages(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+        this.pages = new ByteBuffer[0];
+    }
+
+    static OffHeapPages direct() {
+        return new OffHeapPages(null, null);
+    }
+
+    /**
+     * Pages mapped from {@code path}, which is replaced by an empty file. The file only lends the
+     * pages a place to be swapped to and is deleted on {@link #close}.
+     */
+    static OffHeapPages mapped(Path path) throws IOException {
+        Files.deleteIfExists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new OffHeapPages(path, channel);
+    }
+
+    ByteBuffer page(int index) {
+        ByteBuffer[] current = pages;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        return allocate(index);
+    }
+
+    private synchronized ByteBuffer allocate(int index) {
+        ByteBuffer[] current = pages;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        ByteBuffer[] grown = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+        for (int i = 0; i <= index; i++) {
+            if (grown[i] == null) {
+                grown[i] = newPage(i);
+            }
+        }
+        pages = grown;
+        return grown[index];
+    }
+
+    private ByteBuffer newPage(int index) {
+        if (channel == null) {
+            return ByteBuffer.allocateDirect(PAGE_SIZE).order(ByteOrder.nativeOrder());
+        }
+        try {
+            MappedByteBuffer page = channel.map(FileChannel.MapMode.READ_WRITE, (long) index * PAGE_SIZE, PAGE_SIZE);
+            return page.order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to map metadata page " + index + " of " + path, e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            // Mappings stay valid until collected, so unlinking the file is safe even if a reader
+            // still holds a page.
+            Files.deleteIfExists(path);
+        }
+    }
+}
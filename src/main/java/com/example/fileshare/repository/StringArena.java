@@ -0,0 +1,78 @@
+package com.example.fileshare.repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only UTF-8 storage for the variable-length strings of {@link FileTable} records. A string
+ * is addressed by a single {@code long} reference packing its offset and length, so a record
+ * stays fixed-width. Written bytes never change, which lets readers decode a reference without
+ * locking; a replaced string is simply left behind until the arena is rebuilt on the next start.
+ */
+final class StringArena implements AutoCloseable {
+
+    static final long NULL = -1;
+
+    private static final int LENGTH_BITS = 22;
+    private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+    private static final int MAX_LENGTH = OffHeapPages.PAGE_SIZE;
+
+    private final OffHeapPages pages;
+    private final AtomicLong end;
+
+    StringArena(OffHeapPages pages) {
+        this.pages = pages;
+        this.end = new AtomicLong();
+    }
+
+    long put(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length >= MAX_LENGTH) {
+            throw new IllegalArgumentException("String too long to store: " + bytes.length + " bytes");
+        }
+        long offset = reserve(bytes.length);
+        ByteBuffer page = pages.page((int) (offset / OffHeapPages.PAGE_SIZE));
+        page.put((int) (offset % OffHeapPages.PAGE_SIZE), bytes);
+        return offset << LENGTH_BITS | bytes.length;
+    }
+
+    String get(long ref) {
+        if (ref == NULL) {
+            return null;
+        }
+        long offset = ref >>> LENGTH_BITS;
+        byte[] bytes = new byte[(int) (ref & LENGTH_MASK)];
+        ByteBuffer page = pages.page((int) (offset / OffHeapPages.PAGE_SIZE));
+        page.get((int) (offset % OffHeapPages.PAGE_SIZE), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Bytes taken so far, including strings that have since been replaced.
+     */
+    long size() {
+        return end.get();
+    }
+
+    // A string never straddles two pages, so a read is one bulk copy.
+    private long reserve(int length) {
+        while (true) {
+            long start = end.get();
+            long remaining = OffHeapPages.PAGE_SIZE - start % OffHeapPages.PAGE_SIZE;
+            long offset = remaining < length ? start + remaining : start;
+            if (end.compareAndSet(start, offset + length)) {
+                return offset;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        pages.close();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.File;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary index from a user to the files listed for them, kept sorted by every {@link FileSort}
+ * so a page is a skip-list seek plus {@code limit} steps, independent of how many files exist in
+ * total. Entries are the files' {@link FileTable} rows and compare by reading the table, so the
+ * index holds no copy of any file; a page copies out just the files it returns.
+ */
+class UserFileIndex {
+
+    private final ConcurrentHashMap<String, Map<FileSort, NavigableSet<FileTable.Row>>> byUser;
+
+    UserFileIndex() {
+        this.byUser = new ConcurrentHashMap<>();
+    }
+
+    void add(String userId, FileTable.Row row) {
+        Map<FileSort, NavigableSet<FileTable.Row>> sorted = byUser.computeIfAbsent(userId, id -> {
+            Map<FileSort, NavigableSet<FileTable.Row>> sets = new EnumMap<>(FileSort.class);
+            for (FileSort sort : FileSort.values()) {
+                sets.put(sort, new ConcurrentSkipListSet<>(sort.rowComparator()));
+            }
+            return sets;
+        });
+        for (NavigableSet<FileTable.Row> set : sorted.values()) {
+            set.add(row);
+        }
+    }
+
+    void remove(String userId, FileTable.Row row) {
+        Map<FileSort, NavigableSet<FileTable.Row>> sorted = byUser.get(userId);
+        if (sorted == null) {
+            return;
+        }
+        for (NavigableSet<FileTable.Row> set : sorted.values()) {
+            set.remove(row);
+        }
+    }
+
+    /**
+     * Up to {@code limit} files strictly after {@code after} in the requested order, or from the
+     * start when {@code after} is {@code null}.
+     */
+    List<File> page(String userId, FileSort sort, boolean descending, File after, int limit) {
+        Map<FileSort, NavigableSet<FileTable.Row>> sorted = byUser.get(userId);
+        if (sorted == null || limit <= 0) {
+            return List.of();
+        }
+        NavigableSet<FileTable.Row> set = sorted.get(sort);
+        if (descending) {
+            set = set.descendingSet();
+        }
+        if (after != null) {
+            set = set.tailSet(FileTable.key(after), false);
+        }
+
+        List<File> page = new ArrayList<>(Math.min(limit, 256));
+        for (FileTable.Row row : set) {
+            page.add(row.toFile());
+            if (page.size() == limit) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    List<File> all(String userId) {
+        Map<FileSort, NavigableSet<FileTable.Row>> sorted = byUser.get(userId);
+        if (sorted == null) {
+            return List.of();
+        }
+        List<File> files = new ArrayList<>();
+        for (FileTable.Row row : sorted.get(FileSort.UPDATED_AT)) {
+            files.add(row.toFile());
+        }
+        return files;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.fileshare.search;
+
+/**
+ * Lazily walks matching document ids from highest to lowest, so a top-K query stops after K hits
+ * instead of materializing every match.
+ */
+interface DocIterator {
+    int NO_MORE_DOCS = -1;
+
+    /**
+     * Returns the next lower document id, or {@link #NO_MORE_DOCS}.
+     */
+    int next();
+
+    /**
+     * Moves to the highest document id {@code <= target} and returns it, or {@link #NO_MORE_DOCS}.
+     * Never moves backwards past the current position.
+     */
+    int advance(int target);
+}
@@ -0,0 +1,100 @@
+package com.example.fileshare.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of document ids in a plain int array, sized by how many ids it holds rather than by
+ * the highest one. Ids are usually added in increasing order, which is an append; adding an older
+ * id or removing one shifts the tail, which is fine for the grant and revoke rates it sees.
+ */
+final class DocSet {
+    private int[] docs = new int[4];
+    private int size;
+
+    void add(int doc) {
+        if (size > 0 && docs[size - 1] < doc) {
+            append(doc);
+            return;
+        }
+        int index = Arrays.binarySearch(docs, 0, size, doc);
+        if (index >= 0) {
+            return;
+        }
+        int insert = -index - 1;
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+        }
+        System.arraycopy(docs, insert, docs, insert + 1, size - insert);
+        docs[insert] = doc;
+        size++;
+    }
+
+    void remove(int doc) {
+        int index = Arrays.binarySearch(docs, 0, size, doc);
+        if (index >= 0) {
+            System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+            size--;
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Rewrites the set through {@code remap}, dropping ids mapped to a negative value. The mapping
+     * must preserve order.
+     */
+    void remap(int[] remap) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int mapped = remap[docs[i]];
+            if (mapped >= 0) {
+                docs[count++] = mapped;
+            }
+        }
+        size = count;
+        if (docs.length > 16 && size < docs.length / 4) {
+            docs = Arrays.copyOf(docs, Math.max(4, size * 2));
+        }
+    }
+
+    DocIterator iterator() {
+        return new Iterator();
+    }
+
+    private void append(int doc) {
+        if (size == docs.length) {
+            docs = Arrays.copyOf(docs, size * 2);
+        }
+        docs[size++] = doc;
+    }
+
+    /** Descending cursor; {@link #advance} binary-searches the part not yet walked. */
+    private final class Iterator implements DocIterator {
+        // Index of the current id; size before the first call, -1 when exhausted.
+        private int index = size;
+
+        @Override
+        public int next() {
+            if (index <= 0) {
+                index = -1;
+                return NO_MORE_DOCS;
+            }
+            return docs[--index];
+        }
+
+        @Override
+        public int advance(int target) {
+            if (index < 0) {
+                return NO_MORE_DOCS;
+            }
+            if (index < size && docs[index] <= target) {
+                return docs[index];
+            }
+            int found = Arrays.binarySearch(docs, 0, index, target);
+            index = found >= 0 ? found : -found - 2;
+            return index < 0 ? NO_MORE_DOCS : docs[index];
+        }
+    }
+}
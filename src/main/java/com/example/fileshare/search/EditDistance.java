@@ -0,0 +1,45 @@
+package com.example.fileshare.search;
+
+/**
+ * Approximate substring matching for the final check of fuzzy name search.
+ */
+final class EditDistance {
+
+    private EditDistance() {
+    }
+
+    /**
+     * Whether some substring of {@code text} is within {@code maxEdits} insertions, deletions or
+     * substitutions of {@code pattern}. Sellers' variant of the edit-distance table: a match may
+     * start anywhere in {@code text}, so the row for the empty pattern prefix is all zeros. One
+     * column of {@code pattern.length() + 1} ints is kept; with {@code maxEdits == 0} this is a
+     * plain {@link String#contains}.
+     */
+    static boolean containsWithin(String text, String pattern, int maxEdits) {
+        if (maxEdits == 0) {
+            return text.contains(pattern);
+        }
+        int m = pattern.length();
+        if (m <= maxEdits) {
+            return true;
+        }
+        int[] column = new int[m + 1];
+        for (int i = 0; i <= m; i++) {
+            column[i] = i;
+        }
+        for (int j = 0; j < text.length(); j++) {
+            char c = text.charAt(j);
+            int diagonal = 0;
+            for (int i = 1; i <= m; i++) {
+                int above = column[i];
+                int cost = pattern.charAt(i - 1) == c ? 0 : 1;
+                column[i] = Math.min(Math.min(above + 1, column[i - 1] + 1), diagonal + cost);
+                diagonal = above;
+            }
+            if (column[m] <= maxEdits) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
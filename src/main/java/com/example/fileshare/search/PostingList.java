@@ -0,0 +1,203 @@
+package com.example.fileshare.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted list of document ids, compressed. Document ids are handed out in increasing order, so
+ * indexing a document is an append.
+ *
+ * <p>Ids are grouped in blocks of {@value #BLOCK_SIZE}. The first id of each block is kept in a
+ * primitive skip table ({@code blockFirst}) and the rest are stored as variable-length deltas
+ * in a byte array, which takes one or two bytes per id for dense lists instead of four. The skip
+ * table lets an iterator jump to the block holding a target without decoding the blocks between.
+ */
+public final class PostingList {
+    static final int BLOCK_SIZE = 128;
+
+    private int[] blockFirst;
+    private int[] blockOffset;
+    private byte[] data;
+    private int dataLength;
+    private int size;
+    private int last;
+
+    public PostingList() {
+        this.blockFirst = new int[1];
+        this.blockOffset = new int[1];
+        this.data = new byte[0];
+    }
+
+    public void add(int doc) {
+        if (size > 0 && doc <= last) {
+            if (doc == last) {
+                return;
+            }
+            throw new IllegalArgumentException("Document ids must be added in increasing order: " + doc);
+        }
+        if (size % BLOCK_SIZE == 0) {
+            int block = size / BLOCK_SIZE;
+            if (block == blockFirst.length) {
+                int capacity = blockFirst.length * 2;
+                blockFirst = Arrays.copyOf(blockFirst, capacity);
+                blockOffset = Arrays.copyOf(blockOffset, capacity);
+            }
+            blockFirst[block] = doc;
+            blockOffset[block] = dataLength;
+        } else {
+            writeVarInt(doc - last);
+        }
+        last = doc;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Approximate heap footprint in bytes, for sizing.
+     */
+    public long memoryUsage() {
+        return 48L + 4L * blockFirst.length * 2 + data.length;
+    }
+
+    /**
+     * Rewrites the list through {@code remap}, dropping ids mapped to a negative value.
+     * The mapping must preserve order.
+     */
+    void remap(int[] remap) {
+        int[] docs = new int[size];
+        int count = 0;
+        Iterator iterator = new Iterator();
+        for (int doc = iterator.next(); doc != DocIterator.NO_MORE_DOCS; doc = iterator.next()) {
+            int mapped = remap[doc];
+            if (mapped >= 0) {
+                docs[count++] = mapped;
+            }
+        }
+        blockFirst = new int[1];
+        blockOffset = new int[1];
+        data = new byte[0];
+        dataLength = 0;
+        size = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            add(docs[i]);
+        }
+    }
+
+    static PostingList of(int[] ascending, int count) {
+        PostingList list = new PostingList();
+        for (int i = 0; i < count; i++) {
+            list.add(ascending[i]);
+        }
+        return list;
+    }
+
+    public Iterator iterator() {
+        return new Iterator();
+    }
+
+    private void writeVarInt(int value) {
+        if (dataLength + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(16, data.length + (data.length >> 1) + 5));
+        }
+        while ((value & ~0x7F) != 0) {
+            data[dataLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[dataLength++] = (byte) value;
+    }
+
+    private int blockCount() {
+        return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Descending cursor. Blocks are decoded one at a time into a small scratch array; {@link #advance}
+     * binary-searches the skip table first, so probing a long list costs a logarithm plus one block.
+     */
+    public final class Iterator implements DocIterator {
+        private final int[] scratch = new int[BLOCK_SIZE];
+        private final int blocks = blockCount();
+        // Decoded block, blocks (nothing decoded yet) or -1 (exhausted).
+        private int block = blocks;
+        private int blockSize;
+        private int index;
+
+        @Override
+        public int next() {
+            if (block < 0) {
+                return NO_MORE_DOCS;
+            }
+            if (block == blocks || --index < 0) {
+                if (block == 0 || blocks == 0) {
+                    block = -1;
+                    return NO_MORE_DOCS;
+                }
+                decode(block - 1);
+                index = blockSize - 1;
+            }
+            return scratch[index];
+        }
+
+        @Override
+        public int advance(int target) {
+            if (block < 0) {
+                return NO_MORE_DOCS;
+            }
+            boolean decoded = block < blocks;
+            if (decoded && scratch[index] <= target) {
+                return scratch[index];
+            }
+            if (!decoded || scratch[0] > target) {
+                int candidate = lastBlockAtMost(target, (decoded ? block : blocks) - 1);
+                if (candidate < 0) {
+                    block = -1;
+                    return NO_MORE_DOCS;
+                }
+                decode(candidate);
+                index = blockSize - 1;
+            }
+            while (scratch[index] > target) {
+                index--;
+            }
+            return scratch[index];
+        }
+
+        private int lastBlockAtMost(int target, int maxBlock) {
+            int low = 0;
+            int high = maxBlock;
+            int found = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (blockFirst[mid] <= target) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        private void decode(int target) {
+            block = target;
+            blockSize = Math.min(BLOCK_SIZE, size - target * BLOCK_SIZE);
+            int doc = blockFirst[target];
+            scratch[0] = doc;
+            int offset = blockOffset[target];
+            for (int i = 1; i < blockSize; i++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[offset++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += value;
+                scratch[i] = doc;
+            }
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package com.example.fileshare.search;
+
+import com.example.fileshare.domain.Id;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index from terms, and from name trigrams, to the files containing them.
+ *
+ * <p>Each indexed file gets a dense int document id, and every term and every trigram of the
+ * lowercased file name maps to a {@link PostingList} of those ids. Term lists answer boolean
+ * queries; trigram lists narrow substring and fuzzy name matches to a few candidates, which are
+ * then checked against the stored name. Re-indexing a file gives it a fresh id and marks the old
+ * one dead instead of editing posting lists in place, so lists only ever grow by appending; once
+ * dead ids outnumber live ones the index is compacted and renumbered. Because ids increase with indexing time,
+ * the highest matching ids are the most recently written files, which is the ranking used for
+ * top-K results.
+ *
+ * <p>Every query runs on behalf of a user. Each user has a sorted {@link DocSet} of the documents
+ * they own or have been granted, and it is intersected with the query inside the same leapfrog
+ * walk as the posting lists, so a user who can see few files pays for those files rather than for
+ * every match in the corpus. The sets hold only the user's own ids, so their memory follows the
+ * number of grants rather than users times the corpus.
+ *
+ * <p>Queries take the read lock and run concurrently; indexing takes the write lock.
+ */
+public class SearchIndex {
+    private static final int MIN_COMPACTION_GARBAGE = 1024;
+
+    private static final DocIterator EMPTY = new DocIterator() {
+        @Override
+        public int next() {
+            return NO_MORE_DOCS;
+        }
+
+        @Override
+        public int advance(int target) {
+            return NO_MORE_DOCS;
+        }
+    };
+
+    private final ReentrantReadWriteLock lock;
+    private final TreeMap<String, PostingList> terms;
+    private final Map<Long, PostingList> trigrams;
+    private final Map<Id, Integer> docByFile;
+    private final Map<String, DocSet> visibleByUser;
+    // Only shared files have an entry; re-indexing carries the grants over to the new document.
+    private final Map<Id, Set<String>> granteesByFile;
+    private final BitSet live;
+    private Id[] fileByDoc;
+    private String[] nameByDoc;
+    private int nextDoc;
+
+    public SearchIndex() {
+        this.lock = new ReentrantReadWriteLock();
+        this.terms = new TreeMap<>();
+        this.trigrams = new HashMap<>();
+        this.docByFile = new HashMap<>();
+        this.visibleByUser = new HashMap<>();
+        this.granteesByFile = new HashMap<>();
+        this.live = new BitSet();
+        this.fileByDoc = new Id[1024];
+        this.nameByDoc = new String[1024];
+    }
+
+    public void index(Id fileId, String name, String ownerId, Collection<String> tokens) {
+        String lowerName = name == null ? "" : name.toLowerCase(Locale.ROOT);
+        long[] nameTrigrams = Trigrams.of(lowerName);
+        lock.writeLock().lock();
+        try {
+            removeLocked(fileId);
+            int doc = nextDoc++;
+            if (doc == fileByDoc.length) {
+                fileByDoc = Arrays.copyOf(fileByDoc, fileByDoc.length * 2);
+                nameByDoc = Arrays.copyOf(nameByDoc, nameByDoc.length * 2);
+            }
+            fileByDoc[doc] = fileId;
+            nameByDoc[doc] = lowerName;
+            docByFile.put(fileId, doc);
+            live.set(doc);
+            makeVisible(ownerId, doc);
+            for (String grantee : granteesByFile.getOrDefault(fileId, Set.of())) {
+                makeVisible(grantee, doc);
+            }
+            for (String token : tokens) {
+                terms.computeIfAbsent(token, t -> new PostingList()).add(doc);
+            }
+            for (long trigram : nameTrigrams) {
+                trigrams.computeIfAbsent(trigram, t -> new PostingList()).add(doc);
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Id fileId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(fileId);
+            granteesByFile.remove(fileId);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void grant(Id fileId, String userId) {
+        lock.writeLock().lock();
+        try {
+            granteesByFile.computeIfAbsent(fileId, id -> new HashSet<>()).add(userId);
+            Integer doc = docByFile.get(fileId);
+            if (doc != null) {
+                makeVisible(userId, doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void revoke(Id fileId, String userId) {
+        lock.writeLock().lock();
+        try {
+            Set<String> grantees = granteesByFile.get(fileId);
+            if (grantees == null || !grantees.remove(userId)) {
+                return;
+            }
+            if (grantees.isEmpty()) {
+                granteesByFile.remove(fileId);
+            }
+            Integer doc = docByFile.get(fileId);
+            DocSet visible = visibleByUser.get(userId);
+            if (doc != null && visible != null) {
+                visible.remove(doc);
+                if (visible.isEmpty()) {
+                    visibleByUser.remove(userId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of up to {@code limit} files visible to {@code userId} matching a term query, most
+     * recently indexed first.
+     */
+    public List<Id> search(String userId, SearchQuery query, int limit) {
+        lock.readLock().lock();
+        try {
+            return collect(userId, evaluate(query), null, 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of up to {@code limit} files visible to {@code userId} whose name contains {@code text}
+     * (case-insensitive), most recently indexed first. Every trigram of {@code text} must be
+     * present, so candidates come from intersecting trigram lists; texts shorter than three
+     * characters fall back to walking the user's documents newest-first.
+     */
+    public List<Id> searchSubstring(String userId, String text, int limit) {
+        String needle = text.toLowerCase(Locale.ROOT);
+        long[] needleTrigrams = Trigrams.of(needle);
+        lock.readLock().lock();
+        try {
+            return collect(userId, trigramCandidates(needleTrigrams, needleTrigrams.length), needle, 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of up to {@code limit} files visible to {@code userId} whose name contains {@code text} with at most
+     * {@code maxEdits} insertions, deletions or substitutions. An edit destroys at most three of
+     * the text's trigrams, so a match must share at least {@code trigrams - 3 * maxEdits} of them;
+     * only documents reaching that count are verified with an edit-distance check.
+     */
+    public List<Id> searchFuzzy(String userId, String text, int maxEdits, int limit) {
+        String needle = text.toLowerCase(Locale.ROOT);
+        long[] needleTrigrams = Trigrams.of(needle);
+        lock.readLock().lock();
+        try {
+            int required = needleTrigrams.length - 3 * maxEdits;
+            return collect(userId, trigramCandidates(needleTrigrams, required), needle, maxEdits, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docByFile.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Walks {@code candidates} restricted to the user's documents; a {@code null} candidate
+     * iterator means the query does not constrain the documents at all.
+     */
+    private List<Id> collect(String userId, DocIterator candidates, String needle, int maxEdits, int limit) {
+        DocSet visible = visibleByUser.get(userId);
+        if (visible == null || candidates == EMPTY) {
+            return List.of();
+        }
+        DocIterator visibleDocs = visible.iterator();
+        DocIterator matches = candidates == null
+                ? visibleDocs
+                : new Conjunction(new DocIterator[]{candidates, visibleDocs});
+        List<Id> results = new ArrayList<>(Math.min(limit, 256));
+        for (int doc = matches.next(); doc != DocIterator.NO_MORE_DOCS && results.size() < limit; doc = matches.next()) {
+            if (!live.get(doc)) {
+                continue;
+            }
+            if (needle != null && !EditDistance.containsWithin(nameByDoc[doc], needle, maxEdits)) {
+                continue;
+            }
+            results.add(fileByDoc[doc]);
+        }
+        return results;
+    }
+
+    /**
+     * Documents sharing at least {@code required} of {@code needleTrigrams}, or {@code null} when
+     * the trigrams cannot constrain the match.
+     */
+    private DocIterator trigramCandidates(long[] needleTrigrams, int required) {
+        if (required <= 0) {
+            return null;
+        }
+        List<PostingList> lists = new ArrayList<>(needleTrigrams.length);
+        for (long trigram : needleTrigrams) {
+            PostingList postings = trigrams.get(trigram);
+            if (postings != null) {
+                lists.add(postings);
+            }
+        }
+        if (lists.size() < required) {
+            return EMPTY;
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        DocIterator[] iterators = new DocIterator[lists.size()];
+        for (int i = 0; i < iterators.length; i++) {
+            iterators[i] = lists.get(i).iterator();
+        }
+        if (required == lists.size()) {
+            return iterators.length == 1 ? iterators[0] : new Conjunction(iterators);
+        }
+        return new AtLeast(iterators, required);
+    }
+
+    private DocIterator evaluate(SearchQuery query) {
+        List<DocIterator> alternatives = new ArrayList<>(query.groups().size());
+        for (List<SearchQuery.Term> group : query.groups()) {
+            DocIterator conjunction = conjunction(group);
+            if (conjunction != null) {
+                alternatives.add(conjunction);
+            }
+        }
+        if (alternatives.isEmpty()) {
+            return EMPTY;
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : new Disjunction(alternatives);
+    }
+
+    private DocIterator conjunction(List<SearchQuery.Term> group) {
+        List<PostingList> lists = new ArrayList<>(group.size());
+        for (SearchQuery.Term term : group) {
+            PostingList postings = term.prefix() ? prefixPostings(term.text()) : terms.get(term.text());
+            if (postings == null || postings.size() == 0) {
+                return null;
+            }
+            lists.add(postings);
+        }
+        if (lists.size() == 1) {
+            return lists.get(0).iterator();
+        }
+        // Drive the intersection from the rarest term; the others are only probed with advance().
+        lists.sort(Comparator.comparingInt(PostingList::size));
+        DocIterator[] iterators = new DocIterator[lists.size()];
+        for (int i = 0; i < iterators.length; i++) {
+            iterators[i] = lists.get(i).iterator();
+        }
+        return new Conjunction(iterators);
+    }
+
+    private PostingList prefixPostings(String prefix) {
+        NavigableMap<String, PostingList> matching = terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (matching.isEmpty()) {
+            return null;
+        }
+        if (matching.size() == 1) {
+            return matching.firstEntry().getValue();
+        }
+        List<DocIterator> iterators = new ArrayList<>(matching.size());
+        int total = 0;
+        for (PostingList postings : matching.values()) {
+            iterators.add(postings.iterator());
+            total += postings.size();
+        }
+        // Expanding a prefix costs the size of the matching lists; build the merged list ascending.
+        int[] merged = new int[total];
+        int count = 0;
+        DocIterator union = new Disjunction(iterators);
+        for (int doc = union.next(); doc != DocIterator.NO_MORE_DOCS; doc = union.next()) {
+            merged[count++] = doc;
+        }
+        for (int left = 0, right = count - 1; left < right; left++, right--) {
+            int swap = merged[left];
+            merged[left] = merged[right];
+            merged[right] = swap;
+        }
+        return PostingList.of(merged, count);
+    }
+
+    private void makeVisible(String userId, int doc) {
+        visibleByUser.computeIfAbsent(userId, id -> new DocSet()).add(doc);
+    }
+
+    private void removeLocked(Id fileId) {
+        Integer doc = docByFile.remove(fileId);
+        if (doc != null) {
+            live.clear(doc);
+            fileByDoc[doc] = null;
+            nameByDoc[doc] = null;
+        }
+    }
+
+    private void compactIfNeeded() {
+        int liveDocs = docByFile.size();
+        int garbage = nextDoc - liveDocs;
+        if (garbage < MIN_COMPACTION_GARBAGE || garbage < liveDocs) {
+            return;
+        }
+
+        int[] remap = new int[nextDoc];
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(1, liveDocs)) * 2);
+        Id[] compacted = new Id[capacity];
+        String[] compactedNames = new String[capacity];
+        int next = 0;
+        for (int doc = 0; doc < nextDoc; doc++) {
+            if (live.get(doc)) {
+                remap[doc] = next;
+                compacted[next] = fileByDoc[doc];
+                compactedNames[next] = nameByDoc[doc];
+                docByFile.put(fileByDoc[doc], next);
+                next++;
+            } else {
+                remap[doc] = -1;
+            }
+        }
+
+        remapAll(terms.values(), remap);
+        remapAll(trigrams.values(), remap);
+        Iterator<DocSet> visibleSets = visibleByUser.values().iterator();
+        while (visibleSets.hasNext()) {
+            DocSet visible = visibleSets.next();
+            visible.remap(remap);
+            if (visible.isEmpty()) {
+                visibleSets.remove();
+            }
+        }
+
+        fileByDoc = compacted;
+        nameByDoc = compactedNames;
+        nextDoc = next;
+        live.clear();
+        live.set(0, next);
+    }
+
+    private static void remapAll(Collection<PostingList> lists, int[] remap) {
+        Iterator<PostingList> postings = lists.iterator();
+        while (postings.hasNext()) {
+            PostingList list = postings.next();
+            list.remap(remap);
+            if (list.size() == 0) {
+                postings.remove();
+            }
+        }
+    }
+
+    /** Documents present in every child (leapfrog intersection). */
+    private static final class Conjunction implements DocIterator {
+        private final DocIterator lead;
+        private final DocIterator[] others;
+
+        Conjunction(DocIterator[] iterators) {
+            this.lead = iterators[0];
+            this.others = Arrays.copyOfRange(iterators, 1, iterators.length);
+        }
+
+        @Override
+        public int next() {
+            return align(lead.next());
+        }
+
+        @Override
+        public int advance(int target) {
+            return align(lead.advance(target));
+        }
+
+        private int align(int doc) {
+            while (doc != NO_MORE_DOCS) {
+                int candidate = doc;
+                for (DocIterator other : others) {
+                    int found = other.advance(doc);
+                    if (found != doc) {
+                        candidate = found;
+                        break;
+                    }
+                }
+                if (candidate == doc) {
+                    return doc;
+                }
+                if (candidate == NO_MORE_DOCS) {
+                    return NO_MORE_DOCS;
+                }
+                doc = lead.advance(candidate);
+            }
+            return NO_MORE_DOCS;
+        }
+    }
+
+    /** Documents present in any child, each reported once. */
+    private static final class Disjunction implements DocIterator {
+        private final DocIterator[] children;
+        private final int[] heads;
+        private boolean started;
+
+        Disjunction(List<DocIterator> children) {
+            this.children = children.toArray(new DocIterator[0]);
+            this.heads = new int[this.children.length];
+        }
+
+        @Override
+        public int next() {
+            if (!started) {
+                started = true;
+                for (int i = 0; i < children.length; i++) {
+                    heads[i] = children[i].next();
+                }
+            } else {
+                int current = max();
+                for (int i = 0; i < children.length; i++) {
+                    if (heads[i] == current && current != NO_MORE_DOCS) {
+                        heads[i] = children[i].next();
+                    }
+                }
+            }
+            return max();
+        }
+
+        @Override
+        public int advance(int target) {
+            if (!started) {
+                started = true;
+                for (int i = 0; i < children.length; i++) {
+                    heads[i] = children[i].advance(target);
+                }
+                return max();
+            }
+            for (int i = 0; i < children.length; i++) {
+                if (heads[i] > target) {
+                    heads[i] = children[i].advance(target);
+                }
+            }
+            return max();
+        }
+
+        private int max() {
+            int max = NO_MORE_DOCS;
+            for (int head : heads) {
+                max = Math.max(max, head);
+            }
+            return max;
+        }
+    }
+
+    /** Documents present in at least {@code required} children (T-occurrence merge). */
+    private static final class AtLeast implements DocIterator {
+        private final DocIterator[] children;
+        private final int[] heads;
+        private final int required;
+        private boolean started;
+        private int current = NO_MORE_DOCS;
+
+        AtLeast(DocIterator[] children, int required) {
+            this.children = children;
+            this.heads = new int[children.length];
+            this.required = required;
+        }
+
+        @Override
+        public int next() {
+            if (!started) {
+                start();
+            }
+            current = match();
+            return current;
+        }
+
+        @Override
+        public int advance(int target) {
+            if (!started) {
+                start();
+            } else if (current <= target) {
+                return current;
+            }
+            for (int i = 0; i < children.length; i++) {
+                if (heads[i] > target) {
+                    heads[i] = children[i].advance(target);
+                }
+            }
+            current = match();
+            return current;
+        }
+
+        private void start() {
+            started = true;
+            for (int i = 0; i < children.length; i++) {
+                heads[i] = children[i].next();
+            }
+        }
+
+        // Consumes heads from the top until one id is shared by enough children.
+        private int match() {
+            while (true) {
+                int max = NO_MORE_DOCS;
+                for (int head : heads) {
+                    max = Math.max(max, head);
+                }
+                if (max == NO_MORE_DOCS) {
+                    return NO_MORE_DOCS;
+                }
+                int count = 0;
+                for (int i = 0; i < children.length; i++) {
+                    if (heads[i] == max) {
+                        count++;
+                        heads[i] = children[i].next();
+                    }
+                }
+                if (count >= required) {
+                    return max;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.fileshare.search;
+
+/**
+ * How a search query is matched against files.
+ */
+public enum SearchMode {
+    /** Boolean query over name and tag terms; see {@link SearchQuery}. */
+    TERMS,
+    /** Case-insensitive substring of the file name. */
+    SUBSTRING,
+    /** Substring of the file name within a small number of edits. */
+    FUZZY;
+
+    public static SearchMode fromParameter(String value) {
+        for (SearchMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported search mode: " + value);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.fileshare.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parsed search expression in disjunctive normal form. Whitespace-separated words are ANDed,
+ * the keyword {@code OR} separates alternatives, and a trailing {@code *} makes a word a prefix
+ * match: {@code "invoice 2024 OR report*"} is {@code (invoice AND 2024) OR report*}.
+ */
+public final class SearchQuery {
+    private static final String OR = "OR";
+    private static final char WILDCARD = '*';
+
+    private final List<List<Term>> groups;
+
+    private SearchQuery(List<List<Term>> groups) {
+        this.groups = groups;
+    }
+
+    public static SearchQuery parse(String query) {
+        List<List<Term>> groups = new ArrayList<>();
+        List<Term> current = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (OR.equals(word)) {
+                if (!current.isEmpty()) {
+                    groups.add(current);
+                    current = new ArrayList<>();
+                }
+                continue;
+            }
+            boolean prefix = word.length() > 1 && word.charAt(word.length() - 1) == WILDCARD;
+            // A word such as "invoice-final" is itself several terms, all of which must match.
+            List<String> tokens = new ArrayList<>(Tokenizer.tokenize(word));
+            for (int i = 0; i < tokens.size(); i++) {
+                current.add(new Term(tokens.get(i), prefix && i == tokens.size() - 1));
+            }
+        }
+        if (!current.isEmpty()) {
+            groups.add(current);
+        }
+        return new SearchQuery(groups);
+    }
+
+    /**
+     * Alternatives of this query; a document matches when it matches every term of any group.
+     */
+    public List<List<Term>> groups() {
+        return groups;
+    }
+
+    public boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    public static final class Term {
+        private final String text;
+        private final boolean prefix;
+
+        public Term(String text, boolean prefix) {
+            this.text = text.toLowerCase(Locale.ROOT);
+            this.prefix = prefix;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        public boolean prefix() {
+            return prefix;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.fileshare.search;
+
+import java.util.Arrays;
+
+/**
+ * Overlapping three-character windows of a string, each packed into a {@code long} (16 bits per
+ * char) so the trigram dictionary is keyed without allocating substrings.
+ */
+final class Trigrams {
+
+    private Trigrams() {
+    }
+
+    /**
+     * Distinct trigrams of {@code text}, which is expected to be lowercased already.
+     */
+    static long[] of(String text) {
+        int count = text.length() - 2;
+        if (count <= 0) {
+            return new long[0];
+        }
+        long[] trigrams = new long[count];
+        for (int i = 0; i < count; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return distinct == count ? trigrams : Arrays.copyOf(trigrams, distinct);
+    }
+}
@@ -0,0 +1,814 @@
+package com.example.fileshare.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Small blobs packed into large append-only segment files. Storing one is a write into the page
+ * cache plus a share of a group fsync, instead of a file create, an fsync and a rename of its own,
+ * and reading one is a positional read from a segment that is already open.
+ *
+ * <pre>
+ * segment-&lt;id&gt;.dat  magic (4) | reserved (4) | record*
+ * record:            header CRC32C (4) | type (1) | key (32) | value (8) | data CRC32C (4) | data
+ * </pre>
+ *
+ * A blob record's value is the length of its data. A delete appends a tombstone without data
+ * whose value is the id of the segment holding the record it kills. The index from key to
+ * location is kept in memory and rebuilt on open from the record headers in log order: a blob
+ * record points its key at itself, and a tombstone drops the key if it still points into the
+ * tombstone's target segment. Only the newest segment's data is checked on open, to cut off a
+ * record torn by a crash; other data is checked by its readers against the chunk's CRC.
+ *
+ * <p>Once half of a segment other than the one being appended to is dead, a background thread
+ * copies its live records to the end of the log and deletes it when the copies are durable and
+ * the last reader has closed it. A tombstone is carried along only while its target segment
+ * still exists. Adds, deletes and copies of a key hold the key's stripe lock, never a map entry's,
+ * while they append, so a deleted blob is never copied back to life and index lookups never wait
+ * for the disk.
+ *
+ * <p>The writer is one channel shared by every append, and an interrupt during a channel call
+ * would close it for all of them. Its writes and forces therefore run on pool threads that
+ * nobody interrupts; an interrupted caller still waits for its own append to finish.
+ */
+final class BlobSegments implements AutoCloseable {
+
+    /**
+     * Where a blob's data is; {@code end} is the log position to {@link #sync} to.
+     */
+    record Location(long segment, long offset, int length, long end) {
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(BlobSegments.class);
+    private static final int MAGIC = 0x46534253;
+    private static final int HEADER_SIZE = 8;
+    private static final int KEY_SIZE = 32;
+    private static final int RECORD_HEADER_SIZE = 4 + 1 + KEY_SIZE + 8 + 4;
+    private static final byte BLOB = 1;
+    private static final byte TOMBSTONE = 2;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".dat";
+    private static final int KEY_STRIPES = 64;
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    /** A writer channel call, run by {@link #io}. */
+    @FunctionalInterface
+    private interface WriterCall<T> {
+        T run() throws IOException;
+    }
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final ConcurrentHashMap<String, Location> index = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Segment> segments = new ConcurrentHashMap<>();
+    private final Set<Long> compacting = ConcurrentHashMap.newKeySet();
+    private final ExecutorService compactor;
+    private final ExecutorService writerThreads;
+    private final ReentrantLock[] keyLocks = new ReentrantLock[KEY_STRIPES];
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+
+    // Written under lock; read without it to skip syncs that are done already.
+    private volatile Segment active;
+    private volatile long durable;
+    // Guarded by lock.
+    private FileChannel writer;
+    private long appended;
+    private boolean flushing;
+    private IOException failure;
+    private long fsyncs;
+    private volatile boolean closing;
+
+    private BlobSegments(Path dir, long segmentBytes) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "blob-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writerThreads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "blob-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < KEY_STRIPES; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Loads the segments in {@code dir} and starts a new one for appends.
+     *
+     * @param segmentBytes size after which appends move on to a new segment
+     */
+    static BlobSegments open(Path dir, long segmentBytes) throws IOException {
+        if (segmentBytes <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid segmentBytes=" + segmentBytes);
+        }
+        Files.createDirectories(dir);
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                files.put(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())), entry);
+            }
+        }
+        BlobSegments blobs = new BlobSegments(dir, segmentBytes);
+        try {
+            for (var entry : files.entrySet()) {
+                blobs.load(entry.getKey(), entry.getValue(), entry.getKey().equals(files.lastKey()));
+            }
+            // Whatever the index no longer points at is dead.
+            Map<Long, Long> live = new HashMap<>();
+            for (Location location : blobs.index.values()) {
+                live.merge(location.segment(), (long) RECORD_HEADER_SIZE + location.length(), Long::sum);
+            }
+            for (Segment segment : blobs.segments.values()) {
+                segment.dead.set(segment.size - HEADER_SIZE - live.getOrDefault(segment.id, 0L));
+            }
+            blobs.lock.lock();
+            try {
+                blobs.startSegment(files.isEmpty() ? 1 : files.lastKey() + 1);
+            } finally {
+                blobs.lock.unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            blobs.close();
+            throw e;
+        }
+        blobs.segments.values().forEach(blobs::compactIfWasteful);
+        return blobs;
+    }
+
+    Location find(String key) {
+        return index.get(key);
+    }
+
+    /** Keys of the blobs present now; blobs added or deleted meanwhile may or may not be listed. */
+    List<String> keys() {
+        return List.copyOf(index.keySet());
+    }
+
+    /**
+     * Appends {@code data} under {@code key} unless a blob with that key is present already, and
+     * returns where the blob is. The blob is readable at once and durable after {@link #sync}.
+     */
+    Location add(String key, byte[] data, int length, int crc) {
+        ReentrantLock keyLock = keyLock(key);
+        keyLock.lock();
+        try {
+            Location location = index.get(key);
+            if (location == null) {
+                location = append(BLOB, HexFormat.of().parseHex(key), length, data, length, crc);
+                index.put(key, location);
+            }
+            return location;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append blob " + key, e);
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the blob and logs a tombstone for it; returns {@code false} when no blob has the key.
+     * The tombstone becomes durable with the next sync. Should it be lost in a crash, the blob
+     * just stays behind unreferenced, as a blob file whose delete was lost would.
+     */
+    boolean delete(String key) {
+        Location removed;
+        ReentrantLock keyLock = keyLock(key);
+        keyLock.lock();
+        try {
+            removed = index.get(key);
+            if (removed == null) {
+                return false;
+            }
+            append(TOMBSTONE, HexFormat.of().parseHex(key), removed.segment(), null, 0, 0);
+            index.remove(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete blob " + key, e);
+        } finally {
+            keyLock.unlock();
+        }
+        Segment segment = segments.get(removed.segment());
+        if (segment != null) {
+            segment.dead.addAndGet(RECORD_HEADER_SIZE + removed.length());
+            compactIfWasteful(segment);
+        }
+        return true;
+    }
+
+    /**
+     * A read-only channel over the blob's data, or {@code null} when no blob has the key.
+     */
+    SeekableByteChannel open(String key) {
+        while (true) {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            Segment segment = segments.get(location.segment());
+            if (segment != null && segment.acquire()) {
+                return new BlobChannel(segment, location);
+            }
+            // Compacted meanwhile; by now the index points at the copy.
+        }
+    }
+
+    /**
+     * Returns once {@code location} is durable, flushing the segment itself unless another
+     * thread is already doing so.
+     */
+    void sync(Location location) throws IOException {
+        if (location.end() <= durable) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durable < location.end()) {
+                checkFailure();
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    flush();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of fsyncs so far; each covers every blob appended before it started.
+     */
+    long syncCount() {
+        lock.lock();
+        try {
+            return fsyncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Queues every wasteful segment for compaction and waits until the queue has drained.
+     */
+    void compact() throws IOException {
+        segments.values().forEach(this::compactIfWasteful);
+        try {
+            compactor.submit(() -> {
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compacting");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to compact", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // A running compaction stops at its next record; what it copied so far stays valid.
+        closing = true;
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Blob compaction did not stop within {} seconds", CLOSE_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            while (flushing) {
+                flushed.awaitUninterruptibly();
+            }
+            FileChannel channel = writer;
+            if (channel != null) {
+                boolean force = failure == null && durable < appended;
+                io(() -> {
+                    if (force) {
+                        channel.force(false);
+                    }
+                    channel.close();
+                    return null;
+                });
+            }
+        } finally {
+            lock.unlock();
+            writerThreads.shutdown();
+        }
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    private Location append(byte type, byte[] key, long value, byte[] data, int length, int dataCrc)
+            throws IOException {
+        lock.lock();
+        try {
+            checkFailure();
+            Segment target = active;
+            int size = RECORD_HEADER_SIZE + length;
+            while (target.size > HEADER_SIZE && target.size + size > segmentBytes) {
+                target = startSegment(target.id + 1);
+            }
+            ByteBuffer record = ByteBuffer.allocate(size);
+            record.putInt(0).put(type).put(key).putLong(value).putInt(dataCrc);
+            if (data != null) {
+                record.put(data, 0, length);
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(record.array(), 4, RECORD_HEADER_SIZE - 4);
+            record.putInt(0, (int) crc.getValue()).flip();
+            long position = target.size;
+            FileChannel channel = writer;
+            try {
+                io(() -> {
+                    while (record.hasRemaining()) {
+                        channel.write(record, position + record.position());
+                    }
+                    return null;
+                });
+            } catch (IOException e) {
+                // What reached the file is unknown; a partial record would hide every later one.
+                failure = e;
+                throw e;
+            }
+            target.size = position + size;
+            appended += size;
+            if (type == TOMBSTONE) {
+                target.dead.addAndGet(size);
+            }
+            return new Location(target.id, position + RECORD_HEADER_SIZE, length, appended);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held. Everything appended to the previous segment is forced first,
+    // so flushes only ever need to cover the current one. Waiting for a flush releases the lock,
+    // so another append may have started the segment already; then that one is returned.
+    private Segment startSegment(long id) throws IOException {
+        while (flushing) {
+            flushed.awaitUninterruptibly();
+        }
+        Segment previous = active;
+        if (previous != null && previous.id >= id) {
+            return previous;
+        }
+        FileChannel previousWriter = writer;
+        if (previousWriter != null) {
+            io(() -> {
+                previousWriter.force(false);
+                previousWriter.close();
+                return null;
+            });
+            fsyncs++;
+            durable = appended;
+        }
+        Path path = dir.resolve(PREFIX + String.format("%016d", id) + SUFFIX);
+        writer = io(() -> {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(0).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(false);
+            return channel;
+        });
+        Segment segment = new Segment(id, path, HEADER_SIZE);
+        segments.put(id, segment);
+        active = segment;
+        if (previous != null) {
+            compactIfWasteful(previous);
+        }
+        return segment;
+    }
+
+    // Called with the lock held; releases it while forcing.
+    private void flush() throws IOException {
+        flushing = true;
+        long position = appended;
+        FileChannel channel = writer;
+        lock.unlock();
+        IOException error = null;
+        try {
+            io(() -> {
+                channel.force(false);
+                return null;
+            });
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+        }
+        flushing = false;
+        fsyncs++;
+        if (error != null) {
+            failure = error;
+        } else {
+            durable = Math.max(durable, position);
+        }
+        flushed.signalAll();
+        checkFailure();
+    }
+
+    // Runs call on a writer thread and waits for it, uninterruptibly; an interrupt that arrives
+    // meanwhile is kept for the caller.
+    private <T> T io(WriterCall<T> call) throws IOException {
+        Future<T> result = writerThreads.submit(call::run);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return result.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException io) {
+                        throw io;
+                    }
+                    if (e.getCause() instanceof RuntimeException runtime) {
+                        throw runtime;
+                    }
+                    throw new IOException("Blob segment write failed", e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private ReentrantLock keyLock(String key) {
+        int hash = key.hashCode();
+        return keyLocks[(hash ^ hash >>> 16) & (KEY_STRIPES - 1)];
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Blob segments failed earlier; restart to recover", failure);
+        }
+    }
+
+    private boolean isWasteful(Segment segment) {
+        return segment != active && segment.dead.get() * 2 >= segment.size - HEADER_SIZE;
+    }
+
+    private void compactIfWasteful(Segment segment) {
+        if (isWasteful(segment) && compacting.add(segment.id)) {
+            try {
+                compactor.execute(() -> {
+                    try {
+                        compact(segment);
+                    } catch (Exception e) {
+                        log.warn("Failed to compact blob segment {}", segment.path, e);
+                    } finally {
+                        compacting.remove(segment.id);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Shutting down.
+                compacting.remove(segment.id);
+            }
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        if (!segments.containsKey(segment.id)) {
+            return;
+        }
+        long end = 0;
+        long moved = 0;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        for (long position = HEADER_SIZE; position < segment.size; ) {
+            if (closing) {
+                return;
+            }
+            header.clear();
+            segment.readFully(header, position);
+            header.flip().getInt();
+            byte type = header.get();
+            byte[] key = new byte[KEY_SIZE];
+            header.get(key);
+            long value = header.getLong();
+            int dataCrc = header.getInt();
+            if (type == BLOB) {
+                long offset = position + RECORD_HEADER_SIZE;
+                String hex = HexFormat.of().formatHex(key);
+                ReentrantLock keyLock = keyLock(hex);
+                keyLock.lock();
+                try {
+                    Location location = index.get(hex);
+                    if (location != null && location.segment() == segment.id && location.offset() == offset) {
+                        ByteBuffer data = ByteBuffer.allocate(location.length());
+                        segment.readFully(data, offset);
+                        Location copy = append(BLOB, key, location.length(), data.array(), location.length(), dataCrc);
+                        index.put(hex, copy);
+                        end = copy.end();
+                        moved++;
+                    }
+                } finally {
+                    keyLock.unlock();
+                }
+                position = offset + value;
+            } else {
+                if (value != segment.id && segments.containsKey(value)) {
+                    end = append(TOMBSTONE, key, value, null, 0, 0).end();
+                }
+                position += RECORD_HEADER_SIZE;
+            }
+        }
+        if (end > 0) {
+            sync(new Location(0, 0, 0, end));
+        }
+        segments.remove(segment.id);
+        // Drops the log's own reference; the file goes once no reader has it open.
+        segment.release();
+        log.info("Compacted blob segment {}: moved {} live blobs, reclaimed {} bytes", segment.path, moved,
+                segment.dead.get());
+    }
+
+    private void load(long id, Path path, boolean newest) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        Segment segment = new Segment(id, path, channel);
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            channel.close();
+            if (!newest) {
+                throw new IOException("Truncated blob segment: " + path);
+            }
+            // Created just before a crash, before even its header was written.
+            Files.delete(path);
+            return;
+        }
+        ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_SIZE);
+        segment.readFully(fileHeader, 0);
+        if (fileHeader.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a blob segment: " + path);
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        CRC32C crc = new CRC32C();
+        long position = HEADER_SIZE;
+        String torn = null;
+        while (position < size) {
+            if (size - position < RECORD_HEADER_SIZE) {
+                torn = "incomplete header";
+                break;
+            }
+            header.clear();
+            segment.readFully(header, position);
+            crc.reset();
+            crc.update(header.array(), 4, RECORD_HEADER_SIZE - 4);
+            header.flip();
+            if (header.getInt() != (int) crc.getValue()) {
+                torn = "header checksum mismatch";
+                break;
+            }
+            byte type = header.get();
+            byte[] key = new byte[KEY_SIZE];
+            header.get(key);
+            long value = header.getLong();
+            int dataCrc = header.getInt();
+            long length = type == BLOB ? value : 0;
+            if ((type != BLOB && type != TOMBSTONE) || length < 0 || length > Integer.MAX_VALUE
+                    || position + RECORD_HEADER_SIZE + length > size) {
+                torn = "invalid record";
+                break;
+            }
+            if (newest && type == BLOB) {
+                ByteBuffer data = ByteBuffer.allocate((int) length);
+                segment.readFully(data, position + RECORD_HEADER_SIZE);
+                crc.reset();
+                crc.update(data.array());
+                if ((int) crc.getValue() != dataCrc) {
+                    torn = "data checksum mismatch";
+                    break;
+                }
+            }
+            String hex = HexFormat.of().formatHex(key);
+            if (type == BLOB) {
+                index.put(hex, new Location(id, position + RECORD_HEADER_SIZE, (int) length, 0));
+            } else {
+                index.computeIfPresent(hex, (k, location) -> location.segment() == value ? null : location);
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        if (torn != null) {
+            if (!newest) {
+                channel.close();
+                throw new IOException("Corrupt blob segment " + path + " at offset " + position + ": " + torn);
+            }
+            log.warn("Discarding torn record at the end of {} (offset {}): {}", path, position, torn);
+            try (FileChannel truncate = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                truncate.truncate(position);
+                truncate.force(false);
+            }
+        }
+        segment.size = position;
+        segments.put(id, segment);
+    }
+
+    /**
+     * One segment file. Readers share its read channel; the file is deleted once the segment is
+     * retired and the last reader is gone.
+     */
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final AtomicLong dead = new AtomicLong();
+        // One reference held by the log until the segment is retired, plus one per open reader.
+        private final AtomicInteger users = new AtomicInteger(1);
+        private volatile FileChannel channel;
+        // Bytes in the file; grows only while the segment is the active one.
+        private volatile long size;
+
+        Segment(long id, Path path, FileChannel channel) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+        }
+
+        Segment(long id, Path path, long size) throws IOException {
+            this(id, path, FileChannel.open(path, StandardOpenOption.READ));
+            this.size = size;
+        }
+
+        boolean acquire() {
+            while (true) {
+                int count = users.get();
+                if (count == 0) {
+                    return false;
+                }
+                if (users.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (users.decrementAndGet() == 0) {
+                close();
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Failed to delete compacted blob segment {}", path, e);
+                }
+            }
+        }
+
+        int read(ByteBuffer target, long position) throws IOException {
+            FileChannel current = channel;
+            try {
+                return current.read(target, position);
+            } catch (ClosedByInterruptException e) {
+                // The interrupt closed the channel every reader shares; give the others a new one.
+                reopen(current);
+                throw e;
+            }
+        }
+
+        void readFully(ByteBuffer target, long position) throws IOException {
+            while (target.hasRemaining()) {
+                if (read(target, position + target.position()) < 0) {
+                    throw new EOFException("Unexpected end of " + path);
+                }
+            }
+        }
+
+        private synchronized void reopen(FileChannel closed) throws IOException {
+            if (channel == closed && users.get() > 0) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+        }
+
+        synchronized void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close blob segment {}", path, e);
+            }
+        }
+    }
+
+    /**
+     * A blob's bytes within its segment.
+     */
+    private static final class BlobChannel implements SeekableByteChannel {
+        private final Segment segment;
+        private final long offset;
+        private final long length;
+        private long position;
+        private boolean open = true;
+
+        BlobChannel(Segment segment, Location location) {
+            this.segment = segment;
+            this.offset = location.offset();
+            this.length = location.length();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            if (position >= length) {
+                return -1;
+            }
+            int limit = dst.limit();
+            dst.limit(dst.position() + (int) Math.min(dst.remaining(), length - position));
+            try {
+                int read = segment.read(dst, offset + position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) {
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Negative position");
+            }
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            if (open) {
+                open = false;
+                segment.release();
+            }
+        }
+    }
+}
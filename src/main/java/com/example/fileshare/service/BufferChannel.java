@@ -0,0 +1,83 @@
+package com.example.fileshare.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only channel over a buffer that other readers may share. Reads copy out with absolute
+ * positions, so the buffer's own position and limit are never touched.
+ */
+final class BufferChannel implements SeekableByteChannel {
+
+    private final ByteBuffer data;
+    private long position;
+    private boolean open = true;
+
+    BufferChannel(ByteBuffer data) {
+        this.data = data;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= data.limit()) {
+            return -1;
+        }
+        int count = (int) Math.min(dst.remaining(), data.limit() - position);
+        dst.put(dst.position(), data, (int) position, count);
+        dst.position(dst.position() + count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return data.limit();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.FileChunk;
+import com.example.fileshare.service.model.StoredContent;
+
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * File contents as lists of deduplicated chunks on top of the {@link StorageService}.
+ */
+public interface ChunkStore {
+    /**
+     * Splits {@code input} into content-defined chunks and stores the ones not already present.
+     * Every chunk of the result holds one reference until {@link #release} is called.
+     */
+    StoredContent write(InputStream input);
+
+    /**
+     * Like {@link #write(InputStream)}, but every chunk is encrypted under {@code keyId} on its way
+     * to storage. Chunk IVs are derived from {@code iv} and the chunk's content, so the same chunk
+     * written again under the same key and IV is still deduplicated. A {@code null} IV starts a
+     * fresh one; the result carries the key and IV for writing later versions.
+     */
+    StoredContent write(InputStream input, String keyId, String iv);
+
+    /**
+     * Same as {@link #write(InputStream, String, String)}, with the content pushed in through the
+     * returned writer. It buffers no more than two maximum-size chunks, and only as much as has
+     * arrived.
+     */
+    ContentWriter writer(String keyId, String iv);
+
+    /**
+     * Read-only channel over the concatenated chunks.
+     */
+    SeekableByteChannel open(List<FileChunk> chunks);
+
+    /**
+     * Read-only plaintext channel over chunks written under {@code keyId}; a {@code null} key
+     * reads them as stored.
+     */
+    SeekableByteChannel open(List<FileChunk> chunks, String keyId);
+
+    /**
+     * Local path of the content when it is a single plain blob on local disk; {@code null}
+     * otherwise. For encrypted contents the blob holds ciphertext, so callers must not use it.
+     */
+    Path localPath(List<FileChunk> chunks);
+
+    /**
+     * Takes one more reference on every chunk, as {@link #write} does for the chunks it returns.
+     * Used to rebuild references for contents that are already recorded in the metadata.
+     */
+    void retain(List<FileChunk> chunks);
+
+    void release(List<FileChunk> chunks);
+
+    /**
+     * Removes the stored chunks no content holds a reference on; see
+     * {@link StorageService#removeUnreferenced}.
+     */
+    int removeUnreferenced();
+}
@@ -0,0 +1,330 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.FileChunk;
+import com.example.fileshare.service.model.StoredContent;
+import com.example.fileshare.storage.ContentDefinedChunker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Deduplicating writer and reader for chunked contents. Each chunk is hashed before anything is
+ * written; when the store already holds that hash the chunk only gains a reference, so a
+ * re-upload or a new version with a small edit writes just the chunks around the edit.
+ *
+ * <p>The content checksum is the SHA-256 of the plaintext bytes, so clients can check a download
+ * against it; it is fed from the ingest buffer as each chunk is cut, in the same pass as the
+ * chunk hash. Ingest buffers a few maximum-size chunks per upload. Each chunk also records the
+ * CRC32C of its stored bytes, computed from the same buffer, which reads of plain chunks and the
+ * {@link IntegrityScrubber} check far more cheaply than SHA-256.
+ *
+ * <p>Encrypted contents are sealed chunk by chunk as they are cut, so upload, checksum,
+ * encryption and storage are one pass with no temp copy of the plaintext. Each chunk's IV is a
+ * hash of the content's secret IV seed and the chunk hash: the same chunk under the same key
+ * always seals to the same blob and still deduplicates, while different chunks never share an
+ * IV. Identical chunks are therefore recognizable as identical within one key, which is what
+ * deduplication requires.
+ */
+@Service
+public class ChunkStoreImpl implements ChunkStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkStoreImpl.class);
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int BUFFERED_CHUNKS = 4;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int IV_SEED_SIZE = 32;
+    private static final int CHUNK_IV_SIZE = 12;
+
+    private final StorageService storageService;
+    private final EncryptionService encryptionService;
+    private final ContentDefinedChunker chunker;
+    private final SecureRandom secureRandom;
+
+    public ChunkStoreImpl(StorageService storageService, EncryptionService encryptionService) {
+        this.storageService = storageService;
+        this.encryptionService = encryptionService;
+        this.chunker = new ContentDefinedChunker();
+        this.secureRandom = new SecureRandom();
+    }
+
+    @Override
+    public StoredContent write(InputStream input) {
+        return write(input, null, null);
+    }
+
+    @Override
+    public StoredContent write(InputStream input, String keyId, String iv) {
+        // Starts small and grows while the input keeps filling it, so a small file does not pay
+        // for zeroing a buffer sized for large ones.
+        ChunkWriter writer = new ChunkWriter(keyId, iv, INITIAL_BUFFER_SIZE);
+        try (InputStream source = input) {
+            while (writer.readFrom(source)) {
+                // every refill stores the chunks it completes
+            }
+            return writer.complete();
+        } catch (Exception e) {
+            writer.abort();
+            throw new RuntimeException("Failed to write content", e);
+        }
+    }
+
+    @Override
+    public ContentWriter writer(String keyId, String iv) {
+        return new ChunkWriter(keyId, iv, 0);
+    }
+
+    @Override
+    public SeekableByteChannel open(List<FileChunk> chunks) {
+        return open(chunks, null);
+    }
+
+    @Override
+    public SeekableByteChannel open(List<FileChunk> chunks, String keyId) {
+        if (keyId == null) {
+            return new ChunkedChannel(storageService::open, chunks, true);
+        }
+        return new ChunkedChannel(key -> {
+            SeekableByteChannel ciphertext = storageService.open(key);
+            try {
+                return encryptionService.openDecrypted(keyId, ciphertext);
+            } catch (EncryptionException e) {
+                ciphertext.close();
+                throw new IOException("Failed to decrypt chunk " + key, e);
+            }
+        }, chunks, false);
+    }
+
+    @Override
+    public Path localPath(List<FileChunk> chunks) {
+        return chunks.size() == 1 ? storageService.localPath(chunks.get(0).getKey()) : null;
+    }
+
+    @Override
+    public void retain(List<FileChunk> chunks) {
+        for (FileChunk chunk : chunks) {
+            if (!storageService.retain(chunk.getKey())) {
+                log.warn("Chunk {} is missing from storage", chunk.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void release(List<FileChunk> chunks) {
+        for (FileChunk chunk : chunks) {
+            storageService.delete(chunk.getKey());
+        }
+    }
+
+    @Override
+    public int removeUnreferenced() {
+        return storageService.removeUnreferenced();
+    }
+
+    private byte[] newIvSeed() {
+        byte[] seed = new byte[IV_SEED_SIZE];
+        secureRandom.nextBytes(seed);
+        return seed;
+    }
+
+    private static byte[] chunkIv(MessageDigest digest, byte[] ivSeed, byte[] chunkHash) {
+        digest.update(ivSeed);
+        digest.update(chunkHash);
+        return Arrays.copyOf(digest.digest(), CHUNK_IV_SIZE);
+    }
+
+    /**
+     * Cuts, hashes, seals and stores chunks as bytes arrive. Chunks are only cut once a full
+     * maximum-size chunk is buffered, or at the end, so boundaries do not depend on how the
+     * content was split on its way in.
+     */
+    private final class ChunkWriter implements ContentWriter {
+        private final String keyId;
+        private final byte[] ivSeed;
+        private final CipherSuite cipherSuite;
+        private final MessageDigest contentDigest;
+        private final MessageDigest chunkDigest;
+        private final CRC32C crc = new CRC32C();
+        private final List<FileChunk> chunks = new ArrayList<>();
+        private SealedChunk sealed;
+        private byte[] buffer;
+        private int start;
+        private int filled;
+        private long size;
+        private long written;
+        private boolean done;
+
+        ChunkWriter(String keyId, String iv, int capacity) {
+            this.keyId = keyId;
+            if (keyId != null) {
+                // One suite for the whole content, even if the default changes while it is written.
+                this.cipherSuite = encryptionService.cipherSuite();
+                this.ivSeed = iv != null ? Base64.getDecoder().decode(iv) : newIvSeed();
+            } else {
+                this.cipherSuite = null;
+                this.ivSeed = null;
+            }
+            try {
+                this.contentDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+                this.chunkDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("Failed to start content", e);
+            }
+            this.buffer = new byte[capacity];
+        }
+
+        @Override
+        public void write(ByteBuffer data) {
+            try {
+                while (data.hasRemaining()) {
+                    if (filled == buffer.length) {
+                        makeRoom(data.remaining());
+                    }
+                    int length = Math.min(data.remaining(), buffer.length - filled);
+                    data.get(buffer, filled, length);
+                    filled += length;
+                    storeFullChunks();
+                }
+            } catch (Exception e) {
+                abort();
+                throw new RuntimeException("Failed to write content", e);
+            }
+        }
+
+        @Override
+        public StoredContent finish() {
+            try {
+                return complete();
+            } catch (Exception e) {
+                abort();
+                throw new RuntimeException("Failed to write content", e);
+            }
+        }
+
+        @Override
+        public void abort() {
+            if (!done) {
+                done = true;
+                release(chunks);
+            }
+        }
+
+        /**
+         * Refills the buffer from {@code source}; returns {@code false} once the source is exhausted.
+         * A buffer the last refill filled doubles, up to room for several chunks, so leftover bytes
+         * are moved to the front once per refill rather than after every chunk.
+         */
+        boolean readFrom(InputStream source) throws Exception {
+            int pending = filled - start;
+            byte[] target = buffer;
+            if (filled == buffer.length && buffer.length < BUFFERED_CHUNKS * chunker.maxSize()) {
+                target = new byte[Math.min(buffer.length * 2, BUFFERED_CHUNKS * chunker.maxSize())];
+            }
+            System.arraycopy(buffer, start, target, 0, pending);
+            buffer = target;
+            filled = pending;
+            start = 0;
+            filled += source.readNBytes(buffer, filled, buffer.length - filled);
+            storeFullChunks();
+            return filled == buffer.length;
+        }
+
+        StoredContent complete() throws Exception {
+            while (filled > start) {
+                storeChunk(chunker.cut(buffer, start, filled - start));
+            }
+            done = true;
+            return new StoredContent(List.copyOf(chunks), size, HexFormat.of().formatHex(contentDigest.digest()),
+                    written, keyId, ivSeed == null ? null : Base64.getEncoder().encodeToString(ivSeed),
+                    cipherSuite == null ? null : cipherSuite.name());
+        }
+
+        // Grows with what has arrived, so a small content never gets a full-size buffer. Once two
+        // maximum-size chunks fit, a full chunk has always been cut already and moving the rest
+        // to the front is enough.
+        private void makeRoom(int wanted) {
+            int pending = filled - start;
+            byte[] target = buffer;
+            if (buffer.length < 2 * chunker.maxSize()) {
+                int capacity = Math.max(buffer.length * 2, pending + wanted);
+                target = new byte[Math.min(capacity, 2 * chunker.maxSize())];
+            }
+            System.arraycopy(buffer, start, target, 0, pending);
+            buffer = target;
+            start = 0;
+            filled = pending;
+        }
+
+        private void storeFullChunks() throws Exception {
+            while (filled - start >= chunker.maxSize()) {
+                storeChunk(chunker.cut(buffer, start, filled - start));
+            }
+        }
+
+        private void storeChunk(int length) throws Exception {
+            chunkDigest.update(buffer, start, length);
+            byte[] hash = chunkDigest.digest();
+            contentDigest.update(buffer, start, length);
+            String key;
+            crc.reset();
+            if (keyId == null) {
+                crc.update(buffer, start, length);
+                key = HexFormat.of().formatHex(hash);
+                if (!storageService.retain(key)) {
+                    storageService.store(Channels.newChannel(new ByteArrayInputStream(buffer, start, length)));
+                    written += length;
+                }
+            } else {
+                // The chunk is encrypted straight from the ingest buffer; only the ciphertext
+                // is hashed again, since that is what the store addresses.
+                if (sealed == null) {
+                    sealed = new SealedChunk(length);
+                }
+                sealed.reset();
+                encryptionService.encryptConvergent(keyId, cipherSuite, chunkIv(chunkDigest, ivSeed, hash),
+                        new ByteArrayInputStream(buffer, start, length), sealed);
+                chunkDigest.update(sealed.bytes(), 0, sealed.size());
+                crc.update(sealed.bytes(), 0, sealed.size());
+                key = HexFormat.of().formatHex(chunkDigest.digest());
+                if (!storageService.retain(key)) {
+                    storageService.store(Channels.newChannel(
+                            new ByteArrayInputStream(sealed.bytes(), 0, sealed.size())));
+                    written += sealed.size();
+                }
+            }
+            chunks.add(new FileChunk(key, length, crc.getValue()));
+            size += length;
+            start += length;
+        }
+    }
+
+    /** Reusable output buffer for one sealed chunk. */
+    private static final class SealedChunk extends ByteArrayOutputStream {
+        SealedChunk(int plaintextSize) {
+            // Header plus one tag per 64KiB segment, with room to spare.
+            super(plaintextSize + plaintextSize / 1024 + 64);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
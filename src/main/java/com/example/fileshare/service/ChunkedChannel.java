@@ -0,0 +1,157 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.FileChunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Read-only view of a chunk list as one seekable channel. Only the chunk under the current
+ * position is open at a time, so a range read opens just the chunks it touches.
+ *
+ * <p>With {@code verify} set, a chunk read from its first byte to its last without seeking is
+ * checked against its recorded CRC32C as it streams, and the read that finishes a corrupted chunk
+ * fails. Range reads that cover a chunk partially are not checked; encrypted chunks do not need
+ * this, since every segment is authenticated when it is decrypted.
+ */
+final class ChunkedChannel implements SeekableByteChannel {
+
+    /** Opens the plaintext of one stored chunk. */
+    @FunctionalInterface
+    interface ChunkOpener {
+        SeekableByteChannel open(String key) throws IOException;
+    }
+
+    private final ChunkOpener opener;
+    private final List<FileChunk> chunks;
+    // offsets[i] is where chunk i starts; offsets[chunks.size()] is the total size.
+    private final long[] offsets;
+    private final boolean verify;
+    private final CRC32C crc = new CRC32C();
+    private SeekableByteChannel current;
+    private int currentIndex = -1;
+    // Offset within the current chunk up to which the CRC has been accumulated; -1 once a seek
+    // has made the check impossible for this chunk.
+    private long checkedUpTo = -1;
+    private long position;
+    private boolean open = true;
+
+    ChunkedChannel(ChunkOpener opener, List<FileChunk> chunks, boolean verify) {
+        this.opener = opener;
+        this.verify = verify;
+        this.chunks = chunks;
+        this.offsets = new long[chunks.size() + 1];
+        for (int i = 0; i < chunks.size(); i++) {
+            offsets[i + 1] = offsets[i] + chunks.get(i).getSize();
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size()) {
+            return -1;
+        }
+        int index = chunkAt(position);
+        if (index != currentIndex) {
+            closeCurrent();
+            current = opener.open(chunks.get(index).getKey());
+            currentIndex = index;
+            crc.reset();
+            checkedUpTo = 0;
+        }
+        long offset = position - offsets[index];
+        current.position(offset);
+        int start = dst.position();
+        int read = current.read(dst);
+        if (read < 0) {
+            throw new IOException("Chunk " + chunks.get(index).getKey() + " is shorter than recorded");
+        }
+        if (verify) {
+            check(index, offset, dst, start, read);
+        }
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() {
+        return offsets[chunks.size()];
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        closeCurrent();
+    }
+
+    private void check(int index, long offset, ByteBuffer dst, int start, int read) throws IOException {
+        if (checkedUpTo != offset) {
+            checkedUpTo = -1;
+            return;
+        }
+        crc.update(dst.duplicate().limit(start + read).position(start));
+        checkedUpTo += read;
+        FileChunk chunk = chunks.get(index);
+        if (checkedUpTo == chunk.getSize() && crc.getValue() != chunk.getCrc32c()) {
+            throw new IOException("Chunk " + chunk.getKey() + " failed its CRC32C check");
+        }
+    }
+
+    private int chunkAt(long offset) {
+        int found = Arrays.binarySearch(offsets, 0, chunks.size(), offset);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private void closeCurrent() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+            currentIndex = -1;
+            checkedUpTo = -1;
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
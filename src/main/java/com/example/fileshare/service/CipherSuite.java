@@ -0,0 +1,68 @@
+package com.example.fileshare.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * AEAD algorithms the segmented format can seal content with. Both take a 256-bit key and a
+ * 96-bit nonce and produce a 16-byte tag, so the layout is the same; the suite's id is written
+ * into every ciphertext header, and content stays readable under the suite it was written with
+ * whatever the current default is.
+ *
+ * <p>AES-GCM is much faster on CPUs with AES instructions; ChaCha20-Poly1305 is faster without
+ * them. {@link CipherSuiteSelector} measures both when the default is left to the host.
+ */
+public enum CipherSuite {
+    AES_256_GCM((byte) 1, "AES/GCM/NoPadding", "AES", "fileshare-segmented-aes-gcm-v1"),
+    CHACHA20_POLY1305((byte) 2, "ChaCha20-Poly1305", "ChaCha20", "fileshare-segmented-chacha20-poly1305-v1");
+
+    private final byte id;
+    private final String transformation;
+    private final String keyAlgorithm;
+    private final byte[] keyInfo;
+
+    CipherSuite(byte id, String transformation, String keyAlgorithm, String keyInfo) {
+        this.id = id;
+        this.transformation = transformation;
+        this.keyAlgorithm = keyAlgorithm;
+        this.keyInfo = keyInfo.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static CipherSuite fromId(byte id) throws GeneralSecurityException {
+        for (CipherSuite suite : values()) {
+            if (suite.id == id) {
+                return suite;
+            }
+        }
+        throw new GeneralSecurityException("Unsupported cipher suite: " + id);
+    }
+
+    byte id() {
+        return id;
+    }
+
+    String keyAlgorithm() {
+        return keyAlgorithm;
+    }
+
+    /**
+     * HKDF info for content keys, so the two suites never derive the same key.
+     */
+    byte[] keyInfo() {
+        return keyInfo;
+    }
+
+    Cipher newCipher() throws GeneralSecurityException {
+        return Cipher.getInstance(transformation);
+    }
+
+    AlgorithmParameterSpec parameters(byte[] nonce) {
+        return this == AES_256_GCM
+                ? new GCMParameterSpec(SegmentedAead.TAG_BYTES * 8, nonce)
+                : new IvParameterSpec(nonce);
+    }
+}
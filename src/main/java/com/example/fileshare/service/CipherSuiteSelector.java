@@ -0,0 +1,89 @@
+package com.example.fileshare.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+
+/**
+ * Picks the default {@link CipherSuite} for this host by sealing segments with each suite for a
+ * while after startup. Rounds alternate between the suites and only each suite's best round
+ * counts, so the JIT warming up during the first rounds does not decide the outcome. AES-GCM
+ * only reaches its hardware-accelerated path once the JIT has compiled its callers, which takes
+ * thousands of calls; a budget of well under a second measures the interpreter instead.
+ */
+final class CipherSuiteSelector {
+
+    private static final Logger log = LoggerFactory.getLogger(CipherSuiteSelector.class);
+    private static final int ROUNDS = 10;
+
+    private CipherSuiteSelector() {
+    }
+
+    /**
+     * The suite with the highest sealing throughput for {@code segmentSize} segments, measured
+     * within roughly {@code budget}. AES-GCM wins ties, and a suite the runtime does not provide is
+     * never chosen. An interrupt ends the measurement early with AES-GCM.
+     */
+    static CipherSuite fastest(int segmentSize, Duration budget) {
+        CipherSuite[] suites = CipherSuite.values();
+        long roundNanos = Math.max(1, budget.toNanos() / (ROUNDS * suites.length));
+        byte[] keyBytes = new byte[32];
+        byte[] iv = new byte[SegmentedAead.IV_SIZE];
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(keyBytes);
+        random.nextBytes(iv);
+        byte[] plaintext = new byte[segmentSize];
+        byte[] sealed = new byte[segmentSize + SegmentedAead.TAG_BYTES];
+        byte[] nonce = new byte[SegmentedAead.IV_SIZE];
+
+        double[] bytesPerNano = new double[suites.length];
+        for (int round = 0; round < ROUNDS; round++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return CipherSuite.AES_256_GCM;
+            }
+            for (CipherSuite suite : suites) {
+                if (bytesPerNano[suite.ordinal()] < 0) {
+                    continue;
+                }
+                try {
+                    SegmentedAead aead = SegmentedAead.forEncryption(suite,
+                            new SecretKeySpec(keyBytes, "AES"), iv, segmentSize);
+                    Cipher cipher = suite.newCipher();
+                    long index = 0;
+                    long start = System.nanoTime();
+                    long elapsed;
+                    do {
+                        aead.seal(cipher, nonce, index++, false, plaintext, segmentSize, sealed);
+                        elapsed = System.nanoTime() - start;
+                    } while (elapsed < roundNanos);
+                    bytesPerNano[suite.ordinal()] = Math.max(bytesPerNano[suite.ordinal()],
+                            index * segmentSize / (double) elapsed);
+                } catch (GeneralSecurityException e) {
+                    log.warn("Cipher suite {} is not available", suite, e);
+                    bytesPerNano[suite.ordinal()] = -1;
+                }
+            }
+        }
+
+        CipherSuite fastest = CipherSuite.AES_256_GCM;
+        for (CipherSuite suite : suites) {
+            if (bytesPerNano[suite.ordinal()] > bytesPerNano[fastest.ordinal()]) {
+                fastest = suite;
+            }
+        }
+        if (log.isInfoEnabled()) {
+            StringBuilder measured = new StringBuilder();
+            for (CipherSuite suite : suites) {
+                measured.append(' ').append(suite).append('=')
+                        .append(Math.round(bytesPerNano[suite.ordinal()] * 1000)).append("MB/s");
+            }
+            log.info("Selected cipher suite {};{}", fastest, measured);
+        }
+        return fastest;
+    }
+}
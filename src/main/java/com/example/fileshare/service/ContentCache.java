@@ -0,0 +1,36 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.service.model.CacheStats;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Plaintext of frequently downloaded file versions, kept so that repeated reads skip storage and
+ * decryption.
+ */
+public interface ContentCache {
+
+    /** Opens the plaintext of a version from storage. */
+    @FunctionalInterface
+    interface ContentSource {
+        SeekableByteChannel open() throws IOException;
+    }
+
+    /**
+     * Read-only channel over the cached plaintext of {@code version} of a file. On a miss, content
+     * that is requested often enough is read in full through {@code source} and kept; content that
+     * turns out not to fit comes back as the source channel. Otherwise this returns {@code null}
+     * and the caller reads storage itself. Entries are only ever served for the version they were
+     * loaded for.
+     */
+    SeekableByteChannel open(Id fileId, int version, long size, ContentSource source) throws IOException;
+
+    /**
+     * Drops whatever is cached for the file, once it has a new version or is deleted.
+     */
+    void invalidate(Id fileId);
+
+    CacheStats stats();
+}
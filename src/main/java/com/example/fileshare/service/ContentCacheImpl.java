@@ -0,0 +1,428 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.service.model.CacheStats;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+/**
+ * Two-tier cache of file plaintext. The memory tier holds each entry in one direct buffer, outside
+ * the heap, and serves every reader from a shared read-only view of it; a buffer dropped on
+ * eviction is freed once its last reader is done. Entries are admitted and evicted by
+ * W-TinyLFU, weighted by size:
+ *
+ * <ul>
+ *   <li>Nothing is loaded until a {@link FrequencySketch} has seen it requested twice, so a
+ *       one-off download never costs a full read into memory.</li>
+ *   <li>New entries go to a small LRU window (1% of the memory tier); entries too large for the
+ *       window skip it.</li>
+ *   <li>Leaving the window, an entry may replace the least recently used entries of the main
+ *       segmented LRU only if it is more frequent than every one of them. A large file therefore
+ *       has to beat all the smaller files it would push out, not just one.</li>
+ *   <li>A hit in the main LRU's probation part moves the entry to its protected part (80%).</li>
+ * </ul>
+ *
+ * <p>With {@code fileshare.cache.disk-dir} set, entries leaving memory are written there in the
+ * background and kept in LRU order up to {@code fileshare.cache.disk-bytes}. Those files hold
+ * plaintext, also of encrypted files, so the directory belongs on a local device that is trusted
+ * like memory; it is emptied on startup and shutdown. A disk hit that is frequent enough is loaded
+ * back into memory from there instead of from storage.
+ *
+ * <p>Entries are keyed by file and checked against the version asked for, so a stale entry is
+ * never served even if its invalidation raced with a load; it only takes up room until evicted.
+ * Both tiers are guarded by the cache's monitor, which is held for map updates only, never for
+ * I/O. Direct buffers count against {@code -XX:MaxDirectMemorySize}, which must leave room for
+ * {@code fileshare.cache.memory-bytes} plus what evicted buffers still being read hold on to.
+ */
+@Service
+public class ContentCacheImpl implements ContentCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ContentCacheImpl.class);
+    private static final int ADMIT_FREQUENCY = 2;
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    // Charged on top of the content so that empty files still take up room.
+    private static final int ENTRY_OVERHEAD = 256;
+    // Sizes the frequency sketch: about this many distinct entries fit in memory.
+    private static final long TYPICAL_ENTRY_BYTES = 64 * 1024;
+    private static final int DEMOTION_QUEUE = 64;
+    private static final String ENTRY_PREFIX = "entry-";
+    private static final String ENTRY_SUFFIX = ".bin";
+
+    private enum Region {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    private static final class Entry {
+        final Id fileId;
+        final int version;
+        final ByteBuffer data;
+        final long weight;
+        Region region;
+
+        Entry(Id fileId, int version, ByteBuffer data) {
+            this.fileId = fileId;
+            this.version = version;
+            this.data = data;
+            this.weight = (long) data.limit() + ENTRY_OVERHEAD;
+        }
+    }
+
+    private record DiskEntry(int version, Path path, long weight) {
+    }
+
+    private final long memoryCapacity;
+    private final long windowCapacity;
+    private final long protectedCapacity;
+    private final long maxFileBytes;
+    // Null without a disk tier.
+    private final Path diskDir;
+    private final long diskCapacity;
+    private final ThreadPoolExecutor demoter;
+
+    // Guarded by this.
+    private final FrequencySketch sketch;
+    private final Map<Id, Entry> memory = new HashMap<>();
+    private final Map<Region, LinkedHashMap<Id, Entry>> regions = new EnumMap<>(Region.class);
+    private final long[] regionBytes = new long[Region.values().length];
+    private final LinkedHashMap<Id, DiskEntry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private long diskFiles;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param memoryBytes  size of the memory tier; 0 turns the cache off
+     * @param maxFileBytes largest file that is cached
+     * @param diskDir      directory of the disk tier; empty for none
+     * @param diskBytes    size of the disk tier
+     */
+    @Autowired
+    public ContentCacheImpl(@Value("${fileshare.cache.memory-bytes:268435456}") long memoryBytes,
+                            @Value("${fileshare.cache.max-file-bytes:16777216}") long maxFileBytes,
+                            @Value("${fileshare.cache.disk-dir:}") String diskDir,
+                            @Value("${fileshare.cache.disk-bytes:8589934592}") long diskBytes) {
+        this(memoryBytes, maxFileBytes, diskDir.isEmpty() ? null : Paths.get(diskDir), diskBytes);
+    }
+
+    ContentCacheImpl(long memoryBytes, long maxFileBytes, Path diskDir, long diskBytes) {
+        if (memoryBytes < 0 || maxFileBytes < 0 || maxFileBytes > Integer.MAX_VALUE - ENTRY_OVERHEAD
+                || (diskDir != null && diskBytes <= 0)) {
+            throw new IllegalArgumentException("Invalid cache sizes: memoryBytes=" + memoryBytes
+                    + ", maxFileBytes=" + maxFileBytes + ", diskBytes=" + diskBytes);
+        }
+        this.memoryCapacity = memoryBytes;
+        this.windowCapacity = memoryBytes * WINDOW_PERCENT / 100;
+        this.protectedCapacity = (memoryBytes - windowCapacity) * PROTECTED_PERCENT / 100;
+        this.maxFileBytes = maxFileBytes;
+        this.diskDir = memoryBytes == 0 ? null : diskDir;
+        this.diskCapacity = diskBytes;
+        this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, memoryBytes / TYPICAL_ENTRY_BYTES));
+        for (Region region : Region.values()) {
+            regions.put(region, new LinkedHashMap<>(16, 0.75f, true));
+        }
+        if (this.diskDir == null) {
+            this.demoter = null;
+            return;
+        }
+        try {
+            Files.createDirectories(this.diskDir);
+            deleteEntryFiles();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to prepare cache directory " + this.diskDir, e);
+        }
+        // A full queue drops demotions, so a slow disk cannot pin evicted buffers in memory.
+        this.demoter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(DEMOTION_QUEUE), runnable -> {
+            Thread thread = new Thread(runnable, "cache-demoter");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @Override
+    public SeekableByteChannel open(Id fileId, int version, long size, ContentSource source) throws IOException {
+        if (memoryCapacity == 0) {
+            return null;
+        }
+        int hash = fileId.hashCode();
+        Path onDisk = null;
+        boolean admit;
+        synchronized (this) {
+            sketch.increment(hash);
+            Entry entry = memory.get(fileId);
+            if (entry != null && entry.version == version) {
+                touch(entry);
+                memoryHits.increment();
+                return new BufferChannel(entry.data);
+            }
+            DiskEntry diskEntry = disk.get(fileId);
+            if (diskEntry != null && diskEntry.version() == version) {
+                onDisk = diskEntry.path();
+            }
+            admit = size <= maxFileBytes && sketch.frequency(hash) >= ADMIT_FREQUENCY;
+        }
+        if (onDisk != null) {
+            SeekableByteChannel channel = openEntryFile(onDisk);
+            if (channel != null) {
+                diskHits.increment();
+                return admit ? load(fileId, version, channel) : channel;
+            }
+        }
+        misses.increment();
+        return admit ? load(fileId, version, source.open()) : null;
+    }
+
+    @Override
+    public void invalidate(Id fileId) {
+        if (memoryCapacity == 0) {
+            return;
+        }
+        DiskEntry dropped;
+        synchronized (this) {
+            Entry entry = memory.remove(fileId);
+            if (entry != null) {
+                unlink(entry);
+            }
+            dropped = disk.remove(fileId);
+            if (dropped != null) {
+                diskBytes -= dropped.weight();
+            }
+        }
+        if (dropped != null) {
+            deleteEntryFile(dropped.path());
+        }
+    }
+
+    @Override
+    public synchronized CacheStats stats() {
+        return new CacheStats(memoryHits.sum(), diskHits.sum(), misses.sum(), evictions.sum(),
+                memory.size(), LongStream.of(regionBytes).sum(), disk.size(), diskBytes);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (demoter == null) {
+            return;
+        }
+        demoter.shutdownNow();
+        try {
+            demoter.awaitTermination(10, TimeUnit.SECONDS);
+            deleteEntryFiles();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Failed to empty cache directory {}", diskDir, e);
+        }
+    }
+
+    // Reads the whole channel into a new entry and serves from that. Content that cannot be
+    // kept is handed back as the channel it came in.
+    private SeekableByteChannel load(Id fileId, int version, SeekableByteChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > maxFileBytes) {
+            return channel;
+        }
+        ByteBuffer data;
+        try {
+            data = ByteBuffer.allocateDirect((int) size);
+        } catch (OutOfMemoryError e) {
+            log.warn("No direct memory left to cache {} bytes; raise -XX:MaxDirectMemorySize", size);
+            return channel;
+        }
+        try (channel) {
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // keep reading until the buffer is full
+            }
+        }
+        if (data.hasRemaining()) {
+            throw new IOException("Content of " + fileId + " ended after " + data.position() + " of " + size + " bytes");
+        }
+        Entry entry = new Entry(fileId, version, data.flip().asReadOnlyBuffer());
+        insert(entry);
+        return new BufferChannel(entry.data);
+    }
+
+    private void insert(Entry entry) {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = memory.put(entry.fileId, entry);
+            if (previous != null) {
+                unlink(previous);
+            }
+            if (entry.weight > windowCapacity) {
+                admit(entry, evicted);
+            } else {
+                link(entry, Region.WINDOW);
+                while (regionBytes[Region.WINDOW.ordinal()] > windowCapacity) {
+                    Entry candidate = eldest(Region.WINDOW);
+                    unlink(candidate);
+                    admit(candidate, evicted);
+                }
+            }
+        }
+        evictions.add(evicted.size());
+        if (demoter != null) {
+            for (Entry loser : evicted) {
+                demoter.execute(() -> demote(loser));
+            }
+        }
+    }
+
+    // TinyLFU: the candidate takes the place of the least recently used main entries only if it
+    // has been requested more often than each of them. Losers are added to evicted.
+    private void admit(Entry candidate, List<Entry> evicted) {
+        long excess = regionBytes[Region.PROBATION.ordinal()] + regionBytes[Region.PROTECTED.ordinal()]
+                + candidate.weight - (memoryCapacity - windowCapacity);
+        if (excess > 0) {
+            int frequency = sketch.frequency(candidate.fileId.hashCode());
+            List<Entry> victims = new ArrayList<>();
+            long freed = 0;
+            Iterator<Entry> probation = regions.get(Region.PROBATION).values().iterator();
+            Iterator<Entry> protectedEntries = regions.get(Region.PROTECTED).values().iterator();
+            while (freed < excess && (probation.hasNext() || protectedEntries.hasNext())) {
+                Entry victim = probation.hasNext() ? probation.next() : protectedEntries.next();
+                if (sketch.frequency(victim.fileId.hashCode()) >= frequency) {
+                    break;
+                }
+                victims.add(victim);
+                freed += victim.weight;
+            }
+            if (freed < excess) {
+                memory.remove(candidate.fileId, candidate);
+                evicted.add(candidate);
+                return;
+            }
+            for (Entry victim : victims) {
+                unlink(victim);
+                memory.remove(victim.fileId);
+                evicted.add(victim);
+            }
+        }
+        link(candidate, Region.PROBATION);
+    }
+
+    private void touch(Entry entry) {
+        if (entry.region != Region.PROBATION) {
+            // Moves the entry to the most recently used end.
+            regions.get(entry.region).get(entry.fileId);
+            return;
+        }
+        unlink(entry);
+        link(entry, Region.PROTECTED);
+        while (regionBytes[Region.PROTECTED.ordinal()] > protectedCapacity) {
+            Entry demoted = eldest(Region.PROTECTED);
+            unlink(demoted);
+            link(demoted, Region.PROBATION);
+        }
+    }
+
+    private void link(Entry entry, Region region) {
+        regions.get(region).put(entry.fileId, entry);
+        regionBytes[region.ordinal()] += entry.weight;
+        entry.region = region;
+    }
+
+    private void unlink(Entry entry) {
+        regions.get(entry.region).remove(entry.fileId);
+        regionBytes[entry.region.ordinal()] -= entry.weight;
+    }
+
+    private Entry eldest(Region region) {
+        return regions.get(region).values().iterator().next();
+    }
+
+    private void demote(Entry entry) {
+        List<Path> dropped = new ArrayList<>();
+        Path path;
+        synchronized (this) {
+            DiskEntry existing = disk.get(entry.fileId);
+            if (entry.weight > diskCapacity || (existing != null && existing.version() == entry.version)) {
+                return;
+            }
+            path = diskDir.resolve(ENTRY_PREFIX + diskFiles++ + ENTRY_SUFFIX);
+        }
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer data = entry.data.duplicate();
+            while (data.hasRemaining()) {
+                file.write(data);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to move cached content of {} to disk", entry.fileId, e);
+            deleteEntryFile(path);
+            return;
+        }
+        synchronized (this) {
+            DiskEntry previous = disk.put(entry.fileId, new DiskEntry(entry.version, path, entry.weight));
+            diskBytes += entry.weight;
+            if (previous != null) {
+                diskBytes -= previous.weight();
+                dropped.add(previous.path());
+            }
+            Iterator<DiskEntry> lru = disk.values().iterator();
+            while (diskBytes > diskCapacity) {
+                DiskEntry eldest = lru.next();
+                lru.remove();
+                diskBytes -= eldest.weight();
+                dropped.add(eldest.path());
+            }
+        }
+        dropped.forEach(this::deleteEntryFile);
+    }
+
+    // Null when the file was dropped from the disk tier in the meantime. Readers that opened it
+    // before keep reading the unlinked file.
+    private static SeekableByteChannel openEntryFile(Path path) throws IOException {
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void deleteEntryFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete cache file {}", path, e);
+        }
+    }
+
+    private void deleteEntryFiles() throws IOException {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(diskDir, ENTRY_PREFIX + "*" + ENTRY_SUFFIX)) {
+            for (Path entry : entries) {
+                Files.deleteIfExists(entry);
+            }
+        }
+    }
+}
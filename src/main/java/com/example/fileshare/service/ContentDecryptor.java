@@ -0,0 +1,101 @@
+package com.example.fileshare.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * Decrypts one complete ciphertext (header included) that arrives in buffers of any size, for
+ * readers that are handed bytes instead of pulling them. At most one sealed segment is held
+ * between calls. A segment is only known not to be the last once a byte after it arrives, so its
+ * plaintext is released by the call that brings that byte or by {@link #finish()}, and only
+ * after its tag has been checked.
+ */
+public final class ContentDecryptor {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SecretKey dataKey;
+    private final byte[] header = new byte[SegmentedAead.HEADER_SIZE];
+    private final byte[] nonce = new byte[SegmentedAead.IV_SIZE];
+    private int headerLength;
+    private SegmentedAead aead;
+    private Cipher cipher;
+    private byte[] sealed;
+    private int sealedLength;
+    private long index;
+
+    ContentDecryptor(SecretKey dataKey) {
+        this.dataKey = dataKey;
+    }
+
+    /**
+     * Consumes all remaining bytes of {@code ciphertext} and returns the plaintext of the segments
+     * it completed, possibly none.
+     */
+    public ByteBuffer update(ByteBuffer ciphertext) throws EncryptionException {
+        try {
+            if (aead == null && !readHeader(ciphertext)) {
+                return EMPTY;
+            }
+            int completed = (sealedLength + ciphertext.remaining() - 1) / sealed.length;
+            if (completed <= 0) {
+                int length = ciphertext.remaining();
+                ciphertext.get(sealed, sealedLength, length);
+                sealedLength += length;
+                return EMPTY;
+            }
+            ByteBuffer plaintext = ByteBuffer.allocate(completed * aead.segmentSize());
+            byte[] segment = new byte[aead.segmentSize()];
+            while (ciphertext.hasRemaining()) {
+                if (sealedLength == sealed.length) {
+                    plaintext.put(segment, 0, open(false, segment));
+                }
+                int length = Math.min(ciphertext.remaining(), sealed.length - sealedLength);
+                ciphertext.get(sealed, sealedLength, length);
+                sealedLength += length;
+            }
+            return plaintext.flip();
+        } catch (GeneralSecurityException e) {
+            throw new EncryptionException("Failed to authenticate segment " + index, e);
+        }
+    }
+
+    /**
+     * Opens the final segment once the whole ciphertext has been passed to {@link #update}.
+     */
+    public ByteBuffer finish() throws EncryptionException {
+        if (aead == null) {
+            throw new EncryptionException("Truncated ciphertext header");
+        }
+        try {
+            byte[] segment = new byte[aead.segmentSize()];
+            return ByteBuffer.wrap(segment, 0, open(true, segment));
+        } catch (GeneralSecurityException e) {
+            throw new EncryptionException("Failed to authenticate segment " + index, e);
+        }
+    }
+
+    private boolean readHeader(ByteBuffer ciphertext) throws GeneralSecurityException {
+        int length = Math.min(ciphertext.remaining(), header.length - headerLength);
+        ciphertext.get(header, headerLength, length);
+        headerLength += length;
+        if (headerLength < header.length) {
+            return false;
+        }
+        aead = SegmentedAead.forDecryption(dataKey, header);
+        cipher = aead.suite().newCipher();
+        sealed = new byte[aead.segmentSize() + SegmentedAead.TAG_BYTES];
+        return true;
+    }
+
+    private int open(boolean last, byte[] plaintext) throws GeneralSecurityException {
+        if (sealedLength < SegmentedAead.TAG_BYTES) {
+            throw new GeneralSecurityException("Truncated ciphertext");
+        }
+        int length = aead.open(cipher, nonce, index, last, sealed, sealedLength, plaintext);
+        sealedLength = 0;
+        index++;
+        return length;
+    }
+}
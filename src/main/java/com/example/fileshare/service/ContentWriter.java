@@ -0,0 +1,28 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.service.model.StoredContent;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Content handed to the {@link ChunkStore} piece by piece, for callers that receive it as a
+ * sequence of buffers instead of reading it from a stream. Chunks are cut, hashed, encrypted and
+ * stored as soon as enough bytes have arrived, so the same content gives the same chunks however
+ * it was split. A writer is used by one thread at a time.
+ */
+public interface ContentWriter {
+    /**
+     * Consumes all remaining bytes of {@code data}; may store the chunks they complete.
+     */
+    void write(ByteBuffer data);
+
+    /**
+     * Stores the last chunk and returns the content, holding one reference on every chunk.
+     */
+    StoredContent finish();
+
+    /**
+     * Gives back the chunks stored so far. Does nothing once the writer is finished or aborted.
+     */
+    void abort();
+}
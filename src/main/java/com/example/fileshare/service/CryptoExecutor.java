@@ -0,0 +1,102 @@
+package com.example.fileshare.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Platform threads for CPU-bound segment encryption and decryption. Request threads may be
+ * virtual, and a virtual thread that seals a large upload keeps its carrier busy the whole time,
+ * so other requests, health checks included, wait for a carrier. Handing the work to this pool
+ * lets the virtual thread park instead.
+ *
+ * <p>The pool is bounded in threads and in queued segments. When the queue is full the caller
+ * seals its segments itself, which slows down the requests producing the load rather than growing
+ * the queue.
+ */
+final class CryptoExecutor implements Executor, AutoCloseable {
+
+    /**
+     * Work that returns a value or throws a checked exception of one type.
+     */
+    interface Task<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor pool;
+
+    CryptoExecutor(int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid threads=" + threads + ", queueCapacity=" + queueCapacity);
+        }
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "crypto-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @throws RejectedExecutionException when the queue is full; the caller should run the task
+     */
+    @Override
+    public void execute(Runnable task) {
+        pool.execute(task);
+    }
+
+    /**
+     * Runs {@code task} on {@code executor} and waits for it when called from a virtual thread. On
+     * a platform thread, or when the executor rejects the task, it runs on the caller.
+     */
+    @SuppressWarnings("unchecked")
+    static <T, E extends Exception> T call(Executor executor, Task<T, E> task) throws E {
+        if (!Thread.currentThread().isVirtual()) {
+            return task.run();
+        }
+        FutureTask<T> future = new FutureTask<>(task::run);
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            return task.run();
+        }
+        // The task writes into the caller's buffers, so it must finish before the caller goes on.
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw (E) cause;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.fileshare.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.Executor;
+
+/**
+ * Read-only plaintext view of a segmented ciphertext. Positions map directly to segments, so a
+ * range read only fetches and authenticates the segments it overlaps; the last opened segment is
+ * kept for sequential reads.
+ */
+final class DecryptingChannel implements SeekableByteChannel {
+    private final SeekableByteChannel ciphertext;
+    private final Executor executor;
+    private final SegmentedAead aead;
+    private final Cipher cipher;
+    private final long size;
+    private final long segmentCount;
+    private final byte[] nonce = new byte[SegmentedAead.IV_SIZE];
+    private final byte[] sealed;
+    private final byte[] plaintext;
+    private long currentIndex = -1;
+    private int currentLength;
+    private long position;
+    private boolean open = true;
+
+    /**
+     * @param executor opens segments when the reader is a virtual thread; see {@link CryptoExecutor}
+     */
+    DecryptingChannel(SecretKey dataKey, SeekableByteChannel ciphertext, Executor executor)
+            throws IOException, GeneralSecurityException {
+        this.ciphertext = ciphertext;
+        this.executor = executor;
+        ByteBuffer header = ByteBuffer.allocate(SegmentedAead.HEADER_SIZE);
+        readFully(ciphertext.position(0), header);
+        if (header.hasRemaining()) {
+            throw new GeneralSecurityException("Truncated ciphertext header");
+        }
+        this.aead = SegmentedAead.forDecryption(dataKey, header.array());
+        this.cipher = aead.suite().newCipher();
+        this.size = aead.plaintextSize(ciphertext.size());
+        // Empty content is still one (empty) final segment.
+        this.segmentCount = Math.max(1, (size + aead.segmentSize() - 1) / aead.segmentSize());
+        this.sealed = new byte[aead.segmentSize() + SegmentedAead.TAG_BYTES];
+        this.plaintext = new byte[aead.segmentSize()];
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        long index = position / aead.segmentSize();
+        if (index != currentIndex) {
+            load(index);
+        }
+        int offset = (int) (position - index * aead.segmentSize());
+        int read = Math.min(dst.remaining(), currentLength - offset);
+        dst.put(plaintext, offset, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        ciphertext.close();
+    }
+
+    private void load(long index) throws IOException {
+        boolean last = index == segmentCount - 1;
+        ByteBuffer buffer = ByteBuffer.wrap(sealed);
+        if (last) {
+            buffer.limit((int) (ciphertext.size() - aead.segmentOffset(index)));
+        }
+        readFully(ciphertext.position(aead.segmentOffset(index)), buffer);
+        if (buffer.hasRemaining()) {
+            throw new IOException("Ciphertext is shorter than its segments");
+        }
+        currentIndex = -1;
+        try {
+            int length = buffer.position();
+            currentLength = CryptoExecutor.call(executor,
+                    () -> aead.open(cipher, nonce, index, last, sealed, length, plaintext));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Failed to authenticate segment " + index, e);
+        }
+        currentIndex = index;
+    }
+
+    private static void readFully(SeekableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // keep reading until the buffer is full or the channel ends
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -4,13 +4,85 @@ import com.example.fileshare.service.model.EncryptionResult;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
 
 public interface EncryptionService {
+    /**
+     * Creates a data key and returns its id, which carries the key wrapped by the current master
+     * key; persisting the id is enough to use the key again later.
+     */
     String generateKey();
 
     EncryptionResult encrypt(String keyId, InputStream input, OutputStream output) throws EncryptionException;
 
+    /**
+     * Encrypts with a caller-chosen 12-byte IV. The IV must differ for every distinct content
+     * under the same key; encrypting the same content with the same key and IV gives the same
+     * ciphertext.
+     */
+    EncryptionResult encrypt(String keyId, byte[] iv, InputStream input, OutputStream output) throws EncryptionException;
+
+    /**
+     * Same as {@link #encrypt(String, byte[], InputStream, OutputStream)} with a given suite
+     * instead of the current default, for callers that seal several pieces of one content.
+     */
+    EncryptionResult encrypt(String keyId, CipherSuite suite, byte[] iv, InputStream input, OutputStream output)
+            throws EncryptionException;
+
+    /**
+     * Same as {@link #encrypt(String, CipherSuite, byte[], InputStream, OutputStream)} for an IV
+     * derived from the content itself, where sealing the same content again under the same key
+     * and IV is expected and gives the same ciphertext. The other methods fail on a repeated key
+     * and IV when the cipher detects it.
+     */
+    EncryptionResult encryptConvergent(String keyId, CipherSuite suite, byte[] iv, InputStream input,
+                                       OutputStream output) throws EncryptionException;
+
+    /**
+     * Decrypts {@code input}, which starts right after the IV. Plaintext is only written once the
+     * segment it belongs to has been authenticated.
+     */
     void decrypt(String keyId, String ivBase64, InputStream input, OutputStream output) throws EncryptionException;
 
+    /**
+     * Read-only plaintext view of a complete ciphertext (header included) with random access:
+     * reading a range decrypts only the segments it overlaps.
+     */
+    SeekableByteChannel openDecrypted(String keyId, SeekableByteChannel ciphertext) throws EncryptionException;
+
+    /**
+     * Decryptor for one complete ciphertext (header included) that is pushed in as buffers,
+     * for non-blocking readers that cannot pull from a channel.
+     */
+    ContentDecryptor newDecryptor(String keyId) throws EncryptionException;
+
+    /**
+     * Suite new content is sealed with by default. Content sealed with another suite stays
+     * readable; the suite is recorded in its header.
+     */
+    CipherSuite cipherSuite();
+
+    /**
+     * A new data key to replace {@code oldKeyId}; existing content stays under the old key until
+     * it is re-encrypted.
+     */
     String rotateKey(String oldKeyId) throws EncryptionException;
+
+    /**
+     * The same data key wrapped with the current master key, or {@code keyId} itself when it
+     * already is. Content encrypted under the old id decrypts unchanged under the new one.
+     */
+    String rewrapKey(String keyId) throws EncryptionException;
+
+    /**
+     * Identity of the data key behind {@code keyId}. Unlike the id, which changes whenever the key
+     * is re-wrapped, it is the same for every wrapping of one key, and reveals nothing about it.
+     */
+    String keyFingerprint(String keyId) throws EncryptionException;
+
+    /**
+     * Makes a new master key current for wrapping. Keys wrapped with earlier master keys stay
+     * readable until they are re-wrapped.
+     */
+    void rotateMasterKey() throws EncryptionException;
 }
@@ -1,33 +1,172 @@
 package com.example.fileshare.service;
 
 import com.example.fileshare.service.model.EncryptionResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
 import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Segmented AEAD encryption in the format described on {@link SegmentedAead}. New content is
+ * sealed with one {@link CipherSuite}, configured or measured at startup; content is opened with
+ * the suite recorded in its header, so changing the default never affects existing files.
+ * Segments are sealed
+ * independently, so a batch of them is encrypted or decrypted in parallel on the executor, and
+ * {@link #openDecrypted} reads any byte range by opening only the segments that cover it.
+ *
+ * <p>Keys follow an envelope scheme. Every data key is wrapped with the current master key from
+ * the {@link MasterKeyStore}, and the wrapped form is the key id. Whoever stores a key id (a
+ * {@code FileVersion}) therefore stores the wrapped key with it, and any instance holding the
+ * master keys can read it after a restart. Unwrapped keys are kept in a {@link KeyCache}.
+ * Rotating the master key only requires re-wrapping these small ids with {@link #rewrapKey};
+ * the content stays as it is.
+ */
+@Service
 public class EncryptionServiceImpl implements EncryptionService {
     private static final String ALGORITHM = "AES";
-    private static final String CIPHER_INSTANCE = "AES/GCM/NoPadding";
     private static final int KEY_SIZE = 256;
-    private static final int IV_SIZE = 12;
-    // Authentication tag length in bits (GCM integrity check).
-    private static final int TAG_SIZE = 128;
-    private static final int BUFFER_SIZE = 8192;
+    private static final int IV_SIZE = SegmentedAead.IV_SIZE;
+    // Segment batches kept for reuse between calls when none is given explicitly.
+    private static final int DEFAULT_IDLE_BATCHES = 4;
+    private static final String AUTO_CIPHER_SUITE = "auto";
+    // Long enough for the JIT to compile each suite's fast path, even on a single core.
+    private static final Duration CIPHER_SUITE_BENCHMARK_BUDGET = Duration.ofSeconds(10);
+    // Data keys are wrapped with AES-GCM whatever the content suite is.
+    private static final String WRAP_CIPHER = "AES/GCM/NoPadding";
+    private static final byte WRAP_FORMAT = 1;
+    private static final int WRAP_AAD_SIZE = 1 + 4;
+    private static final int WRAPPED_KEY_SIZE = WRAP_AAD_SIZE + IV_SIZE + KEY_SIZE / 8 + SegmentedAead.TAG_BYTES;
+    // Fingerprint: truncated HMAC of a fixed label under the data key itself.
+    private static final String FINGERPRINT_MAC = "HmacSHA256";
+    private static final byte[] FINGERPRINT_LABEL = "fileshare-data-key".getBytes(StandardCharsets.US_ASCII);
+    private static final int FINGERPRINT_SIZE = 16;
+    private static final int KEY_CACHE_SIZE = 10_000;
+    private static final long KEY_CACHE_TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+    // Segments queued per crypto thread before callers seal their own.
+    private static final int CRYPTO_QUEUE_PER_THREAD = 256;
 
-    private final Map<String, SecretKey> keyStore;
+    private final MasterKeyStore masterKeys;
+    private volatile CipherSuite cipherSuite;
+    private final KeyCache keyCache;
     private final SecureRandom secureRandom;
+    private final Executor executor;
+    private final int segmentSize;
+    private final int parallelSegments;
+    // Ciphers and segment buffers are reused across calls instead of being allocated per call.
+    private final BlockingQueue<SegmentBatch> idleBatches;
+    // Set when the suite is measured at startup rather than configured.
+    private boolean selectCipherSuite;
+    private Thread selector;
 
+    /**
+     * Keys wrapped by this instance can only be unwrapped by it; for tools and tests.
+     */
     public EncryptionServiceImpl() {
-        this.keyStore = new HashMap<>();
+        this(MasterKeyStore.inMemory());
+    }
+
+    public EncryptionServiceImpl(MasterKeyStore masterKeys) {
+        this(masterKeys, CipherSuite.AES_256_GCM.name(), 0);
+    }
+
+    /**
+     * @param cipherSuite suite for new content, or {@code auto} to measure which one is faster on
+     *                    this host. The measurement runs in the background after startup and new
+     *                    content uses AES-256-GCM until it finishes.
+     * @param threads     threads of the {@link CryptoExecutor} that seals and opens segments, or 0
+     *                    for one per core
+     */
+    @Autowired
+    public EncryptionServiceImpl(MasterKeyStore masterKeys,
+                                 @Value("${fileshare.encryption.cipher-suite:auto}") String cipherSuite,
+                                 @Value("${fileshare.encryption.threads:0}") int threads) {
+        this(masterKeys, AUTO_CIPHER_SUITE.equalsIgnoreCase(cipherSuite) ? CipherSuite.AES_256_GCM : cipherSuite(cipherSuite),
+                cryptoExecutor(threads), SegmentedAead.DEFAULT_SEGMENT_SIZE,
+                Math.max(1, Runtime.getRuntime().availableProcessors()), DEFAULT_IDLE_BATCHES);
+        this.selectCipherSuite = AUTO_CIPHER_SUITE.equalsIgnoreCase(cipherSuite);
+    }
+
+    public EncryptionServiceImpl(Executor executor, int segmentSize, int parallelSegments) {
+        this(MasterKeyStore.inMemory(), CipherSuite.AES_256_GCM, executor, segmentSize, parallelSegments,
+                DEFAULT_IDLE_BATCHES);
+    }
+
+    /**
+     * @param cipherSuite      suite new content is sealed with
+     * @param executor         runs segment encryption and decryption in parallel
+     * @param segmentSize      plaintext bytes per independently sealed segment
+     * @param parallelSegments segments buffered and processed together; 1 disables parallelism
+     * @param idleBatches      pooled batches kept between calls; each holds
+     *                         {@code 2 * parallelSegments} segment buffers
+     */
+    public EncryptionServiceImpl(MasterKeyStore masterKeys, CipherSuite cipherSuite, Executor executor,
+                                 int segmentSize, int parallelSegments, int idleBatches) {
+        if (segmentSize <= 0 || parallelSegments <= 0 || idleBatches < 0) {
+            throw new IllegalArgumentException("Invalid segmentSize=" + segmentSize
+                    + ", parallelSegments=" + parallelSegments + ", idleBatches=" + idleBatches);
+        }
+        this.masterKeys = masterKeys;
+        this.cipherSuite = cipherSuite;
+        this.keyCache = new KeyCache(KEY_CACHE_SIZE, KEY_CACHE_TTL_NANOS);
         this.secureRandom = new SecureRandom();
+        this.executor = executor;
+        this.segmentSize = segmentSize;
+        this.parallelSegments = parallelSegments;
+        this.idleBatches = new LinkedBlockingQueue<>(Math.max(1, idleBatches));
+    }
+
+    private static CryptoExecutor cryptoExecutor(int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new CryptoExecutor(size, size * CRYPTO_QUEUE_PER_THREAD);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!selectCipherSuite) {
+            return;
+        }
+        selector = new Thread(() -> {
+            CipherSuite fastest = CipherSuiteSelector.fastest(segmentSize, CIPHER_SUITE_BENCHMARK_BUDGET);
+            if (!Thread.currentThread().isInterrupted()) {
+                this.cipherSuite = fastest;
+            }
+        }, "cipher-suite-selector");
+        selector.setDaemon(true);
+        selector.setPriority(Thread.MIN_PRIORITY);
+        selector.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (selector != null) {
+            selector.interrupt();
+        }
+        if (executor instanceof CryptoExecutor crypto) {
+            crypto.close();
+        }
     }
 
     @Override
@@ -37,8 +176,8 @@ public class EncryptionServiceImpl implements EncryptionService {
             keyGen.init(KEY_SIZE, secureRandom);
             SecretKey key = keyGen.generateKey();
 
-            String keyId = UUID.randomUUID().toString();
-            keyStore.put(keyId, key);
+            String keyId = wrap(key, masterKeys.currentId());
+            keyCache.put(keyId, key);
 
             return keyId;
         } catch (Exception e) {
@@ -48,38 +187,52 @@ public class EncryptionServiceImpl implements EncryptionService {
 
     @Override
     public EncryptionResult encrypt(String keyId, InputStream input, OutputStream output) throws EncryptionException {
+        // IV is a random, non-secret value that makes each encryption unique.
+        byte[] iv = new byte[IV_SIZE];
+        secureRandom.nextBytes(iv);
+        return encrypt(keyId, iv, input, output);
+    }
+
+    @Override
+    public EncryptionResult encrypt(String keyId, byte[] iv, InputStream input, OutputStream output) throws EncryptionException {
+        return encrypt(keyId, cipherSuite, iv, input, output);
+    }
+
+    @Override
+    public EncryptionResult encrypt(String keyId, CipherSuite suite, byte[] iv, InputStream input, OutputStream output)
+            throws EncryptionException {
+        return encrypt(keyId, suite, iv, false, input, output);
+    }
+
+    @Override
+    public EncryptionResult encryptConvergent(String keyId, CipherSuite suite, byte[] iv, InputStream input,
+                                              OutputStream output) throws EncryptionException {
+        return encrypt(keyId, suite, iv, true, input, output);
+    }
+
+    private EncryptionResult encrypt(String keyId, CipherSuite suite, byte[] iv, boolean convergent, InputStream input,
+                                     OutputStream output) throws EncryptionException {
         SecretKey key = retrieveKey(keyId);
+        if (iv == null || iv.length != IV_SIZE) {
+            throw new EncryptionException("Invalid IV size: expected " + IV_SIZE);
+        }
 
+        SegmentBatch batch = null;
         try {
-            // IV is a random, non-secret value that makes each encryption unique.
-            byte[] iv = new byte[IV_SIZE];
-            secureRandom.nextBytes(iv);
-
-            Cipher cipher = Cipher.getInstance(CIPHER_INSTANCE);
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(TAG_SIZE, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, key, gcmSpec);
-            // Write IV at the beginning of the output stream.
-            output.write(iv);
-            output.flush();
+            SegmentedAead aead = SegmentedAead.forEncryption(suite, key, iv, segmentSize, convergent);
+            // Write the header (IV first) at the beginning of the output stream.
+            output.write(aead.header());
 
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = input.read(buffer)) != -1) {
-                //encrypt file by chunks
-                byte[] encrypted = cipher.update(buffer, 0, bytesRead);
-                if (encrypted != null) {
-                    output.write(encrypted);
-                }
-            }
-            //finishes and appends the auth tag.
-            byte[] finalBlock = cipher.doFinal();
-            output.write(finalBlock);
+            batch = acquireBatch(segmentSize);
+            batch.transform(aead, true, input, output, executor);
             output.flush();
 
             String ivBase64 = Base64.getEncoder().encodeToString(iv);
-            return new EncryptionResult(keyId, ivBase64);
+            return new EncryptionResult(keyId, ivBase64, suite.name());
         } catch (Exception e) {
-            throw new EncryptionException("AES-GCM encryption failed", e);
+            throw new EncryptionException(suite + " encryption failed", e);
+        } finally {
+            releaseBatch(batch);
         }
     }
 
@@ -87,48 +240,169 @@ public class EncryptionServiceImpl implements EncryptionService {
     public void decrypt(String keyId, String ivBase64, InputStream input, OutputStream output) throws EncryptionException {
         SecretKey key = retrieveKey(keyId);
 
+        SegmentBatch batch = null;
         try {
             byte[] iv = Base64.getDecoder().decode(ivBase64);
             if (iv.length != IV_SIZE) {
                 throw new EncryptionException("Invalid IV size: expected " + IV_SIZE + ", got " + iv.length);
             }
-
-            Cipher cipher = Cipher.getInstance(CIPHER_INSTANCE);
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(TAG_SIZE, iv);
-            cipher.init(Cipher.DECRYPT_MODE, key, gcmSpec);
-
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int bytesRead;
-            while ((bytesRead = input.read(buffer)) != -1) {
-                byte[] decrypted = cipher.update(buffer, 0, bytesRead);
-                if (decrypted != null) {
-                    output.write(decrypted);
-                }
+            // The IV has already been consumed by the caller; the rest of the header follows.
+            byte[] header = new byte[SegmentedAead.HEADER_SIZE];
+            System.arraycopy(iv, 0, header, 0, IV_SIZE);
+            if (input.readNBytes(header, IV_SIZE, header.length - IV_SIZE) != header.length - IV_SIZE) {
+                throw new EncryptionException("Truncated ciphertext header");
             }
+            SegmentedAead aead = SegmentedAead.forDecryption(key, header);
 
-            byte[] finalBlock = cipher.doFinal();
-            output.write(finalBlock);
+            batch = acquireBatch(aead.segmentSize());
+            batch.transform(aead, false, input, output, executor);
             output.flush();
         } catch (EncryptionException e) {
             throw e;
         } catch (Exception e) {
-            throw new EncryptionException("AES-GCM decryption failed", e);
+            throw new EncryptionException("Decryption failed", e);
+        } finally {
+            releaseBatch(batch);
         }
     }
 
     @Override
-    public String rotateKey(String oldKeyId) throws EncryptionException {
-        if (!keyStore.containsKey(oldKeyId)) {
-            throw new EncryptionException("Key not found: " + oldKeyId);
+    public SeekableByteChannel openDecrypted(String keyId, SeekableByteChannel ciphertext) throws EncryptionException {
+        SecretKey key = retrieveKey(keyId);
+        try {
+            return new DecryptingChannel(key, ciphertext, executor);
+        } catch (Exception e) {
+            throw new EncryptionException("Decryption failed", e);
         }
+    }
+
+    @Override
+    public ContentDecryptor newDecryptor(String keyId) throws EncryptionException {
+        return new ContentDecryptor(retrieveKey(keyId));
+    }
+
+    @Override
+    public CipherSuite cipherSuite() {
+        return cipherSuite;
+    }
+
+    @Override
+    public String rotateKey(String oldKeyId) throws EncryptionException {
+        retrieveKey(oldKeyId);
         return generateKey();
     }
 
+    @Override
+    public String rewrapKey(String keyId) throws EncryptionException {
+        SecretKey key = retrieveKey(keyId);
+        int current = masterKeys.currentId();
+        if (masterKeyId(keyId) == current) {
+            return keyId;
+        }
+        try {
+            String rewrapped = wrap(key, current);
+            keyCache.put(rewrapped, key);
+            return rewrapped;
+        } catch (GeneralSecurityException e) {
+            throw new EncryptionException("Failed to re-wrap key", e);
+        }
+    }
+
+    @Override
+    public String keyFingerprint(String keyId) throws EncryptionException {
+        SecretKey key = retrieveKey(keyId);
+        try {
+            Mac mac = Mac.getInstance(FINGERPRINT_MAC);
+            mac.init(new SecretKeySpec(key.getEncoded(), FINGERPRINT_MAC));
+            byte[] fingerprint = Arrays.copyOf(mac.doFinal(FINGERPRINT_LABEL), FINGERPRINT_SIZE);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(fingerprint);
+        } catch (GeneralSecurityException e) {
+            throw new EncryptionException("Failed to fingerprint key", e);
+        }
+    }
+
+    @Override
+    public void rotateMasterKey() throws EncryptionException {
+        try {
+            masterKeys.rotate();
+        } catch (Exception e) {
+            throw new EncryptionException("Failed to rotate master key", e);
+        }
+    }
+
+    private static CipherSuite cipherSuite(String name) {
+        try {
+            return CipherSuite.valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown cipher suite: " + name, e);
+        }
+    }
+
+    // Content written with a larger segment size than configured gets a one-off batch.
+    private SegmentBatch acquireBatch(int contentSegmentSize) throws GeneralSecurityException {
+        if (contentSegmentSize > segmentSize) {
+            return new SegmentBatch(parallelSegments, contentSegmentSize);
+        }
+        SegmentBatch batch = idleBatches.poll();
+        return batch != null ? batch : new SegmentBatch(parallelSegments, segmentSize);
+    }
+
+    private void releaseBatch(SegmentBatch batch) {
+        if (batch != null && batch.segmentSize() == segmentSize) {
+            idleBatches.offer(batch);
+        }
+    }
+
     private SecretKey retrieveKey(String keyId) throws EncryptionException {
-        SecretKey key = keyStore.get(keyId);
-        if (key == null) {
-            throw new EncryptionException("Key not found: " + keyId);
+        SecretKey key = keyCache.get(keyId);
+        if (key != null) {
+            return key;
         }
+        try {
+            key = unwrap(keyId);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            throw new EncryptionException("Key not found: " + keyId, e);
+        }
+        keyCache.put(keyId, key);
         return key;
     }
+
+    // Key id: base64url(format | master key id | nonce | AES-GCM(data key) | tag), with the first
+    // five bytes authenticated as associated data.
+    private String wrap(SecretKey key, int masterKeyId) throws GeneralSecurityException {
+        ByteBuffer wrapped = ByteBuffer.allocate(WRAPPED_KEY_SIZE);
+        wrapped.put(WRAP_FORMAT).putInt(masterKeyId);
+        byte[] nonce = new byte[IV_SIZE];
+        secureRandom.nextBytes(nonce);
+        wrapped.put(nonce);
+        Cipher cipher = Cipher.getInstance(WRAP_CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, masterKeys.get(masterKeyId),
+                new GCMParameterSpec(SegmentedAead.TAG_BYTES * 8, nonce));
+        cipher.updateAAD(wrapped.array(), 0, WRAP_AAD_SIZE);
+        byte[] encoded = key.getEncoded();
+        cipher.doFinal(encoded, 0, encoded.length, wrapped.array(), wrapped.position());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(wrapped.array());
+    }
+
+    private SecretKey unwrap(String keyId) throws GeneralSecurityException {
+        byte[] wrapped = Base64.getUrlDecoder().decode(keyId);
+        if (wrapped.length != WRAPPED_KEY_SIZE || wrapped[0] != WRAP_FORMAT) {
+            throw new GeneralSecurityException("Unsupported key id format");
+        }
+        int masterKeyId = ByteBuffer.wrap(wrapped, 1, 4).getInt();
+        Cipher cipher = Cipher.getInstance(WRAP_CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, masterKeys.get(masterKeyId),
+                new GCMParameterSpec(SegmentedAead.TAG_BYTES * 8, wrapped, WRAP_AAD_SIZE, IV_SIZE));
+        cipher.updateAAD(wrapped, 0, WRAP_AAD_SIZE);
+        byte[] key = cipher.doFinal(wrapped, WRAP_AAD_SIZE + IV_SIZE, wrapped.length - WRAP_AAD_SIZE - IV_SIZE);
+        return new SecretKeySpec(key, ALGORITHM);
+    }
+
+    private static int masterKeyId(String keyId) throws EncryptionException {
+        try {
+            return ByteBuffer.wrap(Base64.getUrlDecoder().decode(keyId), 1, 4).getInt();
+        } catch (RuntimeException e) {
+            throw new EncryptionException("Key not found: " + keyId, e);
+        }
+    }
 }
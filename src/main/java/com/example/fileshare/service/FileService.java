@@ -1,17 +1,64 @@
 package com.example.fileshare.service;
 
+import com.example.fileshare.domain.AccessPermission;
 import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.FileSort;
+import com.example.fileshare.search.SearchMode;
+import com.example.fileshare.service.model.BatchResult;
+import com.example.fileshare.service.model.ContentLocation;
+import com.example.fileshare.service.model.FileContent;
+import com.example.fileshare.service.model.FilePage;
 import com.example.fileshare.service.model.FileRequest;
 import com.example.fileshare.service.model.FileResponse;
+import com.example.fileshare.service.model.StoredContent;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Set;
 
 public interface FileService {
     FileResponse saveFile(FileRequest fileRequest);
-    InputStream retrieveFile(String fileId, String userId);
-    FileResponse updateFile(String fileId, String userId, FileRequest fileRequest);
-    FileResponse deleteFile(String fileId, String userId);
+    /**
+     * Saves several files at once: their content is stored concurrently and their metadata made
+     * durable together. Either all of them are saved or, on failure, none is: files published
+     * before the failure are marked deleted again and their content is released.
+     */
+    List<FileResponse> saveFiles(List<FileRequest> fileRequests);
+    /**
+     * Writer for the content of a new file, to be published with
+     * {@link #saveFile(String, String, Set, StoredContent)}.
+     */
+    ContentWriter newContent();
+    FileResponse saveFile(String ownerId, String fileName, Set<String> tags, StoredContent content);
+    /**
+     * Publishes a file whose content has already been written through the {@link ChunkStore}.
+     */
+    FileResponse registerFile(File file, StoredContent content);
+    InputStream retrieveFile(Id fileId, String userId);
+    FileContent openFile(Id fileId, String userId);
+    ContentLocation locateFile(Id fileId, String userId);
+    FileResponse updateFile(Id fileId, String userId, FileRequest fileRequest);
+    /**
+     * Writer for the next version of a file the user owns, to be published with
+     * {@link #updateFile(Id, String, String, Set, StoredContent)}.
+     */
+    ContentWriter newVersion(Id fileId, String userId);
+    FileResponse updateFile(Id fileId, String userId, String fileName, Set<String> tags, StoredContent content);
+    FileResponse deleteFile(Id fileId, String userId);
+    /**
+     * Deletes every listed file the user owns, committing the deletions together. Files that
+     * cannot be deleted are reported in the result rather than failing the batch.
+     */
+    BatchResult deleteFiles(List<Id> fileIds, String userId);
+    /**
+     * Metadata of every listed file the user can read; the others are reported as failures.
+     */
+    BatchResult describeFiles(List<Id> fileIds, String userId);
     List<File> listFiles(String userId);
-    List<String> searchFiles(String query);
+    FilePage listFiles(String userId, FileSort sort, boolean descending, String cursor, int limit);
+    List<Id> searchFiles(String userId, String query, SearchMode mode, int maxEdits, int limit);
+    AccessPermission grantAccess(Id fileId, String ownerId, String granteeId, String permission);
+    AccessPermission revokeAccess(Id fileId, String ownerId, String granteeId);
+    AccessPermission getPermissions(Id fileId, String ownerId);
 }
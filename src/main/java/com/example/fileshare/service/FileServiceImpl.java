@@ -1,168 +1,579 @@
 package com.example.fileshare.service;
 
+import com.example.fileshare.domain.AccessPermission;
 import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.FileCursor;
+import com.example.fileshare.repository.FileSort;
+import com.example.fileshare.repository.MetadataRepository;
+import com.example.fileshare.search.SearchMode;
+import com.example.fileshare.service.model.BatchResult;
+import com.example.fileshare.service.model.ContentLocation;
+import com.example.fileshare.service.model.FileContent;
+import com.example.fileshare.service.model.FilePage;
 import com.example.fileshare.service.model.FileRequest;
 import com.example.fileshare.service.model.FileResponse;
+import com.example.fileshare.service.model.StoredContent;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class FileServiceImpl implements FileService {
 
-    private static final String DEFAULT_CHECKSUM = "N/A";
-    private static final String STORAGE_DIR = "storage";
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int DEFAULT_BATCH_WRITERS = 8;
 
-    private final Map<String, File> fileStore;
-    private final Path storageDir;
+    private final MetadataRepository metadataRepository;
+    private final SearchService searchService;
+    private final ChunkStore chunkStore;
+    private final EncryptionService encryptionService;
+    private final int batchWriters;
+    private final ContentCache contentCache;
 
-    public FileServiceImpl() {
-        this.fileStore = new HashMap<>();
-        this.storageDir = Paths.get(STORAGE_DIR);
-        try {
-            Files.createDirectories(storageDir);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialize storage directory", e);
+    public FileServiceImpl(MetadataRepository metadataRepository, SearchService searchService,
+                           ChunkStore chunkStore, EncryptionService encryptionService) {
+        this(metadataRepository, searchService, chunkStore, encryptionService, DEFAULT_BATCH_WRITERS);
+    }
+
+    public FileServiceImpl(MetadataRepository metadataRepository, SearchService searchService,
+                           ChunkStore chunkStore, EncryptionService encryptionService, int batchWriters) {
+        this(metadataRepository, searchService, chunkStore, encryptionService, batchWriters,
+                new ContentCacheImpl(0, 0, (Path) null, 0));
+    }
+
+    /**
+     * @param batchWriters  how many files of a batch upload are stored at the same time; each
+     *                      store ends in an fsync, so overlapping them hides most of the wait
+     * @param contentCache  plaintext of hot files, served instead of reading and decrypting
+     *                      storage on every download
+     */
+    @Autowired
+    public FileServiceImpl(MetadataRepository metadataRepository, SearchService searchService,
+                           ChunkStore chunkStore, EncryptionService encryptionService,
+                           @Value("${fileshare.batch.writers:8}") int batchWriters,
+                           ContentCache contentCache) {
+        if (batchWriters <= 0) {
+            throw new IllegalArgumentException("Invalid batchWriters=" + batchWriters);
+        }
+        this.metadataRepository = metadataRepository;
+        this.searchService = searchService;
+        this.chunkStore = chunkStore;
+        this.encryptionService = encryptionService;
+        this.batchWriters = batchWriters;
+        this.contentCache = contentCache;
+    }
+
+    /**
+     * Search entries and chunk references live in memory only, so they are rebuilt from the
+     * metadata that survived the restart before any request is served. Blobs left without a
+     * reference after that belong to no surviving file and are removed.
+     */
+    @PostConstruct
+    public void restore() {
+        for (File file : metadataRepository.findAllFiles()) {
+            if (file.getStatus() == File.Status.DELETED) {
+                continue;
+            }
+            searchService.indexFile(file);
+            metadataRepository.findPermissions(file.getId())
+                    .ifPresent(permission -> permission.getGrants().keySet()
+                            .forEach(userId -> searchService.grantAccess(file.getId(), userId)));
+            for (FileVersion version : metadataRepository.findVersions(file.getId())) {
+                chunkStore.retain(version.getChunks());
+            }
         }
+        chunkStore.removeUnreferenced();
     }
 
     @Override
     public FileResponse saveFile(FileRequest request) {
         try (InputStream input = request.getFileData()) {
-            File file = new File(
-                    request.getOwnerId(),
-                    request.getFileName(),
-                    request.getFileSize(),
-                    DEFAULT_CHECKSUM
-            );
-            String fileId = file.getId();
-
-            Path filePath = storageDir.resolve(fileId);
-            Files.copy(input, filePath, StandardCopyOption.REPLACE_EXISTING);
-
-            fileStore.put(fileId, file);
-            return toResponse(file);
+            // Upload, checksum and encryption happen in one pass as the content is chunked.
+            StoredContent content = chunkStore.write(input, encryptionService.generateKey(), null);
+            return publishFile(request.getOwnerId(), request.getFileName(), request.getTags(), content);
         } catch (Exception e) {
             throw new RuntimeException("Failed to save file", e);
         }
     }
 
     @Override
-    public InputStream retrieveFile(String fileId, String userId) {
+    public List<FileResponse> saveFiles(List<FileRequest> requests) {
+        checkBatchSize(requests.size());
+        StoredContent[] contents = new StoredContent[requests.size()];
+        File[] files = new File[requests.size()];
         try {
-            File file = fileStore.get(fileId);
-            if (file == null) {
-                throw new IllegalArgumentException("File not found: " + fileId);
+            storeAll(requests, contents);
+            // One metadata flush for the whole batch instead of two per file.
+            return metadataRepository.inBatch(() -> {
+                List<FileResponse> saved = new ArrayList<>(requests.size());
+                for (int i = 0; i < requests.size(); i++) {
+                    FileRequest request = requests.get(i);
+                    files[i] = new File(request.getOwnerId(), request.getFileName(), contents[i].getSize(),
+                            contents[i].getChecksum());
+                    files[i].setTags(request.getTags());
+                    saved.add(publish(files[i], contents[i]));
+                }
+                return saved;
+            });
+        } catch (Exception e) {
+            RuntimeException failure = new RuntimeException("Failed to save files", e);
+            try {
+                unpublish(files, contents);
+            } catch (Exception rollback) {
+                failure.addSuppressed(rollback);
             }
-            if (!file.getOwnerId().equals(userId)) {
-                throw new IllegalAccessException("Unauthorized: user " + userId + " has no access to " + fileId);
+            throw failure;
+        }
+    }
+
+    // Undoes a failed batch. Files that got as far as a version record are marked deleted, and
+    // their chunks are given back only once that is durable, as in deleteFiles; content that never
+    // got a version record is released right away.
+    private void unpublish(File[] files, StoredContent[] contents) {
+        List<FileVersion> released = new ArrayList<>();
+        metadataRepository.inBatch(() -> {
+            for (int i = 0; i < files.length; i++) {
+                List<FileVersion> versions = files[i] == null
+                        ? List.of() : metadataRepository.findVersions(files[i].getId());
+                if (versions.isEmpty()) {
+                    if (contents[i] != null) {
+                        chunkStore.release(contents[i].getChunks());
+                    }
+                    continue;
+                }
+                files[i].setStatus(File.Status.DELETED);
+                metadataRepository.saveFile(files[i]);
+                searchService.removeFile(files[i].getId());
+                released.addAll(versions);
             }
-            if (file.getStatus() == File.Status.DELETED) {
-                throw new IllegalArgumentException("File is deleted: " + fileId);
+            return null;
+        });
+        release(released);
+    }
+
+    // Stores the requests' content on up to batchWriters virtual threads; a failure stops the
+    // rest and is rethrown once every writer is done, leaving what was stored in contents.
+    private void storeAll(List<FileRequest> requests, StoredContent[] contents) throws Exception {
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<?>> writers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < Math.min(batchWriters, requests.size()); w++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < requests.size() && !failed.get(); i = next.getAndIncrement()) {
+                        try (InputStream input = requests.get(i).getFileData()) {
+                            contents[i] = chunkStore.write(input, encryptionService.generateKey(), null);
+                        } catch (Exception e) {
+                            failed.set(true);
+                            throw e;
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> writer : writers) {
+            try {
+                writer.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
             }
+        }
+    }
+
+    private static void checkBatchSize(int size) {
+        if (size < 1 || size > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+    }
+
+    @Override
+    public ContentWriter newContent() {
+        return chunkStore.writer(encryptionService.generateKey(), null);
+    }
+
+    @Override
+    public FileResponse saveFile(String ownerId, String fileName, Set<String> tags, StoredContent content) {
+        try {
+            return publishFile(ownerId, fileName, tags, content);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to save file", e);
+        }
+    }
 
-            Path filePath = storageDir.resolve(fileId);
-            if (!Files.exists(filePath)) {
-                throw new IllegalArgumentException("File data not found: " + fileId);
+    private FileResponse publishFile(String ownerId, String fileName, Set<String> tags, StoredContent content) {
+        File file = new File(ownerId, fileName, content.getSize(), content.getChecksum());
+        file.setTags(tags);
+        try {
+            return publish(file, content);
+        } catch (RuntimeException e) {
+            // Rolled back like a failed batch in saveFiles, so the chunks are not left behind.
+            try {
+                unpublish(new File[]{file}, new StoredContent[]{content});
+            } catch (RuntimeException rollback) {
+                e.addSuppressed(rollback);
             }
+            throw e;
+        }
+    }
 
-            return Files.newInputStream(filePath);
+    @Override
+    public FileResponse registerFile(File file, StoredContent content) {
+        file.setSize(content.getSize());
+        file.setChecksum(content.getChecksum());
+        return publish(file, content);
+    }
+
+    private FileResponse publish(File file, StoredContent content) {
+        file.setContentVersion(recordVersion(file.getId(), content).getVersion());
+        metadataRepository.saveFile(file);
+        searchService.indexFile(file);
+        return toResponse(file);
+    }
+
+    @Override
+    public InputStream retrieveFile(Id fileId, String userId) {
+        try {
+            File file = readableFile(fileId, userId);
+            return Channels.newInputStream(openContent(file, contentVersion(file)));
         } catch (Exception e) {
             throw new RuntimeException("Failed to retrieve file", e);
         }
     }
 
     @Override
-    public FileResponse updateFile(String fileId, String userId, FileRequest request) {
-        try (InputStream input = request.getFileData()) {
-            File file = fileStore.get(fileId);
-            if (file == null) {
-                throw new IllegalArgumentException("File not found: " + fileId);
-            }
-            if (!file.getOwnerId().equals(userId)) {
-                throw new IllegalAccessException("Unauthorized: user " + userId);
-            }
-            if (file.getStatus() == File.Status.DELETED) {
-                throw new IllegalArgumentException("File is deleted: " + fileId);
-            }
+    public FileContent openFile(Id fileId, String userId) {
+        try {
+            File file = readableFile(fileId, userId);
+            FileVersion version = contentVersion(file);
+            // Encrypted blobs cannot be sent as they are; their plaintext only exists in the channel.
+            Path localPath = version.getKeyId() == null ? chunkStore.localPath(version.getChunks()) : null;
+            // A single plain blob goes out through transferTo from the page cache, which a copy out
+            // of the content cache would only slow down.
+            SeekableByteChannel channel = localPath != null
+                    ? chunkStore.open(version.getChunks(), null)
+                    : openContent(file, version);
+            return new FileContent(file, channel, localPath, channel.size());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to retrieve file", e);
+        }
+    }
 
-            Path filePath = storageDir.resolve(fileId);
-            Files.copy(input, filePath, StandardCopyOption.REPLACE_EXISTING);
+    private SeekableByteChannel openContent(File file, FileVersion version) throws IOException {
+        SeekableByteChannel cached = contentCache.open(file.getId(), version.getVersion(), file.getSize(),
+                () -> chunkStore.open(version.getChunks(), version.getKeyId()));
+        return cached != null ? cached : chunkStore.open(version.getChunks(), version.getKeyId());
+    }
 
-            file.setName(request.getFileName());
-            file.setSize(request.getFileSize());
-            file.setChecksum(DEFAULT_CHECKSUM);
+    @Override
+    public ContentLocation locateFile(Id fileId, String userId) {
+        try {
+            File file = readableFile(fileId, userId);
+            FileVersion version = contentVersion(file);
+            return new ContentLocation(file, version.getChunks(), version.getKeyId());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to retrieve file", e);
+        }
+    }
+
+    private File readableFile(Id fileId, String userId) throws IllegalAccessException {
+        File file = metadataRepository.findFile(fileId)
+                .orElseThrow(() -> new IllegalArgumentException("File not found: " + fileId));
+        if (!file.getOwnerId().equals(userId) && !isGrantee(fileId, userId)) {
+            throw new IllegalAccessException("Unauthorized: user " + userId + " has no access to " + fileId);
+        }
+        if (file.getStatus() == File.Status.DELETED) {
+            throw new IllegalArgumentException("File is deleted: " + fileId);
+        }
+        return file;
+    }
+
+    private FileVersion contentVersion(File file) {
+        return metadataRepository.findVersion(file.getId(), file.getContentVersion())
+                .orElseThrow(() -> new IllegalArgumentException("File data not found: " + file.getId()));
+    }
+
+    private boolean isGrantee(Id fileId, String userId) {
+        return metadataRepository.findPermissions(fileId)
+                .map(permission -> permission.hasAccess(userId))
+                .orElse(false);
+    }
 
-            return toResponse(file);
+    private File ownedFile(Id fileId, String userId) throws IllegalAccessException {
+        File file = metadataRepository.findFile(fileId)
+                .orElseThrow(() -> new IllegalArgumentException("File not found: " + fileId));
+        if (!file.getOwnerId().equals(userId)) {
+            throw new IllegalAccessException("Unauthorized: user " + userId);
+        }
+        if (file.getStatus() == File.Status.DELETED) {
+            throw new IllegalArgumentException("File is deleted: " + fileId);
+        }
+        return file;
+    }
+
+    @Override
+    public FileResponse updateFile(Id fileId, String userId, FileRequest request) {
+        try (InputStream input = request.getFileData()) {
+            FileVersion current = contentVersion(ownedFile(fileId, userId));
+            // Only chunks that differ from what is already stored are written; earlier versions
+            // keep referencing their own chunks. Writing under the current version's key and IV
+            // keeps unchanged chunks identical, so they are shared rather than re-encrypted.
+            StoredContent content = current.getKeyId() == null
+                    ? chunkStore.write(input, encryptionService.generateKey(), null)
+                    : chunkStore.write(input, current.getKeyId(), current.getIv());
+            return publishVersion(fileId, request.getFileName(), request.getTags(), content);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to update file", e);
+        }
+    }
+
+    @Override
+    public ContentWriter newVersion(Id fileId, String userId) {
+        try {
+            // Same key and IV as in updateFile(Id, String, FileRequest), so unchanged chunks are shared.
+            FileVersion current = contentVersion(ownedFile(fileId, userId));
+            return current.getKeyId() == null
+                    ? chunkStore.writer(encryptionService.generateKey(), null)
+                    : chunkStore.writer(current.getKeyId(), current.getIv());
         } catch (Exception e) {
             throw new RuntimeException("Failed to update file", e);
         }
     }
 
     @Override
-    public FileResponse deleteFile(String fileId, String userId) {
+    public FileResponse updateFile(Id fileId, String userId, String fileName, Set<String> tags,
+                                   StoredContent content) {
         try {
-            File file = fileStore.get(fileId);
-            if (file == null) {
-                throw new IllegalArgumentException("File not found: " + fileId);
+            try {
+                ownedFile(fileId, userId);
+            } catch (Exception e) {
+                chunkStore.release(content.getChunks());
+                throw e;
             }
-            
-            if (!file.getOwnerId().equals(userId)) {
-                throw new IllegalAccessException("Unauthorized: user " + userId);
+            return publishVersion(fileId, fileName, tags, content);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to update file", e);
+        }
+    }
+
+    // The checks made before the content was written may be stale by now. The version is only
+    // added while the file is live; once added, a delete releases it with the file's others.
+    private FileResponse publishVersion(Id fileId, String fileName, Set<String> tags, StoredContent content) {
+        FileVersion version;
+        try {
+            version = metadataRepository.addLiveVersion(newVersion(fileId, content))
+                    .orElseThrow(() -> new IllegalArgumentException("File is deleted: " + fileId));
+        } catch (RuntimeException e) {
+            // No version holds the chunks, so nothing else would ever give them back.
+            chunkStore.release(content.getChunks());
+            throw e;
+        }
+        boolean[] deleted = new boolean[1];
+        File updated = metadataRepository.updateFile(fileId, existing -> {
+            if (existing.getStatus() == File.Status.DELETED) {
+                deleted[0] = true;
+                return;
+            }
+            existing.setName(fileName);
+            existing.setSize(content.getSize());
+            existing.setChecksum(content.getChecksum());
+            existing.setContentVersion(version.getVersion());
+            existing.setUpdatedAt(LocalDateTime.now());
+            if (tags != null) {
+                existing.setTags(tags);
             }
-            
-            file.setStatus(File.Status.DELETED);
-            
-            Path filePath = storageDir.resolve(fileId);
-            Files.deleteIfExists(filePath);
+        }).orElseThrow(() -> new IllegalArgumentException("File not found: " + fileId));
+        if (deleted[0]) {
+            throw new IllegalArgumentException("File is deleted: " + fileId);
+        }
+        contentCache.invalidate(fileId);
+        searchService.indexFile(updated);
+        return toResponse(updated);
+    }
 
-            return toResponse(file);
+    @Override
+    public FileResponse deleteFile(Id fileId, String userId) {
+        try {
+            List<FileVersion> released = new ArrayList<>();
+            File deleted = markDeleted(fileId, userId, released);
+            release(released);
+            return toResponse(deleted);
         } catch (Exception e) {
             throw new RuntimeException("Failed to delete file", e);
         }
     }
 
     @Override
-    public List<File> listFiles(String userId) {
-        List<File> userFiles = new ArrayList<>();
-        
-        for (File file : fileStore.values()) {
-            if (file.getOwnerId().equals(userId) && file.getStatus() != File.Status.DELETED) {
-                userFiles.add(file);
+    public BatchResult deleteFiles(List<Id> fileIds, String userId) {
+        checkBatchSize(fileIds.size());
+        List<FileVersion> released = new ArrayList<>();
+        BatchResult result = metadataRepository.inBatch(() -> {
+            BatchResult deleted = new BatchResult();
+            for (Id fileId : fileIds) {
+                try {
+                    deleted.getFiles().add(toResponse(markDeleted(fileId, userId, released)));
+                } catch (Exception e) {
+                    deleted.getFailures().put(fileId.toString(), e.getMessage());
+                }
+            }
+            return deleted;
+        });
+        // Only now that the deletions are durable; a crash before must not leave a live file
+        // whose chunks are gone.
+        release(released);
+        return result;
+    }
+
+    // Adds the versions whose chunks the caller has to release to released, unless the file was
+    // deleted already.
+    private File markDeleted(Id fileId, String userId, List<FileVersion> released) throws IllegalAccessException {
+        File file = metadataRepository.findFile(fileId)
+                .orElseThrow(() -> new IllegalArgumentException("File not found: " + fileId));
+
+        if (!file.getOwnerId().equals(userId)) {
+            throw new IllegalAccessException("Unauthorized: user " + userId);
+        }
+
+        boolean[] alreadyDeleted = new boolean[1];
+        File deleted = metadataRepository.updateFile(fileId, current -> {
+            alreadyDeleted[0] = current.getStatus() == File.Status.DELETED;
+            current.setStatus(File.Status.DELETED);
+        }).orElseThrow(() -> new IllegalArgumentException("File not found: " + fileId));
+
+        searchService.removeFile(fileId);
+        contentCache.invalidate(fileId);
+        if (!alreadyDeleted[0]) {
+            released.addAll(metadataRepository.findVersions(fileId));
+        }
+        return deleted;
+    }
+
+    // Chunks may be shared with other files, so each version only gives back its references.
+    private void release(List<FileVersion> versions) {
+        for (FileVersion version : versions) {
+            chunkStore.release(version.getChunks());
+        }
+    }
+
+    @Override
+    public BatchResult describeFiles(List<Id> fileIds, String userId) {
+        checkBatchSize(fileIds.size());
+        BatchResult result = new BatchResult();
+        for (Id fileId : fileIds) {
+            try {
+                result.getFiles().add(toResponse(readableFile(fileId, userId)));
+            } catch (Exception e) {
+                result.getFailures().put(fileId.toString(), e.getMessage());
             }
         }
-        
-        return userFiles;
+        return result;
+    }
+
+    @Override
+    public List<File> listFiles(String userId) {
+        return metadataRepository.findFilesForUser(userId);
+    }
+
+    @Override
+    public FilePage listFiles(String userId, FileSort sort, boolean descending, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        File after = cursor == null || cursor.isEmpty() ? null : FileCursor.decode(cursor);
+        // Fetch one extra file to learn whether another page exists.
+        List<File> files = metadataRepository.findFilesForUser(userId, sort, descending, after, limit + 1);
+        if (files.size() <= limit) {
+            return new FilePage(files, null);
+        }
+        List<File> page = files.subList(0, limit);
+        return new FilePage(page, FileCursor.encode(page.get(limit - 1)));
     }
-    
+
     @Override
-    public List<String> searchFiles(String query) {
-        List<String> results = new ArrayList<>();
-        String queryLower = query.toLowerCase();
+    public List<Id> searchFiles(String userId, String query, SearchMode mode, int maxEdits, int limit) {
+        return searchService.search(userId, query, mode, maxEdits, limit);
+    }
 
-        for (Map.Entry<String, File> entry : fileStore.entrySet()) {
-            File file = entry.getValue();
-            if (file.getStatus() != File.Status.DELETED
-                    && file.getName() != null
-                    && file.getName().toLowerCase().contains(queryLower)) {
-                results.add(entry.getKey());
+    @Override
+    public AccessPermission grantAccess(Id fileId, String ownerId, String granteeId, String permission) {
+        try {
+            ownedFile(fileId, ownerId);
+            if (ownerId.equals(granteeId)) {
+                throw new IllegalArgumentException("Owner already has access to " + fileId);
             }
+            AccessPermission granted = metadataRepository.grantAccess(fileId, granteeId, permission)
+                    .orElseThrow(() -> new IllegalArgumentException("File not found: " + fileId));
+            searchService.grantAccess(fileId, granteeId);
+            return granted;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to grant access", e);
         }
+    }
 
-        return results;
+    @Override
+    public AccessPermission revokeAccess(Id fileId, String ownerId, String granteeId) {
+        try {
+            ownedFile(fileId, ownerId);
+            AccessPermission remaining = metadataRepository.revokeAccess(fileId, granteeId)
+                    .orElseThrow(() -> new IllegalArgumentException("File not found: " + fileId));
+            searchService.revokeAccess(fileId, granteeId);
+            return remaining;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to revoke access", e);
+        }
+    }
+
+    @Override
+    public AccessPermission getPermissions(Id fileId, String ownerId) {
+        try {
+            ownedFile(fileId, ownerId);
+            return metadataRepository.findPermissions(fileId).orElseGet(() -> new AccessPermission(fileId));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to read permissions", e);
+        }
+    }
+
+    private FileVersion recordVersion(Id fileId, StoredContent content) {
+        return metadataRepository.addVersion(newVersion(fileId, content));
+    }
+
+    private static FileVersion newVersion(Id fileId, StoredContent content) {
+        FileVersion version = new FileVersion(
+                fileId,
+                0,
+                null,
+                content.getKeyId(),
+                content.getIv(),
+                content.getChecksum()
+        );
+        version.setCipherSuite(content.getCipherSuite());
+        version.setChunks(content.getChunks());
+        return version;
     }
 
     private FileResponse toResponse(File file) {
         return new FileResponse(
-                file.getId(),
+                file.getId().toString(),
                 file.getName(),
                 file.getOwnerId(),
                 file.getSize(),
@@ -0,0 +1,77 @@
+package com.example.fileshare.service;
+
+/**
+ * Approximate access counts for admission decisions: a count-min sketch of 4-bit counters, sixteen
+ * to a {@code long}, read as the minimum over four rows. Counts saturate at 15 and are all halved
+ * once the sketch has seen ten increments per slot, so old popularity fades and newly hot keys can
+ * overtake it.
+ *
+ * <p>Not thread-safe; the owner serializes access.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long HALVE_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+    private static final int MIN_SLOTS = 64;
+
+    private final long[] table;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param expectedKeys roughly how many distinct keys can be cached at once
+     */
+    FrequencySketch(int expectedKeys) {
+        int slots = Math.max(MIN_SLOTS, Integer.highestOneBit(Math.max(1, expectedKeys) - 1) << 1);
+        this.table = new long[slots];
+        this.sampleSize = 10 * slots;
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long mixed = mix(hash, row);
+            frequency = Math.min(frequency, (int) (table[slot(mixed)] >>> shift(mixed)) & MAX_COUNT);
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            long mixed = mix(hash, row);
+            int slot = slot(mixed);
+            int shift = shift(mixed);
+            if (((table[slot] >>> shift) & MAX_COUNT) != MAX_COUNT) {
+                table[slot] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            halve();
+        }
+    }
+
+    private void halve() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALVE_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private long mix(int hash, int row) {
+        long mixed = (hash + SEEDS[row]) * SEEDS[row];
+        return mixed ^ (mixed >>> 29);
+    }
+
+    private int slot(long mixed) {
+        return (int) (mixed >>> 32) & (table.length - 1);
+    }
+
+    // Which of the sixteen counters in the slot, as a bit offset.
+    private static int shift(long mixed) {
+        return ((int) mixed & 15) << 2;
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileChunk;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.MetadataRepository;
+import com.example.fileshare.service.model.ScrubReport;
+import com.example.fileshare.storage.IoRateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Background re-verification of stored blobs. Each pass walks every chunk referenced by a live
+ * file version, re-reads its blob once and compares the CRC32C recorded at ingest, so silent
+ * corruption is found before a download trips over it. Reads go through an
+ * {@link IoRateLimiter} so a pass cannot starve foreground traffic of disk bandwidth; a pass over
+ * a large store simply takes longer.
+ */
+@Service
+public class IntegrityScrubber {
+
+    private static final Logger log = LoggerFactory.getLogger(IntegrityScrubber.class);
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final MetadataRepository metadataRepository;
+    private final StorageService storageService;
+    private final long bytesPerSecond;
+    private final long intervalMinutes;
+    // Null until started, and when the schedule is disabled.
+    private ScheduledExecutorService scheduler;
+    private volatile ScrubReport lastReport;
+
+    /**
+     * @param bytesPerSecond  read rate limit for a pass; zero or less means unlimited
+     * @param intervalMinutes time between the end of one pass and the start of the next; zero or
+     *                        less disables the schedule so passes only run through {@link #scrub()}
+     */
+    public IntegrityScrubber(MetadataRepository metadataRepository, StorageService storageService,
+                             @Value("${fileshare.scrub.bytes-per-second:33554432}") long bytesPerSecond,
+                             @Value("${fileshare.scrub.interval-minutes:1440}") long intervalMinutes) {
+        this.metadataRepository = metadataRepository;
+        this.storageService = storageService;
+        this.bytesPerSecond = bytesPerSecond;
+        this.intervalMinutes = intervalMinutes;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (intervalMinutes <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "integrity-scrubber");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::scheduledScrub, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Runs one full pass on the calling thread.
+     */
+    public ScrubReport scrub() throws InterruptedException {
+        LocalDateTime startedAt = LocalDateTime.now();
+        IoRateLimiter limiter = new IoRateLimiter(bytesPerSecond);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        CRC32C crc = new CRC32C();
+        // Chunks are shared between versions and files; each blob is read once per pass.
+        Set<String> seen = new HashSet<>();
+        List<String> corrupt = new ArrayList<>();
+        long blobs = 0;
+        long bytes = 0;
+        for (File file : metadataRepository.findAllFiles()) {
+            if (file.getStatus() == File.Status.DELETED) {
+                continue;
+            }
+            for (FileVersion version : metadataRepository.findVersions(file.getId())) {
+                for (FileChunk chunk : version.getChunks()) {
+                    if (!seen.add(chunk.getKey())) {
+                        continue;
+                    }
+                    long read = verify(chunk, limiter, buffer, crc);
+                    if (read < 0 && isDeleted(file.getId())) {
+                        // Deleted during the pass; its chunks may have been released.
+                        continue;
+                    }
+                    if (read < 0) {
+                        corrupt.add(chunk.getKey());
+                        log.error("Blob {} of file {} version {} is missing or failed its CRC32C check",
+                                chunk.getKey(), file.getId(), version.getVersion());
+                    } else {
+                        bytes += read;
+                    }
+                    blobs++;
+                }
+            }
+        }
+        ScrubReport report = new ScrubReport(startedAt, LocalDateTime.now(), blobs, bytes, corrupt);
+        lastReport = report;
+        return report;
+    }
+
+    /**
+     * The most recent completed pass, or {@code null} before the first one.
+     */
+    public ScrubReport getLastReport() {
+        return lastReport;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // Bytes read, or -1 when the blob is missing, unreadable or does not match.
+    private long verify(FileChunk chunk, IoRateLimiter limiter, ByteBuffer buffer, CRC32C crc)
+            throws InterruptedException {
+        crc.reset();
+        long total = 0;
+        try (SeekableByteChannel channel = storageService.open(chunk.getKey())) {
+            while (true) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                limiter.acquire(read);
+                buffer.flip();
+                crc.update(buffer);
+                total += read;
+            }
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            return -1;
+        }
+        return crc.getValue() == chunk.getCrc32c() ? total : -1;
+    }
+
+    private boolean isDeleted(Id fileId) {
+        return metadataRepository.findFile(fileId)
+                .map(file -> file.getStatus() == File.Status.DELETED)
+                .orElse(true);
+    }
+
+    private void scheduledScrub() {
+        try {
+            ScrubReport report = scrub();
+            log.info("Integrity scrub checked {} blobs ({} bytes), {} corrupt",
+                    report.getBlobsChecked(), report.getBytesChecked(), report.getCorruptKeys().size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // A failed pass must not cancel the schedule.
+            log.error("Integrity scrub failed", e);
+        }
+    }
+}
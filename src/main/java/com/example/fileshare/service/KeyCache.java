@@ -0,0 +1,66 @@
+package com.example.fileshare.service;
+
+import javax.crypto.SecretKey;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Bounded cache of unwrapped data keys. A hit is a plain {@link ConcurrentHashMap#get} and an
+ * expiry check, with no locking or bookkeeping, so the encrypt and decrypt paths do not contend
+ * on it. Entries expire a fixed time after they were loaded, and when the cache is full the
+ * oldest loads are evicted first.
+ */
+final class KeyCache {
+
+    private record Entry(SecretKey key, long expiresAtNanos) {
+    }
+
+    private final ConcurrentHashMap<String, Entry> entries;
+    // Load order for size eviction, one id per entry: ids leave it when their entry expires or is
+    // evicted, so a reload never leaves a stale copy behind to evict the fresh entry early.
+    private final ConcurrentLinkedQueue<String> loadOrder;
+    private final int maxSize;
+    private final long ttlNanos;
+
+    KeyCache(int maxSize, long ttlNanos) {
+        if (maxSize <= 0 || ttlNanos <= 0) {
+            throw new IllegalArgumentException("Invalid maxSize=" + maxSize + ", ttlNanos=" + ttlNanos);
+        }
+        this.entries = new ConcurrentHashMap<>();
+        this.loadOrder = new ConcurrentLinkedQueue<>();
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlNanos;
+    }
+
+    SecretKey get(String keyId) {
+        Entry entry = entries.get(keyId);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAtNanos() > 0) {
+            if (entries.remove(keyId, entry)) {
+                // Linear in the cache size, but at most once per load of a key.
+                loadOrder.remove(keyId);
+            }
+            return null;
+        }
+        return entry.key();
+    }
+
+    void put(String keyId, SecretKey key) {
+        if (entries.put(keyId, new Entry(key, System.nanoTime() + ttlNanos)) == null) {
+            loadOrder.add(keyId);
+        }
+        while (entries.size() > maxSize) {
+            String oldest = loadOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            entries.remove(oldest);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.repository.MetadataRepository;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Master key rotation. Data keys are stored wrapped on each {@link FileVersion}, so rotating
+ * the master key re-wraps those few dozen bytes per version and leaves the stored content alone.
+ * Rotations never overlap a re-encryption job; see {@link ReencryptionService#exclusiveOfJobs}.
+ */
+@Service
+public class KeyRotationService {
+
+    private final MetadataRepository metadataRepository;
+    private final EncryptionService encryptionService;
+    private final ReencryptionService reencryptionService;
+
+    public KeyRotationService(MetadataRepository metadataRepository, EncryptionService encryptionService,
+                              ReencryptionService reencryptionService) {
+        this.metadataRepository = metadataRepository;
+        this.encryptionService = encryptionService;
+        this.reencryptionService = reencryptionService;
+    }
+
+    /**
+     * Makes a new master key current and re-wraps every stored data key with it. Returns the
+     * number of versions updated. Refused with an {@link IllegalStateException} while a
+     * re-encryption job is running.
+     */
+    public int rotateMasterKey() {
+        return reencryptionService.exclusiveOfJobs(() -> {
+            try {
+                encryptionService.rotateMasterKey();
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to rotate master key", e);
+            }
+            return rewrap();
+        });
+    }
+
+    /**
+     * Re-wraps data keys that are not yet under the current master key. A version written with
+     * an old wrapped id while this runs is picked up by the next call; the old master key stays
+     * available until then. Refused like {@link #rotateMasterKey} while a job is running.
+     */
+    public int rewrapKeys() {
+        return reencryptionService.exclusiveOfJobs(this::rewrap);
+    }
+
+    private int rewrap() {
+        try {
+            // Versions of a file share one data key; wrap each key once per pass.
+            Map<String, String> rewrapped = new HashMap<>();
+            int updated = 0;
+            for (File file : metadataRepository.findAllFiles()) {
+                for (FileVersion version : metadataRepository.findVersions(file.getId())) {
+                    String keyId = version.getKeyId();
+                    if (keyId == null) {
+                        continue;
+                    }
+                    String current = rewrapped.get(keyId);
+                    if (current == null) {
+                        current = encryptionService.rewrapKey(keyId);
+                        rewrapped.put(keyId, current);
+                    }
+                    if (current.equals(keyId)) {
+                        continue;
+                    }
+                    String next = current;
+                    boolean[] changed = new boolean[1];
+                    metadataRepository.updateVersion(file.getId(), version.getVersion(), stored -> {
+                        // Only replace the id this pass read; anything else is a newer write.
+                        if (keyId.equals(stored.getKeyId())) {
+                            stored.setKeyId(next);
+                            changed[0] = true;
+                        }
+                    });
+                    if (changed[0]) {
+                        updated++;
+                    }
+                }
+            }
+            return updated;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to re-wrap keys", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.fileshare.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Recent request latencies of live traffic, so background jobs can back off when they start to
+ * hurt it. Samples go into a fixed ring without locking; percentiles are computed on demand from
+ * the samples of the last few seconds, which is cheap enough for a caller polling a few times a
+ * second.
+ */
+@Service
+public class LatencyMonitor {
+
+    private static final int CAPACITY = 4096;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AtomicLongArray durations = new AtomicLongArray(CAPACITY);
+    private final AtomicLongArray recordedAt = new AtomicLongArray(CAPACITY);
+    private final AtomicLong next = new AtomicLong();
+
+    public void record(long durationNanos) {
+        int slot = (int) (next.getAndIncrement() % CAPACITY);
+        durations.set(slot, durationNanos);
+        recordedAt.set(slot, System.nanoTime());
+    }
+
+    /**
+     * The {@code percentile} (0-100) of latencies recorded in the last ten seconds, in
+     * milliseconds, or 0 when there were none.
+     */
+    public long percentileMillis(double percentile) {
+        long now = System.nanoTime();
+        long[] recent = new long[CAPACITY];
+        int count = 0;
+        for (int slot = 0; slot < CAPACITY; slot++) {
+            long at = recordedAt.get(slot);
+            if (at != 0 && now - at <= WINDOW_NANOS) {
+                recent[count++] = durations.get(slot);
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        Arrays.sort(recent, 0, count);
+        int index = (int) Math.min(count - 1, Math.ceil(percentile / 100 * count) - 1);
+        return TimeUnit.NANOSECONDS.toMillis(recent[Math.max(0, index)]);
+    }
+}
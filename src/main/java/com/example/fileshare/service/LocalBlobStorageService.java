@@ -0,0 +1,429 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.service.model.StoredBlob;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Content-addressed blobs on the local filesystem. The key is the SHA-256 of the content, and a
+ * blob lives at {@code blobs/ab/cd/abcd...}: two levels of 256-way fan-out keep every directory
+ * small, where one flat directory with millions of entries makes each lookup and create slow.
+ *
+ * <p>Content is streamed to a temp file while it is hashed, flushed, and then renamed into place,
+ * so a blob is either absent or complete; the rename is fsynced through the directory that holds
+ * it, and through the parents of fan-out directories this process has not synced yet, before the
+ * key is handed out. Storing content that is already present just discards the temp file. Reference counts are kept in memory next to the metadata that holds the keys;
+ * publishing and removing a blob both run under the stripe lock of its key, so a blob cannot be
+ * deleted between another writer finding it and taking its reference. The stripe is a plain lock
+ * rather than a map entry's, since the disk work done under it would otherwise hold up every
+ * other key of the entry's bin. A crash between storing a blob and recording it in the metadata
+ * leaves it without references; {@link #removeUnreferenced} clears such blobs once the references
+ * have been rebuilt at startup.
+ *
+ * <p>With {@code fileshare.storage.small-blob-bytes} above 0, blobs up to that size are packed
+ * into the append-only files of {@link BlobSegments} under {@code segments/} instead, which saves
+ * an inode, a create and an fsync per blob and lets concurrent stores share fsyncs. Such blobs
+ * have no path of their own. Blobs stored whole before packing was enabled stay where they are.
+ */
+@Service
+public class LocalBlobStorageService implements StorageService {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalBlobStorageService.class);
+    private static final String STORAGE_DIR = "storage";
+    private static final String BLOBS_DIR = "blobs";
+    private static final String TEMP_DIR = "tmp";
+    private static final String SEGMENTS_DIR = "segments";
+    private static final long DEFAULT_SEGMENT_BYTES = 128L * 1024 * 1024;
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int KEY_LENGTH = 64;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int KEY_STRIPES = 64;
+
+    private final Path blobsDir;
+    private final Path tempDir;
+    // Changed only under the key's stripe lock.
+    private final ConcurrentHashMap<String, Integer> references;
+    private final ReentrantLock[] keyLocks = new ReentrantLock[KEY_STRIPES];
+    // Key prefixes of the fan-out directories whose entries in their parent have been fsynced.
+    private final Set<String> syncedDirs = ConcurrentHashMap.newKeySet();
+    // Null when every blob is stored whole.
+    private final BlobSegments segments;
+    private final int smallBlobBytes;
+
+    public LocalBlobStorageService() {
+        this(Paths.get(STORAGE_DIR));
+    }
+
+    /**
+     * @param smallBlobBytes largest blob packed into a segment file; 0 stores every blob whole
+     * @param segmentBytes   size after which packing moves on to a new segment file
+     */
+    @Autowired
+    public LocalBlobStorageService(@Value("${fileshare.storage.small-blob-bytes:65536}") int smallBlobBytes,
+                                   @Value("${fileshare.storage.segment-bytes:134217728}") long segmentBytes) {
+        this(Paths.get(STORAGE_DIR), smallBlobBytes, segmentBytes);
+    }
+
+    LocalBlobStorageService(Path root) {
+        this(root, 0, DEFAULT_SEGMENT_BYTES);
+    }
+
+    LocalBlobStorageService(Path root, int smallBlobBytes, long segmentBytes) {
+        if (smallBlobBytes < 0) {
+            throw new IllegalArgumentException("Invalid smallBlobBytes=" + smallBlobBytes);
+        }
+        this.smallBlobBytes = smallBlobBytes;
+        this.blobsDir = root.resolve(BLOBS_DIR);
+        this.tempDir = root.resolve(TEMP_DIR);
+        this.references = new ConcurrentHashMap<>();
+        for (int i = 0; i < KEY_STRIPES; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+        try {
+            Files.createDirectories(blobsDir);
+            Files.createDirectories(tempDir);
+            // Leftovers from writes interrupted by a crash were never published.
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(tempDir)) {
+                for (Path leftover : leftovers) {
+                    Files.deleteIfExists(leftover);
+                }
+            }
+            this.segments = smallBlobBytes > 0 ? BlobSegments.open(root.resolve(SEGMENTS_DIR), segmentBytes) : null;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialize blob storage", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (segments != null) {
+            try {
+                segments.close();
+            } catch (IOException e) {
+                log.warn("Failed to close blob segments", e);
+            }
+        }
+    }
+
+    @Override
+    public StoredBlob store(ReadableByteChannel source) {
+        if (segments == null) {
+            return storeWhole(null, source);
+        }
+        // One byte more than a small blob tells whether the content fits.
+        ByteBuffer head = ByteBuffer.allocate(smallBlobBytes + 1);
+        try {
+            while (head.hasRemaining()) {
+                if (source.read(head) == -1) {
+                    return storePacked(head.array(), head.position());
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store blob", e);
+        }
+        return storeWhole(head.flip(), source);
+    }
+
+    private StoredBlob storePacked(byte[] data, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            digest.update(data, 0, length);
+            String key = HexFormat.of().formatHex(digest.digest());
+            CRC32C crc = new CRC32C();
+            crc.update(data, 0, length);
+            ReentrantLock keyLock = keyLock(key);
+            keyLock.lock();
+            try {
+                Integer count = references.get(key);
+                if (count == null && !Files.exists(blobPath(key))) {
+                    segments.add(key, data, length, (int) crc.getValue());
+                }
+                references.put(key, count == null ? 1 : count + 1);
+            } finally {
+                keyLock.unlock();
+            }
+            // Outside the lock, so stores of other blobs can join the same fsync.
+            try {
+                syncPacked(key);
+            } catch (IOException | RuntimeException e) {
+                // The caller never gets the key to release, so the reference is given back here.
+                try {
+                    delete(key);
+                } catch (RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            return new StoredBlob(key, length);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to store blob", e);
+        }
+    }
+
+    // Also needed when a packed blob is merely retained: the store that added it may still be
+    // waiting for its fsync.
+    private void syncPacked(String key) throws IOException {
+        BlobSegments.Location location = segments.find(key);
+        if (location != null) {
+            segments.sync(location);
+        }
+    }
+
+    // Streams the content to a temp file, starting with head when part of it was read already.
+    private StoredBlob storeWhole(ByteBuffer head, ReadableByteChannel source) {
+        Path temp = tempDir.resolve(UUID.randomUUID().toString());
+        try {
+            MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            long size = 0;
+            try (FileChannel output = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                if (head != null) {
+                    size += write(head, digest, output);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    size += write(buffer, digest, output);
+                    buffer.clear();
+                }
+                output.force(false);
+            }
+            return publish(temp, HexFormat.of().formatHex(digest.digest()), size);
+        } catch (Exception e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("Failed to store blob", e);
+        }
+    }
+
+    private static long write(ByteBuffer buffer, MessageDigest digest, FileChannel output) throws IOException {
+        digest.update(buffer.array(), buffer.position(), buffer.remaining());
+        long length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            output.write(buffer);
+        }
+        return length;
+    }
+
+    @Override
+    public ReadableByteChannel retrieve(String key) {
+        return open(key);
+    }
+
+    @Override
+    public SeekableByteChannel open(String key) {
+        Path path = blobPath(key);
+        SeekableByteChannel packed = segments == null ? null : segments.open(key);
+        if (packed != null) {
+            return packed;
+        }
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("Blob not found: " + key);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open blob " + key, e);
+        }
+    }
+
+    @Override
+    public Path localPath(String key) {
+        Path path = blobPath(key);
+        return isPacked(key) ? null : path;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        Path path = blobPath(key);
+        return isPacked(key) || Files.exists(path);
+    }
+
+    @Override
+    public boolean retain(String key) {
+        Path path = blobPath(key);
+        ReentrantLock keyLock = keyLock(key);
+        keyLock.lock();
+        try {
+            if (!isPacked(key) && !Files.exists(path)) {
+                return false;
+            }
+            references.merge(key, 1, Integer::sum);
+        } finally {
+            keyLock.unlock();
+        }
+        if (segments != null) {
+            try {
+                syncPacked(key);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to retain blob " + key, e);
+            }
+        }
+        return true;
+    }
+
+    private boolean isPacked(String key) {
+        return segments != null && segments.find(key) != null;
+    }
+
+    @Override
+    public void delete(String key) {
+        Path path = blobPath(key);
+        ReentrantLock keyLock = keyLock(key);
+        keyLock.lock();
+        try {
+            Integer count = references.get(key);
+            if (count != null && count > 1) {
+                references.put(key, count - 1);
+                return;
+            }
+            if (segments == null || !segments.delete(key)) {
+                Files.deleteIfExists(path);
+            }
+            references.remove(key);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to delete blob " + key, e);
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    @Override
+    public int removeUnreferenced() {
+        int removed = 0;
+        try {
+            List<String> keys;
+            try (Stream<Path> paths = Files.walk(blobsDir, 3)) {
+                keys = paths.filter(Files::isRegularFile)
+                        .map(path -> path.getFileName().toString())
+                        .filter(LocalBlobStorageService::isKey)
+                        .toList();
+            }
+            for (String key : keys) {
+                if (removeIfUnreferenced(key, false)) {
+                    removed++;
+                }
+            }
+            if (segments != null) {
+                for (String key : segments.keys()) {
+                    if (removeIfUnreferenced(key, true)) {
+                        removed++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove unreferenced blobs", e);
+        }
+        if (removed > 0) {
+            log.info("Removed {} unreferenced blobs", removed);
+        }
+        return removed;
+    }
+
+    private boolean removeIfUnreferenced(String key, boolean packed) throws IOException {
+        ReentrantLock keyLock = keyLock(key);
+        keyLock.lock();
+        try {
+            if (references.containsKey(key)) {
+                return false;
+            }
+            return packed ? segments.delete(key) : Files.deleteIfExists(blobPath(key));
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    private StoredBlob publish(Path temp, String key, long size) {
+        Path target = blobPath(key);
+        ReentrantLock keyLock = keyLock(key);
+        keyLock.lock();
+        try {
+            if (Files.exists(target)) {
+                Files.delete(temp);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                // Still under the lock, so a writer that finds the blob finds it durable.
+                syncFanOut(key);
+                syncDirectory(target.getParent());
+            }
+            references.merge(key, 1, Integer::sum);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to publish blob " + key, e);
+        } finally {
+            keyLock.unlock();
+        }
+        return new StoredBlob(key, size);
+    }
+
+    /**
+     * Makes sure the entries of the key's fan-out directories are durable in their parents, top
+     * down, so a prefix is recorded only once everything above it is synced as well. Directories
+     * are created at most once, so each is synced once per process.
+     */
+    private void syncFanOut(String key) throws IOException {
+        Path parent = blobsDir;
+        for (int end = 2; end <= 4; end += 2) {
+            String prefix = key.substring(0, end);
+            if (!syncedDirs.contains(prefix)) {
+                syncDirectory(parent);
+                syncedDirs.add(prefix);
+            }
+            parent = parent.resolve(key.substring(end - 2, end));
+        }
+    }
+
+    private static void syncDirectory(Path dir) throws IOException {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private ReentrantLock keyLock(String key) {
+        int hash = key.hashCode();
+        return keyLocks[(hash ^ hash >>> 16) & (KEY_STRIPES - 1)];
+    }
+
+    private Path blobPath(String key) {
+        if (!isKey(key)) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return blobsDir.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static boolean isKey(String key) {
+        return key != null && key.length() == KEY_LENGTH && key.chars().allMatch(c -> Character.digit(c, 16) >= 0);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Swept on the next startup.
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.fileshare.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Master keys (key-encryption keys) that wrap the per-file data keys. Each key has a small
+ * integer id and the highest id is current: new data keys are wrapped with it, and older ones
+ * stay available to unwrap data keys that have not been re-wrapped yet.
+ *
+ * <p>Keys are kept as owner-only files under {@code storage/keys/}. That is the boundary where a
+ * KMS or HSM would plug in; nothing outside this class sees where the key material lives.
+ */
+@Service
+public class MasterKeyStore {
+
+    private static final String STORAGE_DIR = "storage";
+    private static final String KEYS_DIR = "keys";
+    private static final String KEY_PREFIX = "master-";
+    private static final String KEY_SUFFIX = ".key";
+    private static final String ALGORITHM = "AES";
+    private static final int KEY_SIZE = 256;
+
+    private final Path keysDir;
+    private final ConcurrentHashMap<Integer, SecretKey> keys;
+    private volatile int currentId;
+
+    public MasterKeyStore() {
+        this(Paths.get(STORAGE_DIR).resolve(KEYS_DIR));
+    }
+
+    /**
+     * @param keysDir where keys are persisted; {@code null} keeps them in memory only
+     */
+    private MasterKeyStore(Path keysDir) {
+        this.keysDir = keysDir;
+        this.keys = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A store over the keys under {@code keysDir}, opened and ready for use.
+     */
+    static MasterKeyStore at(Path keysDir) {
+        MasterKeyStore store = new MasterKeyStore(keysDir);
+        store.open();
+        return store;
+    }
+
+    /**
+     * A store whose keys live only as long as the process, for tools and tests.
+     */
+    static MasterKeyStore inMemory() {
+        return at(null);
+    }
+
+    /**
+     * Loads the persisted keys, creating the first one when there are none.
+     */
+    @PostConstruct
+    public void open() {
+        try {
+            if (keysDir != null) {
+                Files.createDirectories(keysDir);
+                load();
+            }
+            if (keys.isEmpty()) {
+                rotate();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialize master keys", e);
+        }
+    }
+
+    int currentId() {
+        return currentId;
+    }
+
+    SecretKey get(int id) throws GeneralSecurityException {
+        SecretKey key = keys.get(id);
+        if (key == null) {
+            throw new GeneralSecurityException("Unknown master key: " + id);
+        }
+        return key;
+    }
+
+    /**
+     * Creates a new master key and makes it current.
+     */
+    synchronized int rotate() throws GeneralSecurityException, IOException {
+        KeyGenerator generator = KeyGenerator.getInstance(ALGORITHM);
+        generator.init(KEY_SIZE);
+        SecretKey key = generator.generateKey();
+        int id = currentId + 1;
+        if (keysDir != null) {
+            persist(id, key);
+        }
+        keys.put(id, key);
+        currentId = id;
+        return id;
+    }
+
+    private void load() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(keysDir, KEY_PREFIX + "*" + KEY_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring(KEY_PREFIX.length(), name.length() - KEY_SUFFIX.length()));
+                keys.put(id, new SecretKeySpec(Files.readAllBytes(file), ALGORITHM));
+                currentId = Math.max(currentId, id);
+            }
+        }
+    }
+
+    private void persist(int id, SecretKey key) throws IOException {
+        Path temp = keysDir.resolve(KEY_PREFIX + id + KEY_SUFFIX + ".tmp");
+        Files.deleteIfExists(temp);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(temp);
+        }
+        // Data keys wrapped with this key reach durable metadata right after, so the key must be
+        // durable first: both its bytes and its name in the directory.
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer encoded = ByteBuffer.wrap(key.getEncoded());
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, keysDir.resolve(KEY_PREFIX + id + KEY_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel directory = FileChannel.open(keysDir, StandardOpenOption.READ)) {
+            directory.force(true);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.service.model.FileResponse;
+import com.example.fileshare.service.model.UploadSession;
+
+import java.io.InputStream;
+
+public interface MultipartUploadService {
+    UploadSession initiateUpload(String ownerId, String fileName, long fileSize, long partSize);
+    UploadSession uploadPart(String uploadId, String userId, int partNumber, InputStream partData);
+    UploadSession getUpload(String uploadId, String userId);
+    FileResponse completeUpload(String uploadId, String userId);
+    void abortUpload(String uploadId, String userId);
+}
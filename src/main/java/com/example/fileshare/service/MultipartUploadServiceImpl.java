@@ -0,0 +1,412 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.service.model.FileResponse;
+import com.example.fileshare.service.model.StoredContent;
+import com.example.fileshare.service.model.UploadSession;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Properties;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resumable uploads split into fixed-size parts. Each part is written with a positional write
+ * into a plaintext data file under {@code storage/uploads/}, so parts can arrive in any order
+ * over parallel connections. The set of durable parts is kept in a small manifest per upload,
+ * which is reloaded on startup.
+ *
+ * <p>Chunking waits for completion: content-defined chunk boundaries depend on the bytes before
+ * them, which out-of-order parts do not have yet. Completion therefore reads the assembled file
+ * once, sequentially, through the {@link ChunkStore}, which cuts, hashes and encrypts it and
+ * stores only the chunks it does not already hold; the data file is deleted afterwards. Uploads that receive no part for the expiry
+ * period are aborted by a background sweep.
+ */
+@Service
+public class MultipartUploadServiceImpl implements MultipartUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(MultipartUploadServiceImpl.class);
+    private static final String STORAGE_DIR = "storage";
+    private static final String UPLOADS_DIR = "uploads";
+    private static final String MANIFEST_SUFFIX = ".properties";
+    private static final String DATA_SUFFIX = ".data";
+    private static final int MAX_PARTS = 10_000;
+    private static final long MAX_SWEEP_MINUTES = 60;
+
+    private final FileService fileService;
+    private final ChunkStore chunkStore;
+    private final EncryptionService encryptionService;
+    private final Map<String, UploadSession> uploads;
+    private final Path uploadsDir;
+    private final long expiryMinutes;
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * @param expiryMinutes how long an upload may go without receiving a part before it is
+     *                      aborted; zero or less keeps uploads until they are completed or aborted
+     */
+    @Autowired
+    public MultipartUploadServiceImpl(FileService fileService, ChunkStore chunkStore,
+                                      EncryptionService encryptionService,
+                                      @Value("${fileshare.uploads.expiry-minutes:1440}") long expiryMinutes) {
+        this(fileService, chunkStore, encryptionService, Paths.get(STORAGE_DIR).resolve(UPLOADS_DIR), expiryMinutes);
+    }
+
+    public MultipartUploadServiceImpl(FileService fileService, ChunkStore chunkStore,
+                                      EncryptionService encryptionService, Path uploadsDir, long expiryMinutes) {
+        this.fileService = fileService;
+        this.chunkStore = chunkStore;
+        this.encryptionService = encryptionService;
+        this.uploads = new ConcurrentHashMap<>();
+        this.uploadsDir = uploadsDir;
+        this.expiryMinutes = expiryMinutes;
+        try {
+            Files.createDirectories(uploadsDir);
+            loadManifests();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialize upload directory", e);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (expiryMinutes <= 0) {
+            return;
+        }
+        long period = Math.min(expiryMinutes, MAX_SWEEP_MINUTES);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::expireQuietly, period, period, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    @Override
+    public UploadSession initiateUpload(String ownerId, String fileName, long fileSize, long partSize) {
+        if (fileSize < 0 || partSize <= 0) {
+            throw new IllegalArgumentException("Invalid upload size: fileSize=" + fileSize + ", partSize=" + partSize);
+        }
+        long partCount = Math.max(1, (fileSize + partSize - 1) / partSize);
+        if (partCount > MAX_PARTS) {
+            throw new IllegalArgumentException("Too many parts: " + partCount + " (max " + MAX_PARTS + ")");
+        }
+
+        try {
+            UploadSession session = new UploadSession(
+                    UUID.randomUUID().toString(),
+                    Id.generate(),
+                    ownerId,
+                    fileName,
+                    fileSize,
+                    partSize,
+                    (int) partCount,
+                    LocalDateTime.now()
+            );
+            // Empty until parts arrive; a positional write past the end extends the file, so
+            // parts can land at their offsets in any order.
+            Files.createFile(dataPath(session));
+            writeManifest(session);
+            uploads.put(session.getUploadId(), session);
+            return session;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initiate upload", e);
+        }
+    }
+
+    @Override
+    public UploadSession uploadPart(String uploadId, String userId, int partNumber, InputStream partData) {
+        try (InputStream input = partData) {
+            UploadSession session = ownedUpload(uploadId, userId);
+            if (partNumber < 1 || partNumber > session.getPartCount()) {
+                throw new IllegalArgumentException("Invalid part number " + partNumber
+                        + " (expected 1.." + session.getPartCount() + ")");
+            }
+
+            long offset = (partNumber - 1) * session.getPartSize();
+            long expected = Math.min(session.getPartSize(), session.getFileSize() - offset);
+
+            session.lock().lock();
+            try {
+                if (session.isCompleting()) {
+                    throw new IllegalArgumentException("Upload " + uploadId + " is being completed");
+                }
+                session.setPartsInProgress(session.partsInProgress() + 1);
+            } finally {
+                session.lock().unlock();
+            }
+            try {
+                // Parts touch disjoint regions, so concurrent uploads of different parts never contend.
+                try (FileChannel channel = FileChannel.open(dataPath(session), StandardOpenOption.WRITE);
+                     ReadableByteChannel source = Channels.newChannel(input)) {
+                    long written = 0;
+                    while (written < expected) {
+                        long n = channel.transferFrom(source, offset + written, expected - written);
+                        if (n <= 0) {
+                            break;
+                        }
+                        written += n;
+                    }
+                    if (written != expected || input.read() != -1) {
+                        throw new IllegalArgumentException("Part " + partNumber + " must be exactly " + expected + " bytes");
+                    }
+                    // Make the part durable before the manifest claims it, so a resume never skips lost bytes.
+                    channel.force(false);
+                }
+
+                session.lock().lock();
+                try {
+                    // Aborted or expired meanwhile; writing the manifest would bring it back.
+                    if (uploads.get(uploadId) != session) {
+                        throw new IllegalArgumentException("Upload not found: " + uploadId);
+                    }
+                    session.getCompletedParts().add(partNumber);
+                    session.setUpdatedAt(LocalDateTime.now());
+                    writeManifest(session);
+                } finally {
+                    session.lock().unlock();
+                }
+            } finally {
+                session.lock().lock();
+                try {
+                    session.setPartsInProgress(session.partsInProgress() - 1);
+                } finally {
+                    session.lock().unlock();
+                }
+            }
+            return session;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to upload part " + partNumber, e);
+        }
+    }
+
+    @Override
+    public UploadSession getUpload(String uploadId, String userId) {
+        try {
+            return ownedUpload(uploadId, userId);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to get upload", e);
+        }
+    }
+
+    @Override
+    public FileResponse completeUpload(String uploadId, String userId) {
+        try {
+            UploadSession session = ownedUpload(uploadId, userId);
+            session.lock().lock();
+            try {
+                if (session.getCompletedParts().size() != session.getPartCount()) {
+                    throw new IllegalArgumentException("Upload " + uploadId + " is missing parts: "
+                            + session.getCompletedParts().size() + "/" + session.getPartCount() + " received");
+                }
+                if (session.isCompleting() || session.partsInProgress() > 0) {
+                    throw new IllegalArgumentException("Upload " + uploadId + " is busy; retry once its parts are written");
+                }
+                if (uploads.get(uploadId) != session) {
+                    throw new IllegalArgumentException("Upload not found: " + uploadId);
+                }
+                session.setCompleting(true);
+            } finally {
+                session.lock().unlock();
+            }
+
+            // The session stays registered until the file is, so a failure leaves it to retry.
+            FileResponse response;
+            try (InputStream input = Files.newInputStream(dataPath(session))) {
+                StoredContent content = chunkStore.write(input, encryptionService.generateKey(), null);
+                File file = new File(session.getOwnerId(), session.getFileName(), content.getSize(), content.getChecksum());
+                file.setId(session.getFileId());
+                response = fileService.registerFile(file, content);
+            } catch (Exception e) {
+                session.lock().lock();
+                try {
+                    session.setCompleting(false);
+                } finally {
+                    session.lock().unlock();
+                }
+                throw e;
+            }
+            uploads.remove(uploadId, session);
+            deleteFiles(session);
+            return response;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to complete upload", e);
+        }
+    }
+
+    @Override
+    public void abortUpload(String uploadId, String userId) {
+        try {
+            UploadSession session = ownedUpload(uploadId, userId);
+            boolean removed;
+            session.lock().lock();
+            try {
+                if (session.isCompleting()) {
+                    throw new IllegalArgumentException("Upload " + uploadId + " is being completed");
+                }
+                removed = uploads.remove(uploadId, session);
+            } finally {
+                session.lock().unlock();
+            }
+            if (removed) {
+                deleteFiles(session);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to abort upload", e);
+        }
+    }
+
+    /**
+     * Aborts every upload that has not received a part since {@code cutoff}, unless it is being
+     * completed or has a part in flight, and returns how many were aborted.
+     */
+    int expireIdleSince(LocalDateTime cutoff) {
+        int expired = 0;
+        for (UploadSession session : uploads.values()) {
+            boolean removed;
+            session.lock().lock();
+            try {
+                removed = !session.isCompleting() && session.partsInProgress() == 0
+                        && session.getUpdatedAt().isBefore(cutoff)
+                        && uploads.remove(session.getUploadId(), session);
+            } finally {
+                session.lock().unlock();
+            }
+            if (removed) {
+                try {
+                    deleteFiles(session);
+                } catch (Exception e) {
+                    log.warn("Failed to delete the files of expired upload {}", session.getUploadId(), e);
+                }
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    private void expireQuietly() {
+        try {
+            int expired = expireIdleSince(LocalDateTime.now().minusMinutes(expiryMinutes));
+            if (expired > 0) {
+                log.info("Expired {} idle uploads", expired);
+            }
+        } catch (Exception e) {
+            log.warn("Upload expiry sweep failed", e);
+        }
+    }
+
+    // Manifest first: without it a leftover data file is never loaded again.
+    private void deleteFiles(UploadSession session) throws Exception {
+        Files.deleteIfExists(manifestPath(session.getUploadId()));
+        Files.deleteIfExists(dataPath(session));
+    }
+
+    private UploadSession ownedUpload(String uploadId, String userId) throws IllegalAccessException {
+        UploadSession session = uploads.get(uploadId);
+        if (session == null) {
+            throw new IllegalArgumentException("Upload not found: " + uploadId);
+        }
+        if (!session.getOwnerId().equals(userId)) {
+            throw new IllegalAccessException("Unauthorized: user " + userId + " has no access to upload " + uploadId);
+        }
+        return session;
+    }
+
+    private Path dataPath(UploadSession session) {
+        return uploadsDir.resolve(session.getUploadId() + DATA_SUFFIX);
+    }
+
+    private Path manifestPath(String uploadId) {
+        return uploadsDir.resolve(uploadId + MANIFEST_SUFFIX);
+    }
+
+    private void writeManifest(UploadSession session) throws Exception {
+        Properties manifest = new Properties();
+        manifest.setProperty("uploadId", session.getUploadId());
+        manifest.setProperty("fileId", session.getFileId().toString());
+        manifest.setProperty("ownerId", session.getOwnerId());
+        manifest.setProperty("fileName", session.getFileName());
+        manifest.setProperty("fileSize", Long.toString(session.getFileSize()));
+        manifest.setProperty("partSize", Long.toString(session.getPartSize()));
+        manifest.setProperty("partCount", Integer.toString(session.getPartCount()));
+        manifest.setProperty("createdAt", session.getCreatedAt().toString());
+        manifest.setProperty("updatedAt", session.getUpdatedAt().toString());
+        StringJoiner parts = new StringJoiner(",");
+        session.getCompletedParts().forEach(part -> parts.add(part.toString()));
+        manifest.setProperty("completedParts", parts.toString());
+
+        Path target = manifestPath(session.getUploadId());
+        Path temp = uploadsDir.resolve(session.getUploadId() + MANIFEST_SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            OutputStream output = Channels.newOutputStream(channel);
+            manifest.store(output, null);
+            // Durable before the rename, so a crash never leaves an empty manifest in its place.
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void loadManifests() throws Exception {
+        try (DirectoryStream<Path> manifests = Files.newDirectoryStream(uploadsDir, "*" + MANIFEST_SUFFIX)) {
+            for (Path path : manifests) {
+                Properties manifest = new Properties();
+                try (Reader reader = Files.newBufferedReader(path)) {
+                    manifest.load(reader);
+                }
+                UploadSession session = new UploadSession(
+                        manifest.getProperty("uploadId"),
+                        Id.valueOf(manifest.getProperty("fileId")),
+                        manifest.getProperty("ownerId"),
+                        manifest.getProperty("fileName"),
+                        Long.parseLong(manifest.getProperty("fileSize")),
+                        Long.parseLong(manifest.getProperty("partSize")),
+                        Integer.parseInt(manifest.getProperty("partCount")),
+                        LocalDateTime.parse(manifest.getProperty("createdAt"))
+                );
+                // Manifests written before expiry existed have no updatedAt.
+                session.setUpdatedAt(LocalDateTime.parse(
+                        manifest.getProperty("updatedAt", manifest.getProperty("createdAt"))));
+                String parts = manifest.getProperty("completedParts", "");
+                if (!parts.isEmpty()) {
+                    for (String part : parts.split(",")) {
+                        session.getCompletedParts().add(Integer.parseInt(part));
+                    }
+                }
+                uploads.put(session.getUploadId(), session);
+            }
+        }
+    }
+}
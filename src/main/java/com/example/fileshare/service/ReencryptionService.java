@@ -0,0 +1,508 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileChunk;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.MetadataRepository;
+import com.example.fileshare.service.model.ReencryptionProgress;
+import com.example.fileshare.service.model.ReencryptionProgress.Status;
+import com.example.fileshare.service.model.StoredContent;
+import com.example.fileshare.storage.IoRateLimiter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Moves every version encrypted under a compromised data key to a fresh key by decrypting and
+ * re-encrypting its content. Work is spread over a fixed number of workers, one file at a time
+ * per worker so that a file's versions share the new key's IV seed and keep deduplicating.
+ *
+ * <p>Versions are matched by the {@linkplain EncryptionService#keyFingerprint fingerprint} of their
+ * data key rather than by key id, since every master key rotation re-wraps the ids. Rotations are
+ * kept apart from jobs through {@link #exclusiveOfJobs}, so the ids a pass read stay valid for
+ * the rest of the job.
+ *
+ * <p>Each version is swapped in with one atomic metadata update. That update only applies while
+ * the version still carries the key id the pass found and the file is not deleted. Readers keep using whichever
+ * snapshot they already hold and are never blocked. The replaced chunks are released only after
+ * a grace period, so a download that started on them can finish.
+ *
+ * <p>Background I/O is capped by a shared {@link IoRateLimiter}. The job also pauses while the
+ * p99 latency of live requests reported by the {@link LatencyMonitor} is over budget. Progress is
+ * checkpointed under {@code storage/jobs/} after every version. The metadata itself records which
+ * versions are done, since they no longer carry the old key, so a job that was running at
+ * shutdown resumes on startup by scanning again.
+ */
+@Service
+public class ReencryptionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReencryptionService.class);
+    private static final String STORAGE_DIR = "storage";
+    private static final String JOBS_DIR = "jobs";
+    private static final String CHECKPOINT_SUFFIX = ".properties";
+    // Live writes may add versions under the old key while a pass runs; later passes pick them up.
+    private static final int MAX_PASSES = 3;
+    private static final long PAUSE_MILLIS = 200;
+    private static final long LATENCY_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final MetadataRepository metadataRepository;
+    private final ChunkStore chunkStore;
+    private final EncryptionService encryptionService;
+    private final LatencyMonitor latencyMonitor;
+    private final int workers;
+    private final long bytesPerSecond;
+    private final long p99BudgetMillis;
+    private final long releaseGraceSeconds;
+    private final Path jobsDir;
+    private final Map<String, Job> jobs;
+    private final ScheduledExecutorService releaser;
+    // Guarded by jobs; set while a master key rotation runs.
+    private boolean rotating;
+
+    @Autowired
+    public ReencryptionService(MetadataRepository metadataRepository, ChunkStore chunkStore,
+                               EncryptionService encryptionService, LatencyMonitor latencyMonitor,
+                               @Value("${fileshare.reencryption.workers:2}") int workers,
+                               @Value("${fileshare.reencryption.bytes-per-second:67108864}") long bytesPerSecond,
+                               @Value("${fileshare.reencryption.p99-budget-millis:250}") long p99BudgetMillis) {
+        this(metadataRepository, chunkStore, encryptionService, latencyMonitor, workers, bytesPerSecond,
+                p99BudgetMillis, 60, Paths.get(STORAGE_DIR).resolve(JOBS_DIR));
+    }
+
+    ReencryptionService(MetadataRepository metadataRepository, ChunkStore chunkStore,
+                        EncryptionService encryptionService, LatencyMonitor latencyMonitor, int workers,
+                        long bytesPerSecond, long p99BudgetMillis, long releaseGraceSeconds, Path jobsDir) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Invalid worker count: " + workers);
+        }
+        this.metadataRepository = metadataRepository;
+        this.chunkStore = chunkStore;
+        this.encryptionService = encryptionService;
+        this.latencyMonitor = latencyMonitor;
+        this.workers = workers;
+        this.bytesPerSecond = bytesPerSecond;
+        this.p99BudgetMillis = p99BudgetMillis;
+        this.releaseGraceSeconds = releaseGraceSeconds;
+        this.jobsDir = jobsDir;
+        this.jobs = new ConcurrentHashMap<>();
+        this.releaser = Executors.newSingleThreadScheduledExecutor(daemon("reencryption-release"));
+        try {
+            Files.createDirectories(jobsDir);
+            loadCheckpoints();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialize re-encryption jobs", e);
+        }
+    }
+
+    /**
+     * Issues a new data key to replace {@code oldKeyId} and starts moving every version under the
+     * old key to it in the background.
+     */
+    public ReencryptionProgress startReencryption(String oldKeyId) {
+        synchronized (jobs) {
+            if (rotating) {
+                throw new IllegalStateException("A master key rotation is running");
+            }
+            try {
+                String newKeyId = encryptionService.rotateKey(oldKeyId);
+                Job job = new Job(UUID.randomUUID().toString(), oldKeyId, newKeyId, LocalDateTime.now());
+                jobs.put(job.id, job);
+                checkpoint(job);
+                launch(job);
+                return job.progress();
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to start re-encryption", e);
+            }
+        }
+    }
+
+    /**
+     * Runs a master key rotation, which re-wraps key ids, while no job is running; no job can start
+     * until it returns. Refused while a job is running, including one waiting to resume at startup.
+     */
+    public <T> T exclusiveOfJobs(Supplier<T> rotation) {
+        synchronized (jobs) {
+            if (rotating || jobs.values().stream().anyMatch(job -> job.status == Status.RUNNING)) {
+                throw new IllegalStateException("A re-encryption job or key rotation is running");
+            }
+            rotating = true;
+        }
+        try {
+            return rotation.get();
+        } finally {
+            synchronized (jobs) {
+                rotating = false;
+            }
+        }
+    }
+
+    public Optional<ReencryptionProgress> getProgress(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(Job::progress);
+    }
+
+    public List<ReencryptionProgress> listJobs() {
+        return jobs.values().stream()
+                .map(Job::progress)
+                .sorted(Comparator.comparing(ReencryptionProgress::getStartedAt))
+                .toList();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Running jobs stay RUNNING in their checkpoints and resume on the next start.
+        jobs.values().forEach(job -> {
+            if (job.coordinator != null) {
+                job.coordinator.interrupt();
+            }
+        });
+        releaser.shutdown();
+    }
+
+    /**
+     * Resumes the jobs that were running at shutdown. Not done on construction: a resumed job
+     * releases chunks, so it must wait until their references have been rebuilt from the metadata.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeJobs() {
+        synchronized (jobs) {
+            for (Job job : jobs.values()) {
+                if (job.status == Status.RUNNING && job.coordinator == null) {
+                    launch(job);
+                }
+            }
+        }
+    }
+
+    private void launch(Job job) {
+        job.coordinator = daemon("reencryption-" + job.id).newThread(() -> run(job));
+        job.coordinator.start();
+    }
+
+    private void run(Job job) {
+        ExecutorService pool = Executors.newFixedThreadPool(workers, daemon("reencryption-worker"));
+        Pacer pacer = new Pacer(job);
+        try {
+            job.oldKey = encryptionService.keyFingerprint(job.oldKeyId);
+            job.newKey = encryptionService.keyFingerprint(job.newKeyId);
+            for (int pass = 0; pass < MAX_PASSES; pass++) {
+                Map<Id, List<FileVersion>> targets = findTargets(job.oldKey);
+                if (targets.isEmpty()) {
+                    break;
+                }
+                long remaining = targets.values().stream().mapToLong(List::size).sum();
+                job.total.set(job.done.get() + remaining);
+                List<Callable<Void>> tasks = new ArrayList<>();
+                targets.forEach((fileId, versions) -> tasks.add(() -> {
+                    reencryptFile(job, fileId, versions, pacer);
+                    return null;
+                }));
+                pool.invokeAll(tasks);
+            }
+            job.status = findTargets(job.oldKey).isEmpty() ? Status.COMPLETED : Status.FAILED;
+            log.info("Re-encryption {} {}: {} versions, {} bytes", job.id, job.status, job.done.get(), job.bytes.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (EncryptionException | RuntimeException e) {
+            job.status = Status.FAILED;
+            log.error("Re-encryption {} failed", job.id, e);
+        } finally {
+            pool.shutdownNow();
+            checkpointQuietly(job);
+        }
+    }
+
+    private Map<Id, List<FileVersion>> findTargets(String fingerprint) {
+        Map<Id, List<FileVersion>> targets = new LinkedHashMap<>();
+        for (File file : metadataRepository.findAllFiles()) {
+            if (file.getStatus() == File.Status.DELETED) {
+                continue;
+            }
+            for (FileVersion version : metadataRepository.findVersions(file.getId())) {
+                if (isUnder(fingerprint, version.getKeyId())) {
+                    targets.computeIfAbsent(file.getId(), id -> new ArrayList<>()).add(version);
+                }
+            }
+        }
+        return targets;
+    }
+
+    private boolean isUnder(String fingerprint, String keyId) {
+        if (keyId == null) {
+            return false;
+        }
+        try {
+            return fingerprint.equals(encryptionService.keyFingerprint(keyId));
+        } catch (EncryptionException e) {
+            // Not readable under any master key we hold, so not the key this job looks for.
+            return false;
+        }
+    }
+
+    private void reencryptFile(Job job, Id fileId, List<FileVersion> versions, Pacer pacer)
+            throws InterruptedException {
+        String iv = newKeyIv(job, fileId);
+        for (FileVersion version : versions) {
+            String item = fileId + ":" + version.getVersion();
+            pacer.awaitLatencyBudget();
+            try {
+                StoredContent content = reencrypt(job, version, iv, pacer);
+                if (content != null) {
+                    iv = content.getIv();
+                    job.bytes.addAndGet(content.getSize());
+                }
+                job.done.incrementAndGet();
+                job.failures.remove(item);
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Re-encryption interrupted");
+                }
+                job.failures.add(item);
+                log.warn("Re-encryption {} failed for version {}", job.id, item, e);
+            }
+            checkpointQuietly(job);
+        }
+    }
+
+    // Returns the written content, or null when the version changed or was deleted meanwhile.
+    private StoredContent reencrypt(Job job, FileVersion version, String iv, Pacer pacer) throws IOException {
+        StoredContent content;
+        try (InputStream plaintext = new PacedInputStream(
+                Channels.newInputStream(chunkStore.open(version.getChunks(), job.oldKeyId)), pacer)) {
+            content = chunkStore.write(plaintext, job.newKeyId, iv);
+        }
+        if (!content.getChecksum().equals(version.getChecksum())) {
+            chunkStore.release(content.getChunks());
+            throw new IOException("Checksum changed while re-encrypting version " + version.getVersion());
+        }
+
+        // The swap is ordered against deletion: a concurrent delete either happens first, so
+        // nothing is swapped, or sees and releases the new chunks.
+        List<FileChunk> replaced = version.getChunks();
+        boolean swapped = metadataRepository.replaceVersion(version.getFileId(), version.getVersion(), version.getKeyId(),
+                stored -> {
+                    stored.setKeyId(job.newKeyId);
+                    stored.setIv(content.getIv());
+                    stored.setCipherSuite(content.getCipherSuite());
+                    stored.setChunks(content.getChunks());
+                }).isPresent();
+        if (!swapped) {
+            chunkStore.release(content.getChunks());
+            return null;
+        }
+        if (releaseGraceSeconds > 0) {
+            releaser.schedule(() -> chunkStore.release(replaced), releaseGraceSeconds, TimeUnit.SECONDS);
+        } else {
+            chunkStore.release(replaced);
+        }
+        return content;
+    }
+
+    // A resumed job continues with the seed its earlier run used for this file, if any.
+    private String newKeyIv(Job job, Id fileId) {
+        return metadataRepository.findVersions(fileId).stream()
+                .filter(version -> isUnder(job.newKey, version.getKeyId()))
+                .map(FileVersion::getIv)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private Path checkpointPath(String jobId) {
+        return jobsDir.resolve(jobId + CHECKPOINT_SUFFIX);
+    }
+
+    private void checkpointQuietly(Job job) {
+        try {
+            checkpoint(job);
+        } catch (IOException e) {
+            log.warn("Failed to checkpoint re-encryption {}", job.id, e);
+        }
+    }
+
+    private void checkpoint(Job job) throws IOException {
+        synchronized (job) {
+            Properties checkpoint = new Properties();
+            checkpoint.setProperty("jobId", job.id);
+            checkpoint.setProperty("oldKeyId", job.oldKeyId);
+            checkpoint.setProperty("newKeyId", job.newKeyId);
+            checkpoint.setProperty("status", job.status.name());
+            checkpoint.setProperty("versionsDone", Long.toString(job.done.get()));
+            checkpoint.setProperty("bytesProcessed", Long.toString(job.bytes.get()));
+            checkpoint.setProperty("pausedMillis", Long.toString(job.pausedMillis.get()));
+            checkpoint.setProperty("startedAt", job.startedAt.toString());
+
+            Path temp = jobsDir.resolve(job.id + CHECKPOINT_SUFFIX + ".tmp");
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                checkpoint.store(output, null);
+            }
+            Files.move(temp, checkpointPath(job.id), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private void loadCheckpoints() throws IOException {
+        try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(jobsDir, "*" + CHECKPOINT_SUFFIX)) {
+            for (Path path : checkpoints) {
+                Properties checkpoint = new Properties();
+                try (Reader reader = Files.newBufferedReader(path)) {
+                    checkpoint.load(reader);
+                }
+                Job job = new Job(
+                        checkpoint.getProperty("jobId"),
+                        checkpoint.getProperty("oldKeyId"),
+                        checkpoint.getProperty("newKeyId"),
+                        LocalDateTime.parse(checkpoint.getProperty("startedAt"))
+                );
+                job.status = Status.valueOf(checkpoint.getProperty("status"));
+                job.done.set(Long.parseLong(checkpoint.getProperty("versionsDone")));
+                job.total.set(job.done.get());
+                job.bytes.set(Long.parseLong(checkpoint.getProperty("bytesProcessed")));
+                job.pausedMillis.set(Long.parseLong(checkpoint.getProperty("pausedMillis")));
+                jobs.put(job.id, job);
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Job {
+        private final String id;
+        private final String oldKeyId;
+        private final String newKeyId;
+        private final LocalDateTime startedAt;
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong done = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong pausedMillis = new AtomicLong();
+        private final Set<String> failures = ConcurrentHashMap.newKeySet();
+        // Fingerprints of the two data keys, set when the job starts running.
+        private volatile String oldKey;
+        private volatile String newKey;
+        private volatile Status status = Status.RUNNING;
+        private volatile LocalDateTime updatedAt;
+        private Thread coordinator;
+
+        Job(String id, String oldKeyId, String newKeyId, LocalDateTime startedAt) {
+            this.id = id;
+            this.oldKeyId = oldKeyId;
+            this.newKeyId = newKeyId;
+            this.startedAt = startedAt;
+            this.updatedAt = startedAt;
+        }
+
+        ReencryptionProgress progress() {
+            return new ReencryptionProgress(id, status, total.get(), done.get(), failures.size(), bytes.get(),
+                    pausedMillis.get(), startedAt, updatedAt);
+        }
+    }
+
+    /**
+     * Applies the bandwidth cap and the latency budget to all workers of one job.
+     */
+    private final class Pacer {
+        private final Job job;
+        private final IoRateLimiter limiter;
+        private volatile long lastLatencyCheck;
+
+        Pacer(Job job) {
+            this.job = job;
+            this.limiter = new IoRateLimiter(bytesPerSecond);
+        }
+
+        void acquire(long bytes) throws InterruptedException {
+            limiter.acquire(bytes);
+            job.updatedAt = LocalDateTime.now();
+            if (System.nanoTime() - lastLatencyCheck > LATENCY_CHECK_NANOS) {
+                awaitLatencyBudget();
+            }
+        }
+
+        void awaitLatencyBudget() throws InterruptedException {
+            lastLatencyCheck = System.nanoTime();
+            if (p99BudgetMillis <= 0) {
+                return;
+            }
+            boolean paused = false;
+            while (latencyMonitor.percentileMillis(99) > p99BudgetMillis) {
+                paused = true;
+                Thread.sleep(PAUSE_MILLIS);
+                job.pausedMillis.addAndGet(PAUSE_MILLIS);
+            }
+            if (paused) {
+                // Do not let the pause turn into a burst of catch-up reads.
+                limiter.reset();
+            }
+        }
+    }
+
+    private static final class PacedInputStream extends FilterInputStream {
+        private final Pacer pacer;
+
+        PacedInputStream(InputStream input, Pacer pacer) {
+            super(input);
+            this.pacer = pacer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                try {
+                    pacer.acquire(read);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Re-encryption interrupted");
+                }
+            }
+            return read;
+        }
+    }
+}
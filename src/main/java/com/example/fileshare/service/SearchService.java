@@ -0,0 +1,22 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.search.SearchMode;
+
+import java.util.List;
+
+public interface SearchService {
+    /**
+     * Indexes the file's name and {@link File#getTags() tags}, replacing any previous entry.
+     */
+    void indexFile(File file);
+    void removeFile(Id fileId);
+    void grantAccess(Id fileId, String userId);
+    void revokeAccess(Id fileId, String userId);
+
+    /**
+     * Ids of matching files that {@code userId} owns or has been granted.
+     */
+    List<Id> search(String userId, String query, SearchMode mode, int maxEdits, int limit);
+}
@@ -0,0 +1,81 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.domain.SearchIndexEntry;
+import com.example.fileshare.search.SearchIndex;
+import com.example.fileshare.search.SearchMode;
+import com.example.fileshare.search.SearchQuery;
+import com.example.fileshare.search.Tokenizer;
+import org.springframework.stereotype.Service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@Service
+public class SearchServiceImpl implements SearchService {
+
+    // Beyond two edits short queries match nearly every name and the trigram filter stops helping.
+    private static final int MAX_EDITS = 2;
+
+    private final SearchIndex index;
+
+    public SearchServiceImpl() {
+        this.index = new SearchIndex();
+    }
+
+    @Override
+    public void indexFile(File file) {
+        SearchIndexEntry entry = new SearchIndexEntry(file.getId());
+        Tokenizer.tokenize(file.getName()).forEach(entry::addToken);
+        file.getTags().forEach(entry::addTag);
+
+        index.index(file.getId(), file.getName(), file.getOwnerId(), terms(entry));
+    }
+
+    @Override
+    public void removeFile(Id fileId) {
+        index.remove(fileId);
+    }
+
+    @Override
+    public void grantAccess(Id fileId, String userId) {
+        index.grant(fileId, userId);
+    }
+
+    @Override
+    public void revokeAccess(Id fileId, String userId) {
+        index.revoke(fileId, userId);
+    }
+
+    @Override
+    public List<Id> search(String userId, String query, SearchMode mode, int maxEdits, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        if (mode == SearchMode.TERMS) {
+            SearchQuery parsed = SearchQuery.parse(query);
+            return parsed.isEmpty() ? List.of() : index.search(userId, parsed, limit);
+        }
+        String text = query.trim();
+        if (text.isEmpty()) {
+            return List.of();
+        }
+        if (mode == SearchMode.FUZZY) {
+            if (maxEdits < 0 || maxEdits > MAX_EDITS) {
+                throw new IllegalArgumentException("maxEdits must be between 0 and " + MAX_EDITS);
+            }
+            return index.searchFuzzy(userId, text, maxEdits, limit);
+        }
+        return index.searchSubstring(userId, text, limit);
+    }
+
+    private static Set<String> terms(SearchIndexEntry entry) {
+        Set<String> terms = new HashSet<>(entry.getTokens());
+        for (String tag : entry.getTags()) {
+            terms.addAll(Tokenizer.tokenize(tag));
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.fileshare.service;
+
+import javax.crypto.Cipher;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Everything one encrypt or decrypt call needs to move a batch of segments: a Cipher per suite, a
+ * nonce and input/output buffers per slot, and the tasks that run the slots on an executor. Batches are
+ * pooled by {@link EncryptionServiceImpl} and reused across calls, so the steady-state loop does
+ * not allocate per segment beyond what {@code Cipher.init} does internally.
+ */
+final class SegmentBatch {
+    // Per slot, indexed by suite ordinal and created on first use.
+    private final Cipher[][] ciphers;
+    private final byte[][] nonces;
+    private final byte[][] input;
+    private final byte[][] output;
+    private final int[] lengths;
+    private final int[] outputLengths;
+    private final Runnable[] tasks;
+    private final int bufferSize;
+
+    // State of the batch in flight; written by the caller before the tasks are submitted.
+    private SegmentedAead aead;
+    private boolean encrypt;
+    private long firstIndex;
+    private boolean lastBatch;
+    private int count;
+    private CountDownLatch pending;
+    private volatile GeneralSecurityException failure;
+
+    SegmentBatch(int slots, int segmentSize) {
+        this.bufferSize = segmentSize + SegmentedAead.TAG_BYTES;
+        this.ciphers = new Cipher[slots][CipherSuite.values().length];
+        this.nonces = new byte[slots][SegmentedAead.IV_SIZE];
+        this.input = new byte[slots][bufferSize];
+        this.output = new byte[slots][bufferSize];
+        this.lengths = new int[slots];
+        this.outputLengths = new int[slots];
+        this.tasks = new Runnable[slots];
+        for (int slot = 0; slot < slots; slot++) {
+            int current = slot;
+            tasks[slot] = () -> runSlot(current);
+        }
+    }
+
+    /** Largest segment size these buffers hold. */
+    int segmentSize() {
+        return bufferSize - SegmentedAead.TAG_BYTES;
+    }
+
+    /**
+     * Streams {@code in} through {@code aead} to {@code out}, sealing plaintext segments when
+     * {@code encrypt} is set and opening sealed ones otherwise. Slot 0 runs on the calling thread,
+     * unless it is virtual, and the others on {@code executor}; a batch is written only after all of its segments are
+     * done, so decryption never emits unauthenticated plaintext.
+     */
+    void transform(SegmentedAead aead, boolean encrypt, InputStream in, OutputStream out, Executor executor)
+            throws IOException, GeneralSecurityException {
+        this.aead = aead;
+        this.encrypt = encrypt;
+        this.failure = null;
+        int readSize = encrypt ? aead.segmentSize() : aead.segmentSize() + SegmentedAead.TAG_BYTES;
+        long index = 0;
+        int lookahead = -1;
+        boolean last = false;
+        try {
+            while (!last) {
+                // One byte of lookahead tells whether a full segment is the final one.
+                count = 0;
+                while (count < tasks.length && !last) {
+                    int slot = count++;
+                    int length = 0;
+                    if (lookahead >= 0) {
+                        input[slot][length++] = (byte) lookahead;
+                        lookahead = -1;
+                    }
+                    length += in.readNBytes(input[slot], length, readSize - length);
+                    if (length == readSize) {
+                        lookahead = in.read();
+                    }
+                    last = length < readSize || lookahead < 0;
+                    lengths[slot] = length;
+                }
+                firstIndex = index;
+                lastBatch = last;
+                runBatch(executor);
+                for (int slot = 0; slot < count; slot++) {
+                    out.write(output[slot], 0, outputLengths[slot]);
+                }
+                index += count;
+            }
+        } finally {
+            this.aead = null;
+        }
+    }
+
+    private void runBatch(Executor executor) throws GeneralSecurityException {
+        // A virtual thread hands over slot 0 as well, so it never spends its carrier on crypto.
+        int first = Thread.currentThread().isVirtual() ? 0 : 1;
+        boolean submitted = count > first;
+        if (submitted) {
+            pending = new CountDownLatch(count - first);
+            for (int slot = first; slot < count; slot++) {
+                try {
+                    executor.execute(tasks[slot]);
+                } catch (RejectedExecutionException e) {
+                    tasks[slot].run();
+                }
+            }
+        }
+        if (first == 1) {
+            try {
+                process(0);
+            } catch (GeneralSecurityException | RuntimeException e) {
+                failure = e instanceof GeneralSecurityException security ? security : new GeneralSecurityException(e);
+            }
+        }
+        if (submitted) {
+            // The buffers go back to the pool afterwards, so every task must finish first.
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    pending.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void runSlot(int slot) {
+        try {
+            process(slot);
+        } catch (GeneralSecurityException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new GeneralSecurityException(e);
+        } finally {
+            pending.countDown();
+        }
+    }
+
+    private void process(int slot) throws GeneralSecurityException {
+        long index = firstIndex + slot;
+        boolean last = lastBatch && slot == count - 1;
+        Cipher cipher = cipher(slot, aead.suite());
+        outputLengths[slot] = encrypt
+                ? aead.seal(cipher, nonces[slot], index, last, input[slot], lengths[slot], output[slot])
+                : aead.open(cipher, nonces[slot], index, last, input[slot], lengths[slot], output[slot]);
+    }
+
+    private Cipher cipher(int slot, CipherSuite suite) throws GeneralSecurityException {
+        Cipher cipher = ciphers[slot][suite.ordinal()];
+        if (cipher == null) {
+            cipher = suite.newCipher();
+            ciphers[slot][suite.ordinal()] = cipher;
+        }
+        return cipher;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.fileshare.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+
+/**
+ * Layout and per-segment sealing of the segmented AEAD format.
+ *
+ * <pre>
+ * header:    iv (12) | cipher suite id (1) | plaintext segment size (4, big-endian)
+ * segment i: ciphertext (segment size, shorter for the last) | tag (16)
+ * </pre>
+ *
+ * <p>The random IV is used as an HKDF salt to derive a key for this content from the data key,
+ * so per-segment nonces only need to be unique within one content: seven zero bytes, the segment
+ * index and a final-segment flag. Every segment authenticates the header as associated data, so
+ * the suite id cannot be changed either.
+ * Dropping trailing segments fails because the new last segment was not sealed as final, and
+ * swapping segments fails because the index is part of the nonce.
+ */
+final class SegmentedAead {
+    static final int IV_SIZE = 12;
+    static final int HEADER_SIZE = IV_SIZE + 1 + 4;
+    static final int TAG_BYTES = 16;
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private static final String HMAC = "HmacSHA256";
+    // Never equal to a segment nonce, whose first byte is always zero.
+    private static final byte[] RESET_NONCE = {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+
+    private final CipherSuite suite;
+    private final SecretKey contentKey;
+    private final byte[] header;
+    private final int segmentSize;
+    // Whether sealing the same segment again under the same key and nonce is expected.
+    private final boolean convergent;
+
+    private SegmentedAead(CipherSuite suite, SecretKey contentKey, byte[] header, int segmentSize, boolean convergent) {
+        this.suite = suite;
+        this.contentKey = contentKey;
+        this.header = header;
+        this.segmentSize = segmentSize;
+        this.convergent = convergent;
+    }
+
+    static SegmentedAead forEncryption(CipherSuite suite, SecretKey dataKey, byte[] iv, int segmentSize)
+            throws GeneralSecurityException {
+        return forEncryption(suite, dataKey, iv, segmentSize, false);
+    }
+
+    /**
+     * @param convergent set when the IV is derived from the content, so that sealing identical
+     *                   content again legitimately repeats a key and nonce; otherwise a cipher that
+     *                   refuses a repeated nonce fails the seal
+     */
+    static SegmentedAead forEncryption(CipherSuite suite, SecretKey dataKey, byte[] iv, int segmentSize,
+                                       boolean convergent) throws GeneralSecurityException {
+        byte[] header = ByteBuffer.allocate(HEADER_SIZE).put(iv).put(suite.id()).putInt(segmentSize).array();
+        return new SegmentedAead(suite, deriveKey(suite, dataKey, iv), header, segmentSize, convergent);
+    }
+
+    /**
+     * Parses a complete header as written by {@link #forEncryption}.
+     */
+    static SegmentedAead forDecryption(SecretKey dataKey, byte[] header) throws GeneralSecurityException {
+        if (header.length != HEADER_SIZE) {
+            throw new GeneralSecurityException("Unsupported ciphertext header");
+        }
+        CipherSuite suite = CipherSuite.fromId(header[IV_SIZE]);
+        int segmentSize = ByteBuffer.wrap(header, IV_SIZE + 1, 4).getInt();
+        if (segmentSize <= 0) {
+            throw new GeneralSecurityException("Invalid segment size: " + segmentSize);
+        }
+        byte[] iv = new byte[IV_SIZE];
+        System.arraycopy(header, 0, iv, 0, IV_SIZE);
+        return new SegmentedAead(suite, deriveKey(suite, dataKey, iv), header.clone(), segmentSize, false);
+    }
+
+    CipherSuite suite() {
+        return suite;
+    }
+
+    byte[] header() {
+        return header;
+    }
+
+    int segmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Plaintext length of a ciphertext of {@code ciphertextSize} bytes, header included.
+     */
+    long plaintextSize(long ciphertextSize) throws GeneralSecurityException {
+        long body = ciphertextSize - HEADER_SIZE;
+        long sealedSegment = segmentSize + TAG_BYTES;
+        long segments = (body + sealedSegment - 1) / sealedSegment;
+        if (body < TAG_BYTES || body - (segments - 1) * sealedSegment < TAG_BYTES) {
+            throw new GeneralSecurityException("Truncated ciphertext");
+        }
+        return body - segments * TAG_BYTES;
+    }
+
+    /**
+     * Position of segment {@code index} within the ciphertext.
+     */
+    long segmentOffset(long index) {
+        return HEADER_SIZE + index * (segmentSize + TAG_BYTES);
+    }
+
+    /**
+     * Encrypts {@code length} bytes of {@code plaintext} into {@code output}, which needs room for
+     * {@code length + TAG_BYTES}; returns the sealed length. {@code nonce} is {@link #IV_SIZE}
+     * bytes of scratch space owned by the caller.
+     */
+    int seal(Cipher cipher, byte[] nonce, long index, boolean last, byte[] plaintext, int length, byte[] output)
+            throws GeneralSecurityException {
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, contentKey, suite.parameters(nonce(nonce, index, last)));
+        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            if (!convergent) {
+                throw e;
+            }
+            // Providers refuse to encrypt twice in a row under one key and nonce. For convergent
+            // content that only happens when identical content (a run of equal chunks) is sealed
+            // again, which yields the same ciphertext; point the cipher at another nonce and retry.
+            cipher.init(Cipher.ENCRYPT_MODE, contentKey, suite.parameters(RESET_NONCE));
+            cipher.init(Cipher.ENCRYPT_MODE, contentKey, suite.parameters(nonce));
+        }
+        cipher.updateAAD(header);
+        return cipher.doFinal(plaintext, 0, length, output, 0);
+    }
+
+    /**
+     * Verifies and decrypts one sealed segment; nothing is written to {@code output} unless the
+     * tag matches.
+     */
+    int open(Cipher cipher, byte[] nonce, long index, boolean last, byte[] sealed, int length, byte[] output)
+            throws GeneralSecurityException {
+        cipher.init(Cipher.DECRYPT_MODE, contentKey, suite.parameters(nonce(nonce, index, last)));
+        cipher.updateAAD(header);
+        return cipher.doFinal(sealed, 0, length, output, 0);
+    }
+
+    private static byte[] nonce(byte[] nonce, long index, boolean last) {
+        if (index < 0 || index > 0xFFFF_FFFFL) {
+            throw new IllegalArgumentException("Segment index out of range: " + index);
+        }
+        // Bytes 0-6 are always zero.
+        nonce[7] = (byte) (index >>> 24);
+        nonce[8] = (byte) (index >>> 16);
+        nonce[9] = (byte) (index >>> 8);
+        nonce[10] = (byte) index;
+        nonce[11] = (byte) (last ? 1 : 0);
+        return nonce;
+    }
+
+    // HKDF-SHA256 (RFC 5869) with a single output block.
+    private static SecretKey deriveKey(CipherSuite suite, SecretKey dataKey, byte[] salt) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(HMAC);
+        mac.init(new SecretKeySpec(salt, HMAC));
+        byte[] pseudoRandomKey = mac.doFinal(dataKey.getEncoded());
+        mac.init(new SecretKeySpec(pseudoRandomKey, HMAC));
+        mac.update(suite.keyInfo());
+        mac.update((byte) 1);
+        return new SecretKeySpec(mac.doFinal(), suite.keyAlgorithm());
+    }
+}
@@ -1,5 +1,50 @@
 package com.example.fileshare.service;
 
+import com.example.fileshare.service.model.StoredBlob;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Blob store for file contents. Blobs are immutable and addressed by the key returned when they
+ * are stored. Every {@code store} call takes a reference on the blob and every {@link #delete}
+ * releases one; the bytes are removed with the last reference, so identical content can be shared
+ * safely by several files and versions.
+ */
 public interface StorageService {
+    /**
+     * Writes everything readable from {@code source} and returns its key.
+     */
+    StoredBlob store(ReadableByteChannel source);
+
+    ReadableByteChannel retrieve(String key);
+
+    /**
+     * Random-access handle for range reads.
+     */
+    SeekableByteChannel open(String key);
+
+    /**
+     * Local path of the blob when its bytes are kept as-is on local disk, so downloads can read
+     * them straight from the page cache; {@code null} for backends that cannot offer one.
+     */
+    Path localPath(String key);
+
+    boolean exists(String key);
+
+    /**
+     * Takes another reference on a stored blob without rewriting it. Returns {@code false}, and
+     * takes nothing, when no blob has this key.
+     */
+    boolean retain(String key);
+
+    void delete(String key);
 
+    /**
+     * Removes every blob that holds no reference, such as one stored just before a crash whose
+     * metadata was never written. Only safe once the references of everything the metadata still
+     * holds have been retained again; returns how many blobs were removed.
+     */
+    int removeUnreferenced();
 }
@@ -0,0 +1,32 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.service.model.ContentLocation;
+import com.example.fileshare.service.model.FileResponse;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * Non-blocking variants of the {@link FileService} transfers. Content flows as backpressured
+ * {@link DataBuffer} streams, so a transfer to or from a slow client holds no thread while it
+ * waits and only a few buffers while it moves.
+ */
+public interface StreamingFileService {
+    /**
+     * Stores {@code content} as a new file. The buffers are released once consumed.
+     */
+    Mono<FileResponse> saveFile(String ownerId, String fileName, Set<String> tags, Flux<DataBuffer> content);
+
+    Mono<FileResponse> updateFile(Id fileId, String userId, String fileName, Set<String> tags,
+                                  Flux<DataBuffer> content);
+
+    /**
+     * Plaintext of the located content. Nothing is read before the first request, and every
+     * buffer is read only once the subscriber asks for it.
+     */
+    Flux<DataBuffer> read(ContentLocation location, DataBufferFactory bufferFactory);
+}
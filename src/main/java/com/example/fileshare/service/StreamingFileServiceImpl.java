@@ -0,0 +1,218 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.FileChunk;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.service.model.ContentLocation;
+import com.example.fileshare.service.model.FileResponse;
+import com.example.fileshare.service.model.StoredContent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Streams content through the {@link ChunkStore} and {@link EncryptionService} without a thread
+ * per transfer.
+ *
+ * <p>Uploads feed their buffers to a {@link ContentWriter} on a bounded pool of store threads.
+ * Storing a chunk hashes, seals and fsyncs it, so it has to block somewhere; a store thread only
+ * works for an upload while buffers of it are queued, and at most {@code UPLOAD_PREFETCH} are
+ * requested ahead of the one being written. The writer itself holds what has arrived of the
+ * chunk being cut, which stays below two maximum-size chunks.
+ *
+ * <p>Downloads read each chunk with an {@link AsynchronousFileChannel}, one buffer per request
+ * from the subscriber. Plain chunks are checked against their CRC32C as they pass. Encrypted
+ * chunks are decrypted a buffer at a time by a {@link ContentDecryptor}, on the thread that
+ * completed the read, and every segment is authenticated before its plaintext is emitted.
+ */
+@Service
+public class StreamingFileServiceImpl implements StreamingFileService {
+
+    private static final int READ_BUFFER_SIZE = 32 * 1024;
+    private static final int UPLOAD_PREFETCH = 4;
+    private static final int STORE_QUEUE_SIZE = 100_000;
+    private static final int STORE_THREAD_TTL_SECONDS = 60;
+
+    private final FileService fileService;
+    private final StorageService storageService;
+    private final EncryptionService encryptionService;
+    private final Scheduler storeScheduler;
+
+    @Autowired
+    public StreamingFileServiceImpl(FileService fileService, StorageService storageService,
+                                    EncryptionService encryptionService,
+                                    @Value("${fileshare.streaming.store-threads:0}") int storeThreads) {
+        this(fileService, storageService, encryptionService, Schedulers.newBoundedElastic(
+                storeThreads > 0 ? storeThreads : Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                STORE_QUEUE_SIZE, "stream-store", STORE_THREAD_TTL_SECONDS, true));
+    }
+
+    StreamingFileServiceImpl(FileService fileService, StorageService storageService,
+                             EncryptionService encryptionService, Scheduler storeScheduler) {
+        this.fileService = fileService;
+        this.storageService = storageService;
+        this.encryptionService = encryptionService;
+        this.storeScheduler = storeScheduler;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        storeScheduler.dispose();
+    }
+
+    @Override
+    public Mono<FileResponse> saveFile(String ownerId, String fileName, Set<String> tags, Flux<DataBuffer> content) {
+        return store(fileService::newContent, content)
+                .map(stored -> fileService.saveFile(ownerId, fileName, tags, stored));
+    }
+
+    @Override
+    public Mono<FileResponse> updateFile(Id fileId, String userId, String fileName, Set<String> tags,
+                                         Flux<DataBuffer> content) {
+        return store(() -> fileService.newVersion(fileId, userId), content)
+                .map(stored -> fileService.updateFile(fileId, userId, fileName, tags, stored));
+    }
+
+    @Override
+    public Flux<DataBuffer> read(ContentLocation location, DataBufferFactory bufferFactory) {
+        String keyId = location.getKeyId();
+        return Flux.fromIterable(location.getChunks())
+                .concatMap(chunk -> keyId == null
+                        ? verified(chunk, readChunk(chunk, bufferFactory))
+                        : decrypted(chunk, keyId, readChunk(chunk, bufferFactory), bufferFactory), 1);
+    }
+
+    private Mono<StoredContent> store(Supplier<ContentWriter> newWriter, Flux<DataBuffer> content) {
+        return Mono.fromSupplier(() -> new UploadWriter(newWriter.get()))
+                .subscribeOn(storeScheduler)
+                .flatMap(writer -> content
+                        .publishOn(storeScheduler, UPLOAD_PREFETCH)
+                        .doOnNext(writer::write)
+                        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                        .then(Mono.fromSupplier(writer::finish))
+                        .doOnError(e -> writer.abort())
+                        .doOnCancel(writer::abort));
+    }
+
+    private Flux<DataBuffer> readChunk(FileChunk chunk, DataBufferFactory bufferFactory) {
+        Path path = storageService.localPath(chunk.getKey());
+        if (path != null) {
+            return DataBufferUtils.readAsynchronousFileChannel(
+                    () -> AsynchronousFileChannel.open(path, StandardOpenOption.READ), bufferFactory, READ_BUFFER_SIZE);
+        }
+        // Other backends only offer blocking channels; their reads borrow a store thread.
+        return DataBufferUtils.readByteChannel(() -> storageService.retrieve(chunk.getKey()), bufferFactory,
+                READ_BUFFER_SIZE).subscribeOn(storeScheduler);
+    }
+
+    private static Flux<DataBuffer> verified(FileChunk chunk, Flux<DataBuffer> stored) {
+        return Flux.defer(() -> {
+            CRC32C crc = new CRC32C();
+            long[] length = new long[1];
+            return stored
+                    .doOnNext(buffer -> {
+                        try (DataBuffer.ByteBufferIterator pieces = buffer.readableByteBuffers()) {
+                            while (pieces.hasNext()) {
+                                ByteBuffer piece = pieces.next();
+                                length[0] += piece.remaining();
+                                crc.update(piece);
+                            }
+                        }
+                    })
+                    .concatWith(Mono.defer(() -> length[0] == chunk.getSize() && crc.getValue() == chunk.getCrc32c()
+                            ? Mono.empty()
+                            : Mono.error(new IOException("Chunk " + chunk.getKey() + " failed its CRC32C check"))));
+        });
+    }
+
+    private Flux<DataBuffer> decrypted(FileChunk chunk, String keyId, Flux<DataBuffer> ciphertext,
+                                       DataBufferFactory bufferFactory) {
+        return Mono.fromCallable(() -> encryptionService.newDecryptor(keyId))
+                .flatMapMany(decryptor -> ciphertext
+                        .concatMapIterable(buffer -> decrypt(chunk, decryptor, buffer, bufferFactory))
+                        .concatWith(Mono.fromCallable(() -> bufferFactory.wrap(decryptor.finish()))
+                                .filter(buffer -> buffer.readableByteCount() > 0)))
+                .onErrorMap(EncryptionException.class,
+                        e -> new RuntimeException("Failed to decrypt chunk " + chunk.getKey(), e));
+    }
+
+    private static List<DataBuffer> decrypt(FileChunk chunk, ContentDecryptor decryptor, DataBuffer ciphertext,
+                                            DataBufferFactory bufferFactory) {
+        List<DataBuffer> plaintext = new ArrayList<>(1);
+        try (DataBuffer.ByteBufferIterator pieces = ciphertext.readableByteBuffers()) {
+            while (pieces.hasNext()) {
+                ByteBuffer segments = decryptor.update(pieces.next());
+                if (segments.hasRemaining()) {
+                    plaintext.add(bufferFactory.wrap(segments));
+                }
+            }
+            return plaintext;
+        } catch (EncryptionException e) {
+            throw new RuntimeException("Failed to decrypt chunk " + chunk.getKey(), e);
+        } finally {
+            DataBufferUtils.release(ciphertext);
+        }
+    }
+
+    /**
+     * Buffers arrive on a store thread, but a cancel can come from any thread; the lock keeps an
+     * abort from releasing chunks while a write is still storing one.
+     */
+    private static final class UploadWriter {
+        private final ContentWriter writer;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        UploadWriter(ContentWriter writer) {
+            this.writer = writer;
+        }
+
+        void write(DataBuffer buffer) {
+            lock.lock();
+            try (DataBuffer.ByteBufferIterator pieces = buffer.readableByteBuffers()) {
+                while (pieces.hasNext()) {
+                    writer.write(pieces.next());
+                }
+            } finally {
+                lock.unlock();
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        StoredContent finish() {
+            lock.lock();
+            try {
+                return writer.finish();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void abort() {
+            lock.lock();
+            try {
+                writer.abort();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.fileshare.service.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BatchResult {
+    private List<FileResponse> files;
+    private Map<String, String> failures;
+
+    public BatchResult() {
+        this(new ArrayList<>(), new LinkedHashMap<>());
+    }
+
+    public BatchResult(List<FileResponse> files, Map<String, String> failures) {
+        this.files = files;
+        this.failures = failures;
+    }
+
+    /**
+     * The files the operation succeeded for, in request order.
+     */
+    public List<FileResponse> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<FileResponse> files) {
+        this.files = files;
+    }
+
+    /**
+     * Why the operation failed, by id, for every id it did not succeed for.
+     */
+    public Map<String, String> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(Map<String, String> failures) {
+        this.failures = failures;
+    }
+}
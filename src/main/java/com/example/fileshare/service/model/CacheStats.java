@@ -0,0 +1,70 @@
+package com.example.fileshare.service.model;
+
+/**
+ * Counters of the download cache since startup, and what it holds right now.
+ */
+public class CacheStats {
+    private final long memoryHits;
+    private final long diskHits;
+    private final long misses;
+    private final long evictions;
+    private final long memoryEntries;
+    private final long memoryBytes;
+    private final long diskEntries;
+    private final long diskBytes;
+
+    public CacheStats(long memoryHits, long diskHits, long misses, long evictions,
+                      long memoryEntries, long memoryBytes, long diskEntries, long diskBytes) {
+        this.memoryHits = memoryHits;
+        this.diskHits = diskHits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.memoryEntries = memoryEntries;
+        this.memoryBytes = memoryBytes;
+        this.diskEntries = diskEntries;
+        this.diskBytes = diskBytes;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits;
+    }
+
+    public long getDiskHits() {
+        return diskHits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Share of lookups answered from either tier, or 0 before the first lookup.
+     */
+    public double getHitRate() {
+        long lookups = memoryHits + diskHits + misses;
+        return lookups == 0 ? 0 : (double) (memoryHits + diskHits) / lookups;
+    }
+
+    /**
+     * Entries pushed out of memory, whether or not the disk tier took them.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public long getMemoryEntries() {
+        return memoryEntries;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public long getDiskEntries() {
+        return diskEntries;
+    }
+
+    public long getDiskBytes() {
+        return diskBytes;
+    }
+}
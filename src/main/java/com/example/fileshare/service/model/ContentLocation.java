@@ -0,0 +1,44 @@
+package com.example.fileshare.service.model;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileChunk;
+
+import java.util.List;
+
+/**
+ * Where the current content of a file is stored: its chunks in order and, when they are
+ * encrypted, the data key they were sealed under. For readers that fetch the chunks themselves
+ * instead of reading through a blocking channel.
+ */
+public class ContentLocation {
+    private final File file;
+    private final List<FileChunk> chunks;
+    private final String keyId;
+    private final long length;
+
+    public ContentLocation(File file, List<FileChunk> chunks, String keyId) {
+        this.file = file;
+        this.chunks = chunks;
+        this.keyId = keyId;
+        this.length = chunks.stream().mapToLong(FileChunk::getSize).sum();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public List<FileChunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Data key of encrypted chunks; {@code null} when they are stored as plaintext.
+     */
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public long getLength() {
+        return length;
+    }
+}
@@ -3,10 +3,12 @@ package com.example.fileshare.service.model;
 public class EncryptionResult {
     private String keyId;
     private String ivBase64;
+    private String cipherSuite;
 
-    public EncryptionResult(String keyId, String ivBase64) {
+    public EncryptionResult(String keyId, String ivBase64, String cipherSuite) {
         this.keyId = keyId;
         this.ivBase64 = ivBase64;
+        this.cipherSuite = cipherSuite;
     }
 
     public String getKeyId() {
@@ -24,4 +26,12 @@ public class EncryptionResult {
     public void setIvBase64(String ivBase64) {
         this.ivBase64 = ivBase64;
     }
+
+    public String getCipherSuite() {
+        return cipherSuite;
+    }
+
+    public void setCipherSuite(String cipherSuite) {
+        this.cipherSuite = cipherSuite;
+    }
 }
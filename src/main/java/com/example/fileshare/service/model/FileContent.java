@@ -0,0 +1,52 @@
+package com.example.fileshare.service.model;
+
+import com.example.fileshare.domain.File;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Open handle on the stored bytes of a file, used to stream downloads without
+ * buffering the whole body on the heap.
+ */
+public class FileContent implements Closeable {
+    private final File file;
+    private final SeekableByteChannel channel;
+    private final Path path;
+    private final long length;
+
+    public FileContent(File file, SeekableByteChannel channel, Path path, long length) {
+        this.file = file;
+        this.channel = channel;
+        this.path = path;
+        this.length = length;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public SeekableByteChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Local path of the stored bytes when they are kept as-is (unencrypted) on disk; {@code null}
+     * otherwise. The file goes away once nothing references it, so the bytes are read through
+     * {@link #getChannel}, which keeps them readable until it is closed.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
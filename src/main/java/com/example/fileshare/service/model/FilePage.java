@@ -0,0 +1,34 @@
+package com.example.fileshare.service.model;
+
+import com.example.fileshare.domain.File;
+
+import java.util.List;
+
+public class FilePage {
+    private List<File> files;
+    private String nextCursor;
+
+    public FilePage(List<File> files, String nextCursor) {
+        this.files = files;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<File> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<File> files) {
+        this.files = files;
+    }
+
+    /**
+     * Cursor for the following page, or {@code null} when this is the last one.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -1,12 +1,14 @@
 package com.example.fileshare.service.model;
 
 import java.io.InputStream;
+import java.util.Set;
 
 public class FileRequest {
     private String fileName;
     private String ownerId;
     private InputStream fileData;
     private long fileSize;
+    private Set<String> tags;
 
     public FileRequest(String fileName, String ownerId, InputStream fileData, long fileSize) {
         this.fileName = fileName;
@@ -15,6 +17,11 @@ public class FileRequest {
         this.fileSize = fileSize;
     }
 
+    public FileRequest(String fileName, String ownerId, InputStream fileData, long fileSize, Set<String> tags) {
+        this(fileName, ownerId, fileData, fileSize);
+        this.tags = tags;
+    }
+
     public String getFileName() {
         return fileName;
     }
@@ -46,4 +53,15 @@ public class FileRequest {
     public void setFileSize(long fileSize) {
         this.fileSize = fileSize;
     }
+
+    /**
+     * Search tags for the file, or {@code null} to leave existing tags unchanged on update.
+     */
+    public Set<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(Set<String> tags) {
+        this.tags = tags;
+    }
 }
@@ -0,0 +1,80 @@
+package com.example.fileshare.service.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot of a re-encryption job: how many versions it has moved to the new key, how many
+ * bytes it has re-encrypted and how long it has held back for live traffic.
+ */
+public class ReencryptionProgress {
+
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    private final String jobId;
+    private final Status status;
+    private final long versionsTotal;
+    private final long versionsDone;
+    private final long versionsFailed;
+    private final long bytesProcessed;
+    private final long pausedMillis;
+    private final LocalDateTime startedAt;
+    private final LocalDateTime updatedAt;
+
+    public ReencryptionProgress(String jobId, Status status, long versionsTotal, long versionsDone,
+                                long versionsFailed, long bytesProcessed, long pausedMillis,
+                                LocalDateTime startedAt, LocalDateTime updatedAt) {
+        this.jobId = jobId;
+        this.status = status;
+        this.versionsTotal = versionsTotal;
+        this.versionsDone = versionsDone;
+        this.versionsFailed = versionsFailed;
+        this.bytesProcessed = bytesProcessed;
+        this.pausedMillis = pausedMillis;
+        this.startedAt = startedAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Versions found under the old key so far; grows if live writes add more while the job runs.
+     */
+    public long getVersionsTotal() {
+        return versionsTotal;
+    }
+
+    public long getVersionsDone() {
+        return versionsDone;
+    }
+
+    public long getVersionsFailed() {
+        return versionsFailed;
+    }
+
+    public long getBytesProcessed() {
+        return bytesProcessed;
+    }
+
+    /**
+     * Time the job spent paused because live request latency was over budget.
+     */
+    public long getPausedMillis() {
+        return pausedMillis;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
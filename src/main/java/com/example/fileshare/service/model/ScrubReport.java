@@ -0,0 +1,45 @@
+package com.example.fileshare.service.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Outcome of one pass of the {@code IntegrityScrubber}: how much was re-read and which blobs are
+ * missing or no longer match their recorded checksums.
+ */
+public class ScrubReport {
+    private final LocalDateTime startedAt;
+    private final LocalDateTime finishedAt;
+    private final long blobsChecked;
+    private final long bytesChecked;
+    private final List<String> corruptKeys;
+
+    public ScrubReport(LocalDateTime startedAt, LocalDateTime finishedAt, long blobsChecked, long bytesChecked,
+                       List<String> corruptKeys) {
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.blobsChecked = blobsChecked;
+        this.bytesChecked = bytesChecked;
+        this.corruptKeys = List.copyOf(corruptKeys);
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getBlobsChecked() {
+        return blobsChecked;
+    }
+
+    public long getBytesChecked() {
+        return bytesChecked;
+    }
+
+    public List<String> getCorruptKeys() {
+        return corruptKeys;
+    }
+}
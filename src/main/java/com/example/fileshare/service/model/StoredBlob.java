@@ -0,0 +1,23 @@
+package com.example.fileshare.service.model;
+
+/**
+ * Result of writing content to the {@code StorageService}: the key to read it back with and the
+ * number of bytes stored.
+ */
+public class StoredBlob {
+    private final String key;
+    private final long size;
+
+    public StoredBlob(String key, long size) {
+        this.key = key;
+        this.size = size;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
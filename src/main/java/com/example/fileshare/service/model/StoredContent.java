@@ -0,0 +1,66 @@
+package com.example.fileshare.service.model;
+
+import com.example.fileshare.domain.FileChunk;
+
+import java.util.List;
+
+/**
+ * Content written through the {@code ChunkStore}: its chunk list in order, total size, the
+ * SHA-256 of its plaintext bytes as hex and, when the chunks are encrypted, the key, IV and
+ * cipher suite they were written with.
+ */
+public class StoredContent {
+    private final List<FileChunk> chunks;
+    private final long size;
+    private final String checksum;
+    private final long bytesWritten;
+    private final String keyId;
+    private final String iv;
+    private final String cipherSuite;
+
+    public StoredContent(List<FileChunk> chunks, long size, String checksum, long bytesWritten) {
+        this(chunks, size, checksum, bytesWritten, null, null, null);
+    }
+
+    public StoredContent(List<FileChunk> chunks, long size, String checksum, long bytesWritten,
+                         String keyId, String iv, String cipherSuite) {
+        this.chunks = chunks;
+        this.size = size;
+        this.checksum = checksum;
+        this.bytesWritten = bytesWritten;
+        this.keyId = keyId;
+        this.iv = iv;
+        this.cipherSuite = cipherSuite;
+    }
+
+    public List<FileChunk> getChunks() {
+        return chunks;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Bytes of new chunks actually written to storage; the rest were already stored.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public String getKeyId() {
+        return keyId;
+    }
+
+    public String getIv() {
+        return iv;
+    }
+
+    public String getCipherSuite() {
+        return cipherSuite;
+    }
+}
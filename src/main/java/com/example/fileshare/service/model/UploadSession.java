@@ -0,0 +1,157 @@
+package com.example.fileshare.service.model;
+
+import com.example.fileshare.domain.Id;
+
+import java.time.LocalDateTime;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class UploadSession {
+    private String uploadId;
+    private Id fileId;
+    private String ownerId;
+    private String fileName;
+    private long fileSize;
+    private long partSize;
+    private int partCount;
+    private SortedSet<Integer> completedParts;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    // Both guarded by lock(). Parts are refused while the upload is completing, and it only
+    // starts completing once no part is being written.
+    private boolean completing;
+    private int partsInProgress;
+    // Guards completedParts and the manifest. A lock rather than a monitor, so a virtual thread
+    // writing the manifest does not pin its carrier thread.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public UploadSession(String uploadId, Id fileId, String ownerId, String fileName,
+                         long fileSize, long partSize, int partCount, LocalDateTime createdAt) {
+        this.uploadId = uploadId;
+        this.fileId = fileId;
+        this.ownerId = ownerId;
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+        this.partSize = partSize;
+        this.partCount = partCount;
+        this.completedParts = new ConcurrentSkipListSet<>();
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public Id getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(Id fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    public void setOwnerId(String ownerId) {
+        this.ownerId = ownerId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    public void setPartSize(long partSize) {
+        this.partSize = partSize;
+    }
+
+    public int getPartCount() {
+        return partCount;
+    }
+
+    public void setPartCount(int partCount) {
+        this.partCount = partCount;
+    }
+
+    public SortedSet<Integer> getCompletedParts() {
+        return completedParts;
+    }
+
+    public void setCompletedParts(SortedSet<Integer> completedParts) {
+        this.completedParts = completedParts;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * When a part was last received, or the upload was initiated; idle uploads expire from this.
+     */
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public boolean isCompleting() {
+        return completing;
+    }
+
+    public void setCompleting(boolean completing) {
+        this.completing = completing;
+    }
+
+    /**
+     * Parts being written right now; not part of the upload's state as clients see it.
+     */
+    public int partsInProgress() {
+        return partsInProgress;
+    }
+
+    public void setPartsInProgress(int partsInProgress) {
+        this.partsInProgress = partsInProgress;
+    }
+
+    public ReentrantLock lock() {
+        return lock;
+    }
+
+    @Override
+    public String toString() {
+        return "UploadSession{" +
+                "uploadId='" + uploadId + '\'' +
+                ", fileId='" + fileId + '\'' +
+                ", completedParts=" + completedParts.size() + "/" + partCount +
+                '}';
+    }
+}
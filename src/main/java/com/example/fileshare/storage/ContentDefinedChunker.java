@@ -0,0 +1,83 @@
+package com.example.fileshare.storage;
+
+import java.util.SplittableRandom;
+
+/**
+ * Finds chunk boundaries from the content itself (FastCDC-style gear hash), so inserting or
+ * removing bytes only changes the chunks around the edit; the boundaries after it fall at the
+ * same content and the same chunks are produced again.
+ *
+ * <p>A boundary is declared where the rolling hash has its top bits clear. Before the average
+ * size a stricter mask is used and after it a looser one ("normalized chunking"), which keeps
+ * chunk sizes close to the average without losing content alignment. Chunks are never shorter
+ * than the minimum, except at the end of the content, or longer than the maximum.
+ */
+public final class ContentDefinedChunker {
+    public static final int DEFAULT_MIN_SIZE = 256 * 1024;
+    public static final int DEFAULT_AVERAGE_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    // Boundaries must not move between releases or restarts, so the table comes from a fixed seed.
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5eed_c0de_f11e_5a1eL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final long strictMask;
+    private final long looseMask;
+
+    public ContentDefinedChunker() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE);
+    }
+
+    public ContentDefinedChunker(int minSize, int averageSize, int maxSize) {
+        if (minSize <= 0 || minSize > averageSize || averageSize > maxSize || Integer.bitCount(averageSize) != 1) {
+            throw new IllegalArgumentException("Invalid chunk sizes: min=" + minSize
+                    + ", average=" + averageSize + ", max=" + maxSize);
+        }
+        int bits = Integer.numberOfTrailingZeros(averageSize);
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        this.strictMask = -1L << (64 - (bits + 2));
+        this.looseMask = -1L << (64 - (bits - 2));
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Length of the chunk starting at {@code data[offset]}. The caller must supply at least
+     * {@link #maxSize()} bytes unless the content ends within {@code length}.
+     */
+    public int cut(byte[] data, int offset, int length) {
+        if (length <= minSize) {
+            return length;
+        }
+        int end = Math.min(length, maxSize);
+        int normal = Math.min(end, averageSize);
+        long hash = 0;
+        int i = minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((hash & strictMask) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < end; i++) {
+            hash = (hash << 1) + GEAR[data[offset + i] & 0xFF];
+            if ((hash & looseMask) == 0) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.fileshare.storage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the average rate of background I/O. Callers report the bytes they have moved and are put
+ * to sleep for as long as they are ahead of the allowed rate, measured from when the limiter was
+ * created or last {@link #reset()}. Several threads may share one limiter to share one budget;
+ * they sleep outside the lock.
+ */
+public final class IoRateLimiter {
+    private final long bytesPerSecond;
+    private long startNanos;
+    private long bytes;
+
+    /**
+     * @param bytesPerSecond average rate to allow; zero or less means unlimited
+     */
+    public IoRateLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+        reset();
+    }
+
+    public synchronized void reset() {
+        startNanos = System.nanoTime();
+        bytes = 0;
+    }
+
+    public void acquire(long count) throws InterruptedException {
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        long aheadNanos;
+        synchronized (this) {
+            bytes += count;
+            long dueNanos = (long) (bytes * (double) TimeUnit.SECONDS.toNanos(1) / bytesPerSecond);
+            aheadNanos = dueNanos - (System.nanoTime() - startNanos);
+        }
+        if (aheadNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(aheadNanos);
+        }
+    }
+}
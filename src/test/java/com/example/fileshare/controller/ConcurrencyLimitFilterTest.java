@@ -0,0 +1,88 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.controller.ConcurrencyLimitFilter.Endpoint;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ConcurrencyLimitFilterTest {
+
+    @Test
+    void classify_separatesDownloadsUploadsAndMetadata() {
+        String id = "01890a5d-ac96-774b-bcce-b302099a8057";
+        assertEquals(Endpoint.DOWNLOAD, ConcurrencyLimitFilter.classify("GET", "/files/" + id));
+        assertEquals(Endpoint.UPLOAD, ConcurrencyLimitFilter.classify("POST", "/files"));
+        assertEquals(Endpoint.UPLOAD, ConcurrencyLimitFilter.classify("PUT", "/files/" + id));
+        assertEquals(Endpoint.UPLOAD, ConcurrencyLimitFilter.classify("PUT", "/files/uploads/u1/parts/3"));
+        assertEquals(Endpoint.UPLOAD, ConcurrencyLimitFilter.classify("POST", "/files/uploads/u1/complete"));
+        assertEquals(Endpoint.UPLOAD, ConcurrencyLimitFilter.classify("POST", "/files/batch"));
+        assertEquals(Endpoint.METADATA, ConcurrencyLimitFilter.classify("POST", "/files/batch/delete"));
+        assertEquals(Endpoint.METADATA, ConcurrencyLimitFilter.classify("GET", "/files"));
+        assertEquals(Endpoint.METADATA, ConcurrencyLimitFilter.classify("GET", "/files/search"));
+        assertEquals(Endpoint.METADATA, ConcurrencyLimitFilter.classify("DELETE", "/files/" + id));
+        assertEquals(Endpoint.METADATA, ConcurrencyLimitFilter.classify("GET", "/files/" + id + "/permissions"));
+        assertEquals(Endpoint.METADATA, ConcurrencyLimitFilter.classify("POST", "/files/uploads"));
+        assertNull(ConcurrencyLimitFilter.classify("GET", "/health"));
+        assertNull(ConcurrencyLimitFilter.classify("POST", "/admin/keys/master/rotate"));
+        assertNull(ConcurrencyLimitFilter.classify("GET", "/filesystem"));
+    }
+
+    @Test
+    void requestsBeyondTheLimit_waitThenGet503() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 1, 1, 50);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holder = executor.submit(() -> {
+                filter.doFilter(download(), new MockHttpServletResponse(), new MockFilterChain() {
+                    @Override
+                    public void doFilter(ServletRequest request, ServletResponse response) {
+                        entered.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                return null;
+            });
+            entered.await();
+
+            MockHttpServletResponse rejected = new MockHttpServletResponse();
+            filter.doFilter(download(), rejected, new MockFilterChain());
+            assertEquals(503, rejected.getStatus());
+            assertEquals("1", rejected.getHeader("Retry-After"));
+            assertEquals(1, filter.rejected(Endpoint.DOWNLOAD));
+
+            MockHttpServletResponse health = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/health"), health, new MockFilterChain());
+            assertEquals(200, health.getStatus());
+
+            release.countDown();
+            holder.get();
+            MockHttpServletResponse admitted = new MockHttpServletResponse();
+            filter.doFilter(download(), admitted, new MockFilterChain());
+            assertEquals(200, admitted.getStatus());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static MockHttpServletRequest download() {
+        return new MockHttpServletRequest("GET", "/files/01890a5d-ac96-774b-bcce-b302099a8057");
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.fileshare.controller;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old {@code readAllBytes} download path with {@link FileTransfer#copy} for 1 MB,
+ * 100 MB and 1 GB files. Run with
+ * <pre>
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main DownloadBenchmark -prof gc"
+ * </pre>
+ * Throughput is {@code sizeMb / score}; {@code gc.alloc.rate.norm} is the heap allocated per
+ * download, which grows with the file for {@code readAllBytes} and stays flat for the channel copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class DownloadBenchmark {
+
+    @Param({"1", "100", "1024"})
+    public int sizeMb;
+
+    private Path file;
+    private FileChannel channel;
+
+    @Setup(Level.Trial)
+    public void createFile() throws Exception {
+        file = Files.createTempFile("download-bench", ".bin");
+        ByteBuffer block = ByteBuffer.allocateDirect(1024 * 1024);
+        for (int i = 0; i < block.capacity(); i++) {
+            block.put((byte) i);
+        }
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < sizeMb; i++) {
+                block.clear();
+                while (block.hasRemaining()) {
+                    out.write(block);
+                }
+            }
+        }
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws Exception {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int readAllBytes() throws Exception {
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] data = input.readAllBytes();
+            OutputStream.nullOutputStream().write(data);
+            return data.length;
+        }
+    }
+
+    @Benchmark
+    public long channelCopy() throws Exception {
+        long length = channel.size();
+        FileTransfer.copy(channel, 0, length, OutputStream.nullOutputStream());
+        return length;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.service.model.FileContent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpDownloadsTest {
+
+    private static final int LENGTH = 100;
+    // RFC 1123's formatter drops the leading zero of the day, which the IMF-fixdate format needs.
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    @TempDir
+    Path root;
+
+    private byte[] data;
+    private Path path;
+    private File file;
+    private FileChannel channel;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        data = new byte[LENGTH];
+        new Random(1).nextBytes(data);
+        path = Files.write(root.resolve("content"), data);
+        file = new File("alice", "report.pdf", LENGTH, "abc123");
+        channel = FileChannel.open(path);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        channel.close();
+    }
+
+    @Test
+    void noRange_sendsTheWholeFileWithValidators() throws Exception {
+        MockHttpServletResponse response = serve(get());
+
+        assertEquals(200, response.getStatus());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("\"abc123\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals(LENGTH, response.getContentLengthLong());
+        assertArrayEquals(data, response.getContentAsByteArray());
+    }
+
+    @Test
+    void singleRange_sendsThoseBytes() throws Exception {
+        MockHttpServletResponse response = serve(get("bytes=10-19"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 10-19/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(10, response.getContentLengthLong());
+        assertArrayEquals(slice(10, 19), response.getContentAsByteArray());
+    }
+
+    @Test
+    void suffixRange_sendsTheLastBytes() throws Exception {
+        MockHttpServletResponse response = serve(get("bytes=-5"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 95-99/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(slice(95, 99), response.getContentAsByteArray());
+    }
+
+    @Test
+    void rangeRunningPastTheEnd_isClipped() throws Exception {
+        MockHttpServletResponse response = serve(get("bytes=90-500"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 90-99/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(slice(90, 99), response.getContentAsByteArray());
+    }
+
+    @Test
+    void rangeStartingPastTheEnd_isNotSatisfiable() throws Exception {
+        MockHttpServletResponse response = serve(get("bytes=200-300"));
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void severalRanges_areSentAsMultipartByteranges() throws Exception {
+        MockHttpServletResponse response = serve(get("bytes=0-9,50-59"));
+
+        assertEquals(206, response.getStatus());
+        String contentType = response.getContentType();
+        assertTrue(contentType.startsWith("multipart/byteranges; boundary="), contentType);
+        String boundary = contentType.substring(contentType.indexOf('=') + 1);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int[] range : new int[][]{{0, 9}, {50, 59}}) {
+            expected.writeBytes(("\r\n--" + boundary + "\r\nContent-Type: application/octet-stream\r\n"
+                    + "Content-Range: bytes " + range[0] + "-" + range[1] + "/100\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            expected.writeBytes(slice(range[0], range[1]));
+        }
+        expected.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        assertArrayEquals(expected.toByteArray(), response.getContentAsByteArray());
+        assertEquals(expected.size(), response.getContentLengthLong());
+    }
+
+    @Test
+    void overlappingRangesLargerThanTheFile_sendTheWholeFile() throws Exception {
+        MockHttpServletResponse response = serve(get("bytes=0-79,20-99"));
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(data, response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRange_withTheCurrentStrongTag_honorsTheRange() throws Exception {
+        MockHttpServletRequest matching = get("bytes=0-9");
+        matching.addHeader(HttpHeaders.IF_RANGE, "\"abc123\"");
+        assertEquals(206, serve(matching).getStatus());
+
+        MockHttpServletRequest stale = get("bytes=0-9");
+        stale.addHeader(HttpHeaders.IF_RANGE, "\"older\"");
+        MockHttpServletResponse response = serve(stale);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(data, response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRange_withAWeakTag_neverMatches() throws Exception {
+        file.setChecksum(null);
+        String weak = HttpDownloads.etag(file);
+        assertTrue(weak.startsWith("W/"), weak);
+
+        MockHttpServletRequest request = get("bytes=0-9");
+        request.addHeader(HttpHeaders.IF_RANGE, weak);
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(data, response.getContentAsByteArray());
+    }
+
+    @Test
+    void ifRange_withADate_matchesOnlyTheLastModifiedTime() throws Exception {
+        long lastModified = HttpDownloads.lastModified(file);
+
+        MockHttpServletRequest current = get("bytes=0-9");
+        current.addHeader(HttpHeaders.IF_RANGE, httpDate(lastModified));
+        assertEquals(206, serve(current).getStatus());
+
+        MockHttpServletRequest older = get("bytes=0-9");
+        older.addHeader(HttpHeaders.IF_RANGE, httpDate(lastModified - 60_000));
+        assertEquals(200, serve(older).getStatus());
+    }
+
+    @Test
+    void ifNoneMatch_withTheCurrentTag_isNotModified() throws Exception {
+        MockHttpServletRequest request = get("bytes=0-9");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc123\"");
+        MockHttpServletResponse response = serve(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        MockHttpServletRequest changed = get();
+        changed.addHeader(HttpHeaders.IF_NONE_MATCH, "\"older\"");
+        assertEquals(200, serve(changed).getStatus());
+    }
+
+    @Test
+    void ifModifiedSince_theLastModifiedTime_isNotModified() throws Exception {
+        long lastModified = HttpDownloads.lastModified(file);
+
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, httpDate(lastModified));
+        assertEquals(304, serve(request).getStatus());
+
+        MockHttpServletRequest older = get();
+        older.addHeader(HttpHeaders.IF_MODIFIED_SINCE, httpDate(lastModified - 60_000));
+        assertEquals(200, serve(older).getStatus());
+    }
+
+    @Test
+    void contentEndingBeforeItsLength_failsInsteadOfTruncating() throws Exception {
+        Path shorter = Files.write(root.resolve("shorter"), Arrays.copyOf(data, LENGTH / 2));
+        try (FileChannel truncated = FileChannel.open(shorter)) {
+            FileContent content = new FileContent(file, truncated, null, LENGTH);
+
+            assertThrows(IOException.class,
+                    () -> HttpDownloads.serve(content, get(), new MockHttpServletResponse()));
+        }
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpDownloads.serve(new FileContent(file, channel, null, LENGTH), request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/files/id");
+    }
+
+    private static MockHttpServletRequest get(String range) {
+        MockHttpServletRequest request = get();
+        request.addHeader(HttpHeaders.RANGE, range);
+        return request;
+    }
+
+    private byte[] slice(int start, int end) {
+        return Arrays.copyOfRange(data, start, end + 1);
+    }
+
+    private static String httpDate(long millis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.fileshare.controller;
+
+import com.example.fileshare.FileShareApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Connection count against latency for the two request thread models. For each of
+ * {@code platform} and {@code virtual} it starts the application in its own JVM and scratch
+ * directory, then for every connection count opens that many slow downloads of a 32 MB file.
+ * Each reads 1 KB every 100 ms through a small receive buffer, so it holds its request thread the
+ * whole time. Meanwhile it times health checks and complete downloads of a 64 KB file. Run with
+ * <pre>
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath com.example.fileshare.controller.ThreadModelLoadHarness 50,200,400,800"
+ * </pre>
+ * With platform threads the probes queue behind the slow downloads once these outnumber Tomcat's
+ * 200 threads. With virtual threads they stay flat until the download limit of
+ * {@link ConcurrencyLimitFilter} turns slow clients away with 503.
+ */
+public final class ThreadModelLoadHarness {
+
+    private static final String USER = "load";
+    private static final int LARGE_FILE_BYTES = 32 * 1024 * 1024;
+    private static final int SMALL_FILE_BYTES = 64 * 1024;
+    private static final int SLOW_READ_BYTES = 1024;
+    private static final long SLOW_READ_INTERVAL_MILLIS = 100;
+    private static final Duration RAMP_UP = Duration.ofSeconds(2);
+    private static final Duration STEP = Duration.ofSeconds(10);
+    private static final Duration PROBE_INTERVAL = Duration.ofMillis(50);
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(90);
+    private static final Pattern FILE_ID = Pattern.compile("\"fileId\"\\s*:\\s*\"([^\"]+)\"");
+
+    private ThreadModelLoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] connectionCounts = Arrays.stream((args.length > 0 ? args[0] : "50,200,400,800").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        System.out.printf("%-9s %6s | %10s %10s %10s %8s | %12s %12s %8s | %8s%n", "threads", "conns",
+                "health p50", "health p99", "health max", "timeouts", "download p50", "download p99", "timeouts",
+                "rejected");
+        for (String threads : List.of("platform", "virtual")) {
+            try (Server server = Server.start(threads)) {
+                String large = server.upload("large.bin", randomBytes(LARGE_FILE_BYTES));
+                String small = server.upload("small.bin", randomBytes(SMALL_FILE_BYTES));
+                for (int connections : connectionCounts) {
+                    runStep(server, threads, connections, large, small);
+                }
+            }
+        }
+    }
+
+    private static void runStep(Server server, String threads, int connections, String large, String small)
+            throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder rejected = new LongAdder();
+        List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < connections; i++) {
+            clients.execute(() -> slowDownload(server.port, large, running, rejected, sockets));
+        }
+        Thread.sleep(RAMP_UP.toMillis());
+
+        Probe health = new Probe();
+        Probe download = new Probe();
+        long end = System.nanoTime() + STEP.toNanos();
+        while (System.nanoTime() < end) {
+            health.time(() -> server.get("/health"));
+            download.time(() -> server.get("/files/" + small + "?userId=" + USER));
+            Thread.sleep(PROBE_INTERVAL.toMillis());
+        }
+
+        running.set(false);
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+        clients.shutdownNow();
+        clients.awaitTermination(30, TimeUnit.SECONDS);
+        System.out.printf("%-9s %6d | %8dms %8dms %8dms %8d | %10dms %10dms %8d | %8d%n", threads, connections,
+                health.percentile(50), health.percentile(99), health.percentile(100), health.timeouts,
+                download.percentile(50), download.percentile(99), download.timeouts, rejected.sum());
+    }
+
+    private static void slowDownload(int port, String fileId, AtomicBoolean running, LongAdder rejected,
+                                     List<Socket> sockets) {
+        try (Socket socket = new Socket()) {
+            sockets.add(socket);
+            socket.setReceiveBufferSize(4 * 1024);
+            socket.connect(new InetSocketAddress("localhost", port));
+            socket.setSoTimeout((int) STEP.plus(RAMP_UP).toMillis());
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /files/" + fileId + "?userId=" + USER + " HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[SLOW_READ_BYTES];
+            int read = in.read(buffer);
+            if (read > 0 && new String(buffer, 0, Math.min(read, 12), StandardCharsets.US_ASCII).endsWith("503")) {
+                rejected.increment();
+                return;
+            }
+            while (running.get() && read >= 0) {
+                Thread.sleep(SLOW_READ_INTERVAL_MILLIS);
+                read = in.read(buffer);
+            }
+        } catch (IOException | InterruptedException e) {
+            // Closed at the end of the step.
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    private static final class Probe {
+        private final List<Long> millis = new ArrayList<>();
+        private int timeouts;
+
+        void time(Call call) throws Exception {
+            long start = System.nanoTime();
+            try {
+                call.run();
+                millis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (HttpTimeoutException e) {
+                timeouts++;
+            }
+        }
+
+        long percentile(double percentile) {
+            if (millis.isEmpty()) {
+                return -1;
+            }
+            List<Long> sorted = new ArrayList<>(millis);
+            sorted.sort(Comparator.naturalOrder());
+            int index = (int) Math.min(sorted.size() - 1, Math.ceil(percentile / 100 * sorted.size()) - 1);
+            return sorted.get(Math.max(0, index));
+        }
+    }
+
+    /**
+     * The application in a child JVM, with its storage in a scratch directory.
+     */
+    private static final class Server implements AutoCloseable {
+        private final Process process;
+        private final Path dir;
+        private final int port;
+        private final HttpClient client;
+
+        private Server(Process process, Path dir, int port) {
+            this.process = process;
+            this.dir = dir;
+            this.port = port;
+            this.client = HttpClient.newBuilder().connectTimeout(PROBE_TIMEOUT).build();
+        }
+
+        static Server start(String threads) throws Exception {
+            Path dir = Files.createTempDirectory("fileshare-load-");
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            Path java = Path.of(System.getProperty("java.home"), "bin", "java");
+            // The child runs in the scratch directory, so relative class path entries must be resolved here.
+            String classPath = Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+                    .map(entry -> Path.of(entry).toAbsolutePath().toString())
+                    .collect(Collectors.joining(File.pathSeparator));
+            Process process = new ProcessBuilder(java.toString(), "-Xmx1g",
+                    "-cp", classPath, FileShareApplication.class.getName(),
+                    "--server.port=" + port,
+                    "--fileshare.http.threads=" + threads,
+                    "--fileshare.encryption.cipher-suite=AES_256_GCM",
+                    "--spring.servlet.multipart.max-file-size=64MB",
+                    "--spring.servlet.multipart.max-request-size=64MB")
+                    .directory(dir.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(dir.resolve("server.log").toFile())
+                    .start();
+            Server server = new Server(process, dir, port);
+            long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+            while (true) {
+                try {
+                    server.get("/health");
+                    return server;
+                } catch (IOException e) {
+                    if (!process.isAlive() || System.nanoTime() > deadline) {
+                        process.destroyForcibly();
+                        throw new IllegalStateException("Server did not start; see " + dir.resolve("server.log"), e);
+                    }
+                    Thread.sleep(200);
+                }
+            }
+        }
+
+        void get(String path) throws IOException, InterruptedException {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                    .timeout(PROBE_TIMEOUT)
+                    .build();
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        }
+
+        String upload(String name, byte[] content) throws IOException, InterruptedException {
+            String boundary = "harness-" + System.nanoTime();
+            byte[] head = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"ownerId\"\r\n\r\n" + USER
+                    + "\r\n--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + name
+                    + "\"\r\nContent-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+            byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/files"))
+                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                    .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, content, tail)))
+                    .build();
+            String body = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+            Matcher matcher = FILE_ID.matcher(body);
+            if (!matcher.find()) {
+                throw new IllegalStateException("Upload failed: " + body);
+            }
+            return matcher.group(1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            process.destroy();
+            try {
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor();
+                }
+            } catch (InterruptedException e) {
+                // Still kill the server and clean up; the caller sees the interrupt flag.
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+}
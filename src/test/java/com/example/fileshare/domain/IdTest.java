@@ -0,0 +1,41 @@
+package com.example.fileshare.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdTest {
+
+    @Test
+    void generate_producesVersion7IdsThatRoundTripThroughText() {
+        Id id = Id.generate();
+        UUID uuid = UUID.fromString(id.toString());
+
+        assertEquals(7, uuid.version());
+        assertEquals(2, uuid.variant());
+        assertEquals(id, Id.valueOf(id.toString()));
+        assertEquals(id.hashCode(), Id.valueOf(id.toString()).hashCode());
+    }
+
+    @Test
+    void compareTo_ordersByCreationTimeAndUnsignedBits() throws Exception {
+        Id earlier = Id.generate();
+        Thread.sleep(2);
+        Id later = Id.generate();
+
+        assertTrue(earlier.compareTo(later) < 0);
+        assertTrue(new Id(1, 0).compareTo(new Id(-1, 0)) < 0);
+        assertTrue(new Id(0, 1).compareTo(new Id(0, -1)) < 0);
+    }
+
+    @Test
+    void valueOf_rejectsAnythingButUuidText() {
+        assertThrows(IllegalArgumentException.class, () -> Id.valueOf("file-1"));
+        assertThrows(IllegalArgumentException.class, () -> Id.valueOf("1-1-1-1-1"));
+        assertThrows(IllegalArgumentException.class, () -> Id.valueOf(null));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileTableTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rows_readBackEveryField() throws Exception {
+        try (FileTable table = FileTable.direct()) {
+            File file = new File(Id.generate(), "owner", "report.pdf", 42, LocalDateTime.of(2024, 1, 2, 3, 4, 5, 6),
+                    LocalDateTime.of(2024, 6, 7, 8, 9, 10, 11), "sum", 3, File.Status.ARCHIVED);
+            FileTable.Row row = table.insert(file);
+
+            File read = row.toFile();
+            assertEquals(file.getId(), read.getId());
+            assertEquals(file.getOwnerId(), read.getOwnerId());
+            assertEquals(file.getName(), read.getName());
+            assertEquals(file.getSize(), read.getSize());
+            assertEquals(file.getCreatedAt(), read.getCreatedAt());
+            assertEquals(file.getUpdatedAt(), read.getUpdatedAt());
+            assertEquals(file.getChecksum(), read.getChecksum());
+            assertEquals(file.getContentVersion(), read.getContentVersion());
+            assertEquals(file.getStatus(), read.getStatus());
+            assertEquals("report.pdf", row.name());
+            assertEquals(42, row.size());
+
+            File empty = new File(Id.generate(), null, null, 0, null, null, null, 0, null);
+            File readEmpty = table.insert(empty).toFile();
+            assertNull(readEmpty.getOwnerId());
+            assertNull(readEmpty.getName());
+            assertNull(readEmpty.getCreatedAt());
+            assertNull(readEmpty.getStatus());
+        }
+    }
+
+    @Test
+    void update_keepsUnchangedStringsInPlace() throws Exception {
+        try (FileTable table = FileTable.direct()) {
+            File file = new File("owner", "report.pdf", 1, "sum");
+            FileTable.Row row = table.insert(file);
+            long stringBytes = table.stringBytes();
+
+            File resized = new File(file);
+            resized.setSize(2);
+            table.update(row, file, resized);
+            assertEquals(stringBytes, table.stringBytes());
+
+            File renamed = new File(resized);
+            renamed.setName("final.pdf");
+            table.update(row, resized, renamed);
+            assertEquals("final.pdf", row.toFile().getName());
+            assertEquals(2, row.toFile().getSize());
+            assertTrue(table.stringBytes() > stringBytes);
+        }
+    }
+
+    @Test
+    void rows_spanPagesAndMappedFilesAreRemovedOnClose() throws Exception {
+        List<FileTable.Row> rows = new ArrayList<>();
+        try (FileTable table = FileTable.mapped(dir)) {
+            for (int i = 0; i < 150_000; i++) {
+                rows.add(table.insert(new File("owner-" + i % 7, "file-" + i, i, null)));
+            }
+            assertEquals(150_000, table.rows());
+            for (int i = 0; i < rows.size(); i += 997) {
+                File file = rows.get(i).toFile();
+                assertEquals("file-" + i, file.getName());
+                assertEquals("owner-" + i % 7, file.getOwnerId());
+                assertEquals(i, file.getSize());
+            }
+        }
+        try (var entries = Files.list(dir)) {
+            assertFalse(entries.findAny().isPresent());
+        }
+    }
+}
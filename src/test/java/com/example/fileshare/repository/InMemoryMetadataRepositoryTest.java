@@ -0,0 +1,228 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.domain.Id;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InMemoryMetadataRepositoryTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 5_000;
+
+    @Test
+    void concurrentSaves_areAllVisible() throws Exception {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                repository.saveFile(new File("owner-" + thread, "file-" + i, i, "N/A"));
+            }
+        });
+
+        assertEquals(THREADS * OPERATIONS, repository.findAllFiles().size());
+    }
+
+    @Test
+    void concurrentUpdates_loseNoWrites() throws Exception {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository();
+        File file = new File("owner", "counter", 0, "N/A");
+        repository.saveFile(file);
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                repository.updateFile(file.getId(), current -> current.setSize(current.getSize() + 1));
+            }
+        });
+
+        assertEquals((long) THREADS * OPERATIONS, repository.findFile(file.getId()).orElseThrow().getSize());
+    }
+
+    @Test
+    void updateVersion_replacesOnlyThatVersion() {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository();
+        Id fileId = Id.generate();
+        repository.addVersion(new FileVersion(fileId, 0, null, "key-1", null, "sum-1"));
+        repository.addVersion(new FileVersion(fileId, 0, null, "key-1", null, "sum-2"));
+
+        FileVersion updated = repository.updateVersion(fileId, 1, version -> version.setKeyId("key-2")).orElseThrow();
+
+        assertEquals("key-2", updated.getKeyId());
+        assertEquals("key-2", repository.findVersion(fileId, 1).orElseThrow().getKeyId());
+        assertEquals("key-1", repository.findVersion(fileId, 2).orElseThrow().getKeyId());
+        assertFalse(repository.updateVersion(fileId, 3, version -> version.setKeyId("key-3")).isPresent());
+    }
+
+    @Test
+    void replaceVersion_onlySwapsTheExpectedKeyOfALiveFile() {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository();
+        File file = new File("owner", "rotated", 1, "N/A");
+        repository.saveFile(file);
+        repository.addVersion(new FileVersion(file.getId(), 0, null, "key-1", null, "sum-1"));
+
+        assertFalse(repository.replaceVersion(file.getId(), 1, "key-0", version -> version.setKeyId("key-2")).isPresent());
+        assertEquals("key-2", repository.replaceVersion(file.getId(), 1, "key-1", version -> version.setKeyId("key-2"))
+                .orElseThrow().getKeyId());
+        assertEquals("key-2", repository.findVersion(file.getId(), 1).orElseThrow().getKeyId());
+
+        repository.updateFile(file.getId(), stored -> stored.setStatus(File.Status.DELETED));
+        assertFalse(repository.replaceVersion(file.getId(), 1, "key-2", version -> version.setKeyId("key-3")).isPresent());
+        assertEquals("key-2", repository.findVersion(file.getId(), 1).orElseThrow().getKeyId());
+        assertFalse(repository.replaceVersion(Id.generate(), 1, "key-2", version -> version.setKeyId("key-3")).isPresent());
+    }
+
+    @Test
+    void concurrentVersionAppends_getUniqueSequentialNumbers() throws Exception {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository();
+        Id fileId = Id.generate();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS / 10; i++) {
+                repository.addVersion(new FileVersion(fileId, 0, "path", null, null, "N/A"));
+            }
+        });
+
+        List<FileVersion> versions = repository.findVersions(fileId);
+        assertEquals(THREADS * OPERATIONS / 10, versions.size());
+        Set<Integer> numbers = new HashSet<>();
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(i + 1, versions.get(i).getVersion());
+            numbers.add(versions.get(i).getVersion());
+        }
+        assertEquals(versions.size(), numbers.size());
+        assertEquals(versions.size(), repository.findLatestVersion(fileId).orElseThrow().getVersion());
+    }
+
+    @Test
+    void readersNeverObservePartialUpdates() throws Exception {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository();
+        File file = new File("owner", "0", 0, "N/A");
+        repository.saveFile(file);
+        AtomicBoolean torn = new AtomicBoolean();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS; i++) {
+                if (thread % 2 == 0) {
+                    long next = i;
+                    repository.updateFile(file.getId(), current -> {
+                        current.setName(Long.toString(next));
+                        current.setSize(next);
+                    });
+                } else {
+                    File snapshot = repository.findFile(file.getId()).orElseThrow();
+                    if (!snapshot.getName().equals(Long.toString(snapshot.getSize()))) {
+                        torn.set(true);
+                    }
+                }
+            }
+        });
+
+        assertFalse(torn.get());
+    }
+
+    @Test
+    void ownerPages_followSortOrderAndCursor() {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository();
+        for (int i = 0; i < 25; i++) {
+            repository.saveFile(new File("alice", String.format("file-%02d", i), 100 - i, "N/A"));
+        }
+        repository.saveFile(new File("bob", "other", 1, "N/A"));
+
+        List<String> names = new ArrayList<>();
+        File after = null;
+        List<File> page;
+        do {
+            page = repository.findFilesForUser("alice", FileSort.NAME, false, after, 10);
+            page.forEach(file -> names.add(file.getName()));
+            after = page.isEmpty() ? null : FileCursor.decode(FileCursor.encode(page.get(page.size() - 1)));
+        } while (page.size() == 10);
+
+        assertEquals(25, names.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(String.format("file-%02d", i), names.get(i));
+        }
+
+        List<File> bySizeDescending = repository.findFilesForUser("alice", FileSort.SIZE, true, null, 3);
+        assertEquals(List.of(100L, 99L, 98L), bySizeDescending.stream().map(File::getSize).toList());
+    }
+
+    @Test
+    void ownerIndex_tracksUpdatesAndDeletes() {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository();
+        File kept = new File("alice", "b", 1, "N/A");
+        File removed = new File("alice", "a", 1, "N/A");
+        repository.saveFile(kept);
+        repository.saveFile(removed);
+
+        repository.updateFile(kept.getId(), current -> current.setName("z"));
+        repository.updateFile(kept.getId(), current -> current.setChecksum("unchanged-sort-keys"));
+        repository.updateFile(removed.getId(), current -> current.setStatus(File.Status.DELETED));
+
+        List<File> files = repository.findFilesForUser("alice", FileSort.NAME, false, null, 10);
+        assertEquals(1, files.size());
+        assertEquals("z", files.get(0).getName());
+        assertEquals("unchanged-sort-keys", files.get(0).getChecksum());
+    }
+
+    @Test
+    void grants_addFilesToGranteeListingUntilRevoked() {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository();
+        File shared = new File("alice", "shared", 1, "N/A");
+        repository.saveFile(shared);
+        repository.saveFile(new File("alice", "private", 1, "N/A"));
+
+        repository.grantAccess(shared.getId(), "bob", "read");
+        repository.updateFile(shared.getId(), current -> current.setName("renamed"));
+
+        List<File> bobFiles = repository.findFilesForUser("bob", FileSort.NAME, false, null, 10);
+        assertEquals(List.of("renamed"), bobFiles.stream().map(File::getName).toList());
+        assertTrue(repository.findPermissions(shared.getId()).orElseThrow().hasAccess("bob"));
+
+        repository.revokeAccess(shared.getId(), "bob");
+        assertTrue(repository.findFilesForUser("bob").isEmpty());
+        assertEquals(2, repository.findFilesForUser("alice").size());
+        assertTrue(repository.grantAccess(Id.generate(), "bob", "read").isEmpty());
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+    }
+}
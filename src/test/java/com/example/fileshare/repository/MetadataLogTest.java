@@ -0,0 +1,241 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.AccessPermission;
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileChunk;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.domain.Id;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetadataLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopen_restoresFilesVersionsAndGrants() {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        File file = new File("owner", "report.pdf", 3, "sum-1");
+        repository.saveFile(file);
+        FileVersion first = new FileVersion(file.getId(), 0, null, "key-1", "iv-1", "sum-1");
+        first.setChunks(List.of(new FileChunk("chunk-a", 3, 42)));
+        first.setCipherSuite("AES_256_GCM");
+        repository.addVersion(first);
+        repository.addVersion(new FileVersion(file.getId(), 0, null, "key-1", "iv-1", "sum-2"));
+        repository.updateVersion(file.getId(), 2, version -> version.setKeyId("key-2"));
+        repository.updateFile(file.getId(), current -> {
+            current.setName("final.pdf");
+            current.setTags(Set.of("q3", "finance"));
+        });
+        repository.grantAccess(file.getId(), "reader", "READ");
+        repository.close();
+
+        InMemoryMetadataRepository reopened = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        File restored = reopened.findFile(file.getId()).orElseThrow();
+        assertEquals("final.pdf", restored.getName());
+        assertEquals(Set.of("q3", "finance"), restored.getTags());
+        assertEquals(file.getCreatedAt(), restored.getCreatedAt());
+        assertEquals(repository.findFile(file.getId()).orElseThrow().getUpdatedAt(), restored.getUpdatedAt());
+        List<FileVersion> versions = reopened.findVersions(file.getId());
+        assertEquals(2, versions.size());
+        FileChunk chunk = versions.get(0).getChunks().get(0);
+        assertEquals("chunk-a", chunk.getKey());
+        assertEquals(42, chunk.getCrc32c());
+        assertEquals("AES_256_GCM", versions.get(0).getCipherSuite());
+        assertEquals("key-2", versions.get(1).getKeyId());
+        assertEquals("READ", reopened.findPermissions(file.getId()).orElseThrow().getGrants().get("reader"));
+        assertEquals(1, reopened.findFilesForUser("reader").size());
+        assertEquals(1, reopened.findFilesForUser("owner").size());
+        reopened.close();
+    }
+
+    @Test
+    void batch_flushesOnceForAllItsChanges() {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        long before = repository.syncCount();
+        List<File> files = repository.inBatch(() -> {
+            List<File> saved = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                File file = new File("owner", "file-" + i, i, "sum-" + i);
+                repository.saveFile(file);
+                repository.addVersion(new FileVersion(file.getId(), 0, null, null, null, "sum-" + i));
+                // A nested batch joins the outer one.
+                repository.inBatch(() -> repository.updateFile(file.getId(), current -> current.setContentVersion(1)));
+                saved.add(file);
+            }
+            return saved;
+        });
+        assertEquals(1, repository.syncCount() - before);
+        repository.close();
+
+        InMemoryMetadataRepository reopened = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        for (File file : files) {
+            assertEquals(1, reopened.findFile(file.getId()).orElseThrow().getContentVersion());
+            assertEquals(1, reopened.findVersions(file.getId()).size());
+        }
+        reopened.close();
+    }
+
+    @Test
+    void reopen_readsSegmentsWrittenWithTextIds() throws IOException {
+        String id = "01890a5d-ac96-774b-bcce-b302099a8057";
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(payload);
+        record.writeByte(MetadataCodec.FILE);
+        record.writeBoolean(true);
+        record.writeUTF(id);
+        record.writeBoolean(true);
+        record.writeUTF("owner");
+        record.writeBoolean(true);
+        record.writeUTF("legacy.pdf");
+        record.writeLong(7);
+        record.writeLong(1_700_000_000L);
+        record.writeInt(0);
+        record.writeLong(1_700_000_000L);
+        record.writeInt(0);
+        record.writeBoolean(false);
+        record.writeInt(1);
+        record.writeByte(File.Status.ACTIVE.ordinal());
+        CRC32C crc = new CRC32C();
+        crc.update(payload.toByteArray());
+        ByteArrayOutputStream segment = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(segment);
+        out.writeInt(0x46535741);
+        out.writeInt(MetadataCodec.TEXT_IDS);
+        out.writeInt(payload.size());
+        out.writeInt((int) crc.getValue());
+        payload.writeTo(out);
+        Files.write(dir.resolve("wal-0000000000000001.log"), segment.toByteArray());
+
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        assertEquals("legacy.pdf", repository.findFile(Id.valueOf(id)).orElseThrow().getName());
+        repository.updateFile(Id.valueOf(id), file -> file.setName("current.pdf"));
+        repository.close();
+
+        InMemoryMetadataRepository reopened = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        assertEquals("current.pdf", reopened.findFile(Id.valueOf(id)).orElseThrow().getName());
+        reopened.close();
+    }
+
+    @Test
+    void snapshot_replacesOlderSegmentsAndKeepsLaterChanges() throws IOException {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            File file = new File("owner", "file-" + i, i, null);
+            repository.saveFile(file);
+            files.add(file);
+        }
+        repository.snapshot();
+        repository.updateFile(files.get(0).getId(), current -> current.setStatus(File.Status.DELETED));
+        repository.saveFile(new File("owner", "after-snapshot", 0, null));
+        repository.close();
+
+        try (Stream<Path> entries = Files.list(dir)) {
+            assertEquals(List.of("snapshot-0000000000000002.bin", "wal-0000000000000002.log"),
+                    entries.map(path -> path.getFileName().toString()).sorted().toList());
+        }
+
+        InMemoryMetadataRepository reopened = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        assertEquals(101, reopened.findAllFiles().size());
+        assertEquals(File.Status.DELETED, reopened.findFile(files.get(0).getId()).orElseThrow().getStatus());
+        assertEquals(100, reopened.findFilesForUser("owner").size());
+        reopened.close();
+    }
+
+    @Test
+    void tornTail_isDiscardedAndTheLogStaysWritable() throws IOException {
+        InMemoryMetadataRepository repository = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        File kept = new File("owner", "kept", 1, null);
+        repository.saveFile(kept);
+        repository.close();
+        // A record whose write was cut short by a crash.
+        Files.write(dir.resolve("wal-0000000000000001.log"), new byte[]{0, 0, 0, 40, 1, 2, 3},
+                StandardOpenOption.APPEND);
+
+        InMemoryMetadataRepository reopened = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        assertEquals(1, reopened.findAllFiles().size());
+        File added = new File("owner", "added", 2, null);
+        reopened.saveFile(added);
+        reopened.close();
+
+        InMemoryMetadataRepository again = new InMemoryMetadataRepository(dir, Long.MAX_VALUE);
+        assertTrue(again.findFile(kept.getId()).isPresent());
+        assertTrue(again.findFile(added.getId()).isPresent());
+        again.close();
+    }
+
+    @Test
+    void concurrentWriters_shareFsyncs() throws Exception {
+        int threads = 8;
+        int perThread = 200;
+        MetadataLog log = MetadataLog.open(dir, new MetadataLog.Replay() {
+            @Override
+            public void file(File file) {
+            }
+
+            @Override
+            public void version(FileVersion version) {
+            }
+
+            @Override
+            public void permission(AccessPermission permission) {
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        log.sync(log.append(new File("owner", "file-" + i, i, null)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(log.syncCount() < threads * perThread, "fsyncs: " + log.syncCount());
+        log.close();
+
+        List<File> replayed = new ArrayList<>();
+        MetadataLog.open(dir, new MetadataLog.Replay() {
+            @Override
+            public void file(File file) {
+                replayed.add(file);
+            }
+
+            @Override
+            public void version(FileVersion version) {
+            }
+
+            @Override
+            public void permission(AccessPermission permission) {
+            }
+        }).close();
+        assertEquals(threads * perThread, replayed.size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.fileshare.repository;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link InMemoryMetadataRepository} under concurrent reads and writes. Run once per
+ * thread count to see how it scales with cores, e.g.
+ * <pre>
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main MetadataRepositoryBenchmark -t 1"
+ * </pre>
+ * and again with {@code -t 2}, {@code -t 4} ... {@code -t max}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataRepositoryBenchmark {
+
+    @Param({"100000"})
+    public int fileCount;
+
+    private InMemoryMetadataRepository repository;
+    private Id[] ids;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        repository = new InMemoryMetadataRepository();
+        ids = new Id[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            File file = new File("owner-" + (i % 1000), "file-" + i, i, "N/A");
+            repository.saveFile(file);
+            ids[i] = file.getId();
+        }
+    }
+
+    @Benchmark
+    public File read() {
+        return repository.findFile(randomId()).orElse(null);
+    }
+
+    @Benchmark
+    public File update() {
+        return repository.updateFile(randomId(), file -> file.setSize(file.getSize() + 1)).orElse(null);
+    }
+
+    /** 90% reads, 10% updates: the shape of list/download-heavy traffic. */
+    @Benchmark
+    public File mixed() {
+        if (ThreadLocalRandom.current().nextInt(10) == 0) {
+            return update();
+        }
+        return read();
+    }
+
+    private Id randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.fileshare.search;
+
+import com.example.fileshare.domain.Id;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The previous full scan ({@code name.toLowerCase().contains(query)} over every file) against
+ * {@link SearchIndex}. Run with
+ * <pre>
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main SearchBenchmark"
+ * </pre>
+ * Substring and fuzzy cases go through the name trigram index; the scan baselines stop at the
+ * same 100 results. The auditor has been granted every file, so its queries see the whole
+ * corpus; {@code owner-0} sees one file in a thousand, filtered inside the index versus
+ * post-filtering the auditor's full result list.
+ * Add {@code -p fileCount=10000000 -jvmArgs -Xmx8g} for the 10M-file case, and
+ * {@code -bm sample} for latency percentiles.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SearchBenchmark {
+    private static final String[] WORDS = {
+            "invoice", "report", "weekly", "export", "final", "draft", "budget", "contract",
+            "photo", "scan", "summary", "notes", "q1", "q2", "q3", "q4", "2023", "2024", "2025"
+    };
+    private static final String[] EXTENSIONS = {"pdf", "xlsx", "docx", "csv", "png"};
+
+    @Param({"100000", "1000000"})
+    public int fileCount;
+
+    private static final String AUDITOR = "auditor";
+    private static final String OWNER = "owner-0";
+
+    private List<String> names;
+    private List<Id> ids;
+    private List<String> owners;
+    private SearchIndex index;
+    private SearchQuery singleTerm;
+    private SearchQuery conjunction;
+    private SearchQuery prefix;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        Random random = new Random(42);
+        names = new ArrayList<>(fileCount);
+        ids = new ArrayList<>(fileCount);
+        owners = new ArrayList<>(fileCount);
+        index = new SearchIndex();
+        for (int i = 0; i < fileCount; i++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + "-"
+                    + WORDS[random.nextInt(WORDS.length)] + "-"
+                    + random.nextInt(100_000) + "." + EXTENSIONS[random.nextInt(EXTENSIONS.length)];
+            Id id = new Id(0, i);
+            String owner = "owner-" + (i % 1000);
+            names.add(name);
+            ids.add(id);
+            owners.add(owner);
+            index.index(id, name, owner, Tokenizer.tokenize(name));
+            index.grant(id, AUDITOR);
+        }
+        singleTerm = SearchQuery.parse("invoice");
+        conjunction = SearchQuery.parse("invoice 2024");
+        prefix = SearchQuery.parse("contr*");
+    }
+
+    @Benchmark
+    public List<Id> scan() {
+        List<Id> results = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).toLowerCase(Locale.ROOT).contains("invoice")) {
+                results.add(ids.get(i));
+            }
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<Id> indexSingleTerm() {
+        return index.search(AUDITOR, singleTerm, 100);
+    }
+
+    @Benchmark
+    public List<Id> indexConjunction() {
+        return index.search(AUDITOR, conjunction, 100);
+    }
+
+    @Benchmark
+    public List<Id> indexPrefix() {
+        return index.search(AUDITOR, prefix, 100);
+    }
+
+    @Benchmark
+    public List<Id> postFilterOwnerSingleTerm() {
+        List<Id> results = new ArrayList<>();
+        for (Id id : index.search(AUDITOR, singleTerm, Integer.MAX_VALUE)) {
+            if (OWNER.equals(owners.get((int) id.low()))) {
+                results.add(id);
+                if (results.size() == 100) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<Id> indexOwnerSingleTerm() {
+        return index.search(OWNER, singleTerm, 100);
+    }
+
+    @Benchmark
+    public List<Id> scanSubstring() {
+        List<Id> results = new ArrayList<>();
+        for (int i = 0; i < names.size() && results.size() < 100; i++) {
+            if (names.get(i).toLowerCase(Locale.ROOT).contains("ice-q3")) {
+                results.add(ids.get(i));
+            }
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<Id> indexSubstring() {
+        return index.searchSubstring(AUDITOR, "ice-q3", 100);
+    }
+
+    @Benchmark
+    public List<Id> indexFuzzy() {
+        return index.searchFuzzy(AUDITOR, "contract-sumary", 1, 100);
+    }
+}
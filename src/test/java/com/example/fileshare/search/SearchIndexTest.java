@@ -0,0 +1,176 @@
+package com.example.fileshare.search;
+
+import com.example.fileshare.domain.Id;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchIndexTest {
+
+    @Test
+    void andOrAndPrefixQueries() {
+        SearchIndex index = new SearchIndex();
+        index.index(id("a"), "2024-invoice-final.pdf", "alice", Tokenizer.tokenize("2024-invoice-final.pdf"));
+        index.index(id("b"), "2023-invoice.pdf", "alice", Tokenizer.tokenize("2023-invoice.pdf"));
+        index.index(id("c"), "weekly report.xlsx", "alice", Tokenizer.tokenize("weekly report.xlsx"));
+
+        assertEquals(List.of(id("b"), id("a")), index.search("alice", SearchQuery.parse("invoice"), 10));
+        assertEquals(List.of(id("a")), index.search("alice", SearchQuery.parse("invoice 2024"), 10));
+        assertEquals(List.of(id("a")), index.search("alice", SearchQuery.parse("2024-invoice"), 10));
+        assertEquals(List.of(id("c"), id("a")), index.search("alice", SearchQuery.parse("final OR weekly"), 10));
+        assertEquals(List.of(id("c")), index.search("alice", SearchQuery.parse("rep*"), 10));
+        assertEquals(List.of(id("b"), id("a")), index.search("alice", SearchQuery.parse("20*"), 10));
+        assertTrue(index.search("alice", SearchQuery.parse("invoice weekly"), 10).isEmpty());
+    }
+
+    @Test
+    void topK_returnsMostRecentlyIndexedFirst() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < 50; i++) {
+            index.index(id("file-" + i), "common", "alice", Set.of("common"));
+        }
+
+        assertEquals(List.of(id("file-49"), id("file-48"), id("file-47")), index.search("alice", SearchQuery.parse("common"), 3));
+    }
+
+    @Test
+    void reindexAndRemove_hideStaleTerms() {
+        SearchIndex index = new SearchIndex();
+        index.index(id("a"), "draft", "alice", Set.of("draft"));
+        index.index(id("a"), "final", "alice", Set.of("final"));
+        index.index(id("b"), "final", "alice", Set.of("final"));
+        index.remove(id("b"));
+
+        assertTrue(index.search("alice", SearchQuery.parse("draft"), 10).isEmpty());
+        assertEquals(List.of(id("a")), index.search("alice", SearchQuery.parse("final"), 10));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void compaction_preservesResults() {
+        SearchIndex index = new SearchIndex();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 1000; i++) {
+                index.index(id("file-" + i), "report-" + i + "-r" + round + ".pdf", "alice", Set.of("round" + round, i % 2 == 0 ? "even" : "odd"));
+            }
+        }
+
+        assertEquals(1000, index.size());
+        assertEquals(500, index.search("alice", SearchQuery.parse("even"), 10_000).size());
+        assertEquals(500, index.search("alice", SearchQuery.parse("round4 odd"), 10_000).size());
+        assertTrue(index.search("alice", SearchQuery.parse("round0"), 10).isEmpty());
+        assertEquals(List.of(id("file-999")), index.search("alice", SearchQuery.parse("odd"), 1));
+        assertEquals(List.of(id("file-123")), index.searchSubstring("alice", "-123-r4", 10));
+        assertTrue(index.searchSubstring("alice", "-r0.", 10).isEmpty());
+    }
+
+    @Test
+    void substring_matchesInsideTokensCaseInsensitively() {
+        SearchIndex index = new SearchIndex();
+        index.index(id("a"), "Quarterly-Report.PDF", "alice", Set.of());
+        index.index(id("b"), "reporting.xlsx", "alice", Set.of());
+        index.index(id("c"), "notes.txt", "alice", Set.of());
+
+        assertEquals(List.of(id("b"), id("a")), index.searchSubstring("alice", "PORT", 10));
+        assertEquals(List.of(id("a")), index.searchSubstring("alice", "ly-rep", 10));
+        assertEquals(List.of(id("c")), index.searchSubstring("alice", "s.", 10));
+        assertTrue(index.searchSubstring("alice", "portly", 10).isEmpty());
+    }
+
+    @Test
+    void fuzzy_toleratesTyposWithinBound() {
+        SearchIndex index = new SearchIndex();
+        index.index(id("a"), "invoice-2024.pdf", "alice", Set.of());
+        index.index(id("b"), "summary.docx", "alice", Set.of());
+        index.index(id("c"), "invoices-archive.zip", "alice", Set.of());
+
+        assertEquals(List.of(id("c"), id("a")), index.searchFuzzy("alice", "invoise", 1, 10));
+        assertEquals(List.of(id("c"), id("a")), index.searchFuzzy("alice", "invoce", 1, 10));
+        assertEquals(List.of(id("b")), index.searchFuzzy("alice", "sumary", 1, 10));
+        assertTrue(index.searchFuzzy("alice", "invocie", 1, 10).isEmpty());
+        assertEquals(List.of(id("c"), id("a")), index.searchFuzzy("alice", "invocie", 2, 10));
+    }
+
+    @Test
+    void visibility_limitsResultsToOwnedAndGrantedFiles() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < 2000; i++) {
+            index.index(id("file-" + i), "report-" + i + ".pdf", i % 100 == 0 ? "bob" : "alice", Set.of("report"));
+        }
+        index.grant(id("file-7"), "bob");
+        index.grant(id("file-8"), "bob");
+        index.revoke(id("file-8"), "bob");
+
+        assertEquals(List.of(id("file-1900"), id("file-1800")), index.search("bob", SearchQuery.parse("report"), 2));
+        assertEquals(21, index.search("bob", SearchQuery.parse("report"), 100).size());
+        assertEquals(List.of(id("file-7")), index.searchSubstring("bob", "rt-7.", 10));
+        assertEquals(List.of(id("file-7")), index.searchFuzzy("bob", "repotr-7.", 2, 10));
+        assertEquals(List.of(id("file-1900")), index.searchSubstring("bob", "-1900", 10));
+        assertTrue(index.searchSubstring("carol", "report", 10).isEmpty());
+
+        // Re-indexing keeps the grant; compaction keeps visibility aligned with the new ids.
+        for (int i = 0; i < 2000; i++) {
+            index.index(id("file-" + i), "report-" + i + ".pdf", i % 100 == 0 ? "bob" : "alice", Set.of("report"));
+        }
+        assertEquals(21, index.search("bob", SearchQuery.parse("report"), 100).size());
+        assertEquals(List.of(id("file-7")), index.searchSubstring("bob", "rt-7.", 10));
+    }
+
+    @Test
+    void postingList_advanceAcrossCompressedBlocks() {
+        PostingList list = new PostingList();
+        for (int doc = 0; doc < 10_000; doc += 3) {
+            list.add(doc);
+        }
+
+        assertEquals(3334, list.size());
+        assertTrue(list.memoryUsage() < 3334L * 4);
+        PostingList.Iterator iterator = list.iterator();
+        assertEquals(9999, iterator.next());
+        assertEquals(9996, iterator.next());
+        assertEquals(5001, iterator.advance(5002));
+        assertEquals(5001, iterator.advance(5001));
+        assertEquals(4998, iterator.next());
+        assertEquals(3, iterator.advance(4));
+        assertEquals(0, iterator.next());
+        assertEquals(DocIterator.NO_MORE_DOCS, iterator.next());
+    }
+
+    @Test
+    void docSet_keepsOrderAcrossOutOfOrderAddsRemovesAndRemap() {
+        DocSet set = new DocSet();
+        for (int doc : new int[]{10, 20, 30, 5, 25, 20}) {
+            set.add(doc);
+        }
+        set.remove(20);
+
+        DocIterator iterator = set.iterator();
+        assertEquals(30, iterator.next());
+        assertEquals(10, iterator.advance(24));
+        assertEquals(10, iterator.advance(10));
+        assertEquals(5, iterator.next());
+        assertEquals(DocIterator.NO_MORE_DOCS, iterator.next());
+
+        int[] remap = new int[31];
+        Arrays.fill(remap, -1);
+        remap[5] = 0;
+        remap[25] = 1;
+        set.remap(remap);
+        iterator = set.iterator();
+        assertEquals(1, iterator.next());
+        assertEquals(0, iterator.next());
+        assertEquals(DocIterator.NO_MORE_DOCS, iterator.next());
+    }
+
+    private static Id id(String name) {
+        UUID uuid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        return new Id(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+}
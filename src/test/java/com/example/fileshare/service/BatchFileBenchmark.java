@@ -0,0 +1,120 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.InMemoryMetadataRepository;
+import com.example.fileshare.service.model.FileRequest;
+import com.example.fileshare.service.model.FileResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Small files saved and deleted one call at a time against the same files in batches, with the
+ * metadata log and blob store on disk, as a sync client would drive them; blobs are stored whole
+ * or, with {@code smallBlobBytes} above 0, packed into segment files. Run with
+ * <pre>
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main BatchFileBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(BatchFileBenchmark.FILES)
+public class BatchFileBenchmark {
+
+    static final int FILES = 100;
+
+    @Param({"4096"})
+    public int fileBytes;
+
+    @Param({"0", "65536"})
+    public int smallBlobBytes;
+
+    private LocalBlobStorageService storage;
+
+    private Path root;
+    private InMemoryMetadataRepository metadata;
+    private FileServiceImpl fileService;
+    private List<byte[]> contents;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("batch-benchmark");
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        metadata = new InMemoryMetadataRepository(root.resolve("metadata").toString(), 64L * 1024 * 1024);
+        storage = new LocalBlobStorageService(root.resolve("storage"), smallBlobBytes, 64L * 1024 * 1024);
+        fileService = new FileServiceImpl(metadata, new SearchServiceImpl(), new ChunkStoreImpl(storage, encryption),
+                encryption);
+        Random random = new Random(42);
+        contents = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            byte[] content = new byte[fileBytes];
+            random.nextBytes(content);
+            contents.add(content);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        metadata.close();
+        storage.close();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int oneByOne() {
+        List<Id> ids = new ArrayList<>(FILES);
+        for (FileRequest request : requests()) {
+            ids.add(Id.valueOf(fileService.saveFile(request).getFileId()));
+        }
+        for (Id id : ids) {
+            fileService.deleteFile(id, "owner");
+        }
+        return ids.size();
+    }
+
+    @Benchmark
+    public int batched() {
+        List<Id> ids = new ArrayList<>(FILES);
+        for (FileResponse saved : fileService.saveFiles(requests())) {
+            ids.add(Id.valueOf(saved.getFileId()));
+        }
+        return fileService.deleteFiles(ids, "owner").getFiles().size();
+    }
+
+    private List<FileRequest> requests() {
+        List<FileRequest> requests = new ArrayList<>(FILES);
+        for (int i = 0; i < FILES; i++) {
+            byte[] content = contents.get(i);
+            requests.add(new FileRequest("file-" + i, "owner", new ByteArrayInputStream(content), content.length));
+        }
+        return requests;
+    }
+}
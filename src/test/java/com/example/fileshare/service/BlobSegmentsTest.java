@@ -0,0 +1,216 @@
+package com.example.fileshare.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BlobSegmentsTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reopen_keepsLiveBlobsAndDropsTombstonedOnes() throws Exception {
+        List<byte[]> blobs = blobs(50, 1);
+        BlobSegments segments = BlobSegments.open(dir, 1024 * 1024);
+        for (byte[] blob : blobs) {
+            segments.sync(add(segments, blob));
+        }
+        for (int i = 0; i < blobs.size(); i += 2) {
+            assertTrue(segments.delete(key(blobs.get(i))));
+        }
+        assertFalse(segments.delete(key(blobs.get(0))));
+        // Stored again after its delete; the tombstone must not hide the new copy.
+        segments.sync(add(segments, blobs.get(0)));
+        segments.close();
+
+        BlobSegments reopened = BlobSegments.open(dir, 1024 * 1024);
+        for (int i = 0; i < blobs.size(); i++) {
+            if (i % 2 == 0 && i > 0) {
+                assertNull(reopened.open(key(blobs.get(i))));
+            } else {
+                assertArrayEquals(blobs.get(i), read(reopened, key(blobs.get(i))));
+            }
+        }
+        reopened.close();
+    }
+
+    @Test
+    void compaction_reclaimsSegmentsAndKeepsBlobsReadable() throws Exception {
+        List<byte[]> blobs = blobs(200, 2);
+        BlobSegments segments = BlobSegments.open(dir, 16 * 1024);
+        for (byte[] blob : blobs) {
+            segments.sync(add(segments, blob));
+        }
+        int before = segments.segmentCount();
+        assertTrue(before > 3, "segments: " + before);
+
+        SeekableByteChannel reader = segments.open(key(blobs.get(0)));
+        for (int i = 1; i < blobs.size(); i++) {
+            if (i % 5 != 0) {
+                segments.delete(key(blobs.get(i)));
+            }
+        }
+        segments.compact();
+
+        assertTrue(segments.segmentCount() < before, "segments: " + segments.segmentCount());
+        // A reader that opened a blob before its segment was compacted still reads it.
+        ByteBuffer first = ByteBuffer.allocate(blobs.get(0).length);
+        while (first.hasRemaining() && reader.read(first) > 0) {
+            // keep reading
+        }
+        reader.close();
+        assertArrayEquals(blobs.get(0), first.array());
+        segments.close();
+
+        BlobSegments reopened = BlobSegments.open(dir, 16 * 1024);
+        for (int i = 0; i < blobs.size(); i++) {
+            if (i == 0 || i % 5 == 0) {
+                assertArrayEquals(blobs.get(i), read(reopened, key(blobs.get(i))));
+            } else {
+                assertNull(reopened.find(key(blobs.get(i))));
+            }
+        }
+        reopened.close();
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.count() < before + 1);
+        }
+    }
+
+    @Test
+    void tornTail_isCutOffAndTheSegmentsStayWritable() throws Exception {
+        List<byte[]> blobs = blobs(10, 3);
+        BlobSegments segments = BlobSegments.open(dir, 1024 * 1024);
+        for (byte[] blob : blobs) {
+            segments.sync(add(segments, blob));
+        }
+        segments.close();
+        Path newest;
+        try (Stream<Path> files = Files.list(dir)) {
+            newest = files.sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        Files.write(newest, new byte[]{1, 2, 3, 4, 5, 6, 7}, StandardOpenOption.APPEND);
+
+        BlobSegments reopened = BlobSegments.open(dir, 1024 * 1024);
+        for (byte[] blob : blobs) {
+            assertArrayEquals(blob, read(reopened, key(blob)));
+        }
+        byte[] added = blobs(1, 4).get(0);
+        reopened.sync(add(reopened, added));
+        reopened.close();
+
+        BlobSegments again = BlobSegments.open(dir, 1024 * 1024);
+        assertArrayEquals(added, read(again, key(added)));
+        again.close();
+    }
+
+    @Test
+    void concurrentAdds_shareFsyncs() throws Exception {
+        int threads = 8;
+        List<byte[]> blobs = blobs(threads * 50, 5);
+        BlobSegments segments = BlobSegments.open(dir, 1024 * 1024);
+        long before = segments.syncCount();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = thread; i < blobs.size(); i += threads) {
+                        segments.sync(add(segments, blobs.get(i)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(segments.syncCount() - before < blobs.size(), "fsyncs: " + (segments.syncCount() - before));
+        for (byte[] blob : blobs) {
+            assertNotNull(segments.find(key(blob)));
+        }
+        segments.close();
+    }
+
+    @Test
+    void interruptedCaller_doesNotBreakTheLogForOthers() throws Exception {
+        List<byte[]> blobs = blobs(20, 6);
+        BlobSegments segments = BlobSegments.open(dir, 16 * 1024);
+        try {
+            for (int i = 0; i < 10; i++) {
+                Thread.currentThread().interrupt();
+                segments.sync(add(segments, blobs.get(i)));
+                assertTrue(Thread.interrupted(), "interrupt status was lost");
+            }
+        } finally {
+            Thread.interrupted();
+        }
+        for (int i = 10; i < blobs.size(); i++) {
+            segments.sync(add(segments, blobs.get(i)));
+        }
+        segments.close();
+
+        BlobSegments reopened = BlobSegments.open(dir, 16 * 1024);
+        for (byte[] blob : blobs) {
+            assertArrayEquals(blob, read(reopened, key(blob)));
+        }
+        reopened.close();
+    }
+
+    private static BlobSegments.Location add(BlobSegments segments, byte[] blob) throws Exception {
+        CRC32C crc = new CRC32C();
+        crc.update(blob);
+        return segments.add(key(blob), blob, blob.length, (int) crc.getValue());
+    }
+
+    private static byte[] read(BlobSegments segments, String key) throws Exception {
+        try (SeekableByteChannel channel = segments.open(key)) {
+            ByteBuffer data = ByteBuffer.allocate((int) channel.size());
+            while (data.hasRemaining() && channel.read(data) > 0) {
+                // keep reading
+            }
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            return data.array();
+        }
+    }
+
+    private static String key(byte[] blob) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(blob));
+    }
+
+    private static List<byte[]> blobs(int count, long seed) {
+        Random random = new Random(seed);
+        List<byte[]> blobs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] blob = new byte[1 + random.nextInt(2000)];
+            random.nextBytes(blob);
+            blobs.add(blob);
+        }
+        return blobs;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.service.model.StoredBlob;
+import com.example.fileshare.service.model.StoredContent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of storing a re-upload: the whole content written as one blob (what every upload and
+ * update did before chunking) against {@link ChunkStoreImpl} given identical content and content
+ * with a one-byte edit. Run with
+ * <pre>
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main ChunkStoreBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkStoreBenchmark {
+
+    @Param({"64"})
+    public int sizeMb;
+
+    private Path root;
+    private LocalBlobStorageService storage;
+    private ChunkStoreImpl chunkStore;
+    private byte[] content;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("chunk-benchmark");
+        storage = new LocalBlobStorageService(root);
+        chunkStore = new ChunkStoreImpl(storage, new EncryptionServiceImpl());
+        random = new Random(42);
+        content = new byte[sizeMb * 1024 * 1024];
+        random.nextBytes(content);
+        chunkStore.write(new ByteArrayInputStream(content));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public StoredBlob wholeBlob() {
+        return storage.store(Channels.newChannel(new ByteArrayInputStream(content)));
+    }
+
+    @Benchmark
+    public StoredContent chunkedRepeat() {
+        return chunkStore.write(new ByteArrayInputStream(content));
+    }
+
+    @Benchmark
+    public StoredContent chunkedEdited() {
+        content[random.nextInt(content.length)] ^= 1;
+        return chunkStore.write(new ByteArrayInputStream(content));
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.service.model.StoredContent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChunkStoreImplTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void write_thenReadBackWholeAndRanges() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+        ChunkStoreImpl chunks = new ChunkStoreImpl(storage, new EncryptionServiceImpl());
+        byte[] data = random(10_000_000, 1);
+
+        StoredContent content = chunks.write(new ByteArrayInputStream(data));
+
+        assertTrue(content.getChunks().size() > 1);
+        assertEquals(data.length, content.getSize());
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data)), content.getChecksum());
+        assertEquals(content.getChecksum(), chunks.write(new ByteArrayInputStream(data)).getChecksum());
+        try (InputStream input = Channels.newInputStream(chunks.open(content.getChunks()))) {
+            assertArrayEquals(data, input.readAllBytes());
+        }
+        // A range that straddles the first chunk boundary.
+        long boundary = content.getChunks().get(0).getSize();
+        try (SeekableByteChannel channel = chunks.open(content.getChunks())) {
+            ByteBuffer range = ByteBuffer.allocate(1000);
+            channel.position(boundary - 500);
+            while (range.hasRemaining() && channel.read(range) > 0) {
+                // keep reading across the boundary
+            }
+            assertArrayEquals(Arrays.copyOfRange(data, (int) boundary - 500, (int) boundary + 500), range.array());
+        }
+    }
+
+    @Test
+    void editedReupload_writesOnlyChangedChunks() {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+        ChunkStoreImpl chunks = new ChunkStoreImpl(storage, new EncryptionServiceImpl());
+        byte[] original = random(20_000_000, 2);
+        byte[] edited = original.clone();
+        edited[10_000_000] ^= 1;
+
+        StoredContent first = chunks.write(new ByteArrayInputStream(original));
+        StoredContent second = chunks.write(new ByteArrayInputStream(edited));
+        StoredContent repeat = chunks.write(new ByteArrayInputStream(original));
+
+        assertEquals(original.length, first.getBytesWritten());
+        assertTrue(second.getBytesWritten() <= 4 * 1024 * 1024, "rewrote " + second.getBytesWritten());
+        assertEquals(0, repeat.getBytesWritten());
+
+        chunks.release(first.getChunks());
+        chunks.release(repeat.getChunks());
+        assertTrue(first.getChunks().stream()
+                .filter(chunk -> second.getChunks().stream().noneMatch(c -> c.getKey().equals(chunk.getKey())))
+                .noneMatch(chunk -> storage.exists(chunk.getKey())));
+        chunks.release(second.getChunks());
+        assertFalse(second.getChunks().stream().anyMatch(chunk -> storage.exists(chunk.getKey())));
+    }
+
+    @Test
+    void encryptedWrite_storesCiphertextAndStillDeduplicatesUnderTheSameKey() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        ChunkStoreImpl chunks = new ChunkStoreImpl(storage, encryption);
+        String keyId = encryption.generateKey();
+        byte[] original = random(6_000_000, 3);
+        byte[] edited = original.clone();
+        edited[3_000_000] ^= 1;
+
+        StoredContent first = chunks.write(new ByteArrayInputStream(original), keyId, null);
+        StoredContent second = chunks.write(new ByteArrayInputStream(edited), keyId, first.getIv());
+
+        assertEquals(keyId, first.getKeyId());
+        assertEquals(first.getChecksum(), chunks.write(new ByteArrayInputStream(original)).getChecksum());
+        assertTrue(second.getBytesWritten() <= 4 * 1024 * 1024 + 4096, "rewrote " + second.getBytesWritten());
+        byte[] stored = Files.readAllBytes(storage.localPath(first.getChunks().get(0).getKey()));
+        assertFalse(Arrays.equals(Arrays.copyOfRange(original, 0, 64), Arrays.copyOfRange(stored, 17, 81)));
+
+        try (InputStream input = Channels.newInputStream(chunks.open(second.getChunks(), keyId))) {
+            assertArrayEquals(edited, input.readAllBytes());
+        }
+        try (SeekableByteChannel channel = chunks.open(first.getChunks(), keyId)) {
+            ByteBuffer range = ByteBuffer.allocate(100);
+            channel.position(5_000_000);
+            while (range.hasRemaining() && channel.read(range) > 0) {
+                // keep reading across segment boundaries
+            }
+            assertArrayEquals(Arrays.copyOfRange(original, 5_000_000, 5_000_100), range.array());
+        }
+    }
+
+    @Test
+    void writer_cutsTheSameChunksHoweverTheContentIsSplit() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        ChunkStoreImpl chunks = new ChunkStoreImpl(storage, encryption);
+        String keyId = encryption.generateKey();
+        byte[] data = random(9_000_000, 4);
+        StoredContent streamed = chunks.write(new ByteArrayInputStream(data), keyId, null);
+
+        ContentWriter writer = chunks.writer(keyId, streamed.getIv());
+        Random pieces = new Random(5);
+        for (int offset = 0; offset < data.length; ) {
+            int length = Math.min(data.length - offset, 1 + pieces.nextInt(100_000));
+            writer.write(ByteBuffer.wrap(data, offset, length));
+            offset += length;
+        }
+        StoredContent pushed = writer.finish();
+
+        assertEquals(streamed.getChecksum(), pushed.getChecksum());
+        assertEquals(streamed.getChunks().size(), pushed.getChunks().size());
+        assertEquals(0, pushed.getBytesWritten());
+        try (InputStream input = Channels.newInputStream(chunks.open(pushed.getChunks(), keyId))) {
+            assertArrayEquals(data, input.readAllBytes());
+        }
+    }
+
+    @Test
+    void writer_abortGivesBackTheChunksStoredSoFar() {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+        ChunkStoreImpl chunks = new ChunkStoreImpl(storage, new EncryptionServiceImpl());
+        byte[] data = random(12_000_000, 6);
+
+        ContentWriter writer = chunks.writer(null, null);
+        writer.write(ByteBuffer.wrap(data));
+        writer.abort();
+        writer.abort();
+
+        StoredContent content = chunks.write(new ByteArrayInputStream(data));
+        assertEquals(data.length, content.getBytesWritten());
+        assertTrue(chunks.writer(null, null).finish().getChunks().isEmpty());
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.service.model.EncryptionResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES-256-GCM against ChaCha20-Poly1305 across content sizes, on one thread so the numbers
+ * compare the algorithms rather than the parallel segment pipeline. {@code seal} is a single
+ * segment of {@code sizeBytes}; {@code encrypt} and {@code decrypt} go through the service with
+ * 64KB segments. Throughput is {@code sizeBytes} divided by the average time:
+ * <pre>
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main CipherSuiteBenchmark"
+ * </pre>
+ * Without AES instructions ({@code -XX:-UseAES -XX:-UseAESIntrinsics -XX:-UseGHASHIntrinsics
+ * -XX:-UseAESCTRIntrinsics} in {@code -jvmArgsAppend}) ChaCha20-Poly1305 comes out ahead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CipherSuiteBenchmark {
+
+    @Param({"AES_256_GCM", "CHACHA20_POLY1305"})
+    public CipherSuite suite;
+
+    @Param({"1024", "16384", "65536", "1048576"})
+    public int sizeBytes;
+
+    private EncryptionServiceImpl service;
+    private String keyId;
+    private byte[] plaintext;
+    private byte[] ciphertext;
+    private String ivBase64;
+    private SegmentedAead aead;
+    private Cipher cipher;
+    private byte[] nonce;
+    private byte[] sealed;
+    private long index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        service = new EncryptionServiceImpl(MasterKeyStore.inMemory(), suite, ForkJoinPool.commonPool(),
+                SegmentedAead.DEFAULT_SEGMENT_SIZE, 1, 1);
+        keyId = service.generateKey();
+        plaintext = new byte[sizeBytes];
+        new Random(42).nextBytes(plaintext);
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        EncryptionResult result = service.encrypt(keyId, new ByteArrayInputStream(plaintext), encrypted);
+        ciphertext = encrypted.toByteArray();
+        ivBase64 = result.getIvBase64();
+
+        byte[] key = new byte[32];
+        new Random(7).nextBytes(key);
+        aead = SegmentedAead.forEncryption(suite, new SecretKeySpec(key, "AES"), new byte[SegmentedAead.IV_SIZE],
+                sizeBytes);
+        cipher = suite.newCipher();
+        nonce = new byte[SegmentedAead.IV_SIZE];
+        sealed = new byte[sizeBytes + SegmentedAead.TAG_BYTES];
+    }
+
+    @Benchmark
+    public int seal() throws Exception {
+        // A new index per call keeps nonces distinct, as they are within real content.
+        return aead.seal(cipher, nonce, index++ & 0xFFFF_FFFFL, false, plaintext, sizeBytes, sealed);
+    }
+
+    @Benchmark
+    public EncryptionResult encrypt() throws Exception {
+        return service.encrypt(keyId, new ByteArrayInputStream(plaintext), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void decrypt() throws Exception {
+        service.decrypt(keyId, ivBase64, new ByteArrayInputStream(ciphertext, 12, ciphertext.length - 12),
+                OutputStream.nullOutputStream());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.service.model.CacheStats;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentCacheImplTest {
+
+    private static final int FILE_BYTES = 100_000;
+
+    @TempDir
+    Path root;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void fileRequestedTwice_isLoadedOnceAndThenServedFromMemory() throws Exception {
+        ContentCacheImpl cache = new ContentCacheImpl(1_000_000, FILE_BYTES, (Path) null, 0);
+        Id fileId = Id.generate();
+        byte[] data = random(FILE_BYTES, 1);
+
+        assertNull(cache.open(fileId, 1, data.length, source(data)));
+        assertArrayEquals(data, read(cache.open(fileId, 1, data.length, source(data))));
+        assertArrayEquals(data, read(cache.open(fileId, 1, data.length, source(data))));
+        assertEquals(1, loads.get());
+
+        // Another version is a miss, and so is everything after invalidation.
+        assertArrayEquals(data, read(cache.open(fileId, 2, data.length, source(data))));
+        assertEquals(2, loads.get());
+        cache.invalidate(fileId);
+        assertEquals(0, cache.stats().getMemoryEntries());
+        cache.open(fileId, 2, data.length, source(data));
+        assertEquals(3, loads.get());
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.getMemoryHits());
+        assertEquals(4, stats.getMisses());
+        assertEquals(0.2, stats.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void scanOfColderFiles_doesNotPushOutHotOnes() throws Exception {
+        ContentCacheImpl cache = new ContentCacheImpl(1_000_000, FILE_BYTES, (Path) null, 0);
+        byte[] data = random(FILE_BYTES, 2);
+        List<Id> hot = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Id fileId = Id.generate();
+            hot.add(fileId);
+            for (int request = 0; request < 5; request++) {
+                close(cache.open(fileId, 1, data.length, source(data)));
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            Id fileId = Id.generate();
+            close(cache.open(fileId, 1, data.length, source(data)));
+            close(cache.open(fileId, 1, data.length, source(data)));
+        }
+
+        loads.set(0);
+        for (Id fileId : hot) {
+            assertArrayEquals(data, read(cache.open(fileId, 1, data.length, source(data))));
+        }
+        assertEquals(0, loads.get());
+        assertTrue(cache.stats().getMemoryBytes() <= 1_000_000);
+    }
+
+    @Test
+    void evictedEntries_areServedFromDiskUntilInvalidated() throws Exception {
+        ContentCacheImpl cache = new ContentCacheImpl(250_000, FILE_BYTES, root.resolve("cache"), 10_000_000);
+        List<Id> fileIds = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Id fileId = Id.generate();
+            byte[] data = random(FILE_BYTES, 10 + i);
+            fileIds.add(fileId);
+            contents.add(data);
+            close(cache.open(fileId, 1, data.length, source(data)));
+            close(cache.open(fileId, 1, data.length, source(data)));
+        }
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (cache.stats().getDiskEntries() < 8 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        loads.set(0);
+        for (int i = 0; i < fileIds.size(); i++) {
+            SeekableByteChannel channel = cache.open(fileIds.get(i), 1, FILE_BYTES, source(contents.get(i)));
+            assertNotNull(channel);
+            assertArrayEquals(contents.get(i), read(channel));
+        }
+        assertEquals(0, loads.get());
+        assertTrue(cache.stats().getDiskHits() >= 8);
+
+        cache.invalidate(fileIds.get(0));
+        assertArrayEquals(contents.get(0), read(cache.open(fileIds.get(0), 1, FILE_BYTES, source(contents.get(0)))));
+        assertEquals(1, loads.get());
+        cache.close();
+    }
+
+    private ContentCache.ContentSource source(byte[] data) {
+        return () -> {
+            loads.incrementAndGet();
+            return new BufferChannel(ByteBuffer.wrap(data));
+        };
+    }
+
+    private static byte[] read(SeekableByteChannel channel) throws IOException {
+        try (InputStream input = Channels.newInputStream(channel)) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static void close(SeekableByteChannel channel) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
@@ -2,14 +2,24 @@ package com.example.fileshare.service;
 
 import com.example.fileshare.service.model.EncryptionResult;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class EncryptionServiceImplTest {
@@ -78,4 +88,303 @@ public class EncryptionServiceImplTest {
                 service.decrypt(keyId, "invalid-iv", cipherInput, decryptedOut)
         );
     }
+
+    @Test
+    void multiSegmentContent_roundTripsInParallel() throws Exception {
+        EncryptionServiceImpl service = new EncryptionServiceImpl(ForkJoinPool.commonPool(), 1024, 4);
+        String keyId = service.generateKey();
+        for (int length : new int[]{0, 1, 1024, 1025, 4096, 10_000}) {
+            byte[] plaintext = randomBytes(length);
+
+            byte[] encrypted = encrypt(service, keyId, plaintext);
+            ByteArrayOutputStream decryptedOut = new ByteArrayOutputStream();
+            service.decrypt(keyId, ivOf(encrypted), afterIv(encrypted), decryptedOut);
+
+            assertArrayEquals(plaintext, decryptedOut.toByteArray(), "length " + length);
+        }
+    }
+
+    @Test
+    void openDecrypted_readsRanges() throws Exception {
+        EncryptionServiceImpl service = new EncryptionServiceImpl(ForkJoinPool.commonPool(), 1024, 4);
+        String keyId = service.generateKey();
+        byte[] plaintext = randomBytes(10_000);
+        byte[] encrypted = encrypt(service, keyId, plaintext);
+
+        try (SeekableByteChannel channel = service.openDecrypted(keyId, new SeekableInMemoryChannel(encrypted))) {
+            assertEquals(plaintext.length, channel.size());
+            ByteBuffer range = ByteBuffer.allocate(3000);
+            channel.position(5000);
+            while (range.hasRemaining() && channel.read(range) >= 0) {
+                // range spans several segments
+            }
+            assertArrayEquals(Arrays.copyOfRange(plaintext, 5000, 8000), range.array());
+            assertEquals(-1, channel.position(plaintext.length).read(ByteBuffer.allocate(1)));
+        }
+    }
+
+    @Test
+    void virtualThreads_handEverySegmentToTheCryptoExecutor() throws Exception {
+        AtomicInteger handedOver = new AtomicInteger();
+        try (CryptoExecutor crypto = new CryptoExecutor(2, 16)) {
+            Executor counting = task -> {
+                handedOver.incrementAndGet();
+                crypto.execute(task);
+            };
+            EncryptionServiceImpl service = new EncryptionServiceImpl(MasterKeyStore.inMemory(),
+                    CipherSuite.AES_256_GCM, counting, 1024, 4, 1);
+            String keyId = service.generateKey();
+            byte[] plaintext = randomBytes(10_000);
+            byte[][] results = new byte[3][];
+
+            Thread thread = Thread.ofVirtual().start(() -> {
+                try {
+                    byte[] encrypted = encrypt(service, keyId, plaintext);
+                    ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+                    service.decrypt(keyId, ivOf(encrypted), afterIv(encrypted), decrypted);
+                    ByteBuffer range = ByteBuffer.allocate(3000);
+                    try (SeekableByteChannel channel = service.openDecrypted(keyId, new SeekableInMemoryChannel(encrypted))) {
+                        channel.position(5000);
+                        while (range.hasRemaining() && channel.read(range) >= 0) {
+                            // segments 4 to 7
+                        }
+                    }
+                    results[0] = encrypted;
+                    results[1] = decrypted.toByteArray();
+                    results[2] = range.array();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            thread.join();
+
+            assertArrayEquals(plaintext, results[1]);
+            assertArrayEquals(Arrays.copyOfRange(plaintext, 5000, 8000), results[2]);
+            // Ten segments sealed, ten opened and four opened for the range; none on the caller.
+            assertEquals(24, handedOver.get());
+        }
+    }
+
+    @Test
+    void newDecryptor_decryptsCiphertextPushedInPiecesOfAnySize() throws Exception {
+        EncryptionServiceImpl service = new EncryptionServiceImpl(ForkJoinPool.commonPool(), 1024, 4);
+        String keyId = service.generateKey();
+        Random pieces = new Random(7);
+        for (int length : new int[]{0, 1, 1024, 1025, 10_000}) {
+            byte[] plaintext = randomBytes(length);
+            byte[] encrypted = encrypt(service, keyId, plaintext);
+
+            ContentDecryptor decryptor = service.newDecryptor(keyId);
+            ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            for (int offset = 0; offset < encrypted.length; ) {
+                int piece = Math.min(encrypted.length - offset, 1 + pieces.nextInt(3000));
+                ByteBuffer output = decryptor.update(ByteBuffer.wrap(encrypted, offset, piece));
+                decrypted.write(output.array(), output.arrayOffset() + output.position(), output.remaining());
+                offset += piece;
+            }
+            ByteBuffer last = decryptor.finish();
+            decrypted.write(last.array(), last.arrayOffset() + last.position(), last.remaining());
+
+            assertArrayEquals(plaintext, decrypted.toByteArray(), "length " + length);
+        }
+    }
+
+    @Test
+    void newDecryptor_withTamperedOrTruncatedCiphertext_throws() throws Exception {
+        EncryptionServiceImpl service = new EncryptionServiceImpl(ForkJoinPool.commonPool(), 1024, 4);
+        String keyId = service.generateKey();
+        byte[] encrypted = encrypt(service, keyId, randomBytes(3 * 1024));
+
+        byte[] tampered = encrypted.clone();
+        tampered[100] ^= 1;
+        assertThrows(EncryptionException.class, () -> service.newDecryptor(keyId).update(ByteBuffer.wrap(tampered)));
+
+        ContentDecryptor truncated = service.newDecryptor(keyId);
+        truncated.update(ByteBuffer.wrap(encrypted, 0, 17 + 2 * (1024 + 16)));
+        assertThrows(EncryptionException.class, truncated::finish);
+
+        ContentDecryptor headerOnly = service.newDecryptor(keyId);
+        headerOnly.update(ByteBuffer.wrap(encrypted, 0, 10));
+        assertThrows(EncryptionException.class, headerOnly::finish);
+    }
+
+    @Test
+    void decrypt_withDroppedOrReorderedSegments_throws() throws Exception {
+        EncryptionServiceImpl service = new EncryptionServiceImpl(ForkJoinPool.commonPool(), 1024, 4);
+        String keyId = service.generateKey();
+        byte[] encrypted = encrypt(service, keyId, randomBytes(3 * 1024));
+        int header = 17;
+        int sealed = 1024 + 16;
+
+        byte[] truncated = Arrays.copyOf(encrypted, header + 2 * sealed);
+        assertThrows(EncryptionException.class, () ->
+                service.decrypt(keyId, ivOf(truncated), afterIv(truncated), new ByteArrayOutputStream()));
+
+        byte[] swapped = encrypted.clone();
+        System.arraycopy(encrypted, header, swapped, header + sealed, sealed);
+        System.arraycopy(encrypted, header + sealed, swapped, header, sealed);
+        assertThrows(EncryptionException.class, () ->
+                service.decrypt(keyId, ivOf(swapped), afterIv(swapped), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void keyIds_carryWrappedKeysThatSurviveARestart(@TempDir Path keysDir) throws Exception {
+        EncryptionServiceImpl service = new EncryptionServiceImpl(MasterKeyStore.at(keysDir));
+        String keyId = service.generateKey();
+        byte[] plaintext = randomBytes(100_000);
+        byte[] encrypted = encrypt(service, keyId, plaintext);
+
+        EncryptionServiceImpl restarted = new EncryptionServiceImpl(MasterKeyStore.at(keysDir));
+        ByteArrayOutputStream decryptedOut = new ByteArrayOutputStream();
+        restarted.decrypt(keyId, ivOf(encrypted), afterIv(encrypted), decryptedOut);
+
+        assertArrayEquals(plaintext, decryptedOut.toByteArray());
+        assertThrows(EncryptionException.class, () ->
+                new EncryptionServiceImpl().decrypt(keyId, ivOf(encrypted), afterIv(encrypted), new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void rotateMasterKey_rewrapsDataKeysWithoutTouchingContent(@TempDir Path keysDir) throws Exception {
+        EncryptionServiceImpl service = new EncryptionServiceImpl(MasterKeyStore.at(keysDir));
+        String keyId = service.generateKey();
+        byte[] plaintext = randomBytes(10_000);
+        byte[] encrypted = encrypt(service, keyId, plaintext);
+
+        service.rotateMasterKey();
+        String rewrapped = service.rewrapKey(keyId);
+
+        assertNotEquals(keyId, rewrapped);
+        assertEquals(rewrapped, service.rewrapKey(rewrapped));
+        ByteArrayOutputStream decryptedOut = new ByteArrayOutputStream();
+        new EncryptionServiceImpl(MasterKeyStore.at(keysDir))
+                .decrypt(rewrapped, ivOf(encrypted), afterIv(encrypted), decryptedOut);
+        assertArrayEquals(plaintext, decryptedOut.toByteArray());
+    }
+
+    @Test
+    void contentStaysReadableUnderTheSuiteItWasSealedWith(@TempDir Path keysDir) throws Exception {
+        MasterKeyStore masterKeys = MasterKeyStore.at(keysDir);
+        EncryptionServiceImpl chacha = new EncryptionServiceImpl(masterKeys, CipherSuite.CHACHA20_POLY1305,
+                ForkJoinPool.commonPool(), 1024, 4, 1);
+        EncryptionServiceImpl aes = new EncryptionServiceImpl(masterKeys, CipherSuite.AES_256_GCM,
+                ForkJoinPool.commonPool(), 1024, 4, 1);
+        String keyId = chacha.generateKey();
+        byte[] plaintext = randomBytes(10_000);
+
+        byte[] sealedWithChaCha = encrypt(chacha, keyId, plaintext);
+        byte[] sealedWithAes = encrypt(aes, keyId, plaintext);
+
+        for (byte[] encrypted : new byte[][]{sealedWithChaCha, sealedWithAes}) {
+            for (EncryptionServiceImpl reader : new EncryptionServiceImpl[]{chacha, aes}) {
+                ByteArrayOutputStream decryptedOut = new ByteArrayOutputStream();
+                reader.decrypt(keyId, ivOf(encrypted), afterIv(encrypted), decryptedOut);
+                assertArrayEquals(plaintext, decryptedOut.toByteArray());
+            }
+        }
+        try (SeekableByteChannel channel = aes.openDecrypted(keyId, new SeekableInMemoryChannel(sealedWithChaCha))) {
+            ByteBuffer range = ByteBuffer.allocate(100);
+            channel.position(4000);
+            while (range.hasRemaining() && channel.read(range) >= 0) {
+                // range crosses a segment boundary
+            }
+            assertArrayEquals(Arrays.copyOfRange(plaintext, 4000, 4100), range.array());
+        }
+    }
+
+    @Test
+    void sameContentSealedTwiceInARow_givesSameCiphertextOnlyWhenConvergent() throws Exception {
+        for (CipherSuite suite : CipherSuite.values()) {
+            EncryptionServiceImpl service = new EncryptionServiceImpl(MasterKeyStore.inMemory(), suite,
+                    ForkJoinPool.commonPool(), 1024, 1, 1);
+            String keyId = service.generateKey();
+            byte[] iv = new byte[12];
+            // One segment, so the second seal repeats the nonce the cipher used last.
+            byte[] plaintext = randomBytes(1000);
+
+            ByteArrayOutputStream first = new ByteArrayOutputStream();
+            service.encryptConvergent(keyId, suite, iv, new ByteArrayInputStream(plaintext), first);
+            ByteArrayOutputStream second = new ByteArrayOutputStream();
+            service.encryptConvergent(keyId, suite, iv, new ByteArrayInputStream(plaintext), second);
+
+            assertArrayEquals(first.toByteArray(), second.toByteArray(), suite.name());
+            assertThrows(EncryptionException.class, () -> service.encrypt(keyId, iv,
+                    new ByteArrayInputStream(plaintext), new ByteArrayOutputStream()), suite.name());
+        }
+    }
+
+    private static byte[] encrypt(EncryptionServiceImpl service, String keyId, byte[] plaintext) throws Exception {
+        ByteArrayOutputStream encryptedOut = new ByteArrayOutputStream();
+        service.encrypt(keyId, new ByteArrayInputStream(plaintext), encryptedOut);
+        return encryptedOut.toByteArray();
+    }
+
+    private static String ivOf(byte[] encrypted) {
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(encrypted, 12));
+    }
+
+    private static ByteArrayInputStream afterIv(byte[] encrypted) {
+        return new ByteArrayInputStream(encrypted, 12, encrypted.length - 12);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Minimal in-memory SeekableByteChannel over a byte array. */
+    private static final class SeekableInMemoryChannel implements SeekableByteChannel {
+        private final byte[] data;
+        private long position;
+
+        SeekableInMemoryChannel(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (position >= data.length) {
+                return -1;
+            }
+            int read = (int) Math.min(dst.remaining(), data.length - position);
+            dst.put(data, (int) position, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) {
+            position = newPosition;
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return data.length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
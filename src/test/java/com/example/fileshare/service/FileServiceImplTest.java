@@ -0,0 +1,250 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.InMemoryMetadataRepository;
+import com.example.fileshare.search.SearchMode;
+import com.example.fileshare.service.model.BatchResult;
+import com.example.fileshare.service.model.FileRequest;
+import com.example.fileshare.service.model.FileResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileServiceImplTest {
+
+    @TempDir
+    Path root;
+
+    private InMemoryMetadataRepository metadata;
+    private FileServiceImpl fileService;
+
+    @BeforeEach
+    void setUp() {
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        metadata = new InMemoryMetadataRepository(root.resolve("metadata").toString(), Long.MAX_VALUE);
+        ChunkStoreImpl chunkStore = new ChunkStoreImpl(new LocalBlobStorageService(root.resolve("storage")), encryption);
+        fileService = new FileServiceImpl(metadata, new SearchServiceImpl(), chunkStore, encryption, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        metadata.close();
+    }
+
+    @Test
+    void batch_savesDescribesAndDeletesFiles() throws Exception {
+        List<byte[]> contents = new ArrayList<>();
+        List<FileRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            byte[] content = random(1 + i * 1000, i);
+            contents.add(content);
+            requests.add(new FileRequest("file-" + i, "alice", new ByteArrayInputStream(content), content.length));
+        }
+
+        List<FileResponse> saved = fileService.saveFiles(requests);
+
+        assertEquals(20, saved.size());
+        List<Id> ids = new ArrayList<>();
+        for (int i = 0; i < saved.size(); i++) {
+            assertEquals("file-" + i, saved.get(i).getFileName());
+            Id id = Id.valueOf(saved.get(i).getFileId());
+            ids.add(id);
+            try (InputStream input = fileService.retrieveFile(id, "alice")) {
+                assertArrayEquals(contents.get(i), input.readAllBytes());
+            }
+        }
+
+        Id missing = Id.generate();
+        List<Id> lookup = new ArrayList<>(ids);
+        lookup.add(missing);
+        BatchResult described = fileService.describeFiles(lookup, "alice");
+        assertEquals(20, described.getFiles().size());
+        assertTrue(described.getFailures().containsKey(missing.toString()));
+        assertEquals(21, fileService.describeFiles(lookup, "bob").getFailures().size());
+
+        BatchResult refused = fileService.deleteFiles(ids.subList(0, 5), "bob");
+        assertTrue(refused.getFiles().isEmpty());
+        assertEquals(5, refused.getFailures().size());
+
+        BatchResult deleted = fileService.deleteFiles(ids, "alice");
+        assertEquals(20, deleted.getFiles().size());
+        assertTrue(deleted.getFailures().isEmpty());
+        assertEquals(0, blobCount());
+        assertTrue(fileService.listFiles("alice").isEmpty());
+    }
+
+    @Test
+    void tags_surviveUpdatesAndARestart() throws Exception {
+        byte[] content = random(2000, 1);
+        FileResponse saved = fileService.saveFile(new FileRequest("scan.pdf", "alice",
+                new ByteArrayInputStream(content), content.length, Set.of("Invoices", "2024")));
+        Id id = Id.valueOf(saved.getFileId());
+        // No tags on the update keeps the ones the file has.
+        fileService.updateFile(id, "alice", new FileRequest("scan-final.pdf", "alice",
+                new ByteArrayInputStream(content), content.length, null));
+        metadata.close();
+
+        metadata = new InMemoryMetadataRepository(root.resolve("metadata").toString(), Long.MAX_VALUE);
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        FileServiceImpl restarted = new FileServiceImpl(metadata, new SearchServiceImpl(),
+                new ChunkStoreImpl(new LocalBlobStorageService(root.resolve("storage")), encryption), encryption, 3);
+        restarted.restore();
+
+        assertEquals(Set.of("Invoices", "2024"), metadata.findFile(id).orElseThrow().getTags());
+        assertEquals(List.of(id), restarted.searchFiles("alice", "invoices", SearchMode.TERMS, 0, 10));
+        assertEquals(List.of(id), restarted.searchFiles("alice", "final 2024", SearchMode.TERMS, 0, 10));
+    }
+
+    @Test
+    void failedBatch_savesNothingAndGivesBackStoredChunks() throws Exception {
+        List<FileRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            byte[] content = random(5000, i);
+            requests.add(new FileRequest("file-" + i, "alice", new ByteArrayInputStream(content), content.length));
+        }
+        requests.add(new FileRequest("broken", "alice", new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("client went away");
+            }
+        }, 100));
+
+        assertThrows(RuntimeException.class, () -> fileService.saveFiles(requests));
+
+        assertTrue(fileService.listFiles("alice").isEmpty());
+        assertEquals(0, blobCount());
+        assertThrows(IllegalArgumentException.class, () -> fileService.deleteFiles(List.of(), "alice"));
+    }
+
+    @Test
+    void failureWhilePublishingABatch_unpublishesTheFilesBeforeIt() throws Exception {
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        SearchServiceImpl failingSearch = new SearchServiceImpl() {
+            @Override
+            public void indexFile(File file) {
+                if (file.getName().equals("file-5")) {
+                    throw new IllegalStateException("index unavailable");
+                }
+                super.indexFile(file);
+            }
+        };
+        FileServiceImpl failing = new FileServiceImpl(metadata, failingSearch,
+                new ChunkStoreImpl(new LocalBlobStorageService(root.resolve("storage")), encryption), encryption, 3);
+        List<FileRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            byte[] content = random(5000, i);
+            requests.add(new FileRequest("file-" + i, "alice", new ByteArrayInputStream(content), content.length));
+        }
+
+        assertThrows(RuntimeException.class, () -> failing.saveFiles(requests));
+
+        // Files 0 to 5 got as far as a version record and are now deleted; the rest never did.
+        assertEquals(6, metadata.findAllFiles().size());
+        for (File file : metadata.findAllFiles()) {
+            assertEquals(File.Status.DELETED, file.getStatus());
+        }
+        assertTrue(failing.listFiles("alice").isEmpty());
+        assertTrue(failing.searchFiles("alice", "file", SearchMode.TERMS, 0, 10).isEmpty());
+        assertEquals(0, blobCount());
+    }
+
+    @Test
+    void updateRacingADelete_leavesNeitherVersionNorChunksBehind() throws Exception {
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        FileServiceImpl[] service = new FileServiceImpl[1];
+        boolean[] deleteAfterAdd = new boolean[1];
+        InMemoryMetadataRepository racing = new InMemoryMetadataRepository() {
+            @Override
+            public Optional<FileVersion> addLiveVersion(FileVersion version) {
+                if (!deleteAfterAdd[0]) {
+                    service[0].deleteFile(version.getFileId(), "alice");
+                    return super.addLiveVersion(version);
+                }
+                Optional<FileVersion> added = super.addLiveVersion(version);
+                service[0].deleteFile(version.getFileId(), "alice");
+                return added;
+            }
+        };
+        service[0] = new FileServiceImpl(racing, new SearchServiceImpl(),
+                new ChunkStoreImpl(new LocalBlobStorageService(root.resolve("storage")), encryption), encryption, 3);
+
+        for (boolean after : new boolean[]{false, true}) {
+            deleteAfterAdd[0] = after;
+            byte[] original = random(5000, after ? 1 : 2);
+            byte[] edited = random(5000, after ? 3 : 4);
+            Id fileId = Id.valueOf(service[0].saveFile(
+                    new FileRequest("raced.bin", "alice", new ByteArrayInputStream(original), original.length)).getFileId());
+
+            assertThrows(RuntimeException.class, () -> service[0].updateFile(fileId, "alice",
+                    new FileRequest("raced.bin", "alice", new ByteArrayInputStream(edited), edited.length)));
+
+            assertEquals(File.Status.DELETED, racing.findFile(fileId).orElseThrow().getStatus());
+            assertEquals(after ? 2 : 1, racing.findVersions(fileId).size());
+            assertTrue(service[0].searchFiles("alice", "raced", SearchMode.TERMS, 0, 10).isEmpty());
+            assertEquals(0, blobCount());
+        }
+    }
+
+    @Test
+    void cachedContent_isDroppedOnUpdateAndDelete() throws Exception {
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        ContentCacheImpl cache = new ContentCacheImpl(10_000_000, 1_000_000, (Path) null, 0);
+        FileServiceImpl cached = new FileServiceImpl(metadata, new SearchServiceImpl(),
+                new ChunkStoreImpl(new LocalBlobStorageService(root.resolve("cached")), encryption), encryption, 3, cache);
+        byte[] original = random(200_000, 1);
+        byte[] edited = random(200_000, 2);
+        Id fileId = Id.valueOf(cached.saveFile(
+                new FileRequest("a.bin", "alice", new ByteArrayInputStream(original), original.length)).getFileId());
+
+        for (int i = 0; i < 3; i++) {
+            try (InputStream input = cached.retrieveFile(fileId, "alice")) {
+                assertArrayEquals(original, input.readAllBytes());
+            }
+        }
+        assertEquals(1, cache.stats().getMemoryHits());
+        assertEquals(1, cache.stats().getMemoryEntries());
+
+        cached.updateFile(fileId, "alice", new FileRequest("a.bin", "alice", new ByteArrayInputStream(edited), edited.length));
+        assertEquals(0, cache.stats().getMemoryEntries());
+        try (InputStream input = cached.retrieveFile(fileId, "alice")) {
+            assertArrayEquals(edited, input.readAllBytes());
+        }
+        assertEquals(1, cache.stats().getMemoryEntries());
+
+        cached.deleteFile(fileId, "alice");
+        assertEquals(0, cache.stats().getMemoryEntries());
+        assertThrows(RuntimeException.class, () -> cached.retrieveFile(fileId, "alice"));
+    }
+
+    private long blobCount() throws IOException {
+        try (Stream<Path> blobs = Files.walk(root.resolve("storage").resolve("blobs"))) {
+            return blobs.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.InMemoryMetadataRepository;
+import com.example.fileshare.service.model.FileContent;
+import com.example.fileshare.service.model.FileRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Downloads of encrypted files where nine requests in ten go to a tenth of the files, read
+ * through {@link FileServiceImpl#openFile} with the content cache off ({@code memoryBytes} 0) and
+ * on. Sample mode reports the latency percentiles. Run with
+ * <pre>
+ * mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main HotFileBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HotFileBenchmark {
+
+    private static final int FILES = 200;
+    private static final int HOT_FILES = FILES / 10;
+
+    @Param({"262144"})
+    public int fileBytes;
+
+    @Param({"0", "268435456"})
+    public long memoryBytes;
+
+    private Path root;
+    private InMemoryMetadataRepository metadata;
+    private LocalBlobStorageService storage;
+    private FileServiceImpl fileService;
+    private List<Id> ids;
+    private Random random;
+    private ByteBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("hot-file-benchmark");
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        metadata = new InMemoryMetadataRepository(root.resolve("metadata").toString(), 64L * 1024 * 1024);
+        storage = new LocalBlobStorageService(root.resolve("storage"));
+        fileService = new FileServiceImpl(metadata, new SearchServiceImpl(), new ChunkStoreImpl(storage, encryption),
+                encryption, 8, new ContentCacheImpl(memoryBytes, 16L * 1024 * 1024, (Path) null, 0));
+        Random content = new Random(42);
+        ids = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            byte[] data = new byte[fileBytes];
+            content.nextBytes(data);
+            FileRequest request = new FileRequest("file-" + i, "owner", new ByteArrayInputStream(data), data.length);
+            ids.add(Id.valueOf(fileService.saveFile(request).getFileId()));
+        }
+        random = new Random(7);
+        buffer = ByteBuffer.allocate(64 * 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        metadata.close();
+        storage.close();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long download() throws Exception {
+        Id id = random.nextInt(10) < 9
+                ? ids.get(random.nextInt(HOT_FILES))
+                : ids.get(HOT_FILES + random.nextInt(FILES - HOT_FILES));
+        long read = 0;
+        try (FileContent content = fileService.openFile(id, "owner")) {
+            for (int n; (n = content.getChannel().read(buffer.clear())) > 0; ) {
+                read += n;
+            }
+        }
+        return read;
+    }
+}
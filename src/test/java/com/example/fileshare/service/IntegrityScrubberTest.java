@@ -0,0 +1,84 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.repository.InMemoryMetadataRepository;
+import com.example.fileshare.service.model.ScrubReport;
+import com.example.fileshare.service.model.StoredContent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IntegrityScrubberTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void scrub_reportsBlobsWhoseBytesChanged() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        ChunkStoreImpl chunks = new ChunkStoreImpl(storage, encryption);
+        InMemoryMetadataRepository metadata = new InMemoryMetadataRepository();
+        StoredContent content = chunks.write(new ByteArrayInputStream(random(3_000_000)), encryption.generateKey(), null);
+        register(metadata, content);
+        IntegrityScrubber scrubber = new IntegrityScrubber(metadata, storage, 0, 0);
+
+        ScrubReport clean = scrubber.scrub();
+        assertEquals(content.getChunks().size(), clean.getBlobsChecked());
+        assertTrue(clean.getCorruptKeys().isEmpty());
+
+        String damaged = content.getChunks().get(1).getKey();
+        flipByte(storage.localPath(damaged), 1000);
+
+        assertEquals(List.of(damaged), scrubber.scrub().getCorruptKeys());
+    }
+
+    @Test
+    void sequentialReadOfPlainChunk_failsOnCorruption() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+        ChunkStoreImpl chunks = new ChunkStoreImpl(storage, new EncryptionServiceImpl());
+        StoredContent content = chunks.write(new ByteArrayInputStream(random(100_000)));
+        flipByte(storage.localPath(content.getChunks().get(0).getKey()), 50_000);
+
+        try (InputStream input = Channels.newInputStream(chunks.open(content.getChunks()))) {
+            assertThrows(IOException.class, input::readAllBytes);
+        }
+    }
+
+    private static void register(InMemoryMetadataRepository metadata, StoredContent content) {
+        File file = new File("owner", "data.bin", content.getSize(), content.getChecksum());
+        FileVersion version = new FileVersion(file.getId(), 0, null, content.getKeyId(), content.getIv(),
+                content.getChecksum());
+        version.setChunks(content.getChunks());
+        file.setContentVersion(metadata.addVersion(version).getVersion());
+        metadata.saveFile(file);
+    }
+
+    private static void flipByte(Path path, long offset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(offset);
+            int value = file.read();
+            file.seek(offset);
+            file.write(value ^ 1);
+        }
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.service.model.StoredBlob;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalBlobStorageServiceTest {
+
+    private static final String HELLO_SHA256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    @TempDir
+    Path root;
+
+    @Test
+    void store_isAddressedBySha256WithFanOut() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+
+        StoredBlob blob = storage.store(channel("hello"));
+
+        assertEquals(HELLO_SHA256, blob.getKey());
+        assertEquals(5, blob.getSize());
+        assertEquals(root.resolve("blobs/2c/f2/" + HELLO_SHA256), storage.localPath(blob.getKey()));
+        assertEquals("hello", Files.readString(storage.localPath(blob.getKey())));
+    }
+
+    @Test
+    void open_readsRanges() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+        StoredBlob blob = storage.store(channel("0123456789"));
+
+        try (SeekableByteChannel channel = storage.open(blob.getKey())) {
+            ByteBuffer range = ByteBuffer.allocate(3);
+            channel.position(4).read(range);
+            assertEquals("456", new String(range.array(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void duplicateContent_isKeptUntilLastReferenceIsDeleted() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+        String key = storage.store(channel("hello")).getKey();
+        assertEquals(key, storage.store(channel("hello")).getKey());
+        assertTrue(storage.retain(key));
+        assertFalse(storage.retain(HELLO_SHA256.replace('2', '3')));
+
+        storage.delete(key);
+
+        storage.delete(key);
+        assertTrue(storage.exists(key));
+        storage.delete(key);
+        assertFalse(storage.exists(key));
+        assertThrows(IllegalArgumentException.class, () -> storage.open(key));
+    }
+
+    @Test
+    void smallBlobs_arePackedIntoSegmentsAndSurviveARestart() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root, 1024, 1024 * 1024);
+        String small = storage.store(channel("hello")).getKey();
+        String gone = storage.store(channel("goodbye")).getKey();
+        String large = storage.store(channel("x".repeat(5000))).getKey();
+
+        assertEquals(HELLO_SHA256, small);
+        assertNull(storage.localPath(small));
+        assertFalse(Files.exists(root.resolve("blobs/2c/f2/" + HELLO_SHA256)));
+        assertNotNull(storage.localPath(large));
+        assertTrue(Files.exists(storage.localPath(large)));
+        try (SeekableByteChannel channel = storage.open(small)) {
+            ByteBuffer range = ByteBuffer.allocate(3);
+            channel.position(1).read(range);
+            assertEquals("ell", new String(range.array(), StandardCharsets.US_ASCII));
+            assertEquals(5, channel.size());
+        }
+        storage.delete(gone);
+        assertFalse(storage.exists(gone));
+        storage.close();
+
+        LocalBlobStorageService reopened = new LocalBlobStorageService(root, 1024, 1024 * 1024);
+        assertTrue(reopened.retain(small));
+        assertTrue(reopened.retain(large));
+        assertFalse(reopened.retain(gone));
+        reopened.delete(small);
+        assertFalse(reopened.exists(small));
+        assertThrows(IllegalArgumentException.class, () -> reopened.open(small));
+        reopened.close();
+    }
+
+    @Test
+    void blobsNotRetainedAfterARestart_areRemoved() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root, 1024, 1024 * 1024);
+        String kept = storage.store(channel("hello")).getKey();
+        String packedOrphan = storage.store(channel("goodbye")).getKey();
+        String keptLarge = storage.store(channel("x".repeat(5000))).getKey();
+        String orphan = storage.store(channel("y".repeat(5000))).getKey();
+        storage.close();
+
+        LocalBlobStorageService reopened = new LocalBlobStorageService(root, 1024, 1024 * 1024);
+        assertTrue(reopened.retain(kept));
+        assertTrue(reopened.retain(keptLarge));
+
+        assertEquals(2, reopened.removeUnreferenced());
+        assertTrue(reopened.exists(kept));
+        assertTrue(reopened.exists(keptLarge));
+        assertFalse(reopened.exists(packedOrphan));
+        assertFalse(reopened.exists(orphan));
+        assertEquals(0, reopened.removeUnreferenced());
+        reopened.close();
+    }
+
+    @Test
+    void invalidKeys_areRejected() {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root);
+
+        assertThrows(IllegalArgumentException.class, () -> storage.open("../../etc/passwd"));
+    }
+
+    private static ReadableByteChannel channel(String content) {
+        return Channels.newChannel(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
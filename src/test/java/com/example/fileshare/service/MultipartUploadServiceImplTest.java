@@ -0,0 +1,192 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.InMemoryMetadataRepository;
+import com.example.fileshare.service.model.FileResponse;
+import com.example.fileshare.service.model.StoredContent;
+import com.example.fileshare.service.model.UploadSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MultipartUploadServiceImplTest {
+
+    private static final int PART_SIZE = 4096;
+
+    @TempDir
+    Path root;
+
+    private InMemoryMetadataRepository metadata;
+    private EncryptionServiceImpl encryption;
+    private ChunkStoreImpl chunkStore;
+    private FileServiceImpl fileService;
+    private MultipartUploadServiceImpl uploads;
+
+    @BeforeEach
+    void setUp() {
+        encryption = new EncryptionServiceImpl();
+        metadata = new InMemoryMetadataRepository(root.resolve("metadata").toString(), Long.MAX_VALUE);
+        chunkStore = new ChunkStoreImpl(new LocalBlobStorageService(root.resolve("storage")), encryption);
+        fileService = new FileServiceImpl(metadata, new SearchServiceImpl(), chunkStore, encryption, 3);
+        uploads = newUploads(fileService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        metadata.close();
+    }
+
+    @Test
+    void partsInAnyOrder_assembleTheFile() throws Exception {
+        byte[] content = random(PART_SIZE * 2 + 100, 1);
+        UploadSession session = uploads.initiateUpload("alice", "big.bin", content.length, PART_SIZE);
+
+        for (int part : new int[]{3, 1, 2}) {
+            uploads.uploadPart(session.getUploadId(), "alice", part, part(content, part));
+        }
+        FileResponse response = uploads.completeUpload(session.getUploadId(), "alice");
+
+        assertEquals(session.getFileId().toString(), response.getFileId());
+        assertArrayEquals(content, download(response));
+        assertEquals(0, uploadFiles());
+        assertThrows(RuntimeException.class, () -> uploads.getUpload(session.getUploadId(), "alice"));
+    }
+
+    @Test
+    void uploadReloadedAfterRestart_resumesWithItsParts() throws Exception {
+        byte[] content = random(PART_SIZE * 3, 2);
+        UploadSession session = uploads.initiateUpload("alice", "resumed.bin", content.length, PART_SIZE);
+        uploads.uploadPart(session.getUploadId(), "alice", 2, part(content, 2));
+
+        MultipartUploadServiceImpl restarted = newUploads(fileService);
+        assertEquals(Set.of(2), restarted.getUpload(session.getUploadId(), "alice").getCompletedParts());
+        restarted.uploadPart(session.getUploadId(), "alice", 1, part(content, 1));
+        restarted.uploadPart(session.getUploadId(), "alice", 3, part(content, 3));
+
+        assertArrayEquals(content, download(restarted.completeUpload(session.getUploadId(), "alice")));
+    }
+
+    @Test
+    void partOfTheWrongSize_isNotRecorded() throws Exception {
+        byte[] content = random(PART_SIZE * 2, 3);
+        UploadSession session = uploads.initiateUpload("alice", "sized.bin", content.length, PART_SIZE);
+
+        assertThrows(RuntimeException.class, () -> uploads.uploadPart(session.getUploadId(), "alice", 1,
+                new ByteArrayInputStream(content, 0, PART_SIZE - 1)));
+        assertThrows(RuntimeException.class, () -> uploads.uploadPart(session.getUploadId(), "alice", 1,
+                new ByteArrayInputStream(content, 0, PART_SIZE + 1)));
+        assertThrows(RuntimeException.class, () -> uploads.uploadPart(session.getUploadId(), "alice", 3,
+                new ByteArrayInputStream(new byte[0])));
+
+        assertTrue(uploads.getUpload(session.getUploadId(), "alice").getCompletedParts().isEmpty());
+    }
+
+    @Test
+    void completeWithMissingParts_failsAndKeepsTheUpload() throws Exception {
+        byte[] content = random(PART_SIZE * 2, 4);
+        UploadSession session = uploads.initiateUpload("alice", "partial.bin", content.length, PART_SIZE);
+        uploads.uploadPart(session.getUploadId(), "alice", 1, part(content, 1));
+
+        assertThrows(RuntimeException.class, () -> uploads.completeUpload(session.getUploadId(), "alice"));
+
+        uploads.uploadPart(session.getUploadId(), "alice", 2, part(content, 2));
+        assertArrayEquals(content, download(uploads.completeUpload(session.getUploadId(), "alice")));
+    }
+
+    @Test
+    void failedCompletion_restoresTheUploadForARetry() throws Exception {
+        boolean[] fail = {true};
+        FileServiceImpl flaky = new FileServiceImpl(metadata, new SearchServiceImpl(), chunkStore, encryption, 3) {
+            @Override
+            public FileResponse registerFile(File file, StoredContent content) {
+                if (fail[0]) {
+                    throw new IllegalStateException("metadata unavailable");
+                }
+                return super.registerFile(file, content);
+            }
+        };
+        MultipartUploadServiceImpl flakyUploads = newUploads(flaky);
+        byte[] content = random(PART_SIZE, 5);
+        UploadSession session = flakyUploads.initiateUpload("alice", "retried.bin", content.length, PART_SIZE);
+        flakyUploads.uploadPart(session.getUploadId(), "alice", 1, part(content, 1));
+
+        assertThrows(RuntimeException.class, () -> flakyUploads.completeUpload(session.getUploadId(), "alice"));
+        assertEquals(Set.of(1), flakyUploads.getUpload(session.getUploadId(), "alice").getCompletedParts());
+
+        fail[0] = false;
+        assertArrayEquals(content, download(flakyUploads.completeUpload(session.getUploadId(), "alice")));
+    }
+
+    @Test
+    void abort_removesTheUploadAndItsFiles() throws Exception {
+        byte[] content = random(PART_SIZE * 2, 6);
+        UploadSession session = uploads.initiateUpload("alice", "aborted.bin", content.length, PART_SIZE);
+        uploads.uploadPart(session.getUploadId(), "alice", 1, part(content, 1));
+
+        assertThrows(RuntimeException.class, () -> uploads.abortUpload(session.getUploadId(), "bob"));
+        uploads.abortUpload(session.getUploadId(), "alice");
+
+        assertThrows(RuntimeException.class, () -> uploads.getUpload(session.getUploadId(), "alice"));
+        assertThrows(RuntimeException.class, () -> uploads.uploadPart(session.getUploadId(), "alice", 2,
+                part(content, 2)));
+        assertEquals(0, uploadFiles());
+        assertThrows(RuntimeException.class, () -> newUploads(fileService).getUpload(session.getUploadId(), "alice"));
+    }
+
+    @Test
+    void idleUploads_expire() throws Exception {
+        UploadSession idle = uploads.initiateUpload("alice", "idle.bin", PART_SIZE, PART_SIZE);
+        LocalDateTime cutoff = LocalDateTime.now().plusSeconds(1);
+
+        assertEquals(0, uploads.expireIdleSince(idle.getCreatedAt()));
+        assertEquals(1, uploads.expireIdleSince(cutoff));
+
+        assertThrows(RuntimeException.class, () -> uploads.getUpload(idle.getUploadId(), "alice"));
+        assertEquals(0, uploadFiles());
+    }
+
+    private MultipartUploadServiceImpl newUploads(FileService files) {
+        return new MultipartUploadServiceImpl(files, chunkStore, encryption, root.resolve("uploads"), 0);
+    }
+
+    private byte[] download(FileResponse response) throws IOException {
+        try (InputStream input = fileService.retrieveFile(Id.valueOf(response.getFileId()), "alice")) {
+            return input.readAllBytes();
+        }
+    }
+
+    private long uploadFiles() throws IOException {
+        try (Stream<Path> files = Files.list(root.resolve("uploads"))) {
+            return files.count();
+        }
+    }
+
+    private static InputStream part(byte[] content, int part) {
+        int from = (part - 1) * PART_SIZE;
+        return new ByteArrayInputStream(Arrays.copyOfRange(content, from, Math.min(content.length, from + PART_SIZE)));
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
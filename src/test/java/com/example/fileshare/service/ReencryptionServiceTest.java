@@ -0,0 +1,143 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileVersion;
+import com.example.fileshare.repository.InMemoryMetadataRepository;
+import com.example.fileshare.service.model.ReencryptionProgress;
+import com.example.fileshare.service.model.StoredContent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReencryptionServiceTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void reencryption_movesEveryVersionToNewKeyAndKeepsContent() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root.resolve("blobs"));
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        ChunkStoreImpl chunks = new ChunkStoreImpl(storage, encryption);
+        InMemoryMetadataRepository metadata = new InMemoryMetadataRepository();
+        String oldKey = encryption.generateKey();
+        String otherKey = encryption.generateKey();
+        byte[] first = random(1, 400_000);
+        byte[] second = random(2, 300_000);
+        byte[] other = random(3, 200_000);
+        File file = save(metadata, chunks, oldKey, null, first);
+        addVersion(metadata, chunks, file, oldKey, metadata.findVersions(file.getId()).get(0).getIv(), second);
+        File untouched = save(metadata, chunks, otherKey, null, other);
+        String replacedKey = metadata.findVersions(file.getId()).get(0).getChunks().get(0).getKey();
+
+        ReencryptionService service = new ReencryptionService(metadata, chunks, encryption, new LatencyMonitor(),
+                2, 0, 0, 0, root.resolve("jobs"));
+        ReencryptionProgress progress = await(service, service.startReencryption(oldKey).getJobId());
+
+        assertEquals(ReencryptionProgress.Status.COMPLETED, progress.getStatus());
+        assertEquals(2, progress.getVersionsDone());
+        List<FileVersion> versions = metadata.findVersions(file.getId());
+        String newKey = versions.get(0).getKeyId();
+        assertNotEquals(oldKey, newKey);
+        assertEquals(newKey, versions.get(1).getKeyId());
+        assertArrayEquals(first, read(chunks, versions.get(0)));
+        assertArrayEquals(second, read(chunks, versions.get(1)));
+        assertFalse(storage.exists(replacedKey));
+        assertEquals(otherKey, metadata.findVersions(untouched.getId()).get(0).getKeyId());
+
+        ReencryptionService restarted = new ReencryptionService(metadata, chunks, encryption, new LatencyMonitor(),
+                2, 0, 0, 0, root.resolve("jobs"));
+        assertEquals(ReencryptionProgress.Status.COMPLETED,
+                restarted.getProgress(progress.getJobId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void reencryption_findsVersionsWhoseKeyIdsWereRewrappedAndBlocksRotationWhileRunning() throws Exception {
+        LocalBlobStorageService storage = new LocalBlobStorageService(root.resolve("blobs"));
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        ChunkStoreImpl chunks = new ChunkStoreImpl(storage, encryption);
+        InMemoryMetadataRepository metadata = new InMemoryMetadataRepository();
+        String oldKey = encryption.generateKey();
+        byte[] data = random(4, 100_000);
+        File file = save(metadata, chunks, oldKey, null, data);
+        boolean[] overBudget = {false};
+        LatencyMonitor latency = new LatencyMonitor() {
+            @Override
+            public long percentileMillis(double percentile) {
+                return overBudget[0] ? Long.MAX_VALUE : 0;
+            }
+        };
+        ReencryptionService service = new ReencryptionService(metadata, chunks, encryption, latency,
+                1, 0, 1, 0, root.resolve("jobs"));
+        KeyRotationService rotation = new KeyRotationService(metadata, encryption, service);
+
+        assertEquals(1, rotation.rotateMasterKey());
+        String rewrapped = metadata.findVersions(file.getId()).get(0).getKeyId();
+        assertNotEquals(oldKey, rewrapped);
+        assertEquals(encryption.keyFingerprint(oldKey), encryption.keyFingerprint(rewrapped));
+
+        overBudget[0] = true;
+        String jobId = service.startReencryption(oldKey).getJobId();
+        assertThrows(IllegalStateException.class, rotation::rotateMasterKey);
+        overBudget[0] = false;
+        ReencryptionProgress progress = await(service, jobId);
+
+        assertEquals(ReencryptionProgress.Status.COMPLETED, progress.getStatus());
+        assertEquals(1, progress.getVersionsDone());
+        FileVersion moved = metadata.findVersions(file.getId()).get(0);
+        assertNotEquals(encryption.keyFingerprint(oldKey), encryption.keyFingerprint(moved.getKeyId()));
+        assertArrayEquals(data, read(chunks, moved));
+        assertEquals(1, rotation.rotateMasterKey());
+    }
+
+    private static ReencryptionProgress await(ReencryptionService service, String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        ReencryptionProgress progress = service.getProgress(jobId).orElseThrow();
+        while (progress.getStatus() == ReencryptionProgress.Status.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            progress = service.getProgress(jobId).orElseThrow();
+        }
+        return progress;
+    }
+
+    private static File save(InMemoryMetadataRepository metadata, ChunkStoreImpl chunks, String keyId, String iv,
+                             byte[] data) {
+        File file = new File("owner", "data.bin", data.length, null);
+        metadata.saveFile(file);
+        addVersion(metadata, chunks, file, keyId, iv, data);
+        return file;
+    }
+
+    private static void addVersion(InMemoryMetadataRepository metadata, ChunkStoreImpl chunks, File file,
+                                   String keyId, String iv, byte[] data) {
+        StoredContent content = chunks.write(new ByteArrayInputStream(data), keyId, iv);
+        FileVersion version = new FileVersion(file.getId(), 0, null, content.getKeyId(), content.getIv(),
+                content.getChecksum());
+        version.setChunks(content.getChunks());
+        metadata.addVersion(version);
+    }
+
+    private static byte[] read(ChunkStoreImpl chunks, FileVersion version) throws Exception {
+        try (InputStream input = Channels.newInputStream(chunks.open(version.getChunks(), version.getKeyId()))) {
+            return input.readAllBytes();
+        }
+    }
+
+    private static byte[] random(long seed, int size) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
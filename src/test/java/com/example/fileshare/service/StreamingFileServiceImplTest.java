@@ -0,0 +1,140 @@
+package com.example.fileshare.service;
+
+import com.example.fileshare.domain.File;
+import com.example.fileshare.domain.FileChunk;
+import com.example.fileshare.domain.Id;
+import com.example.fileshare.repository.InMemoryMetadataRepository;
+import com.example.fileshare.service.model.ContentLocation;
+import com.example.fileshare.service.model.FileResponse;
+import com.example.fileshare.service.model.StoredContent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingFileServiceImplTest {
+
+    private static final DataBufferFactory BUFFERS = DefaultDataBufferFactory.sharedInstance;
+
+    @TempDir
+    Path root;
+
+    private LocalBlobStorageService storage;
+    private ChunkStoreImpl chunkStore;
+    private InMemoryMetadataRepository metadata;
+    private FileServiceImpl fileService;
+    private StreamingFileServiceImpl streaming;
+
+    @BeforeEach
+    void setUp() {
+        EncryptionServiceImpl encryption = new EncryptionServiceImpl();
+        storage = new LocalBlobStorageService(root.resolve("storage"));
+        chunkStore = new ChunkStoreImpl(storage, encryption);
+        metadata = new InMemoryMetadataRepository(root.resolve("metadata").toString(), Long.MAX_VALUE);
+        fileService = new FileServiceImpl(metadata, new SearchServiceImpl(), chunkStore, encryption);
+        streaming = new StreamingFileServiceImpl(fileService, storage, encryption,
+                Schedulers.newBoundedElastic(2, 100, "test-store"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        streaming.shutdown();
+        metadata.close();
+    }
+
+    @Test
+    void streamedUploadAndUpdate_readBackThroughTheDecryptor() {
+        byte[] original = random(6_000_000, 1);
+        FileResponse saved = streaming.saveFile("alice", "a.bin", Set.of("report"), pieces(original, 2)).block();
+        Id fileId = Id.valueOf(saved.getFileId());
+
+        assertEquals(original.length, saved.getFileSize());
+        assertArrayEquals(original, read(fileService.locateFile(fileId, "alice")));
+
+        byte[] edited = original.clone();
+        edited[3_000_000] ^= 1;
+        FileResponse updated = streaming.updateFile(fileId, "alice", "b.bin", null, pieces(edited, 3)).block();
+
+        assertEquals("b.bin", updated.getFileName());
+        ContentLocation location = fileService.locateFile(fileId, "alice");
+        assertArrayEquals(edited, read(location));
+        assertTrue(location.getKeyId() != null);
+    }
+
+    @Test
+    void failedUpload_givesBackItsChunks() throws Exception {
+        byte[] data = random(9_000_000, 4);
+        Flux<DataBuffer> broken = pieces(data, 5).concatWith(Flux.error(new IllegalStateException("client went away")));
+
+        assertThrows(IllegalStateException.class, () -> streaming.saveFile("alice", "a.bin", null, broken).block());
+
+        try (Stream<Path> blobs = Files.walk(root.resolve("storage").resolve("blobs"))) {
+            assertEquals(0, blobs.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void plainChunks_areCheckedAgainstTheirCrc() throws Exception {
+        byte[] data = random(5_000_000, 6);
+        StoredContent content = chunkStore.write(new ByteArrayInputStream(data));
+        File file = new File("alice", "plain.bin", content.getSize(), content.getChecksum());
+        ContentLocation location = new ContentLocation(file, content.getChunks(), null);
+
+        assertArrayEquals(data, read(location));
+
+        FileChunk last = content.getChunks().get(content.getChunks().size() - 1);
+        try (RandomAccessFile blob = new RandomAccessFile(storage.localPath(last.getKey()).toFile(), "rw")) {
+            blob.seek(10);
+            int value = blob.read();
+            blob.seek(10);
+            blob.write(value ^ 1);
+        }
+        assertThrows(RuntimeException.class, () -> read(location));
+    }
+
+    private byte[] read(ContentLocation location) {
+        DataBuffer joined = DataBufferUtils.join(streaming.read(location, BUFFERS)).block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        return bytes;
+    }
+
+    private static Flux<DataBuffer> pieces(byte[] data, long seed) {
+        Random random = new Random(seed);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < data.length; ) {
+            int length = Math.min(data.length - offset, 1 + random.nextInt(64 * 1024));
+            buffers.add(BUFFERS.wrap(Arrays.copyOfRange(data, offset, offset + length)));
+            offset += length;
+        }
+        return Flux.fromIterable(buffers);
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
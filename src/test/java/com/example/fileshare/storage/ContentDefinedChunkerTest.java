@@ -0,0 +1,75 @@
+package com.example.fileshare.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContentDefinedChunkerTest {
+
+    private final ContentDefinedChunker chunker = new ContentDefinedChunker(2 * 1024, 8 * 1024, 32 * 1024);
+
+    @Test
+    void chunks_respectSizeBoundsAndCoverInput() {
+        byte[] data = random(1_000_000, 1);
+
+        List<byte[]> chunks = split(data);
+
+        int total = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            int length = chunks.get(i).length;
+            assertTrue(length <= 32 * 1024);
+            assertTrue(length >= 2 * 1024 || i == chunks.size() - 1);
+            total += length;
+        }
+        assertEquals(data.length, total);
+        // Normalized chunking keeps the average near the target.
+        int average = total / chunks.size();
+        assertTrue(average > 6 * 1024 && average < 12 * 1024, "average " + average);
+    }
+
+    @Test
+    void insertion_onlyChangesNearbyChunks() {
+        byte[] original = random(1_000_000, 2);
+        byte[] edited = new byte[original.length + 10];
+        System.arraycopy(original, 0, edited, 0, 500_000);
+        System.arraycopy(random(10, 3), 0, edited, 500_000, 10);
+        System.arraycopy(original, 500_000, edited, 500_010, 500_000);
+
+        Set<String> before = fingerprints(split(original));
+        List<byte[]> after = split(edited);
+        long reused = after.stream().filter(chunk -> before.contains(Arrays.toString(chunk))).count();
+
+        assertTrue(after.size() - reused <= 3, "changed chunks: " + (after.size() - reused));
+    }
+
+    private List<byte[]> split(byte[] data) {
+        List<byte[]> chunks = new ArrayList<>();
+        int offset = 0;
+        while (offset < data.length) {
+            int length = chunker.cut(data, offset, data.length - offset);
+            chunks.add(Arrays.copyOfRange(data, offset, offset + length));
+            offset += length;
+        }
+        return chunks;
+    }
+
+    private static Set<String> fingerprints(List<byte[]> chunks) {
+        Set<String> fingerprints = new HashSet<>();
+        chunks.forEach(chunk -> fingerprints.add(Arrays.toString(chunk)));
+        return fingerprints;
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}